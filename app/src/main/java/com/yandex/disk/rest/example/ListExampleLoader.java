@@ -13,6 +13,7 @@ import android.os.Handler;
 import android.support.v4.content.AsyncTaskLoader;
 import android.util.Log;
 
+import com.yandex.disk.rest.ResourceIterator;
 import com.yandex.disk.rest.ResourcesArgs;
 import com.yandex.disk.rest.ResourcesHandler;
 import com.yandex.disk.rest.RestClient;
@@ -38,7 +39,7 @@ public class ListExampleLoader extends AsyncTaskLoader<List<ListItem>> {
     private Exception exception;
     private boolean hasCancelled;
 
-    private static final int ITEMS_PER_REQUEST = 20;
+    private static final int PAGES_AHEAD = 2;
 
     private static Collator collator = Collator.getInstance();
     static {
@@ -79,34 +80,33 @@ public class ListExampleLoader extends AsyncTaskLoader<List<ListItem>> {
     public List<ListItem> loadInBackground() {
         fileItemList = new ArrayList<>();
         hasCancelled = false;
-        int offset = 0;
         RestClient client = null;
         try {
             client = RestClientUtil.getInstance(credentials);
-            int size;
-            do {
-                Resource resource = client.getResources(new ResourcesArgs.Builder()
-                        .setPath(dir)
-                        .setSort(ResourcesArgs.Sort.name)
-                        .setLimit(ITEMS_PER_REQUEST)
-                        .setOffset(offset)
-                        .setParsingHandler(new ResourcesHandler() {
-                            @Override
-                            public void handleItem(Resource item) {
-                                fileItemList.add(new ListItem(item));
-                            }
-                        })
-                        .build());
-                offset += ITEMS_PER_REQUEST;
-                handler.post(new Runnable() {
-                    @Override
-                    public void run() {
-                        Collections.sort(fileItemList, FILE_ITEM_COMPARATOR);
-                        deliverResult(new ArrayList<>(fileItemList));
+            final ResourceIterator iterator = client.iterateResources(new ResourcesArgs.Builder()
+                    .setPath(dir)
+                    .setSort(ResourcesArgs.Sort.name)
+                    .build(), PAGES_AHEAD);
+            iterator.forEach(new ResourcesHandler() {
+                @Override
+                public void handleItem(Resource item) {
+                    fileItemList.add(new ListItem(item));
+                }
+
+                @Override
+                public void onFinished(int itemsOnPage) {
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            Collections.sort(fileItemList, FILE_ITEM_COMPARATOR);
+                            deliverResult(new ArrayList<>(fileItemList));
+                        }
+                    });
+                    if (hasCancelled) {
+                        iterator.close();
                     }
-                });
-                size = resource.getResourceList().getItems().size();
-            } while (!hasCancelled && size >= ITEMS_PER_REQUEST);
+                }
+            });
             return fileItemList;
         } catch (IOException | ServerException ex) {
             Log.d(TAG, "loadInBackground", ex);
@@ -0,0 +1,115 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Inputs shared by the benchmarks. Everything is generated from fixed seeds, so runs are comparable
+ */
+public final class BenchmarkFixtures {
+
+    private static final String[] MIME_TYPES = {"image/jpeg", "video/mp4", "audio/mpeg", "text/plain",
+            "application/pdf"};
+
+    private static final String[] MEDIA_TYPES = {"image", "video", "audio", "document", "document"};
+
+    private static final String[] EXTENSIONS = {"jpg", "mp4", "mp3", "txt", "pdf"};
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * @return a Cloud API answer for a folder with {@code items} files in <tt>_embedded</tt>
+     */
+    public static String resourcePage(final int items) {
+        final StringBuilder json = new StringBuilder(items * 600 + 512);
+        json.append("{\"_embedded\":{\"sort\":\"\",\"path\":\"disk:/Photos\",\"limit\":").append(items)
+                .append(",\"offset\":0,\"total\":").append(items).append(",\"items\":[");
+        final Random random = new Random(items);
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendResource(json, random, i);
+        }
+        json.append("]},\"name\":\"Photos\",\"created\":\"2014-04-21T14:57:13+00:00\",")
+                .append("\"modified\":\"2014-04-21T14:57:14+00:00\",\"path\":\"disk:/Photos\",\"type\":\"dir\"}");
+        return json.toString();
+    }
+
+    /**
+     * @return a Cloud API answer for one file
+     */
+    public static String resource() {
+        final StringBuilder json = new StringBuilder(600);
+        appendResource(json, new Random(1), 1);
+        return json.toString();
+    }
+
+    private static void appendResource(final StringBuilder json, final Random random, final int i) {
+        final int kind = i % MIME_TYPES.length;
+        final String name = String.format(Locale.US, "IMG_%05d.%s", i, EXTENSIONS[kind]);
+        final String date = String.format(Locale.US, "2015-%02d-%02dT%02d:%02d:%02d+00:00",
+                1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24), random.nextInt(60),
+                random.nextInt(60));
+        json.append("{\"name\":\"").append(name)
+                .append("\",\"preview\":\"https://downloader.disk.yandex.ru/preview/")
+                .append(Long.toHexString(random.nextLong())).append("?size=S\"")
+                .append(",\"created\":\"").append(date)
+                .append("\",\"modified\":\"").append(date)
+                .append("\",\"path\":\"disk:/Photos/").append(name)
+                .append("\",\"md5\":\"").append(hex(random, 16))
+                .append("\",\"type\":\"file\",\"mime_type\":\"").append(MIME_TYPES[kind])
+                .append("\",\"media_type\":\"").append(MEDIA_TYPES[kind])
+                .append("\",\"size\":").append(1 + random.nextInt(10 * 1024 * 1024))
+                .append('}');
+    }
+
+    private static String hex(final Random random, final int bytes) {
+        final StringBuilder hex = new StringBuilder(bytes * 2);
+        for (int i = 0; i < bytes; i++) {
+            hex.append(String.format(Locale.US, "%02x", random.nextInt(256)));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @return {@code size} pseudo random bytes
+     */
+    public static byte[] content(final int size) {
+        final byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    /**
+     * @return a temporary file of {@code size} pseudo random bytes, removed on exit
+     */
+    public static File createFile(final long size)
+            throws IOException {
+        final File file = File.createTempFile("disk-benchmark", ".bin");
+        file.deleteOnExit();
+        final byte[] block = content(1024 * 1024);
+        final OutputStream os = new FileOutputStream(file);
+        try {
+            for (long written = 0; written < size; written += block.length) {
+                os.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        } finally {
+            os.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests per second of small Cloud API answers from 16 threads with each {@link OkHttpClientFactory} preset.
+ * <br/>
+ * The throttle is off, so the limit is the client. The loopback server speaks plain HTTP/1.1,
+ * so HTTP/2 of the metadata preset is not negotiated and the presets differ in pooling only
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClientPresetBenchmark {
+
+    @Param({"default", "metadata", "bulkTransfer"})
+    public String preset;
+
+    private LoopbackServer server;
+
+    private OkHttpClient client;
+
+    private Request request;
+
+    @Setup
+    public void setUp()
+            throws IOException {
+        server = new LoopbackServer(new byte[0]);
+        server.start();
+        final OkHttpClientFactory.Builder builder;
+        switch (preset) {
+            case "metadata":
+                builder = OkHttpClientFactory.Builder.metadata();
+                break;
+            case "bulkTransfer":
+                builder = OkHttpClientFactory.Builder.bulkTransfer();
+                break;
+            default:
+                builder = new OkHttpClientFactory.Builder();
+                break;
+        }
+        client = builder.setThrottle(false).build();
+        request = new Request.Builder()
+                .url(server.getUrl("/v1/disk"))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown()
+            throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public String diskInfo()
+            throws IOException {
+        final Response response = client.newCall(request).execute();
+        return response.body().string();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okio.Buffer;
+
+/**
+ * Local server for the network benchmarks.
+ * <br/>
+ * <tt>GET /download</tt> serves the content with <tt>Range</tt> support, <tt>PUT /upload</tt> accepts any
+ * body and <tt>GET /v1/disk</tt> answers a short Cloud API JSON
+ */
+public class LoopbackServer {
+
+    public static final String DISK_INFO = "{\"trash_size\":4631577437,\"total_space\":319975063552,"
+            + "\"used_space\":26157681270,\"system_folders\":{\"applications\":\"disk:/Applications\","
+            + "\"downloads\":\"disk:/Downloads/\"}}";
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private static final String ETAG = "\"benchmark\"";
+
+    private final MockWebServer server = new MockWebServer();
+
+    private final byte[] content;
+
+    public LoopbackServer(final byte[] content) {
+        this.content = content;
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return answer(request);
+            }
+        });
+    }
+
+    public void start()
+            throws IOException {
+        server.start();
+    }
+
+    public void shutdown()
+            throws IOException {
+        server.shutdown();
+    }
+
+    public String getUrl(final String path) {
+        return server.url(path).toString();
+    }
+
+    private MockResponse answer(final RecordedRequest request) {
+        final String path = request.getPath();
+        if (path.startsWith("/v1/disk")) {
+            return new MockResponse()
+                    .setHeader("Content-Type", "application/json; charset=utf-8")
+                    .setBody(DISK_INFO);
+        } else if (path.startsWith("/upload")) {
+            return new MockResponse().setResponseCode(201);
+        } else if (!path.startsWith("/download")) {
+            return new MockResponse().setResponseCode(404);
+        }
+
+        int start = 0, end = content.length - 1;
+        final MockResponse response = new MockResponse().setHeader("Etag", ETAG);
+        final String range = request.getHeader("Range");
+        final Matcher matcher = range != null ? RANGE_PATTERN.matcher(range) : null;
+        if (matcher != null && matcher.matches()) {
+            start = Integer.parseInt(matcher.group(1));
+            if (!matcher.group(2).isEmpty()) {
+                end = Math.min(end, Integer.parseInt(matcher.group(2)));
+            }
+            if (start > end) {
+                return response.setResponseCode(416);
+            }
+            response.setResponseCode(206)
+                    .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+        }
+        final Buffer body = new Buffer();
+        body.write(content, start, end - start + 1);
+        return response.setBody(body);
+    }
+}
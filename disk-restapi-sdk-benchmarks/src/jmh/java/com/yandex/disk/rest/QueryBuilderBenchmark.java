@@ -0,0 +1,54 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link QueryBuilder#build()} with the parameters of a folder listing
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBuilderBenchmark {
+
+    private final String url = "https://cloud-api.yandex.net/v1/disk/resources";
+
+    /**
+     * Cyrillic names with a space and an ampersand, all of them need escaping
+     */
+    private final String path = "/\u0424\u043e\u0442\u043e\u0433\u0440\u0430\u0444\u0438\u0438/2015/"
+            + "\u041e\u0442\u043f\u0443\u0441\u043a & \u0434\u0440\u0443\u0437\u044c\u044f/IMG_0001.jpg";
+
+    @Benchmark
+    public String build() {
+        return new QueryBuilder(url)
+                .add("path", path)
+                .add("fields", "name,_embedded.items.path,_embedded.items.md5")
+                .add("limit", 100)
+                .add("offset", 200)
+                .add("sort", "-modified")
+                .add("preview_size", "XL")
+                .add("preview_crop", true)
+                .build();
+    }
+}
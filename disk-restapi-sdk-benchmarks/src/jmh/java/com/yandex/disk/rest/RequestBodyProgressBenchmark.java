@@ -0,0 +1,200 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Sink;
+import okio.Source;
+import okio.Timeout;
+
+/**
+ * Upload bodies of {@link RequestBodyProgress} against the 2 KB Okio loop it replaced.
+ * <br/>
+ * <tt>*Discard</tt> write the file to a sink that drops it, so the time per operation divided by
+ * {@code size} is the CPU cost per byte. <tt>*Loopback</tt> send it to a {@link LoopbackServer}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestBodyProgressBenchmark {
+
+    private static final MediaType MEDIA_TYPE = MediaType.parse("application/octet-stream");
+
+    private static final int LEGACY_BUFFER_SIZE = 2048;
+
+    @Param({"67108864"})
+    public long size;
+
+    @Param({"262144"})
+    public int bufferSize;
+
+    private File file;
+
+    private LoopbackServer server;
+
+    private OkHttpClient client;
+
+    private final ProgressListener listener = new ProgressListener() {
+        @Override
+        public void updateProgress(final long loaded, final long total) {
+        }
+
+        @Override
+        public boolean hasCancelled() {
+            return false;
+        }
+    };
+
+    @Setup
+    public void setUp()
+            throws IOException {
+        file = BenchmarkFixtures.createFile(size);
+        server = new LoopbackServer(new byte[0]);
+        server.start();
+        client = OkHttpClientFactory.Builder.bulkTransfer().build();
+    }
+
+    @TearDown
+    public void tearDown()
+            throws IOException {
+        server.shutdown();
+        file.delete();
+    }
+
+    @Benchmark
+    public long channelDiscard()
+            throws IOException {
+        return discard(RequestBodyProgress.create(MEDIA_TYPE, file, 0, listener, bufferSize, null));
+    }
+
+    @Benchmark
+    public long legacyDiscard()
+            throws IOException {
+        return discard(legacy(file));
+    }
+
+    @Benchmark
+    public int channelLoopback()
+            throws IOException {
+        return upload(RequestBodyProgress.create(MEDIA_TYPE, file, 0, listener, bufferSize, null));
+    }
+
+    @Benchmark
+    public int legacyLoopback()
+            throws IOException {
+        return upload(legacy(file));
+    }
+
+    private int upload(final RequestBody body)
+            throws IOException {
+        final Response response = client.newCall(new Request.Builder()
+                .url(server.getUrl("/upload"))
+                .put(body)
+                .build())
+                .execute();
+        response.body().close();
+        return response.code();
+    }
+
+    private static long discard(final RequestBody body)
+            throws IOException {
+        final DiscardSink sink = new DiscardSink();
+        final BufferedSink bufferedSink = Okio.buffer(sink);
+        body.writeTo(bufferedSink);
+        bufferedSink.flush();
+        return sink.count;
+    }
+
+    /**
+     * The upload body of the SDK before the FileChannel version, without the progress listener calls
+     */
+    private static RequestBody legacy(final File file) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return MEDIA_TYPE;
+            }
+
+            @Override
+            public long contentLength() {
+                return file.length();
+            }
+
+            @Override
+            public void writeTo(final BufferedSink sink)
+                    throws IOException {
+                final InputStream inputStream = new FileInputStream(file);
+                final Source source = Okio.source(inputStream);
+                try {
+                    final Buffer buffer = new Buffer();
+                    for (long readCount; (readCount = source.read(buffer, LEGACY_BUFFER_SIZE)) != -1; ) {
+                        sink.write(buffer, readCount);
+                    }
+                } finally {
+                    source.close();
+                }
+            }
+        };
+    }
+
+    private static class DiscardSink implements Sink {
+
+        long count;
+
+        @Override
+        public void write(final Buffer source, final long byteCount)
+                throws IOException {
+            source.skip(byteCount);
+            count += byteCount;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
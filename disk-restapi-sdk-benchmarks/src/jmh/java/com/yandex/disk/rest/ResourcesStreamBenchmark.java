@@ -0,0 +1,121 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import com.yandex.disk.rest.json.JsonConverter;
+import com.yandex.disk.rest.json.Resource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A 10k item page passed to a {@link ResourcesHandler}: through {@link ResourcesStreamParser} and by
+ * decoding the whole page first, as {@link ResourcesArgs.Builder#setStreamParsing(boolean)} switches.
+ * <br/>
+ * <tt>firstItem*</tt> measures the delay before the handler gets the first item. Run with <tt>-prof gc</tt>
+ * for allocation per page; the streaming parser never holds more than one item
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResourcesStreamBenchmark {
+
+    @Param({"10000"})
+    public int items;
+
+    private String page;
+
+    @Setup
+    public void setUp() {
+        page = BenchmarkFixtures.resourcePage(items);
+    }
+
+    @Benchmark
+    public Resource stream(final Blackhole blackhole)
+            throws IOException {
+        return new ResourcesStreamParser(JsonConverter.getGson())
+                .parseResource(new StringReader(page), new BlackholeHandler(blackhole));
+    }
+
+    @Benchmark
+    public Resource tree(final Blackhole blackhole) {
+        final Resource resource = JsonConverter.getGson().fromJson(page, Resource.class);
+        final ResourcesHandler handler = new BlackholeHandler(blackhole);
+        for (final Resource item : resource.getResourceList().getItems()) {
+            handler.handleItem(item);
+        }
+        return resource;
+    }
+
+    @Benchmark
+    public Resource firstItemStream()
+            throws IOException {
+        final FirstItemHandler handler = new FirstItemHandler();
+        try {
+            new ResourcesStreamParser(JsonConverter.getGson()).parseResource(new StringReader(page), handler);
+        } catch (FirstItemException ex) {
+            // stop at the first item
+        }
+        return handler.first;
+    }
+
+    @Benchmark
+    public Resource firstItemTree() {
+        return JsonConverter.getGson().fromJson(page, Resource.class).getResourceList().getItems().get(0);
+    }
+
+    private static class BlackholeHandler extends ResourcesHandler {
+
+        private final Blackhole blackhole;
+
+        BlackholeHandler(final Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void handleItem(final Resource item) {
+            blackhole.consume(item);
+        }
+    }
+
+    private static class FirstItemException extends RuntimeException {
+
+        FirstItemException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static class FirstItemHandler extends ResourcesHandler {
+
+        Resource first;
+
+        @Override
+        public void handleItem(final Resource item) {
+            first = item;
+            throw new FirstItemException();
+        }
+    }
+}
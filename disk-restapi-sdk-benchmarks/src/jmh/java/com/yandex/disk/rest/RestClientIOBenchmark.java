@@ -0,0 +1,121 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import com.yandex.disk.rest.exceptions.ServerException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RestClientIO#downloadUrl} from a {@link LoopbackServer}: into memory, into a file, and into a file
+ * with Range segments in parallel
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RestClientIOBenchmark {
+
+    @Param({"16777216"})
+    public int size;
+
+    @Param({"4"})
+    public int segments;
+
+    private LoopbackServer server;
+
+    private RestClientIO clientIO;
+
+    private String url;
+
+    private File file;
+
+    @Setup
+    public void setUp()
+            throws IOException {
+        server = new LoopbackServer(BenchmarkFixtures.content(size));
+        server.start();
+        url = server.getUrl("/download");
+        clientIO = new RestClientIO(OkHttpClientFactory.Builder.bulkTransfer().build());
+        file = File.createTempFile("disk-benchmark", ".bin");
+    }
+
+    @TearDown
+    public void tearDown()
+            throws IOException {
+        server.shutdown();
+        file.delete();
+    }
+
+    @Setup(Level.Invocation)
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long toMemory()
+            throws IOException, ServerException {
+        final CountingListener listener = new CountingListener();
+        clientIO.downloadUrl(url, listener);
+        return listener.count;
+    }
+
+    @Benchmark
+    public long toFile()
+            throws IOException, ServerException {
+        clientIO.downloadUrl(url, new FileDownloadListener(file, null));
+        return file.length();
+    }
+
+    @Benchmark
+    public long toFileSegmented()
+            throws IOException, ServerException {
+        clientIO.downloadUrl(url, file, segments, 0, new FileDownloadListener(file, null));
+        return file.length();
+    }
+
+    private static class CountingListener extends DownloadListener {
+
+        long count;
+
+        @Override
+        public OutputStream getOutputStream(final boolean append) {
+            return new OutputStream() {
+                @Override
+                public void write(final int b) {
+                    count++;
+                }
+
+                @Override
+                public void write(final byte[] b, final int off, final int len) {
+                    count += len;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.json;
+
+import com.google.gson.Gson;
+import com.yandex.disk.rest.BenchmarkFixtures;
+import com.yandex.disk.rest.LoopbackServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of a folder page: the hand-written adapters of {@link JsonConverter}, a shared reflective Gson
+ * and a new reflective Gson per answer, as the SDK did before the shared instance.
+ * Run with <tt>-prof gc</tt> for allocation per answer
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonDecodeBenchmark {
+
+    @Param({"1", "20", "1000"})
+    public int items;
+
+    private String page;
+
+    private String diskInfo;
+
+    private Gson reflective;
+
+    @Setup
+    public void setUp() {
+        page = BenchmarkFixtures.resourcePage(items);
+        diskInfo = LoopbackServer.DISK_INFO;
+        reflective = new Gson();
+    }
+
+    @Benchmark
+    public Resource adapters() {
+        return JsonConverter.getGson().fromJson(page, Resource.class);
+    }
+
+    @Benchmark
+    public Resource reflective() {
+        return reflective.fromJson(page, Resource.class);
+    }
+
+    @Benchmark
+    public Resource reflectiveNewGson() {
+        return new Gson().fromJson(page, Resource.class);
+    }
+
+    @Benchmark
+    public DiskInfo diskInfoAdapters() {
+        return JsonConverter.getGson().fromJson(diskInfo, DiskInfo.class);
+    }
+
+    @Benchmark
+    public DiskInfo diskInfoReflective() {
+        return reflective.fromJson(diskInfo, DiskInfo.class);
+    }
+}
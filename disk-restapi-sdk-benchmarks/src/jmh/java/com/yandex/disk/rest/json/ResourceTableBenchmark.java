@@ -0,0 +1,115 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.json;
+
+import com.yandex.disk.rest.BenchmarkFixtures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ResourceTable} against a list of {@link Resource} objects.
+ * <br/>
+ * <tt>storeTable</tt> and <tt>storeResources</tt> allocate exactly the structure they return, so with
+ * <tt>-prof gc</tt> their <tt>gc.alloc.rate.norm</tt> is the memory footprint of the collection.
+ * The scan benchmarks read sizes and modification dates, as sorting by date does
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ResourceTableBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    private List<Resource> parsed;
+
+    private ResourceTable table;
+
+    private List<Resource> resources;
+
+    @Setup
+    public void setUp() {
+        parsed = new ArrayList<>(rows);
+        final String page = BenchmarkFixtures.resourcePage(1000);
+        while (parsed.size() < rows) {
+            final List<Resource> items = JsonConverter.getGson().fromJson(page, Resource.class)
+                    .getResourceList().getItems();
+            parsed.addAll(items.subList(0, Math.min(items.size(), rows - parsed.size())));
+        }
+        table = storeTable();
+        resources = storeResources();
+    }
+
+    @Benchmark
+    public ResourceTable storeTable() {
+        final ResourceTable table = new ResourceTable(rows);
+        for (final Resource resource : parsed) {
+            table.add(resource);
+        }
+        return table;
+    }
+
+    /**
+     * Every object owns its strings, as after parsing a page
+     */
+    @Benchmark
+    public List<Resource> storeResources() {
+        final List<Resource> resources = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            resources.add(table.get(row));
+        }
+        return resources;
+    }
+
+    @Benchmark
+    public long scanTable() {
+        long sum = 0;
+        for (int row = 0; row < rows; row++) {
+            sum += table.getSize(row) + table.getModifiedMillis(row);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long scanTableView() {
+        final Resource view = new Resource();
+        long sum = 0;
+        for (int row = 0; row < rows; row++) {
+            table.get(row, view);
+            sum += view.getSize() + view.getModifiedMillis();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long scanResources() {
+        long sum = 0;
+        for (final Resource resource : resources) {
+            sum += resource.getSize() + resource.getModifiedMillis();
+        }
+        return sum;
+    }
+}
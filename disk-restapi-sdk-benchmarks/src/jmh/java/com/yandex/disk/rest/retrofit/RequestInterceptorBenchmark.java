@@ -0,0 +1,83 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.retrofit;
+
+import com.squareup.okhttp.Connection;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.yandex.disk.rest.Credentials;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RequestInterceptor#intercept(Interceptor.Chain)} adding the credential headers,
+ * the rest of the chain answers at once
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestInterceptorBenchmark {
+
+    private RequestInterceptor interceptor;
+
+    private Interceptor.Chain chain;
+
+    @Setup
+    public void setUp() {
+        interceptor = new RequestInterceptor(new Credentials("user", "0123456789abcdef0123456789abcdef")
+                .getHeaders());
+        final Request request = new Request.Builder()
+                .url("https://cloud-api.yandex.net/v1/disk/resources?path=disk%3A%2FPhotos&limit=100")
+                .build();
+        final Response response = new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .build();
+        chain = new Interceptor.Chain() {
+            @Override
+            public Request request() {
+                return request;
+            }
+
+            @Override
+            public Response proceed(final Request request) {
+                return response;
+            }
+
+            @Override
+            public Connection connection() {
+                return null;
+            }
+        };
+    }
+
+    @Benchmark
+    public Response intercept()
+            throws IOException {
+        return interceptor.intercept(chain);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.tracing;
+
+import com.squareup.okhttp.Connection;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A span through {@link TracingInterceptor} and its network interceptor in a {@link TraceScope},
+ * with tracing off and with a tracer dropping the spans. The rest of the chain answers at once
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TracingBenchmark {
+
+    private TracingInterceptor disabled;
+
+    private TracingInterceptor enabled;
+
+    private Tracer tracer;
+
+    private Interceptor.Chain disabledChain;
+
+    private Interceptor.Chain enabledChain;
+
+    @Setup
+    public void setUp() {
+        disabled = new TracingInterceptor();
+        enabled = new TracingInterceptor();
+        tracer = new Tracer() {
+            @Override
+            public void onSpan(final Span span) {
+            }
+        };
+        enabled.setTracer(tracer);
+        final Request request = new Request.Builder()
+                .url("https://cloud-api.yandex.net/v1/disk/resources/download?path=disk%3A%2Ffile.jpg")
+                .build();
+        final Response response = new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .build();
+        disabledChain = chain(request, response, disabled.getNetworkInterceptor());
+        enabledChain = chain(request, response, enabled.getNetworkInterceptor());
+    }
+
+    private static Interceptor.Chain chain(final Request request, final Response response,
+                                           final Interceptor networkInterceptor) {
+        final Interceptor.Chain network = new Interceptor.Chain() {
+            @Override
+            public Request request() {
+                return request;
+            }
+
+            @Override
+            public Response proceed(final Request request) {
+                return response;
+            }
+
+            @Override
+            public Connection connection() {
+                return null;
+            }
+        };
+        return new Interceptor.Chain() {
+            @Override
+            public Request request() {
+                return request;
+            }
+
+            @Override
+            public Response proceed(final Request request)
+                    throws IOException {
+                return networkInterceptor.intercept(network);
+            }
+
+            @Override
+            public Connection connection() {
+                return null;
+            }
+        };
+    }
+
+    @Benchmark
+    public Response disabled()
+            throws IOException {
+        final TraceScope scope = TraceScope.begin(Tracer.NONE);
+        try {
+            return disabled.intercept(disabledChain);
+        } finally {
+            scope.end();
+        }
+    }
+
+    @Benchmark
+    public Response enabled()
+            throws IOException {
+        final TraceScope scope = TraceScope.begin(tracer);
+        try {
+            return enabled.intercept(enabledChain);
+        } finally {
+            scope.end();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.util;
+
+import com.yandex.disk.rest.BenchmarkFixtures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Hash#getHash(File, int)} over mapped blocks against the serial 8 KB stream loop it replaced.
+ * The file stays in the page cache, so this is the CPU side of hashing
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HashBenchmark {
+
+    @Param({"67108864"})
+    public long size;
+
+    @Param({"1048576", "16777216"})
+    public int blockSize;
+
+    private File file;
+
+    @Setup
+    public void setUp()
+            throws IOException {
+        file = BenchmarkFixtures.createFile(size);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public Hash mapped()
+            throws IOException {
+        return Hash.getHash(file, blockSize);
+    }
+
+    @Benchmark
+    public Hash stream()
+            throws IOException, NoSuchAlgorithmException {
+        final MessageDigest md5 = MessageDigest.getInstance("MD5");
+        final MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        final InputStream is = new FileInputStream(file);
+        try {
+            final byte[] buf = new byte[8192];
+            int count;
+            while ((count = is.read(buf)) > 0) {
+                md5.update(buf, 0, count);
+                sha256.update(buf, 0, count);
+            }
+        } finally {
+            is.close();
+        }
+        return new Hash(Hash.toString(md5.digest()), Hash.toString(sha256.digest()), size);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ISO8601#parseMillis(CharSequence)} against {@link ISO8601#toCalendar(String)}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ISO8601Benchmark {
+
+    @Param({"2015-03-12T16:24:41+00:00", "2014-12-31T23:59:59+03:00"})
+    public String date;
+
+    @Benchmark
+    public long parseMillis()
+            throws ParseException {
+        return ISO8601.parseMillis(date);
+    }
+
+    @Benchmark
+    public Date parse() {
+        return ISO8601.parse(date);
+    }
+
+    @Benchmark
+    public Calendar toCalendar()
+            throws ParseException {
+        return ISO8601.toCalendar(date);
+    }
+}
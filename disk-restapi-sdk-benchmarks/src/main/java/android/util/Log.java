@@ -0,0 +1,59 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package android.util;
+
+/**
+ * Desktop replacement of the Android log for the benchmarks: drops debug and info messages,
+ * prints warnings and errors to stderr
+ */
+public final class Log {
+
+    private Log() {
+    }
+
+    public static int d(String tag, String msg) {
+        return 0;
+    }
+
+    public static int d(String tag, String msg, Throwable tr) {
+        return 0;
+    }
+
+    public static int i(String tag, String msg) {
+        return 0;
+    }
+
+    public static int i(String tag, String msg, Throwable tr) {
+        return 0;
+    }
+
+    public static int w(String tag, String msg) {
+        return w(tag, msg, null);
+    }
+
+    public static int w(String tag, String msg, Throwable tr) {
+        return print("W", tag, msg, tr);
+    }
+
+    public static int e(String tag, String msg) {
+        return e(tag, msg, null);
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        return print("E", tag, msg, tr);
+    }
+
+    private static int print(String level, String tag, String msg, Throwable tr) {
+        System.err.println(level + "/" + tag + ": " + msg);
+        if (tr != null) {
+            tr.printStackTrace();
+        }
+        return 0;
+    }
+}
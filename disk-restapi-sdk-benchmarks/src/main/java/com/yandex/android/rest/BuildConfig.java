@@ -0,0 +1,17 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.android.rest;
+
+/**
+ * Release configuration of the SDK for the benchmarks, the Android build generates this class
+ */
+public final class BuildConfig {
+
+    public static final boolean DEBUG = false;
+}
@@ -0,0 +1,590 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.yandex.disk.rest.exceptions.ServerException;
+import com.yandex.disk.rest.exceptions.ServerIOException;
+import com.yandex.disk.rest.exceptions.WrongMethodException;
+import com.yandex.disk.rest.exceptions.http.HttpCodeException;
+import com.yandex.disk.rest.json.ApiVersion;
+import com.yandex.disk.rest.json.DiskInfo;
+import com.yandex.disk.rest.json.JsonConverter;
+import com.yandex.disk.rest.json.Link;
+import com.yandex.disk.rest.json.Operation;
+import com.yandex.disk.rest.json.Resource;
+import com.yandex.disk.rest.json.ResourceList;
+import com.yandex.disk.rest.retrofit.CloudApi;
+import com.yandex.disk.rest.retrofit.ErrorHandler;
+import com.yandex.disk.rest.retrofit.MetricsInterceptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import retrofit.Call;
+import retrofit.Callback;
+import retrofit.GsonConverterFactory;
+import retrofit.Response;
+import retrofit.Retrofit;
+
+/**
+ * Non-blocking variants of the methods of {@link RestClient}, every method returns a {@link RestFuture}
+ * at once.
+ * <br/>
+ * Requests are run by the dispatcher of the OkHttp client, see
+ * {@link com.squareup.okhttp.Dispatcher#setMaxRequests(int)} and
+ * {@link com.squareup.okhttp.Dispatcher#setMaxRequestsPerHost(int)} to run more of them at the same time.
+ * Responses are read and callbacks are called on the dispatcher threads. Parsing handlers of
+ * {@link ResourcesArgs} are called there too, after the whole response is read.
+ * <br/>
+ * Downloads and uploads get their link asynchronously and then move the data on a transfer executor
+ */
+public class AsyncRestClient {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(@NonNull final Runnable command) {
+            command.run();
+        }
+    };
+
+    @NonNull
+    private final RestClient client;
+
+    @NonNull
+    private final Executor transferExecutor;
+
+    @NonNull
+    private final CloudApi cloudApi;
+
+    /**
+     * Transfers run on the executor of the OkHttp dispatcher, one thread per running transfer
+     */
+    public AsyncRestClient(@NonNull final RestClient client) {
+        this(client, client.getClient().getDispatcher().getExecutorService());
+    }
+
+    /**
+     * @param transferExecutor runs the blocking data transfer of downloads and uploads
+     */
+    public AsyncRestClient(@NonNull final RestClient client, @NonNull final Executor transferExecutor) {
+        this.client = client;
+        this.transferExecutor = transferExecutor;
+        this.cloudApi = new Retrofit.Builder()
+                .client(client.getClient())
+                .baseUrl(client.getUrl())
+                .addConverterFactory(GsonConverterFactory.create(JsonConverter.getGson()))
+                .callbackExecutor(DIRECT)
+                .build()
+                .create(CloudApi.class);
+    }
+
+    /**
+     * @see RestClient#getApiVersion()
+     */
+    @NonNull
+    public RestFuture<ApiVersion> getApiVersion() {
+        try {
+            return enqueue(cloudApi.getApiVersion(), null);
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#getOperation(String)
+     */
+    @NonNull
+    public RestFuture<Operation> getOperation(@NonNull final String operationId) {
+        try {
+            return enqueue(cloudApi.getOperation(operationId), null);
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#getOperation(Link)
+     */
+    @NonNull
+    public RestFuture<Operation> getOperation(@NonNull final Link link) {
+        if (!"GET".equalsIgnoreCase(link.getMethod())) {
+            return RestFuture.failed(new WrongMethodException("Method in Link object is not GET"));
+        }
+        return new RestClientIO(client.getClient(), client.getMetrics())
+                .getOperationAsync(link.getHref());
+    }
+
+    /**
+     * @see RestClient#getDiskInfo()
+     */
+    @NonNull
+    public RestFuture<DiskInfo> getDiskInfo() {
+        return getDiskInfo(null);
+    }
+
+    /**
+     * @see RestClient#getDiskInfo(String)
+     */
+    @NonNull
+    public RestFuture<DiskInfo> getDiskInfo(@Nullable final String fields) {
+        try {
+            return enqueue(cloudApi.getDiskInfo(fields), null);
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#getResources(ResourcesArgs)
+     */
+    @NonNull
+    public RestFuture<Resource> getResources(@NonNull final ResourcesArgs args) {
+        try {
+            return enqueue(cloudApi.getResources(args.getPath(), args.getFields(), args.getLimit(), args.getOffset(),
+                    args.getSort(), args.getPreviewSize(), args.getPreviewCrop()), resourceHandler(args));
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#getFlatResourceList(ResourcesArgs)
+     */
+    @NonNull
+    public RestFuture<ResourceList> getFlatResourceList(@NonNull final ResourcesArgs args) {
+        try {
+            return enqueue(cloudApi.getFlatResourceList(args.getLimit(), args.getMediaType(), args.getOffset(),
+                    args.getFields(), args.getPreviewSize(), args.getPreviewCrop()), listHandler(args));
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#getLastUploadedResources(ResourcesArgs)
+     */
+    @NonNull
+    public RestFuture<ResourceList> getLastUploadedResources(@NonNull final ResourcesArgs args) {
+        try {
+            return enqueue(cloudApi.getLastUploadedResources(args.getLimit(), args.getMediaType(), args.getOffset(),
+                    args.getFields(), args.getPreviewSize(), args.getPreviewCrop()), listHandler(args));
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#patchResource(ResourcesArgs)
+     */
+    @NonNull
+    public RestFuture<Resource> patchResource(@NonNull final ResourcesArgs args) {
+        try {
+            return enqueue(cloudApi.patchResource(args.getPath(), args.getFields(), args.getBody()),
+                    resourceHandler(args));
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#listPublicResources(ResourcesArgs)
+     */
+    @NonNull
+    public RestFuture<Resource> listPublicResources(@NonNull final ResourcesArgs args) {
+        try {
+            return enqueue(cloudApi.listPublicResources(args.getPublicKey(), args.getPath(), args.getFields(),
+                    args.getLimit(), args.getOffset(), args.getSort(), args.getPreviewSize(), args.getPreviewCrop()),
+                    resourceHandler(args));
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#getTrashResources(ResourcesArgs)
+     */
+    @NonNull
+    public RestFuture<Resource> getTrashResources(@NonNull final ResourcesArgs args) {
+        try {
+            return enqueue(cloudApi.getTrashResources(args.getPath(), args.getFields(), args.getLimit(),
+                    args.getOffset(), args.getSort(), args.getPreviewSize(), args.getPreviewCrop()),
+                    resourceHandler(args));
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#deleteFromTrash(String)
+     */
+    @NonNull
+    public RestFuture<Link> deleteFromTrash(@Nullable final String path) {
+        return new RestClientIO(client.getClient(), client.getMetrics())
+                .deleteAsync(new QueryBuilder(client.getUrl() + "/v1/disk/trash/resources")
+                        .add("path", path)
+                        .build());
+    }
+
+    /**
+     * @see RestClient#restoreFromTrash(String, String, Boolean)
+     */
+    @NonNull
+    public RestFuture<Link> restoreFromTrash(@NonNull final String path, @Nullable final String name,
+                                             @Nullable final Boolean overwrite) {
+        // the original path of the resource is not known here
+        return invalidateWhenDone(new RestClientIO(client.getClient(), client.getMetrics())
+                .putAsync(new QueryBuilder(client.getUrl() + "/v1/disk/trash/resources/restore")
+                        .add("path", path)
+                        .add("name", name)
+                        .add("overwrite", overwrite)
+                        .build()), "/");
+    }
+
+    /**
+     * @see RestClient#delete(String, boolean)
+     */
+    @NonNull
+    public RestFuture<Link> delete(@NonNull final String path, final boolean permanently) {
+        return invalidateWhenDone(new RestClientIO(client.getClient(), client.getMetrics())
+                .deleteAsync(new QueryBuilder(client.getUrl() + "/v1/disk/resources")
+                        .add("path", path)
+                        .add("permanently", permanently)
+                        .build()), path);
+    }
+
+    /**
+     * @see RestClient#makeFolder(String)
+     */
+    @NonNull
+    public RestFuture<Link> makeFolder(@NonNull final String path) {
+        try {
+            return enqueue(cloudApi.makeFolder(path), null);
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#copy(String, String, boolean)
+     */
+    @NonNull
+    public RestFuture<Link> copy(@NonNull final String from, @NonNull final String path, final boolean overwrite) {
+        try {
+            return invalidateWhenDone(enqueue(cloudApi.copy(from, path, overwrite), null), from, path);
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#move(String, String, boolean)
+     */
+    @NonNull
+    public RestFuture<Link> move(@NonNull final String from, @NonNull final String path, final boolean overwrite) {
+        try {
+            return invalidateWhenDone(enqueue(cloudApi.move(from, path, overwrite), null), from, path);
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#publish(String)
+     */
+    @NonNull
+    public RestFuture<Link> publish(@NonNull final String path) {
+        try {
+            return enqueue(cloudApi.publish(path), null);
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#unpublish(String)
+     */
+    @NonNull
+    public RestFuture<Link> unpublish(@NonNull final String path) {
+        try {
+            return enqueue(cloudApi.unpublish(path), null);
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#saveFromUrl(String, String)
+     */
+    @NonNull
+    public RestFuture<Link> saveFromUrl(@NonNull final String url, @NonNull final String serverPath) {
+        try {
+            return invalidateWhenDone(enqueue(cloudApi.saveFromUrl(url, serverPath), null), serverPath);
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#savePublicResource(String, String, String)
+     */
+    @NonNull
+    public RestFuture<Link> savePublicResource(@NonNull final String publicKey, @NonNull final String path,
+                                               @NonNull final String name) {
+        try {
+            return enqueue(cloudApi.savePublicResource(publicKey, path, name), null);
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * Link to download a file
+     */
+    @NonNull
+    public RestFuture<Link> getDownloadLink(@NonNull final String path) {
+        try {
+            return enqueue(cloudApi.getDownloadLink(path), null);
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#getUploadLink(String, boolean)
+     */
+    @NonNull
+    public RestFuture<Link> getUploadLink(@NonNull final String serverPath, final boolean overwrite) {
+        client.invalidateDownloadLinks(serverPath);
+        try {
+            return enqueue(cloudApi.getUploadLink(serverPath, overwrite), new ResultHandler<Link>() {
+                @Override
+                public void handle(@NonNull final Link link)
+                        throws WrongMethodException {
+                    if (!"PUT".equalsIgnoreCase(link.getMethod())) {
+                        throw new WrongMethodException("Method in Link object is not PUT");
+                    }
+                }
+            });
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * @see RestClient#downloadFile(String, File, ProgressListener)
+     */
+    @NonNull
+    public RestFuture<Void> downloadFile(@NonNull final String path, @NonNull final File saveTo,
+                                         @Nullable final ProgressListener progressListener) {
+        return download(getDownloadLink(path), saveTo, progressListener);
+    }
+
+    /**
+     * @see RestClient#downloadPublicResource(String, String, File, ProgressListener)
+     */
+    @NonNull
+    public RestFuture<Void> downloadPublicResource(@NonNull final String publicKey, @NonNull final String path,
+                                                   @NonNull final File saveTo,
+                                                   @Nullable final ProgressListener progressListener) {
+        try {
+            return download(enqueue(cloudApi.getPublicResourceDownloadLink(publicKey, path), null), saveTo,
+                    progressListener);
+        } catch (IOException | ServerIOException ex) {
+            return RestFuture.failed(ex);
+        }
+    }
+
+    /**
+     * Get a link and upload a file
+     *
+     * @see RestClient#getUploadLink(String, boolean)
+     * @see RestClient#uploadFile(Link, boolean, File, ProgressListener)
+     */
+    @NonNull
+    public RestFuture<Void> uploadFile(@NonNull final String serverPath, final boolean overwrite,
+                                       @NonNull final File localSource,
+                                       @Nullable final ProgressListener progressListener) {
+        return transfer(getUploadLink(serverPath, overwrite), progressListener, new TransferTask() {
+            @Override
+            public void run(@NonNull final Link link, @NonNull final ProgressListener listener)
+                    throws IOException, ServerException {
+                try {
+                    client.uploadFile(link, false, localSource, listener);
+                } finally {
+                    client.invalidateDownloadLinks(serverPath);
+                }
+            }
+        });
+    }
+
+    @NonNull
+    private RestFuture<Void> download(@NonNull final RestFuture<Link> linkFuture, @NonNull final File saveTo,
+                                      @Nullable final ProgressListener progressListener) {
+        return transfer(linkFuture, progressListener, new TransferTask() {
+            @Override
+            public void run(@NonNull final Link link, @NonNull final ProgressListener listener)
+                    throws IOException, ServerException {
+                client.downloadUrl(link.getHref(), saveTo, listener);
+            }
+        });
+    }
+
+    /**
+     * Run the transfer on the transfer executor when the link is received
+     */
+    @NonNull
+    private RestFuture<Void> transfer(@NonNull final RestFuture<Link> linkFuture,
+                                      @Nullable final ProgressListener progressListener,
+                                      @NonNull final TransferTask transfer) {
+        final RestFuture<Void> future = new RestFuture<>();
+        future.setOnCancel(new Runnable() {
+            @Override
+            public void run() {
+                linkFuture.cancel(true);
+            }
+        });
+        final ProgressListener listener = new ProgressListener() {
+            @Override
+            public void updateProgress(final long loaded, final long total) {
+                if (progressListener != null) {
+                    progressListener.updateProgress(loaded, total);
+                }
+            }
+
+            @Override
+            public boolean hasCancelled() {
+                return future.isCancelled() || (progressListener != null && progressListener.hasCancelled());
+            }
+        };
+        linkFuture.addCallback(new RestFuture.Callback<Link>() {
+            @Override
+            public void onSuccess(final Link link) {
+                transferExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (!future.isCancelled()) {
+                                transfer.run(link, listener);
+                                future.set(null);
+                            }
+                        } catch (IOException | ServerException | RuntimeException ex) {
+                            future.setException(ex);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(@NonNull final Exception ex) {
+                future.setException(ex);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Remove the cached download links of the changed paths now and when the request is finished,
+     * so links resolved in the meantime are not kept either
+     */
+    @NonNull
+    private <T> RestFuture<T> invalidateWhenDone(@NonNull final RestFuture<T> future,
+                                                 @NonNull final String... paths) {
+        client.invalidateDownloadLinks(paths);
+        future.addCallback(new RestFuture.Callback<T>() {
+            @Override
+            public void onSuccess(final T result) {
+                client.invalidateDownloadLinks(paths);
+            }
+
+            @Override
+            public void onFailure(@NonNull final Exception ex) {
+                client.invalidateDownloadLinks(paths);
+            }
+        });
+        return future;
+    }
+
+    @Nullable
+    private static ResultHandler<Resource> resourceHandler(@NonNull final ResourcesArgs args) {
+        final ResourcesHandler handler = args.getParsingHandler();
+        return handler == null ? null : new ResultHandler<Resource>() {
+            @Override
+            public void handle(@NonNull final Resource resource) {
+                RestClient.parseListResponse(resource, handler);
+            }
+        };
+    }
+
+    @Nullable
+    private static ResultHandler<ResourceList> listHandler(@NonNull final ResourcesArgs args) {
+        final ResourcesHandler handler = args.getParsingHandler();
+        return handler == null ? null : new ResultHandler<ResourceList>() {
+            @Override
+            public void handle(@NonNull final ResourceList resourceList) {
+                RestClient.parseListResponse(resourceList, handler);
+            }
+        };
+    }
+
+    @NonNull
+    private <T> RestFuture<T> enqueue(@NonNull final Call<T> call, @Nullable final ResultHandler<T> handler) {
+        final RestFuture<T> future = new RestFuture<>();
+        future.setOnCancel(new Runnable() {
+            @Override
+            public void run() {
+                call.cancel();
+            }
+        });
+        call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(final Response<T> response, final Retrofit retrofit) {
+                try {
+                    if (!response.isSuccess()) {
+                        try {
+                            ErrorHandler.throwHttpCodeException(response);
+                        } catch (HttpCodeException ex) {
+                            client.getMetrics().onHttpCodeException(
+                                    MetricsInterceptor.getEndpoint(response.raw().request()), ex);
+                            throw ex;
+                        }
+                    }
+                    final T result = response.body();
+                    if (handler != null) {
+                        handler.handle(result);
+                    }
+                    future.set(result);
+                } catch (ServerException | RuntimeException ex) {
+                    future.setException(ex);
+                }
+            }
+
+            @Override
+            public void onFailure(final Throwable th) {
+                future.setException(th instanceof Exception ? (Exception) th : new ServerIOException(th));
+            }
+        });
+        return future;
+    }
+
+    private interface ResultHandler<T> {
+
+        void handle(@NonNull T result)
+                throws ServerException;
+    }
+
+    private interface TransferTask {
+
+        void run(@NonNull Link link, @NonNull ProgressListener listener)
+                throws IOException, ServerException;
+    }
+}
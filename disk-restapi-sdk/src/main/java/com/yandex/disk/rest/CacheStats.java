@@ -0,0 +1,77 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+/**
+ * Counters of the response cache of Cloud API GET requests
+ *
+ * @see RestClient#setCache(java.io.File, long)
+ */
+public class CacheStats {
+
+    private final int requestCount, hitCount, revalidationCount;
+
+    private final long size, maxSize;
+
+    /* package */ CacheStats(final int requestCount, final int hitCount, final int revalidationCount,
+                             final long size, final long maxSize) {
+        this.requestCount = requestCount;
+        this.hitCount = hitCount;
+        this.revalidationCount = revalidationCount;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * @return requests answered from the cache without the network
+     */
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return requests answered with 304 Not Modified and the body from the cache
+     */
+    public int getRevalidationCount() {
+        return revalidationCount;
+    }
+
+    /**
+     * @return requests answered with a full body from the server
+     */
+    public int getMissCount() {
+        return requestCount - hitCount - revalidationCount;
+    }
+
+    /**
+     * @return bytes used by the cache, the least recently used answers are removed above {@link #getMaxSize()}
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "requestCount=" + requestCount +
+                ", hitCount=" + hitCount +
+                ", revalidationCount=" + revalidationCount +
+                ", size=" + size +
+                ", maxSize=" + maxSize +
+                '}';
+    }
+}
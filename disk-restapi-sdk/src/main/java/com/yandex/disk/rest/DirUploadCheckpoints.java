@@ -0,0 +1,128 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.yandex.disk.rest.util.Hash;
+import com.yandex.disk.rest.util.HashState;
+import com.yandex.disk.rest.util.Logger;
+import com.yandex.disk.rest.util.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Upload checkpoints in a directory, one file per local source
+ */
+/* package */ class DirUploadCheckpoints implements UploadCheckpoints {
+
+    private static final Logger logger = LoggerFactory.getLogger(DirUploadCheckpoints.class);
+
+    private static final String SUFFIX = ".upload";
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    @NonNull
+    private final File dir;
+
+    /* package */ DirUploadCheckpoints(@NonNull final File dir) {
+        this.dir = dir;
+    }
+
+    @Nullable
+    @Override
+    public HashState load(@NonNull final File source) {
+        final File checkpoint = getCheckpointFile(source);
+        if (!checkpoint.exists()) {
+            return null;
+        }
+        try {
+            final DataInputStream in = new DataInputStream(new FileInputStream(checkpoint));
+            try {
+                final String path = in.readUTF();
+                final long length = in.readLong();
+                final long lastModified = in.readLong();
+                final byte[] state = new byte[in.readInt()];
+                in.readFully(state);
+                if (path.equals(source.getCanonicalPath()) && length == source.length()
+                        && lastModified == source.lastModified()) {
+                    final HashState hashState = HashState.fromByteArray(state);
+                    if (hashState.getPosition() <= length) {
+                        logger.debug("checkpoint: " + source + " hashed " + hashState.getPosition());
+                        return hashState;
+                    }
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            logger.warn("checkpoint: " + checkpoint, ex);
+        }
+        remove(source);
+        return null;
+    }
+
+    @Override
+    public void save(@NonNull final File source, @NonNull final HashState hashState) {
+        final File checkpoint = getCheckpointFile(source);
+        final File tmp = new File(dir, checkpoint.getName() + TMP_SUFFIX);
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("can't create " + dir);
+            }
+            final byte[] state = hashState.toByteArray();
+            final DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp));
+            try {
+                out.writeUTF(source.getCanonicalPath());
+                out.writeLong(source.length());
+                out.writeLong(source.lastModified());
+                out.writeInt(state.length);
+                out.write(state);
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(checkpoint)) {
+                throw new IOException("can't rename " + tmp + " to " + checkpoint);
+            }
+        } catch (IOException ex) {
+            logger.warn("checkpoint: " + checkpoint, ex);
+            tmp.delete();
+        }
+    }
+
+    @Override
+    public void remove(@NonNull final File source) {
+        getCheckpointFile(source).delete();
+    }
+
+    @NonNull
+    private File getCheckpointFile(@NonNull final File source) {
+        String path;
+        try {
+            path = source.getCanonicalPath();
+        } catch (IOException ex) {
+            path = source.getAbsolutePath();
+        }
+        try {
+            final byte[] digest = MessageDigest.getInstance("MD5").digest(path.getBytes("UTF-8"));
+            return new File(dir, Hash.toString(digest) + SUFFIX);
+        } catch (NoSuchAlgorithmException | IOException ex) {
+            // never happen
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.yandex.disk.rest.json.Link;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Download links resolved by {@link RestClient#downloadFile} and {@link RestClient#downloadPublicResource},
+ * kept for repeated downloads of the same file.
+ * <br/>
+ * Entries are kept in memory in LRU order, at most {@code maxEntries} of them, each for {@code ttl} after
+ * it was resolved. A link answered with 403, 404 or 410 is removed and the download is retried once with
+ * a new link.
+ * <br/>
+ * {@link RestClient} removes the links of a path and everything below it when it uploads, deletes, moves
+ * or copies there. Links resolved while an asynchronous operation on the path runs are kept until the ttl
+ *
+ * @see RestClient#setDownloadLinkCache(DownloadLinkCache)
+ */
+public class DownloadLinkCache {
+
+    private static final String DISK_PREFIX = "disk:";
+
+    private final int maxEntries;
+
+    private final long ttlNanos;
+
+    @NonNull
+    private final Map<String, Entry> entries;
+
+    private int requests, hits, expirations, invalidations;
+
+    public DownloadLinkCache(final int maxEntries, final long ttl, @NonNull final TimeUnit unit) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries=" + maxEntries);
+        }
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl=" + ttl);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > DownloadLinkCache.this.maxEntries;
+            }
+        };
+    }
+
+    @NonNull
+    /* package */ static String getKey(@NonNull final String path) {
+        return "path:" + (path.startsWith(DISK_PREFIX) ? path.substring(DISK_PREFIX.length()) : path);
+    }
+
+    @NonNull
+    /* package */ static String getPublicKey(@NonNull final String publicKey, @Nullable final String path) {
+        return "public:" + publicKey + (path != null ? "\n" + path : "");
+    }
+
+    /**
+     * @return whether a download of the href answered with {@code code} needs a new link
+     */
+    /* package */ static boolean isExpired(final int code) {
+        return code == 403 || code == 404 || code == 410;
+    }
+
+    /**
+     * @return <tt>null</tt> if the link is unknown or expired
+     */
+    @Nullable
+    /* package */ synchronized Link get(@NonNull final String key) {
+        requests++;
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.resolved > ttlNanos) {
+            entries.remove(key);
+            expirations++;
+            return null;
+        }
+        hits++;
+        entry.served = true;
+        return entry.link;
+    }
+
+    /* package */ synchronized void put(@NonNull final String key, @NonNull final Link link) {
+        entries.put(key, new Entry(link, System.nanoTime()));
+    }
+
+    /**
+     * Remove the link of {@code key} if its href is {@code href}
+     *
+     * @return <tt>true</tt> if the link had been taken from the cache, so a new one may work
+     */
+    /* package */ synchronized boolean invalidate(@NonNull final String key, @NonNull final String href) {
+        final Entry entry = entries.get(key);
+        if (entry == null || !href.equals(entry.link.getHref())) {
+            return false;
+        }
+        entries.remove(key);
+        invalidations++;
+        return entry.served;
+    }
+
+    /**
+     * Remove the links of {@code path} and of the resources below it
+     */
+    /* package */ synchronized void invalidateTree(@NonNull final String path) {
+        final String key = getKey(path);
+        final String prefix = key.endsWith("/") ? key : key + "/";
+        final Iterator<String> iterator = entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            final String next = iterator.next();
+            if (next.equals(key) || next.startsWith(prefix)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Remove the links older than the ttl
+     */
+    public synchronized void evictExpired() {
+        final long now = System.nanoTime();
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().resolved > ttlNanos) {
+                iterator.remove();
+                expirations++;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized int getRequestCount() {
+        return requests;
+    }
+
+    /**
+     * @return downloads started without a link request
+     */
+    public synchronized int getHitCount() {
+        return hits;
+    }
+
+    public synchronized int getMissCount() {
+        return requests - hits;
+    }
+
+    /**
+     * @return links removed because they were older than the ttl
+     */
+    public synchronized int getExpirationCount() {
+        return expirations;
+    }
+
+    /**
+     * @return links removed because the href answered with 403, 404 or 410
+     */
+    public synchronized int getInvalidationCount() {
+        return invalidations;
+    }
+
+    /**
+     * @return hits per request, 0 before the first request
+     */
+    public synchronized double getHitRate() {
+        return requests > 0 ? (double) hits / requests : 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DownloadLinkCache{" +
+                "size=" + entries.size() +
+                ", maxEntries=" + maxEntries +
+                ", requestCount=" + requests +
+                ", hitCount=" + hits +
+                ", expirationCount=" + expirations +
+                ", invalidationCount=" + invalidations +
+                '}';
+    }
+
+    private static class Entry {
+
+        @NonNull
+        final Link link;
+
+        final long resolved;
+
+        boolean served;
+
+        Entry(@NonNull final Link link, final long resolved) {
+            this.link = link;
+            this.resolved = resolved;
+        }
+    }
+}
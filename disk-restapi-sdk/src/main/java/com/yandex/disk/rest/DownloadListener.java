@@ -8,6 +8,9 @@
 
 package com.yandex.disk.rest;
 
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
 import com.yandex.disk.rest.exceptions.DownloadNoSpaceAvailableException;
 
 import java.io.IOException;
@@ -61,4 +64,43 @@ public abstract class DownloadListener implements ProgressListener {
 
     public void setContentType(String contentType) {
     }
+
+    /**
+     * Segments of an interrupted segmented download to continue, <tt>null</tt> to start over
+     */
+    @Nullable
+    /* package */ DownloadSegments getSegments() {
+        return null;
+    }
+
+    /**
+     * Layout of a new segmented download after server response
+     * @return <tt>true</tt> if progress of the segments is saved by {@link #updateSegment}, the local
+     * file is not truncated to the downloaded prefix on failure then
+     */
+    /* package */ boolean setSegments(@NonNull DownloadSegments segments) {
+        return false;
+    }
+
+    /**
+     * @return bytes written by a segment between calls of {@link #updateSegment}, 0 to never call it
+     */
+    /* package */ long getSegmentCheckpointSize() {
+        return 0;
+    }
+
+    /**
+     * Called every {@link #getSegmentCheckpointSize()} bytes written by a segment and when a segment
+     * completes, possibly from several threads at the same time. The written data is forced to
+     * the storage device before the call
+     */
+    /* package */ void updateSegment(@NonNull DownloadSegments segments, int index) {
+    }
+
+    /**
+     * Called when a segmented download has failed and all segments have stopped, after the written
+     * data is forced to the storage device
+     */
+    /* package */ void stopSegments(@NonNull DownloadSegments segments) {
+    }
 }
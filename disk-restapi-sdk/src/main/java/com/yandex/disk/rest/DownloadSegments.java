@@ -0,0 +1,157 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Layout and progress of a segmented download: the file is split into equal segments, each one
+ * downloaded from its start by a separate range request
+ */
+/* package */ class DownloadSegments {
+
+    @NonNull
+    private final String url;
+
+    @Nullable
+    private final String etag;
+
+    private final long contentLength;
+
+    private final long segmentSize;
+
+    @NonNull
+    private final AtomicLongArray loaded;
+
+    /**
+     * @param url final location of the file after redirects
+     */
+    /* package */ DownloadSegments(@NonNull final String url, @Nullable final String etag, final long contentLength,
+                                   final int segments) {
+        this(url, etag, contentLength, (contentLength + segments - 1) / segments);
+    }
+
+    private DownloadSegments(@NonNull final String url, @Nullable final String etag, final long contentLength,
+                             final long segmentSize) {
+        this.url = url;
+        this.etag = etag;
+        this.contentLength = contentLength;
+        this.segmentSize = segmentSize;
+        this.loaded = new AtomicLongArray((int) ((contentLength + segmentSize - 1) / segmentSize));
+    }
+
+    /**
+     * Restore a saved layout, progress of segments is set by {@link #setLoaded(int, long)}
+     */
+    @NonNull
+    /* package */ static DownloadSegments restore(@NonNull final String url, @Nullable final String etag,
+                                                  final long contentLength, final long segmentSize) {
+        if (contentLength <= 0 || segmentSize <= 0 || (contentLength + segmentSize - 1) / segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("contentLength=" + contentLength + " segmentSize=" + segmentSize);
+        }
+        return new DownloadSegments(url, etag, contentLength, segmentSize);
+    }
+
+    /**
+     * @return the same layout and progress at another location of the file
+     */
+    @NonNull
+    /* package */ DownloadSegments withUrl(@NonNull final String url) {
+        final DownloadSegments segments = new DownloadSegments(url, etag, contentLength, segmentSize);
+        for (int i = 0; i < loaded.length(); i++) {
+            segments.loaded.set(i, loaded.get(i));
+        }
+        return segments;
+    }
+
+    @NonNull
+    /* package */ String getUrl() {
+        return url;
+    }
+
+    @Nullable
+    /* package */ String getETag() {
+        return etag;
+    }
+
+    /* package */ long getContentLength() {
+        return contentLength;
+    }
+
+    /* package */ long getSegmentSize() {
+        return segmentSize;
+    }
+
+    /* package */ int getCount() {
+        return loaded.length();
+    }
+
+    /* package */ long getStart(final int index) {
+        return index * segmentSize;
+    }
+
+    /**
+     * @return last byte of the segment, inclusive
+     */
+    /* package */ long getEnd(final int index) {
+        return Math.min(getStart(index) + segmentSize, contentLength) - 1;
+    }
+
+    /* package */ long getLoaded(final int index) {
+        return loaded.get(index);
+    }
+
+    /* package */ void setLoaded(final int index, final long length) {
+        loaded.set(index, Math.max(0, Math.min(length, getEnd(index) - getStart(index) + 1)));
+    }
+
+    /* package */ void addLoaded(final int index, final long delta) {
+        loaded.addAndGet(index, delta);
+    }
+
+    /**
+     * @return bytes loaded by all segments
+     */
+    /* package */ long getLoaded() {
+        long sum = 0;
+        for (int i = 0; i < loaded.length(); i++) {
+            sum += loaded.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * @return length of the downloaded prefix of the file, up to the first unfinished segment
+     */
+    /* package */ long getCompletedHead() {
+        long head = 0;
+        for (int i = 0; i < loaded.length(); i++) {
+            final long length = loaded.get(i);
+            head += length;
+            if (length < getEnd(i) - getStart(i) + 1) {
+                break;
+            }
+        }
+        return head;
+    }
+
+    @Override
+    public String toString() {
+        return "DownloadSegments{" +
+                "url='" + url + '\'' +
+                ", etag='" + etag + '\'' +
+                ", contentLength=" + contentLength +
+                ", segmentSize=" + segmentSize +
+                ", loaded=" + loaded +
+                '}';
+    }
+}
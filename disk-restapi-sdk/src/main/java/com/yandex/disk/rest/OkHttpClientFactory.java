@@ -8,26 +8,259 @@
 
 package com.yandex.disk.rest;
 
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.Dispatcher;
 import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.yandex.disk.rest.retrofit.ThrottleInterceptor;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import javax.net.SocketFactory;
+
 public class OkHttpClientFactory {
 
     private static final int CONNECT_TIMEOUT_MILLIS = 30 * 1000;
     private static final int READ_TIMEOUT_MILLIS = 30 * 1000;
     private static final int WRITE_TIMEOUT_MILLIS = 30 * 1000;
 
+    /**
+     * @return client with timeouts and redirects, without throttling
+     * @see Builder#setThrottle(boolean)
+     */
     public static OkHttpClient makeClient() {
-        OkHttpClient client = new OkHttpClient();
+        return new Builder().build();
+    }
+
+    /**
+     * Settings of a new {@link OkHttpClient}. Values not set are the defaults of OkHttp, timeouts are
+     * 30 seconds
+     */
+    public static class Builder {
+
+        private long connectTimeout = CONNECT_TIMEOUT_MILLIS;
+        private long readTimeout = READ_TIMEOUT_MILLIS;
+        private long writeTimeout = WRITE_TIMEOUT_MILLIS;
+
+        private int maxIdleConnections = -1;
+        private long keepAliveMillis;
+
+        private int maxRequests = -1;
+        private int maxRequestsPerHost = -1;
+
+        @Nullable
+        private List<Protocol> protocols;
+
+        private int sendBufferSize = -1;
+        private int receiveBufferSize = -1;
+
+        private boolean throttle;
+
+        /**
+         * Many small requests of the Cloud API. HTTP/2 sends them over a few connections to the API host
+         * where the server supports it
+         */
+        @NonNull
+        public static Builder metadata() {
+            return new Builder()
+                    .setTimeouts(15 * 1000, 30 * 1000, 30 * 1000)
+                    .setConnectionPool(16, TimeUnit.MINUTES.toMillis(5))
+                    .setDispatcher(64, 32)
+                    .setProtocols(Protocol.HTTP_2, Protocol.HTTP_1_1);
+        }
+
+        /**
+         * Uploads and downloads of large files. Every transfer gets its own HTTP/1.1 connection with large
+         * socket buffers, slow storage answers don't time out
+         */
+        @NonNull
+        public static Builder bulkTransfer() {
+            return new Builder()
+                    .setTimeouts(30 * 1000, 120 * 1000, 120 * 1000)
+                    .setConnectionPool(8, TimeUnit.MINUTES.toMillis(1))
+                    .setDispatcher(32, 8)
+                    .setProtocols(Protocol.HTTP_1_1)
+                    .setSocketBufferSizes(256 * 1024, 256 * 1024);
+        }
+
+        /**
+         * Timeouts of every call of the client, milliseconds, 0 for none
+         */
+        @NonNull
+        public Builder setTimeouts(final long connect, final long read, final long write) {
+            if (connect < 0 || read < 0 || write < 0) {
+                throw new IllegalArgumentException("connect=" + connect + " read=" + read + " write=" + write);
+            }
+            this.connectTimeout = connect;
+            this.readTimeout = read;
+            this.writeTimeout = write;
+            return this;
+        }
+
+        /**
+         * @param maxIdleConnections idle connections kept for each address
+         * @param keepAliveMillis    time an idle connection is kept
+         */
+        @NonNull
+        public Builder setConnectionPool(final int maxIdleConnections, final long keepAliveMillis) {
+            if (maxIdleConnections < 0 || keepAliveMillis < 0) {
+                throw new IllegalArgumentException("maxIdleConnections=" + maxIdleConnections
+                        + " keepAliveMillis=" + keepAliveMillis);
+            }
+            this.maxIdleConnections = maxIdleConnections;
+            this.keepAliveMillis = keepAliveMillis;
+            return this;
+        }
+
+        /**
+         * Limits of asynchronous calls running at the same time, see {@link AsyncRestClient}
+         */
+        @NonNull
+        public Builder setDispatcher(final int maxRequests, final int maxRequestsPerHost) {
+            if (maxRequests < 1 || maxRequestsPerHost < 1) {
+                throw new IllegalArgumentException("maxRequests=" + maxRequests
+                        + " maxRequestsPerHost=" + maxRequestsPerHost);
+            }
+            this.maxRequests = maxRequests;
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        /**
+         * Protocols in the order of preference, must include {@link Protocol#HTTP_1_1}
+         */
+        @NonNull
+        public Builder setProtocols(@NonNull final Protocol... protocols) {
+            final List<Protocol> list = Arrays.asList(protocols);
+            if (!list.contains(Protocol.HTTP_1_1)) {
+                throw new IllegalArgumentException("protocols=" + list);
+            }
+            this.protocols = new ArrayList<>(list);
+            return this;
+        }
+
+        /**
+         * <tt>SO_SNDBUF</tt> and <tt>SO_RCVBUF</tt> of new sockets, bytes, -1 for the system default
+         */
+        @NonNull
+        public Builder setSocketBufferSizes(final int sendBufferSize, final int receiveBufferSize) {
+            if (sendBufferSize == 0 || sendBufferSize < -1 || receiveBufferSize == 0 || receiveBufferSize < -1) {
+                throw new IllegalArgumentException("sendBufferSize=" + sendBufferSize
+                        + " receiveBufferSize=" + receiveBufferSize);
+            }
+            this.sendBufferSize = sendBufferSize;
+            this.receiveBufferSize = receiveBufferSize;
+            return this;
+        }
+
+        /**
+         * @param throttle add a {@link ThrottleInterceptor} with default limits: 20 Cloud API requests
+         *                 per second and adaptive concurrency. Off by default
+         */
+        @NonNull
+        public Builder setThrottle(final boolean throttle) {
+            this.throttle = throttle;
+            return this;
+        }
+
+        @NonNull
+        public OkHttpClient build() {
+            final OkHttpClient client = new OkHttpClient();
+
+            client.setConnectTimeout(connectTimeout, TimeUnit.MILLISECONDS);
+            client.setReadTimeout(readTimeout, TimeUnit.MILLISECONDS);
+            client.setWriteTimeout(writeTimeout, TimeUnit.MILLISECONDS);
+
+            client.setFollowSslRedirects(true);
+            client.setFollowRedirects(true);
+
+            if (maxIdleConnections >= 0) {
+                client.setConnectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis));
+            }
+            if (maxRequests > 0) {
+                final Dispatcher dispatcher = new Dispatcher();
+                dispatcher.setMaxRequests(maxRequests);
+                dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+                client.setDispatcher(dispatcher);
+            }
+            if (protocols != null) {
+                client.setProtocols(protocols);
+            }
+            if (sendBufferSize > 0 || receiveBufferSize > 0) {
+                client.setSocketFactory(new BufferSocketFactory(SocketFactory.getDefault(),
+                        sendBufferSize, receiveBufferSize));
+            }
+
+            if (throttle) {
+                client.interceptors().add(new ThrottleInterceptor());
+            }
+
+            return client;
+        }
+    }
+
+    /**
+     * Sets buffer sizes of plain sockets, TLS sockets of OkHttp are layered over them
+     */
+    private static class BufferSocketFactory extends SocketFactory {
+
+        @NonNull
+        private final SocketFactory delegate;
+
+        private final int sendBufferSize, receiveBufferSize;
+
+        BufferSocketFactory(@NonNull final SocketFactory delegate, final int sendBufferSize,
+                            final int receiveBufferSize) {
+            this.delegate = delegate;
+            this.sendBufferSize = sendBufferSize;
+            this.receiveBufferSize = receiveBufferSize;
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return configure(delegate.createSocket());
+        }
+
+        @Override
+        public Socket createSocket(final String host, final int port) throws IOException {
+            return configure(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(final String host, final int port, final InetAddress localHost,
+                                   final int localPort) throws IOException {
+            return configure(delegate.createSocket(host, port, localHost, localPort));
+        }
 
-        client.setConnectTimeout(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
-        client.setReadTimeout(READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
-        client.setWriteTimeout(WRITE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        @Override
+        public Socket createSocket(final InetAddress host, final int port) throws IOException {
+            return configure(delegate.createSocket(host, port));
+        }
 
-        client.setFollowSslRedirects(true);
-        client.setFollowRedirects(true);
+        @Override
+        public Socket createSocket(final InetAddress address, final int port, final InetAddress localAddress,
+                                   final int localPort) throws IOException {
+            return configure(delegate.createSocket(address, port, localAddress, localPort));
+        }
 
-        return client;
+        @NonNull
+        private Socket configure(@NonNull final Socket socket) throws IOException {
+            if (sendBufferSize > 0) {
+                socket.setSendBufferSize(sendBufferSize);
+            }
+            if (receiveBufferSize > 0) {
+                socket.setReceiveBufferSize(receiveBufferSize);
+            }
+            return socket;
+        }
     }
 }
@@ -0,0 +1,286 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.yandex.disk.rest.json.Link;
+import com.yandex.disk.rest.json.Operation;
+import com.yandex.disk.rest.util.Logger;
+import com.yandex.disk.rest.util.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for many asynchronous operations at once, see {@link RestClient#waitProgress(Link, Runnable)}
+ * for a single one.
+ * <br/>
+ * All tracked operations share one scheduler thread, started by the first {@link #track(Link)}.
+ * The thread doesn't keep the process alive. Every operation is polled with its own delay,
+ * doubled after each <tt>in-progress</tt> answer up to the maximum. Polls due within
+ * {@link #COALESCE_MILLIS} of each other are sent together, a poll is sent early by at most a quarter
+ * of its delay. The future of an operation completes
+ * with its final state, links of already finished requests complete at once with <tt>null</tt>
+ */
+public class OperationTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(OperationTracker.class);
+
+    public static final long DEFAULT_INITIAL_DELAY_MILLIS = 500;
+
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 30 * 1000;
+
+    public static final long COALESCE_MILLIS = 100;
+
+    /**
+     * Requests the state of an operation, {@link AsyncRestClient#getOperation(Link)} in production
+     */
+    /* package */ interface Poller {
+
+        @NonNull
+        RestFuture<Operation> poll(@NonNull Link link);
+    }
+
+    @NonNull
+    private final Poller poller;
+
+    private final long initialDelay;
+
+    private final long maxDelay;
+
+    @Nullable
+    private ScheduledExecutorService scheduler;
+
+    @NonNull
+    private final PriorityQueue<Tracked> queue = new PriorityQueue<>();
+
+    @NonNull
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            pollDue();
+        }
+    };
+
+    @Nullable
+    private ScheduledFuture<?> wakeUp;
+
+    private long wakeUpTime;
+
+    private int pending;
+
+    private boolean shutdown;
+
+    public OperationTracker(@NonNull final AsyncRestClient client) {
+        this(client, DEFAULT_INITIAL_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * @param initialDelay milliseconds before the first poll of an operation
+     * @param maxDelay     longest delay between polls of an operation, milliseconds
+     */
+    public OperationTracker(@NonNull final AsyncRestClient client, final long initialDelay, final long maxDelay) {
+        this(new Poller() {
+            @NonNull
+            @Override
+            public RestFuture<Operation> poll(@NonNull final Link link) {
+                return client.getOperation(link);
+            }
+        }, initialDelay, maxDelay);
+    }
+
+    /* package */ OperationTracker(@NonNull final Poller poller, final long initialDelay, final long maxDelay) {
+        if (initialDelay <= 0 || maxDelay < initialDelay) {
+            throw new IllegalArgumentException("initialDelay=" + initialDelay + " maxDelay=" + maxDelay);
+        }
+        this.poller = poller;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Wait for the operation of the link returned by copy, move, delete and other requests
+     *
+     * @return future of the final state. Cancelling it stops tracking
+     */
+    @NonNull
+    public RestFuture<Operation> track(@NonNull final Link link) {
+        final RestFuture<Operation> future = new RestFuture<>();
+        if (link.getHref() == null || link.getHttpStatus() == Link.HttpStatus.done) {
+            future.set(null);
+            return future;
+        }
+        final Tracked tracked = new Tracked(link, future);
+        future.setOnCancel(new Runnable() {
+            @Override
+            public void run() {
+                finish(tracked);
+            }
+        });
+        synchronized (this) {
+            pending++;
+        }
+        schedule(tracked, now() + initialDelay);
+        return future;
+    }
+
+    /**
+     * @return number of operations not finished yet
+     */
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    /**
+     * Stop polling, futures of unfinished operations are cancelled
+     */
+    public void shutdown() {
+        final List<Tracked> cancelled;
+        final ScheduledExecutorService scheduler;
+        synchronized (this) {
+            shutdown = true;
+            cancelled = new ArrayList<>(queue);
+            queue.clear();
+            scheduler = this.scheduler;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        for (final Tracked tracked : cancelled) {
+            tracked.future.cancel(true);
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private void schedule(@NonNull final Tracked tracked, final long due) {
+        synchronized (this) {
+            if (tracked.finished) {
+                return;
+            }
+            if (!shutdown) {
+                tracked.due = due;
+                queue.add(tracked);
+                if (wakeUp == null || due < wakeUpTime) {
+                    wakeUpAt(due);
+                }
+                return;
+            }
+        }
+        tracked.future.cancel(true);
+    }
+
+    /**
+     * Called with the lock held
+     */
+    private void wakeUpAt(final long time) {
+        if (wakeUp != null) {
+            wakeUp.cancel(false);
+        }
+        wakeUpTime = time;
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "OperationTracker");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        wakeUp = scheduler.schedule(tick, Math.max(0, time - now()), TimeUnit.MILLISECONDS);
+    }
+
+    private void pollDue() {
+        final List<Tracked> due = new ArrayList<>();
+        synchronized (this) {
+            wakeUp = null;
+            final long now = now();
+            while (!queue.isEmpty() && queue.peek().due - Math.min(COALESCE_MILLIS, queue.peek().delay / 4) <= now) {
+                due.add(queue.poll());
+            }
+            if (!queue.isEmpty()) {
+                wakeUpAt(queue.peek().due);
+            }
+        }
+        for (final Tracked tracked : due) {
+            poll(tracked);
+        }
+    }
+
+    private void poll(@NonNull final Tracked tracked) {
+        poller.poll(tracked.link).addCallback(new RestFuture.Callback<Operation>() {
+            @Override
+            public void onSuccess(final Operation operation) {
+                if (operation != null && operation.isInProgress()) {
+                    tracked.delay = Math.min(maxDelay, tracked.delay * 2);
+                    schedule(tracked, now() + tracked.delay);
+                } else if (finish(tracked)) {
+                    tracked.future.set(operation);
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull final Exception ex) {
+                logger.debug("poll: " + tracked.link, ex);
+                if (finish(tracked)) {
+                    tracked.future.setException(ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return false if already finished or cancelled
+     */
+    private synchronized boolean finish(@NonNull final Tracked tracked) {
+        if (tracked.finished) {
+            return false;
+        }
+        tracked.finished = true;
+        queue.remove(tracked);
+        pending--;
+        return true;
+    }
+
+    private class Tracked implements Comparable<Tracked> {
+
+        @NonNull
+        private final Link link;
+
+        @NonNull
+        private final RestFuture<Operation> future;
+
+        private long delay = initialDelay;
+
+        private long due;
+
+        private boolean finished;
+
+        Tracked(@NonNull final Link link, @NonNull final RestFuture<Operation> future) {
+            this.link = link;
+            this.future = future;
+        }
+
+        @Override
+        public int compareTo(@NonNull final Tracked another) {
+            return due < another.due ? -1 : (due == another.due ? 0 : 1);
+        }
+    }
+}
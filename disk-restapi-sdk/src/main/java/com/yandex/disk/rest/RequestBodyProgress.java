@@ -15,24 +15,27 @@ import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.RequestBody;
 import com.squareup.okhttp.internal.Util;
 import com.yandex.disk.rest.exceptions.CancelledUploadingException;
+import com.yandex.disk.rest.util.HashState;
 import com.yandex.disk.rest.util.Logger;
 import com.yandex.disk.rest.util.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
-import okio.Buffer;
 import okio.BufferedSink;
-import okio.Okio;
-import okio.Source;
 
 /* package */ abstract class RequestBodyProgress {
 
     private static final Logger logger = LoggerFactory.getLogger(RequestBodyProgress.class);
 
-    private static final int SIZE = 2048;
+    /* package */ static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    private static final long PROGRESS_BYTES = 1024 * 1024;
+
+    private static final long PROGRESS_NANOS = 200 * 1000 * 1000L;
 
     /**
      * Returns a new request body that transmits the content of {@code file}.
@@ -43,62 +46,131 @@ import okio.Source;
      */
     /* package */ static RequestBody create(@NonNull final MediaType contentType, @Nullable final File file,
                                             final long startOffset, @Nullable final ProgressListener listener) {
+        return create(contentType, file, startOffset, listener, DEFAULT_BUFFER_SIZE, null);
+    }
+
+    /**
+     * Returns a new request body that transmits the content of {@code file} starting from {@code startOffset}.
+     * <br/>
+     * The file is read through a {@link FileChannel} in {@code bufferSize} chunks. The listener is asked
+     * for cancellation after every chunk, progress is reported every {@link #PROGRESS_BYTES} bytes
+     * or {@link #PROGRESS_NANOS} nanoseconds, whichever comes first, and at the end of the file.
+     * <br/>
+     * Sent bytes are also fed to {@code hashState} while they continue it, so the file is hashed
+     * in the same pass as it is uploaded.
+     * <br/>
+     * A whole file without a listener and a hash is sent with the plain
+     * {@link RequestBody#create(com.squareup.okhttp.MediaType, java.io.File)}
+     */
+    /* package */ static RequestBody create(@NonNull final MediaType contentType, @Nullable final File file,
+                                            final long startOffset, @Nullable final ProgressListener listener,
+                                            final int bufferSize, @Nullable final HashState hashState) {
         if (file == null) {
             throw new NullPointerException("content == null");
         }
-
-        if (listener == null && startOffset == 0) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize=" + bufferSize);
+        }
+        if (startOffset == 0 && listener == null && hashState == null) {
             return RequestBody.create(contentType, file);
         }
+        return new FileChannelRequestBody(contentType, file, startOffset, listener, bufferSize, hashState);
+    }
 
-        return new RequestBody() {
+    private static class FileChannelRequestBody extends RequestBody {
 
-            private void updateProgress(long loaded)
-                    throws CancelledUploadingException {
-                if (listener != null) {
-                    if (listener.hasCancelled()) {
-                        throw new CancelledUploadingException();
-                    }
-                    listener.updateProgress(loaded + startOffset, file.length());
-                }
-            }
+        @NonNull
+        private final MediaType contentType;
+
+        @NonNull
+        private final File file;
 
-            @Override
-            public MediaType contentType() {
-                return contentType;
+        private final long startOffset;
+
+        @Nullable
+        private final ProgressListener listener;
+
+        private final int bufferSize;
+
+        @Nullable
+        private final HashState hashState;
+
+        FileChannelRequestBody(@NonNull final MediaType contentType, @NonNull final File file,
+                               final long startOffset, @Nullable final ProgressListener listener,
+                               final int bufferSize, @Nullable final HashState hashState) {
+            this.contentType = contentType;
+            this.file = file;
+            this.startOffset = startOffset;
+            this.listener = listener;
+            this.bufferSize = bufferSize;
+            this.hashState = hashState;
+        }
+
+        private void checkCancelled()
+                throws CancelledUploadingException {
+            if (listener != null && listener.hasCancelled()) {
+                throw new CancelledUploadingException();
             }
+        }
 
-            @Override
-            public long contentLength() {
-                return file.length() - startOffset;
+        private void updateProgress(long loaded) {
+            if (listener != null) {
+                listener.updateProgress(loaded + startOffset, file.length());
             }
+        }
 
-            @Override
-            public void writeTo(BufferedSink sink) throws IOException {
-                Source source = null;
-                InputStream inputStream = new FileInputStream(file);
-                try {
-                    if (startOffset > 0) {
-                        long skipped = inputStream.skip(startOffset);
-                        if (skipped != startOffset) {
-                            throw new IOException("RequestBodyProgress: inputStream.skip() failed");
-                        }
+        @Override
+        public MediaType contentType() {
+            return contentType;
+        }
+
+        @Override
+        public long contentLength() {
+            return file.length() - startOffset;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            final long length = contentLength();
+            final FileInputStream inputStream = new FileInputStream(file);
+            final FileChannel channel = inputStream.getChannel();
+            try {
+                channel.position(startOffset);
+                final byte[] bytes = new byte[(int) Math.max(1, Math.min(bufferSize, length))];
+                final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                long loaded = 0;
+                long reportedLoaded = 0;
+                long reportedTime = System.nanoTime();
+                checkCancelled();
+                updateProgress(loaded);
+                while (loaded < length) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(bytes.length, length - loaded));
+                    final int count = channel.read(buffer);
+                    if (count == -1) {
+                        throw new IOException("RequestBodyProgress: unexpected end of file at " + loaded);
                     }
-                    long loaded = 0;
-                    updateProgress(loaded);
-                    source = Okio.source(inputStream);
-                    Buffer buffer = new Buffer();
-                    for (long readCount; (readCount = source.read(buffer, SIZE)) != -1; ) {
-                        sink.write(buffer, readCount);
-                        loaded += readCount;
+                    if (hashState != null && hashState.getPosition() == startOffset + loaded) {
+                        hashState.update(bytes, 0, count);
+                    }
+                    sink.write(bytes, 0, count);
+                    loaded += count;
+                    checkCancelled();
+                    final long now = System.nanoTime();
+                    if (loaded - reportedLoaded >= PROGRESS_BYTES || now - reportedTime >= PROGRESS_NANOS) {
                         updateProgress(loaded);
+                        reportedLoaded = loaded;
+                        reportedTime = now;
                     }
-                    logger.debug("loaded: " + loaded);
-                } finally {
-                    Util.closeQuietly(source);
-                    Util.closeQuietly(inputStream);
                 }
+                if (reportedLoaded != loaded) {
+                    updateProgress(loaded);
+                }
+                logger.debug("loaded: " + loaded);
+            } finally {
+                Util.closeQuietly(channel);
+                Util.closeQuietly(inputStream);
             }
-        };
+        }
     }
 }
@@ -0,0 +1,306 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.yandex.disk.rest.exceptions.ServerIOException;
+import com.yandex.disk.rest.json.Resource;
+import com.yandex.disk.rest.json.ResourceList;
+import com.yandex.disk.rest.util.Logger;
+import com.yandex.disk.rest.util.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Items of a list requested page by page. Next pages are requested in background while
+ * the current one is consumed.
+ * <br/>
+ * Without a limit in {@link ResourcesArgs} the page size starts from {@link #DEFAULT_LIMIT} and
+ * adapts to the response time: pages answered fast grow up to {@link #MAX_LIMIT} items, slow
+ * pages shrink back. Iteration stops at the total of the list or at the first short page.
+ * <br/>
+ * Not thread safe. Close the iterator if it is not read to the end
+ *
+ * @see RestClient#iterateResources(ResourcesArgs, int)
+ * @see RestClient#iterateFlatResourceList(ResourcesArgs, int)
+ */
+public class ResourceIterator implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResourceIterator.class);
+
+    public static final int DEFAULT_LIMIT = 100;
+
+    public static final int MAX_LIMIT = 1000;
+
+    /**
+     * Pages answered faster than a half of this grow, slower ones shrink
+     */
+    private static final long TARGET_PAGE_MILLIS = 1000;
+
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    /* package */ interface PageLoader {
+
+        /**
+         * @return <tt>null</tt> if there is no list, e.g. for a file
+         */
+        @Nullable
+        ResourceList load(int offset, int limit)
+                throws IOException, ServerIOException;
+    }
+
+    @NonNull
+    private final PageLoader loader;
+
+    private final int pagesAhead;
+
+    private final boolean adaptive;
+
+    private final int minLimit;
+
+    @Nullable
+    private final ThreadPoolExecutor executor;
+
+    @NonNull
+    private final Deque<Page> pending = new ArrayDeque<>();
+
+    @NonNull
+    private List<Resource> items = Collections.emptyList();
+
+    private int index;
+
+    private int nextOffset;
+
+    private int limit;
+
+    private int total = -1;
+
+    private boolean started, exhausted, closed;
+
+    /**
+     * @param offset     first item, <tt>null</tt> for 0
+     * @param limit      fixed page size, <tt>null</tt> for adaptive
+     * @param pagesAhead pages requested in advance, 0 to request each page when it is needed
+     */
+    /* package */ ResourceIterator(@NonNull final PageLoader loader, @Nullable final Integer offset,
+                                   @Nullable final Integer limit, final int pagesAhead) {
+        if (pagesAhead < 0 || (limit != null && limit <= 0)) {
+            throw new IllegalArgumentException("pagesAhead=" + pagesAhead + " limit=" + limit);
+        }
+        this.loader = loader;
+        this.pagesAhead = pagesAhead;
+        this.adaptive = limit == null;
+        this.limit = limit != null ? limit : DEFAULT_LIMIT;
+        this.minLimit = this.limit;
+        this.nextOffset = offset != null ? offset : 0;
+        if (pagesAhead > 0) {
+            this.executor = new ThreadPoolExecutor(pagesAhead, pagesAhead, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>());
+            this.executor.allowCoreThreadTimeOut(true);
+        } else {
+            this.executor = null;
+        }
+    }
+
+    public boolean hasNext()
+            throws IOException, ServerIOException {
+        while (index >= items.size()) {
+            if (!nextPage()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NonNull
+    public Resource next()
+            throws IOException, ServerIOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return items.get(index++);
+    }
+
+    /**
+     * Pass all remaining items to {@code handler}, {@link ResourcesHandler#onFinished(int)} is called
+     * after every page. The iterator is closed after that
+     */
+    public void forEach(@NonNull final ResourcesHandler handler)
+            throws IOException, ServerIOException {
+        try {
+            while (!closed && (index < items.size() || nextPage())) {
+                int count = 0;
+                while (index < items.size()) {
+                    handler.handleItem(items.get(index++));
+                    count++;
+                }
+                handler.onFinished(count);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * @return number of items in the list, -1 if not known yet or not sent by the server
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Stop requesting pages. Pages already requested are dropped
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        exhausted = true;
+        for (Page page : pending) {
+            page.task.cancel(true);
+        }
+        pending.clear();
+        items = Collections.emptyList();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean nextPage()
+            throws IOException, ServerIOException {
+        schedule();
+        final Page page = pending.poll();
+        if (page == null) {
+            close();
+            return false;
+        }
+        final ResourceList list;
+        try {
+            list = page.get();
+        } catch (IOException | ServerIOException | RuntimeException ex) {
+            close();
+            throw ex;
+        }
+        final List<Resource> pageItems = list != null && list.getItems() != null
+                ? list.getItems()
+                : Collections.<Resource>emptyList();
+        if (list != null && list.getTotal() > 0) {
+            total = list.getTotal();
+        }
+        if (pageItems.size() < page.limit || (total >= 0 && page.offset + pageItems.size() >= total)) {
+            exhausted = true;
+            for (Page dropped : pending) {
+                dropped.task.cancel(true);
+            }
+            pending.clear();
+        }
+        adapt(page);
+        items = pageItems;
+        index = 0;
+        started = true;
+        schedule();
+        return true;
+    }
+
+    private void schedule() {
+        final int inFlight = started ? Math.max(pagesAhead, 1) : 1;
+        while (!exhausted && pending.size() < inFlight && (total < 0 || nextOffset < total)) {
+            final Page page = new Page(nextOffset, limit);
+            pending.add(page);
+            nextOffset += limit;
+            if (executor != null) {
+                executor.execute(page.task);
+            }
+        }
+    }
+
+    private void adapt(@NonNull final Page page) {
+        if (!adaptive) {
+            return;
+        }
+        if (page.millis < TARGET_PAGE_MILLIS / 2 && limit < MAX_LIMIT) {
+            limit = Math.min(limit * 2, MAX_LIMIT);
+        } else if (page.millis > TARGET_PAGE_MILLIS && limit > minLimit) {
+            limit = Math.max(limit / 2, minLimit);
+        } else {
+            return;
+        }
+        logger.debug("pages: " + page.millis + " ms for " + page.limit + " items, limit=" + limit);
+    }
+
+    private class Page implements Callable<ResourceList> {
+
+        final int offset, limit;
+
+        @NonNull
+        final FutureTask<ResourceList> task;
+
+        volatile long millis;
+
+        Page(final int offset, final int limit) {
+            this.offset = offset;
+            this.limit = limit;
+            this.task = new FutureTask<>(this);
+        }
+
+        @Override
+        public ResourceList call()
+                throws IOException, ServerIOException {
+            final long start = System.currentTimeMillis();
+            final ResourceList list = loader.load(offset, limit);
+            millis = System.currentTimeMillis() - start;
+            return list;
+        }
+
+        @Nullable
+        ResourceList get()
+                throws IOException, ServerIOException {
+            if (executor == null) {
+                task.run();
+            }
+            try {
+                return task.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Waiting for items " + offset + "+" + limit + " interrupted");
+            } catch (ExecutionException ex) {
+                final Throwable cause = ex.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof ServerIOException) {
+                    throw (ServerIOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                } else {
+                    // never happen
+                    throw new RuntimeException(cause);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.yandex.disk.rest.exceptions.ServerIOException;
+import com.yandex.disk.rest.json.Resource;
+import com.yandex.disk.rest.json.ResourceList;
+import com.yandex.disk.rest.util.Logger;
+import com.yandex.disk.rest.util.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lists a whole folder tree, folders and pages of large folders are requested in parallel.
+ * <br/>
+ * Every found resource is passed to {@link ResourcesHandler#handleItem(Resource)}, in no particular
+ * order. Calls to the handler are synchronized on it. {@link ResourcesHandler#handleSelf(Resource)}
+ * gets the root folder, {@link ResourcesHandler#onFinished(int)} gets the number of passed items
+ * after the walk.
+ * <br/>
+ * Pending requests are kept in one last in, first out queue shared by all threads, so the walk goes
+ * deep first and the queue stays short on wide trees.
+ * <br/>
+ * Pages of a folder are requested by offset in the order of names. The walk is not a snapshot:
+ * resources added, removed or renamed while it runs may be skipped or passed twice
+ */
+public class ResourceTreeWalker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResourceTreeWalker.class);
+
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    public static final int DEFAULT_PAGE_LIMIT = ResourceIterator.MAX_LIMIT;
+
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    /**
+     * Selects resources passed to the handler. A folder not accepted is not listed
+     */
+    public interface Filter {
+
+        boolean accept(@NonNull Resource resource);
+    }
+
+    @NonNull
+    private final RestClient client;
+
+    @NonNull
+    private final String path;
+
+    private final int maxDepth;
+
+    private final int concurrency;
+
+    private final int pageLimit;
+
+    @Nullable
+    private final Filter filter;
+
+    @Nullable
+    private final String fields;
+
+    private volatile boolean cancelled;
+
+    private ResourceTreeWalker(@NonNull final Builder builder) {
+        this.client = builder.client;
+        this.path = builder.path;
+        this.maxDepth = builder.maxDepth;
+        this.concurrency = builder.concurrency;
+        this.pageLimit = builder.pageLimit;
+        this.filter = builder.filter;
+        this.fields = builder.fields;
+    }
+
+    /**
+     * Walk the tree, return when all folders are listed or after the first error
+     */
+    public void walk(@NonNull final ResourcesHandler handler)
+            throws IOException, ServerIOException {
+        cancelled = false;
+        new Walk(handler).run();
+    }
+
+    /**
+     * Stop a running walk. Requests already sent are finished, their items are dropped
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private class Walk {
+
+        @NonNull
+        private final ResourcesHandler handler;
+
+        @NonNull
+        private final ThreadPoolExecutor executor;
+
+        @NonNull
+        private final AtomicInteger pending = new AtomicInteger();
+
+        @NonNull
+        private final AtomicInteger items = new AtomicInteger();
+
+        @NonNull
+        private final AtomicReference<Exception> error = new AtomicReference<>();
+
+        @NonNull
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        Walk(@NonNull final ResourcesHandler handler) {
+            this.handler = handler;
+            this.executor = new ThreadPoolExecutor(concurrency, concurrency, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingDeque<Runnable>() {
+                        @Override
+                        public boolean offer(Runnable runnable) {
+                            return offerFirst(runnable);
+                        }
+                    });
+        }
+
+        void run()
+                throws IOException, ServerIOException {
+            submit(path, 0, 0);
+            try {
+                done.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+                throw new InterruptedIOException("Walking " + path + " interrupted");
+            } finally {
+                executor.shutdownNow();
+            }
+            final Exception ex = error.get();
+            if (ex instanceof IOException) {
+                throw (IOException) ex;
+            } else if (ex instanceof ServerIOException) {
+                throw (ServerIOException) ex;
+            } else if (ex instanceof RuntimeException) {
+                throw (RuntimeException) ex;
+            }
+            synchronized (handler) {
+                handler.onFinished(items.get());
+            }
+        }
+
+        private void submit(@NonNull final String folder, final int offset, final int depth) {
+            pending.incrementAndGet();
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (!cancelled && error.get() == null) {
+                                list(folder, offset, depth);
+                            }
+                        } catch (IOException | ServerIOException | RuntimeException ex) {
+                            logger.debug("walk: " + folder + " offset=" + offset, ex);
+                            if (error.compareAndSet(null, ex)) {
+                                done.countDown();
+                            }
+                        } finally {
+                            finish();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                // the walk is over
+                finish();
+            }
+        }
+
+        private void finish() {
+            if (pending.decrementAndGet() == 0) {
+                done.countDown();
+            }
+        }
+
+        /**
+         * @param depth of the listed folder, the root is 0
+         */
+        private void list(@NonNull final String folder, final int offset, final int depth)
+                throws IOException, ServerIOException {
+            final int[] total = {0};
+            client.getResources(new ResourcesArgs.Builder()
+                    .setPath(folder)
+                    .setFields(fields)
+                    .setLimit(pageLimit)
+                    .setOffset(offset)
+                    // pages requested in parallel must agree on the order
+                    .setSort(ResourcesArgs.Sort.name)
+                    .setStreamParsing(true)
+                    .setParsingHandler(new ResourcesHandler() {
+                        @Override
+                        public void handleSelf(Resource self) {
+                            final ResourceList list = self.getResourceList();
+                            total[0] = list != null ? list.getTotal() : 0;
+                            if (depth == 0 && offset == 0) {
+                                synchronized (handler) {
+                                    handler.handleSelf(self);
+                                }
+                            }
+                        }
+
+                        @Override
+                        public void handleItem(Resource item) {
+                            if (cancelled || (filter != null && !filter.accept(item))) {
+                                return;
+                            }
+                            synchronized (handler) {
+                                handler.handleItem(item);
+                            }
+                            items.incrementAndGet();
+                            if (item.isDir() && item.getPath() != null && (maxDepth < 0 || depth + 1 < maxDepth)) {
+                                submit(item.getPath().toString(), 0, depth + 1);
+                            }
+                        }
+                    })
+                    .build());
+            if (offset == 0) {
+                // the size of the folder is known from the first page, the rest is listed in parallel
+                for (int next = pageLimit; next < total[0] && !cancelled; next += pageLimit) {
+                    submit(folder, next, depth);
+                }
+            }
+        }
+    }
+
+    public static class Builder {
+
+        @NonNull
+        private final RestClient client;
+
+        @NonNull
+        private final String path;
+
+        private int maxDepth = -1;
+
+        private int concurrency = DEFAULT_CONCURRENCY;
+
+        private int pageLimit = DEFAULT_PAGE_LIMIT;
+
+        @Nullable
+        private Filter filter;
+
+        @Nullable
+        private String fields;
+
+        public Builder(@NonNull final RestClient client, @NonNull final String path) {
+            this.client = client;
+            this.path = path;
+        }
+
+        @NonNull
+        public ResourceTreeWalker build() {
+            return new ResourceTreeWalker(this);
+        }
+
+        /**
+         * @param maxDepth levels below the root to list, 1 for the root folder only, -1 for no limit (default)
+         */
+        @NonNull
+        public Builder setMaxDepth(final int maxDepth) {
+            if (maxDepth == 0 || maxDepth < -1) {
+                throw new IllegalArgumentException("maxDepth=" + maxDepth);
+            }
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        /**
+         * @param concurrency requests running at the same time, {@link #DEFAULT_CONCURRENCY} by default
+         */
+        @NonNull
+        public Builder setConcurrency(final int concurrency) {
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("concurrency=" + concurrency);
+            }
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        @NonNull
+        public Builder setPageLimit(final int pageLimit) {
+            if (pageLimit < 1) {
+                throw new IllegalArgumentException("pageLimit=" + pageLimit);
+            }
+            this.pageLimit = pageLimit;
+            return this;
+        }
+
+        @NonNull
+        public Builder setFilter(@Nullable final Filter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Fields of the response, must include <tt>_embedded.total</tt>, <tt>_embedded.items.type</tt>
+         * and <tt>_embedded.items.path</tt>
+         */
+        @NonNull
+        public Builder setFields(@Nullable final String fields) {
+            this.fields = fields;
+            return this;
+        }
+    }
+}
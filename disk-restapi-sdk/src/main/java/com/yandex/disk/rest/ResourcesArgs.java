@@ -22,11 +22,13 @@ public class ResourcesArgs {
     private Integer limit, offset;
     private Boolean previewCrop;
     private ResourcesHandler parsingHandler;
+    private boolean streamParsing;
     private RequestBody body;
 
     private ResourcesArgs(String path, String fields, String sort, String previewSize,
                           Integer limit, Integer offset, Boolean previewCrop, String publicKey,
-                          String mediaType, RequestBody body, ResourcesHandler parsingHandler) {
+                          String mediaType, RequestBody body, ResourcesHandler parsingHandler,
+                          boolean streamParsing) {
         this.path = path;
         this.fields = fields;
         this.sort = sort;
@@ -38,6 +40,7 @@ public class ResourcesArgs {
         this.mediaType = mediaType;
         this.body = body;
         this.parsingHandler = parsingHandler;
+        this.streamParsing = streamParsing;
     }
 
     public String getPath() {
@@ -85,6 +88,10 @@ public class ResourcesArgs {
         return parsingHandler;
     }
 
+    public boolean isStreamParsing() {
+        return streamParsing;
+    }
+
     @Override
     public String toString() {
         return "ResourcesArgs{" +
@@ -99,6 +106,7 @@ public class ResourcesArgs {
                 ", mediaType=" + mediaType +
                 ", body=" + body +
                 ", parsingHandler=" + (parsingHandler != null) +
+                ", streamParsing=" + streamParsing +
                 '}';
     }
 
@@ -107,11 +115,12 @@ public class ResourcesArgs {
         private Integer limit, offset;
         private Boolean previewCrop;
         private ResourcesHandler parsingHandler;
+        private boolean streamParsing;
         private RequestBody body;
 
         public ResourcesArgs build() {
             return new ResourcesArgs(path, fields, sort, previewSize, limit, offset, previewCrop,
-                    publicKey, mediaType, body, parsingHandler);
+                    publicKey, mediaType, body, parsingHandler, streamParsing);
         }
 
         public Builder setPath(String path) {
@@ -169,6 +178,15 @@ public class ResourcesArgs {
             return this;
         }
 
+        /**
+         * Pass items to the parsing handler while the response is read, without keeping them
+         * in the returned object. {@link ResourcesHandler#handleSelf} is called after the items then
+         */
+        public Builder setStreamParsing(boolean streamParsing) {
+            this.streamParsing = streamParsing;
+            return this;
+        }
+
         public Builder setBody(RequestBody body) {
             this.body = body;
             return this;
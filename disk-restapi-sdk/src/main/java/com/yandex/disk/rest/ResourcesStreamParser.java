@@ -0,0 +1,123 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.yandex.disk.rest.json.Resource;
+import com.yandex.disk.rest.json.ResourceList;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a resource or a resource list and passes every item to {@link ResourcesHandler#handleItem(Resource)}
+ * as soon as it is decoded, the items are never kept together.
+ * <br/>
+ * The returned object has an empty list of items. {@link ResourcesHandler#handleSelf(Resource)}
+ * is called after all items, when the whole object has been read. The reader is closed
+ */
+/* package */ class ResourcesStreamParser {
+
+    private static final String EMBEDDED = "_embedded";
+
+    private static final String ITEMS = "items";
+
+    @NonNull
+    private final Gson gson;
+
+    @NonNull
+    private final JsonParser parser = new JsonParser();
+
+    /* package */ ResourcesStreamParser(@NonNull final Gson gson) {
+        this.gson = gson;
+    }
+
+    @NonNull
+    /* package */ Resource parseResource(@NonNull final Reader in, @NonNull final ResourcesHandler handler)
+            throws IOException {
+        final JsonReader reader = new JsonReader(in);
+        final JsonObject self = new JsonObject();
+        int count = 0;
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String name = reader.nextName();
+                if (EMBEDDED.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    final JsonObject embedded = new JsonObject();
+                    count = readList(reader, embedded, handler);
+                    self.add(name, embedded);
+                } else {
+                    self.add(name, parser.parse(reader));
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | JsonParseException ex) {
+            throw new IOException(ex);
+        } finally {
+            reader.close();
+        }
+        final Resource resource = gson.fromJson(self, Resource.class);
+        handler.handleSelf(resource);
+        handler.onFinished(count);
+        return resource;
+    }
+
+    @NonNull
+    /* package */ ResourceList parseResourceList(@NonNull final Reader in, @NonNull final ResourcesHandler handler)
+            throws IOException {
+        final JsonReader reader = new JsonReader(in);
+        final JsonObject list = new JsonObject();
+        final int count;
+        try {
+            count = readList(reader, list, handler);
+        } catch (IllegalStateException | JsonParseException ex) {
+            throw new IOException(ex);
+        } finally {
+            reader.close();
+        }
+        final ResourceList resourceList = gson.fromJson(list, ResourceList.class);
+        handler.onFinished(count);
+        return resourceList;
+    }
+
+    /**
+     * @return number of items
+     */
+    private int readList(@NonNull final JsonReader reader, @NonNull final JsonObject list,
+                         @NonNull final ResourcesHandler handler)
+            throws IOException {
+        int count = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (ITEMS.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    final Resource item = gson.fromJson(reader, Resource.class);
+                    handler.handleItem(item);
+                    count++;
+                }
+                reader.endArray();
+                list.add(name, new JsonArray());
+            } else {
+                list.add(name, parser.parse(reader));
+            }
+        }
+        reader.endObject();
+        return count;
+    }
+}
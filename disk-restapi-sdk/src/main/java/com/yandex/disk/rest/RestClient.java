@@ -11,29 +11,46 @@ package com.yandex.disk.rest;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import com.squareup.okhttp.Cache;
 import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.ResponseBody;
 import com.yandex.disk.rest.exceptions.ServerException;
 import com.yandex.disk.rest.exceptions.ServerIOException;
 import com.yandex.disk.rest.exceptions.WrongMethodException;
 import com.yandex.disk.rest.exceptions.http.HttpCodeException;
 import com.yandex.disk.rest.json.ApiVersion;
 import com.yandex.disk.rest.json.DiskInfo;
+import com.yandex.disk.rest.json.JsonConverter;
 import com.yandex.disk.rest.json.Link;
 import com.yandex.disk.rest.json.Operation;
 import com.yandex.disk.rest.json.Resource;
 import com.yandex.disk.rest.json.ResourceList;
+import com.yandex.disk.rest.metrics.Metrics;
+import com.yandex.disk.rest.retrofit.CacheInterceptor;
 import com.yandex.disk.rest.retrofit.CloudApi;
+import com.yandex.disk.rest.retrofit.MetricsInterceptor;
 import com.yandex.disk.rest.retrofit.RequestInterceptor;
+import com.yandex.disk.rest.retrofit.RetryInterceptor;
+import com.yandex.disk.rest.tracing.TraceScope;
+import com.yandex.disk.rest.tracing.Tracer;
+import com.yandex.disk.rest.tracing.TracingInterceptor;
+import com.yandex.disk.rest.tracing.TracingSocketFactory;
 import com.yandex.disk.rest.util.Hash;
+import com.yandex.disk.rest.util.HashCache;
+import com.yandex.disk.rest.util.HashState;
 import com.yandex.disk.rest.util.Logger;
 import com.yandex.disk.rest.util.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.List;
 
+import javax.net.SocketFactory;
+
+import retrofit.Call;
 import retrofit.GsonConverterFactory;
 import retrofit.Response;
 import retrofit.Retrofit;
@@ -54,6 +71,10 @@ public class RestClient {
     @NonNull
     private static final String CLOUD_API_BASE_URL = "https://cloud-api.yandex.net";
 
+    private static final long DEFAULT_SEGMENTED_DOWNLOAD_THRESHOLD = 8 * 1024 * 1024;
+
+    private static final long CHECKPOINT_INTERVAL = 32 * 1024 * 1024;
+
     @NonNull
     private final Credentials credentials;
 
@@ -66,9 +87,39 @@ public class RestClient {
     @NonNull
     private final CloudApi cloudApi;
 
+    @NonNull
+    private final ResourcesStreamParser streamParser = new ResourcesStreamParser(JsonConverter.getGson());
+
+    @NonNull
+    private final RetryInterceptor retryInterceptor = new RetryInterceptor();
+
+    @NonNull
+    private final CacheInterceptor cacheInterceptor = new CacheInterceptor();
+
+    @NonNull
+    private final MetricsInterceptor metricsInterceptor = new MetricsInterceptor();
+
+    @NonNull
+    private final TracingInterceptor tracingInterceptor = new TracingInterceptor();
+
     @NonNull
     protected final Retrofit.Builder builder;
 
+    private int downloadSegments = 1;
+
+    private long segmentedDownloadThreshold = DEFAULT_SEGMENTED_DOWNLOAD_THRESHOLD;
+
+    private int uploadBufferSize = RequestBodyProgress.DEFAULT_BUFFER_SIZE;
+
+    @Nullable
+    private UploadCheckpoints uploadCheckpoints;
+
+    @Nullable
+    private HashCache hashCache;
+
+    @Nullable
+    private volatile DownloadLinkCache downloadLinkCache;
+
     public RestClient(@NonNull final Credentials credentials) {
         this(credentials, OkHttpClientFactory.makeClient());
     }
@@ -77,10 +128,22 @@ public class RestClient {
         this(credentials, client, CLOUD_API_BASE_URL);
     }
 
+    /**
+     * @param client not changed. Clients of many users may share it, and with it the connection pool,
+     *               the dispatcher and the interceptors. Every <tt>RestClient</tt> works with its own
+     *               copy which adds the auth headers of {@code credentials} and retries. A
+     *               {@link Cache} of the client is not used, it would mix the answers of different users,
+     *               see {@link #setCache(File, long)}
+     */
     public RestClient(@NonNull final Credentials credentials, @NonNull final OkHttpClient client,
                       @NonNull final String serverUrl) {
         this.credentials = credentials;
-        this.client = client;
+        this.client = client.clone();
+        if (this.client.getCache() != null) {
+            // answers are cached by url, a cache of a shared client would serve them to other users
+            logger.warn("RestClient: cache of the OkHttp client is not used, see setCache()");
+            this.client.setCache(null);
+        }
         try {
             this.serverURL = new URL(serverUrl).toExternalForm();
         } catch (MalformedURLException ex) {
@@ -89,11 +152,26 @@ public class RestClient {
 
         this.client.interceptors()
                 .add(new RequestInterceptor(credentials.getHeaders()));
+        // before other interceptors to let them see every attempt
+        this.client.interceptors()
+                .add(0, retryInterceptor);
+        // outermost, to measure what the caller waits
+        this.client.interceptors()
+                .add(0, metricsInterceptor);
+        this.client.interceptors()
+                .add(cacheInterceptor);
+        this.client.networkInterceptors()
+                .add(cacheInterceptor.getNetworkInterceptor());
+        // innermost, to time every attempt on the wire
+        this.client.interceptors()
+                .add(tracingInterceptor);
+        this.client.networkInterceptors()
+                .add(tracingInterceptor.getNetworkInterceptor());
 
         this.builder = new Retrofit.Builder()
-                .client(client)
+                .client(this.client)
                 .baseUrl(getUrl())
-                .addConverterFactory(GsonConverterFactory.create());
+                .addConverterFactory(GsonConverterFactory.create(JsonConverter.getGson()));
 
         this.cloudApi = builder
                 .build()
@@ -110,10 +188,173 @@ public class RestClient {
         return client;
     }
 
+    /**
+     * Retries of requests answered with 429, 502, 503 or 504: limits, budget and counters
+     */
+    @NonNull
+    public RetryInterceptor getRetryInterceptor() {
+        return retryInterceptor;
+    }
+
+    /**
+     * Download files with up to {@code segments} parallel <tt>Range</tt> requests. Files shorter than
+     * {@code threshold} bytes and servers without range support use a single stream
+     *
+     * @param segments 1 to disable segmented downloads (default)
+     * @see #downloadFile(String, File, ProgressListener)
+     * @see #downloadPublicResource(String, String, File, ProgressListener)
+     */
+    public void setSegmentedDownload(final int segments, final long threshold) {
+        if (segments < 1 || threshold < 0) {
+            throw new IllegalArgumentException("segments=" + segments + " threshold=" + threshold);
+        }
+        this.downloadSegments = segments;
+        this.segmentedDownloadThreshold = threshold;
+    }
+
+    /**
+     * Size of chunks read from a local file while uploading it
+     *
+     * @see #uploadFile(Link, boolean, File, ProgressListener)
+     */
+    public void setUploadBufferSize(final int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize=" + bufferSize);
+        }
+        this.uploadBufferSize = bufferSize;
+    }
+
+    /**
+     * Keep hash state of interrupted uploads in {@code dir}.
+     * <br/>
+     * With checkpoints a file is hashed while it is uploaded. Resuming an interrupted upload hashes
+     * only the part of the file which wasn't sent, and no data at all after a resumed upload fails again.
+     * A full pre-hash is made only for a resume without a checkpoint.
+     * <br/>
+     * The hash state is computed in Java, as platform digests can't save it, on the uploading thread:
+     * enable checkpoints for large files on unreliable networks, where a resume is likely
+     *
+     * @param dir <tt>null</tt> to disable checkpoints (default)
+     * @see #uploadFile(Link, boolean, File, ProgressListener)
+     */
+    public void setUploadCheckpointDir(@Nullable final File dir) {
+        this.uploadCheckpoints = dir != null ? new DirUploadCheckpoints(dir) : null;
+    }
+
+    /**
+     * Take hashes of unchanged files from {@code hashCache} instead of reading them again.
+     * Files are hashed and added to the cache when a resumed upload needs the hash, and while they are
+     * uploaded from the start if checkpoints are enabled too
+     *
+     * @param hashCache <tt>null</tt> to disable the cache (default)
+     * @see #uploadFile(Link, boolean, File, ProgressListener)
+     */
+    public void setHashCache(@Nullable final HashCache hashCache) {
+        this.hashCache = hashCache;
+    }
+
+    /**
+     * Download again from the links resolved by earlier downloads of the same path or public resource,
+     * saving a link request
+     *
+     * @param downloadLinkCache <tt>null</tt> to disable the cache (default)
+     * @see #downloadFile(String, File, ProgressListener)
+     * @see #downloadPublicResource(String, String, File, ProgressListener)
+     */
+    public void setDownloadLinkCache(@Nullable final DownloadLinkCache downloadLinkCache) {
+        this.downloadLinkCache = downloadLinkCache;
+    }
+
+    @Nullable
+    public DownloadLinkCache getDownloadLinkCache() {
+        return downloadLinkCache;
+    }
+
+    /**
+     * Keep answers of {@link #getResources(ResourcesArgs)}, {@link #getDiskInfo()} and other GET requests
+     * of the API in {@code dir}. They are revalidated with <tt>If-None-Match</tt> on every request,
+     * so an unchanged folder costs a 304 without a body.
+     * <br/>
+     * The cache is keyed by url only, don't share a directory between clients of different users
+     *
+     * @param dir     <tt>null</tt> to disable the cache (default)
+     * @param maxSize bytes, the least recently used answers are removed above it
+     * @see #getCacheStats()
+     */
+    public void setCache(@Nullable final File dir, final long maxSize) {
+        if (dir != null && maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize=" + maxSize);
+        }
+        client.setCache(dir != null ? new Cache(dir, maxSize) : null);
+    }
+
+    @NonNull
+    public CacheStats getCacheStats()
+            throws IOException {
+        final Cache cache = client.getCache();
+        return new CacheStats(cacheInterceptor.getRequestCount(), cacheInterceptor.getHitCount(),
+                cacheInterceptor.getRevalidationCount(), cache != null ? cache.getSize() : 0,
+                cache != null ? cache.getMaxSize() : 0);
+    }
+
+    /**
+     * Remove all answers from the cache set by {@link #setCache(File, long)}
+     */
+    public void clearCache()
+            throws IOException {
+        final Cache cache = client.getCache();
+        if (cache != null) {
+            cache.evictAll();
+        }
+    }
+
+    /**
+     * Receiver of latencies, HTTP codes, bytes and errors of all requests of this client, {@link Metrics#NONE}
+     * by default
+     *
+     * @see com.yandex.disk.rest.metrics.InMemoryMetrics
+     */
+    public void setMetrics(@NonNull final Metrics metrics) {
+        metricsInterceptor.setMetrics(metrics);
+    }
+
+    @NonNull
+    public Metrics getMetrics() {
+        return metricsInterceptor.getMetrics();
+    }
+
+    /**
+     * Receiver of the timings of all requests of this client, {@link Tracer#NONE} by default. Requests of
+     * a download, an upload or {@link #waitProgress(Link, Runnable)} share a trace ID, see {@link TraceScope}.
+     * <br/>
+     * DNS, connect and TLS timings need the default socket factory of the client, which is replaced
+     * with a {@link TracingSocketFactory}
+     */
+    public void setTracer(@NonNull final Tracer tracer) {
+        final SocketFactory socketFactory = client.getSocketFactory();
+        if (tracer != Tracer.NONE && (socketFactory == null || socketFactory == SocketFactory.getDefault())) {
+            client.setSocketFactory(new TracingSocketFactory());
+        }
+        tracingInterceptor.setTracer(tracer);
+    }
+
+    @NonNull
+    public Tracer getTracer() {
+        return tracingInterceptor.getTracer();
+    }
+
     @NonNull
     private <T> T processResponse(@NonNull Response<T> response)
             throws HttpCodeException {
-        return response.isSuccess() ? response.body() : throwHttpCodeException(response);
+        if (response.isSuccess()) {
+            return response.body();
+        }
+        try {
+            return throwHttpCodeException(response);
+        } catch (HttpCodeException ex) {
+            getMetrics().onHttpCodeException(MetricsInterceptor.getEndpoint(response.raw().request()), ex);
+            throw ex;
+        }
     }
 
     /**
@@ -151,7 +392,7 @@ public class RestClient {
         if (!"GET".equalsIgnoreCase(link.getMethod())) {
             throw new WrongMethodException("Method in Link object is not GET");
         }
-        final Operation operation = new RestClientIO(client)
+        final Operation operation = new RestClientIO(client, getMetrics())
                 .getOperation(link.getHref());
         logger.debug("getOperation: " + operation);
         return operation;
@@ -160,18 +401,24 @@ public class RestClient {
     /**
      * Waiting operation to stop
      *
+     * @see OperationTracker for many operations at once
      * @see <p>API reference <a href="http://api.yandex.com/disk/api/reference/operations.xml">english</a>,
      * <a href="https://tech.yandex.ru/disk/api/reference/operations-docpage/">russian</a></p>
      */
     @NonNull
     public Operation waitProgress(@NonNull final Link link, @NonNull final Runnable waiting)
             throws IOException, WrongMethodException, HttpCodeException {
-        while (true) {
-            final Operation operation = getOperation(link);
-            if (!operation.isInProgress()) {
-                return operation;
+        final TraceScope scope = TraceScope.begin(getTracer());
+        try {
+            while (true) {
+                final Operation operation = getOperation(link);
+                if (!operation.isInProgress()) {
+                    return operation;
+                }
+                waiting.run();
             }
-            waiting.run();
+        } finally {
+            scope.end();
         }
     }
 
@@ -209,6 +456,11 @@ public class RestClient {
     @NonNull
     public Resource getResources(@NonNull final ResourcesArgs args)
             throws IOException, ServerIOException {
+        if (args.isStreamParsing() && args.getParsingHandler() != null) {
+            return streamParser.parseResource(stream(cloudApi.getResourcesStream(args.getPath(),
+                    args.getFields(), args.getLimit(), args.getOffset(), args.getSort(),
+                    args.getPreviewSize(), args.getPreviewCrop())), args.getParsingHandler());
+        }
         final Resource resource = processResponse(cloudApi.getResources(args.getPath(),
                 args.getFields(), args.getLimit(), args.getOffset(), args.getSort(),
                 args.getPreviewSize(), args.getPreviewCrop())
@@ -228,6 +480,11 @@ public class RestClient {
     @NonNull
     public ResourceList getFlatResourceList(@NonNull final ResourcesArgs args)
             throws IOException, ServerIOException {
+        if (args.isStreamParsing() && args.getParsingHandler() != null) {
+            return streamParser.parseResourceList(stream(cloudApi.getFlatResourceListStream(args.getLimit(),
+                    args.getMediaType(), args.getOffset(), args.getFields(), args.getPreviewSize(),
+                    args.getPreviewCrop())), args.getParsingHandler());
+        }
         final ResourceList resourceList = processResponse(cloudApi.getFlatResourceList(args.getLimit(),
                 args.getMediaType(), args.getOffset(), args.getFields(), args.getPreviewSize(),
                 args.getPreviewCrop())
@@ -238,6 +495,45 @@ public class RestClient {
         return resourceList;
     }
 
+    /**
+     * Items of a folder requested page by page, see {@link ResourceIterator}. {@code args} are used
+     * as for {@link #getResources(ResourcesArgs)}, the parsing handler is ignored
+     *
+     * @param pagesAhead pages requested while the current one is consumed, 0 for none
+     */
+    @NonNull
+    public ResourceIterator iterateResources(@NonNull final ResourcesArgs args, final int pagesAhead) {
+        return new ResourceIterator(new ResourceIterator.PageLoader() {
+            @Override
+            public ResourceList load(final int offset, final int limit)
+                    throws IOException, ServerIOException {
+                return processResponse(cloudApi.getResources(args.getPath(), args.getFields(), limit, offset,
+                        args.getSort(), args.getPreviewSize(), args.getPreviewCrop())
+                        .execute())
+                        .getResourceList();
+            }
+        }, args.getOffset(), args.getLimit(), pagesAhead);
+    }
+
+    /**
+     * Flat list of all files requested page by page, see {@link ResourceIterator}. {@code args} are used
+     * as for {@link #getFlatResourceList(ResourcesArgs)}, the parsing handler is ignored
+     *
+     * @param pagesAhead pages requested while the current one is consumed, 0 for none
+     */
+    @NonNull
+    public ResourceIterator iterateFlatResourceList(@NonNull final ResourcesArgs args, final int pagesAhead) {
+        return new ResourceIterator(new ResourceIterator.PageLoader() {
+            @Override
+            public ResourceList load(final int offset, final int limit)
+                    throws IOException, ServerIOException {
+                return processResponse(cloudApi.getFlatResourceList(limit, args.getMediaType(), offset,
+                        args.getFields(), args.getPreviewSize(), args.getPreviewCrop())
+                        .execute());
+            }
+        }, args.getOffset(), args.getLimit(), pagesAhead);
+    }
+
     /**
      * Latest uploaded files
      *
@@ -247,6 +543,11 @@ public class RestClient {
     @NonNull
     public ResourceList getLastUploadedResources(@NonNull final ResourcesArgs args)
             throws IOException, ServerIOException {
+        if (args.isStreamParsing() && args.getParsingHandler() != null) {
+            return streamParser.parseResourceList(stream(cloudApi.getLastUploadedResourcesStream(args.getLimit(),
+                    args.getMediaType(), args.getOffset(), args.getFields(), args.getPreviewSize(),
+                    args.getPreviewCrop())), args.getParsingHandler());
+        }
         final ResourceList resourceList = processResponse(cloudApi.getLastUploadedResources(args.getLimit(),
                 args.getMediaType(), args.getOffset(), args.getFields(), args.getPreviewSize(),
                 args.getPreviewCrop())
@@ -283,6 +584,11 @@ public class RestClient {
     @NonNull
     public Resource listPublicResources(@NonNull final ResourcesArgs args)
             throws IOException, ServerIOException {
+        if (args.isStreamParsing() && args.getParsingHandler() != null) {
+            return streamParser.parseResource(stream(cloudApi.listPublicResourcesStream(args.getPublicKey(),
+                    args.getPath(), args.getFields(), args.getLimit(), args.getOffset(), args.getSort(),
+                    args.getPreviewSize(), args.getPreviewCrop())), args.getParsingHandler());
+        }
         final Resource resource = processResponse(cloudApi.listPublicResources(args.getPublicKey(),
                 args.getPath(), args.getFields(), args.getLimit(), args.getOffset(), args.getSort(),
                 args.getPreviewSize(), args.getPreviewCrop())
@@ -302,6 +608,11 @@ public class RestClient {
     @NonNull
     public Resource getTrashResources(@NonNull final ResourcesArgs args)
             throws IOException, ServerIOException {
+        if (args.isStreamParsing() && args.getParsingHandler() != null) {
+            return streamParser.parseResource(stream(cloudApi.getTrashResourcesStream(args.getPath(),
+                    args.getFields(), args.getLimit(), args.getOffset(), args.getSort(),
+                    args.getPreviewSize(), args.getPreviewCrop())), args.getParsingHandler());
+        }
         final Resource resource = processResponse(cloudApi.getTrashResources(args.getPath(),
                 args.getFields(), args.getLimit(), args.getOffset(), args.getSort(),
                 args.getPreviewSize(), args.getPreviewCrop())
@@ -320,7 +631,7 @@ public class RestClient {
      */
     public Link deleteFromTrash(final String path)
             throws IOException, ServerIOException {
-        return new RestClientIO(client)
+        return new RestClientIO(client, getMetrics())
                 .delete(new QueryBuilder(getUrl() + "/v1/disk/trash/resources")
                         .add("path", path)
                         .build());
@@ -334,15 +645,30 @@ public class RestClient {
      */
     public Link restoreFromTrash(final String path, final String name, final Boolean overwrite)
             throws IOException, ServerIOException {
-        return new RestClientIO(client)
-                .put(new QueryBuilder(getUrl() + "/v1/disk/trash/resources/restore")
-                        .add("path", path)
-                        .add("name", name)
-                        .add("overwrite", overwrite)
-                        .build());
+        try {
+            return new RestClientIO(client, getMetrics())
+                    .put(new QueryBuilder(getUrl() + "/v1/disk/trash/resources/restore")
+                            .add("path", path)
+                            .add("name", name)
+                            .add("overwrite", overwrite)
+                            .build());
+        } finally {
+            // the original path of the resource is not known here
+            invalidateDownloadLinks("/");
+        }
+    }
+
+    /**
+     * Reader of a successful response body, to be closed by the caller
+     */
+    @NonNull
+    private Reader stream(@NonNull final Call<ResponseBody> call)
+            throws IOException, HttpCodeException {
+        return processResponse(call.execute()).charStream();
     }
 
-    private void parseListResponse(@NonNull final Resource resource, @NonNull final ResourcesHandler handler) {
+    /* package */ static void parseListResponse(@NonNull final Resource resource,
+                                               @NonNull final ResourcesHandler handler) {
         handler.handleSelf(resource);
         final ResourceList items = resource.getResourceList();
         int size = 0;
@@ -355,7 +681,7 @@ public class RestClient {
         handler.onFinished(size);
     }
 
-    private void parseListResponse(final ResourceList resourceList, final ResourcesHandler handler) {
+    /* package */ static void parseListResponse(final ResourceList resourceList, final ResourcesHandler handler) {
         List<Resource> items = resourceList.getItems();
         int size = 0;
         if (items != null) {
@@ -376,10 +702,89 @@ public class RestClient {
     public void downloadFile(@NonNull final String path, @NonNull final File saveTo,
                              @Nullable final ProgressListener progressListener)
             throws IOException, ServerException {
-        final Link link = processResponse(cloudApi.getDownloadLink(path)
-                .execute());
-        new RestClientIO(client)
-                .downloadUrl(link.getHref(), new FileDownloadListener(saveTo, progressListener));
+        final TraceScope scope = TraceScope.begin(getTracer());
+        try {
+            final Link link = getDownloadLink(path);
+            try {
+                downloadUrl(link.getHref(), saveTo, progressListener);
+            } catch (HttpCodeException ex) {
+                if (!invalidateDownloadLink(DownloadLinkCache.getKey(path), link.getHref(), ex)) {
+                    throw ex;
+                }
+                logger.debug("downloadFile: link expired " + link.getHref());
+                downloadUrl(getDownloadLink(path).getHref(), saveTo, progressListener);
+            }
+        } finally {
+            scope.end();
+        }
+    }
+
+    @NonNull
+    /* package */ Link getDownloadLink(@NonNull final String path)
+            throws IOException, ServerIOException {
+        final DownloadLinkCache cache = downloadLinkCache;
+        final String key = DownloadLinkCache.getKey(path);
+        Link link = cache != null ? cache.get(key) : null;
+        if (link == null) {
+            link = processResponse(cloudApi.getDownloadLink(path)
+                    .execute());
+            if (cache != null) {
+                cache.put(key, link);
+            }
+        }
+        return link;
+    }
+
+    @NonNull
+    private Link getPublicResourceDownloadLink(@NonNull final String publicKey, @NonNull final String path)
+            throws IOException, ServerIOException {
+        final DownloadLinkCache cache = downloadLinkCache;
+        final String key = DownloadLinkCache.getPublicKey(publicKey, path);
+        Link link = cache != null ? cache.get(key) : null;
+        if (link == null) {
+            link = processResponse(cloudApi.getPublicResourceDownloadLink(publicKey, path)
+                    .execute());
+            if (cache != null) {
+                cache.put(key, link);
+            }
+        }
+        return link;
+    }
+
+    /**
+     * Remove a link from {@link DownloadLinkCache} if its href answered with 403, 404 or 410
+     *
+     * @return <tt>true</tt> if the link came from the cache and a new one should be tried
+     */
+    /* package */ boolean invalidateDownloadLink(@NonNull final String key, @NonNull final String href,
+                                                 @NonNull final HttpCodeException ex) {
+        final DownloadLinkCache cache = downloadLinkCache;
+        return cache != null && DownloadLinkCache.isExpired(ex.getCode()) && cache.invalidate(key, href);
+    }
+
+    /**
+     * Remove the links of the changed paths and everything below them from {@link DownloadLinkCache}
+     */
+    /* package */ void invalidateDownloadLinks(@NonNull final String... paths) {
+        final DownloadLinkCache cache = downloadLinkCache;
+        if (cache != null) {
+            for (final String path : paths) {
+                cache.invalidateTree(path);
+            }
+        }
+    }
+
+    /* package */ void downloadUrl(@NonNull final String url, @NonNull final File saveTo,
+                                   @Nullable final ProgressListener progressListener)
+            throws IOException, ServerException {
+        downloadUrl(url, saveTo, new FileDownloadListener(saveTo, progressListener));
+    }
+
+    /* package */ void downloadUrl(@NonNull final String url, @NonNull final File saveTo,
+                                   @NonNull final DownloadListener downloadListener)
+            throws IOException, ServerException {
+        new RestClientIO(client, getMetrics())
+                .downloadUrl(url, saveTo, downloadSegments, segmentedDownloadThreshold, downloadListener);
     }
 
     /**
@@ -390,10 +795,23 @@ public class RestClient {
      */
     public void downloadFile(@NonNull final String path, @NonNull final DownloadListener downloadListener)
             throws IOException, ServerException {
-        final Link link = processResponse(cloudApi.getDownloadLink(path)
-                .execute());
-        new RestClientIO(client)
-                .downloadUrl(link.getHref(), downloadListener);
+        final TraceScope scope = TraceScope.begin(getTracer());
+        try {
+            final Link link = getDownloadLink(path);
+            try {
+                new RestClientIO(client, getMetrics())
+                        .downloadUrl(link.getHref(), downloadListener);
+            } catch (HttpCodeException ex) {
+                if (!invalidateDownloadLink(DownloadLinkCache.getKey(path), link.getHref(), ex)) {
+                    throw ex;
+                }
+                logger.debug("downloadFile: link expired " + link.getHref());
+                new RestClientIO(client, getMetrics())
+                        .downloadUrl(getDownloadLink(path).getHref(), downloadListener);
+            }
+        } finally {
+            scope.end();
+        }
     }
 
     /**
@@ -405,12 +823,17 @@ public class RestClient {
     @NonNull
     public Link saveFromUrl(@NonNull final String url, @NonNull final String serverPath)
             throws ServerIOException, IOException {
-        return processResponse(cloudApi.saveFromUrl(url, serverPath)
-                .execute());
+        try {
+            return processResponse(cloudApi.saveFromUrl(url, serverPath)
+                    .execute());
+        } finally {
+            invalidateDownloadLinks(serverPath);
+        }
     }
 
     /**
-     * Uploading a file to Disk: get Link to upload
+     * Uploading a file to Disk: get Link to upload. Cached download links of {@code serverPath} are
+     * removed, so they are not used for the new content
      *
      * @see <p>API reference <a href="http://api.yandex.com/disk/api/reference/upload.xml">english</a>,
      * <a href="https://tech.yandex.ru/disk/api/reference/upload-docpage/">russian</a></p>
@@ -418,6 +841,7 @@ public class RestClient {
     @NonNull
     public Link getUploadLink(@NonNull final String serverPath, final boolean overwrite)
             throws ServerIOException, WrongMethodException, IOException {
+        invalidateDownloadLinks(serverPath);
         final Link link = processResponse(cloudApi.getUploadLink(serverPath, overwrite)
                 .execute());
         if (!"PUT".equalsIgnoreCase(link.getMethod())) {
@@ -435,14 +859,80 @@ public class RestClient {
     public void uploadFile(@NonNull final Link link, final boolean resumeUpload, @NonNull final File localSource,
                            @Nullable final ProgressListener progressListener)
             throws IOException, ServerException {
-        RestClientIO clientIO = new RestClientIO(client);
+        final TraceScope scope = TraceScope.begin(getTracer());
+        try {
+            uploadFile(link.getHref(), resumeUpload, localSource, uploadCheckpoints, progressListener);
+        } finally {
+            scope.end();
+        }
+    }
+
+    /* package */ void uploadFile(@NonNull final String url, final boolean resumeUpload,
+                                  @NonNull final File localSource, @Nullable final UploadCheckpoints checkpoints,
+                                  @Nullable final ProgressListener progressListener)
+            throws IOException, ServerException {
+        RestClientIO clientIO = new RestClientIO(client, getMetrics());
+        HashState hashState = null;
         long startOffset = 0;
         if (resumeUpload) {
-            Hash hash = Hash.getHash(localSource);
-            startOffset = clientIO.getUploadedSize(link.getHref(), hash);
+            Hash hash = getCachedHash(localSource);
+            if (hash == null && checkpoints != null) {
+                final HashState saved = checkpoints.load(localSource);
+                hashState = saved != null ? saved : new HashState();
+                hashState.update(localSource);
+                checkpoints.save(localSource, hashState);
+                hash = hashState.getHash();
+                cacheHash(localSource, hash);
+            } else if (hash == null) {
+                hash = Hash.getHash(localSource);
+                cacheHash(localSource, hash);
+            }
+            startOffset = clientIO.getUploadedSize(url, hash);
             logger.debug("head: startOffset=" + startOffset);
+        } else if (checkpoints != null) {
+            hashState = new HashState();
+        }
+        try {
+            clientIO.uploadFile(url, localSource, startOffset, uploadBufferSize, hashState,
+                    checkpoints != null && hashState != null
+                            ? new CheckpointListener(localSource, hashState, checkpoints, progressListener)
+                            : progressListener);
+        } catch (IOException | HttpCodeException ex) {
+            if (checkpoints != null && hashState != null) {
+                checkpoints.save(localSource, hashState);
+            }
+            throw ex;
+        }
+        if (checkpoints != null) {
+            checkpoints.remove(localSource);
+        }
+        if (!resumeUpload && hashState != null && hashState.getPosition() == localSource.length()) {
+            cacheHash(localSource, hashState.getHash());
+        }
+    }
+
+    @Nullable
+    private Hash getCachedHash(@NonNull final File file) {
+        if (hashCache == null) {
+            return null;
+        }
+        try {
+            return hashCache.get(file);
+        } catch (IOException ex) {
+            logger.warn("hashCache: " + file, ex);
+            return null;
+        }
+    }
+
+    private void cacheHash(@NonNull final File file, @NonNull final Hash hash) {
+        if (hashCache == null || hash.getSize() != file.length()) {
+            return;
+        }
+        try {
+            hashCache.put(file, hash);
+        } catch (IOException ex) {
+            logger.warn("hashCache: " + file, ex);
         }
-        clientIO.uploadFile(link.getHref(), localSource, startOffset, progressListener);
     }
 
     /**
@@ -454,11 +944,15 @@ public class RestClient {
     @NonNull
     public Link delete(@NonNull final String path, final boolean permanently)
             throws ServerIOException, IOException {
-        return new RestClientIO(client)
-                .delete(new QueryBuilder(getUrl() + "/v1/disk/resources")
-                        .add("path", path)
-                        .add("permanently", permanently)
-                        .build());
+        try {
+            return new RestClientIO(client, getMetrics())
+                    .delete(new QueryBuilder(getUrl() + "/v1/disk/resources")
+                            .add("path", path)
+                            .add("permanently", permanently)
+                            .build());
+        } finally {
+            invalidateDownloadLinks(path);
+        }
     }
 
     /**
@@ -483,8 +977,12 @@ public class RestClient {
     @NonNull
     public Link copy(@NonNull final String from, @NonNull final String path, final boolean overwrite)
             throws ServerIOException, IOException {
-        return processResponse(cloudApi.copy(from, path, overwrite)
-                .execute());
+        try {
+            return processResponse(cloudApi.copy(from, path, overwrite)
+                    .execute());
+        } finally {
+            invalidateDownloadLinks(from, path);
+        }
     }
 
     /**
@@ -496,8 +994,12 @@ public class RestClient {
     @NonNull
     public Link move(@NonNull final String from, @NonNull final String path, final boolean overwrite)
             throws ServerIOException, IOException {
-        return processResponse(cloudApi.move(from, path, overwrite)
-                .execute());
+        try {
+            return processResponse(cloudApi.move(from, path, overwrite)
+                    .execute());
+        } finally {
+            invalidateDownloadLinks(from, path);
+        }
     }
 
     /**
@@ -535,10 +1037,21 @@ public class RestClient {
     public void downloadPublicResource(@NonNull final String publicKey, @NonNull final String path,
                                        @NonNull final File saveTo, @Nullable final ProgressListener progressListener)
             throws IOException, ServerException {
-        final Link link = processResponse(cloudApi.getPublicResourceDownloadLink(publicKey, path)
-                .execute());
-        new RestClientIO(client)
-                .downloadUrl(link.getHref(), new FileDownloadListener(saveTo, progressListener));
+        final TraceScope scope = TraceScope.begin(getTracer());
+        try {
+            final Link link = getPublicResourceDownloadLink(publicKey, path);
+            try {
+                downloadUrl(link.getHref(), saveTo, progressListener);
+            } catch (HttpCodeException ex) {
+                if (!invalidateDownloadLink(DownloadLinkCache.getPublicKey(publicKey, path), link.getHref(), ex)) {
+                    throw ex;
+                }
+                logger.debug("downloadPublicResource: link expired " + link.getHref());
+                downloadUrl(getPublicResourceDownloadLink(publicKey, path).getHref(), saveTo, progressListener);
+            }
+        } finally {
+            scope.end();
+        }
     }
 
     /**
@@ -554,4 +1067,52 @@ public class RestClient {
         return processResponse(cloudApi.savePublicResource(publicKey, path, name)
                 .execute());
     }
-}
\ No newline at end of file
+
+    /**
+     * Saves the hash state every {@link #CHECKPOINT_INTERVAL} bytes, so an upload killed with
+     * the process doesn't have to be hashed again from the start
+     */
+    private static class CheckpointListener implements ProgressListener {
+
+        @NonNull
+        private final File localSource;
+
+        @NonNull
+        private final HashState hashState;
+
+        @NonNull
+        private final UploadCheckpoints checkpoints;
+
+        @Nullable
+        private final ProgressListener progressListener;
+
+        private long savedPosition;
+
+        CheckpointListener(@NonNull final File localSource, @NonNull final HashState hashState,
+                           @NonNull final UploadCheckpoints checkpoints,
+                           @Nullable final ProgressListener progressListener) {
+            this.localSource = localSource;
+            this.hashState = hashState;
+            this.checkpoints = checkpoints;
+            this.progressListener = progressListener;
+            this.savedPosition = hashState.getPosition();
+        }
+
+        @Override
+        public void updateProgress(final long loaded, final long total) {
+            // called by the thread which feeds the hash state
+            if (hashState.getPosition() - savedPosition >= CHECKPOINT_INTERVAL) {
+                checkpoints.save(localSource, hashState);
+                savedPosition = hashState.getPosition();
+            }
+            if (progressListener != null) {
+                progressListener.updateProgress(loaded, total);
+            }
+        }
+
+        @Override
+        public boolean hasCancelled() {
+            return progressListener != null && progressListener.hasCancelled();
+        }
+    }
+}
@@ -11,7 +11,8 @@ package com.yandex.disk.rest;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import com.google.gson.Gson;
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.Callback;
 import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.Request;
@@ -31,17 +32,35 @@ import com.yandex.disk.rest.exceptions.http.NotFoundException;
 import com.yandex.disk.rest.exceptions.http.PreconditionFailedException;
 import com.yandex.disk.rest.exceptions.http.RangeNotSatisfiableException;
 import com.yandex.disk.rest.exceptions.http.ServiceUnavailableException;
+import com.yandex.disk.rest.json.JsonConverter;
 import com.yandex.disk.rest.json.Link;
 import com.yandex.disk.rest.json.Operation;
+import com.yandex.disk.rest.metrics.Metrics;
 import com.yandex.disk.rest.retrofit.ErrorHandler;
+import com.yandex.disk.rest.retrofit.MetricsInterceptor;
+import com.yandex.disk.rest.tracing.TraceScope;
 import com.yandex.disk.rest.util.Hash;
+import com.yandex.disk.rest.util.HashState;
 import com.yandex.disk.rest.util.Logger;
 import com.yandex.disk.rest.util.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -55,6 +74,8 @@ import java.util.regex.Pattern;
     @NonNull private static final String SIZE_HEADER = "Size";
     @NonNull private static final String CONTENT_LENGTH_HEADER = "Content-Length";
     @NonNull private static final String CONTENT_RANGE_HEADER = "Content-Range";
+    @NonNull private static final String RANGE_HEADER = "Range";
+    @NonNull private static final String IF_RANGE_HEADER = "If-Range";
 
     @NonNull private static final String METHOD_GET = "GET";
     @NonNull private static final String METHOD_DELETE = "DELETE";
@@ -63,11 +84,32 @@ import java.util.regex.Pattern;
     @NonNull
     private static final Pattern CONTENT_RANGE_HEADER_PATTERN = Pattern.compile("bytes\\D+(\\d+)-\\d+/(\\d+)");
 
+    private static final int SEGMENT_BUFFER_SIZE = 64 * 1024;
+
+    private static final long SEGMENT_SHUTDOWN_TIMEOUT_SECONDS = 30;
+
     @NonNull
     private final OkHttpClient client;
 
+    @NonNull
+    private final Metrics metrics;
+
     /* package */ RestClientIO(@NonNull final OkHttpClient client) {
+        this(client, Metrics.NONE);
+    }
+
+    /* package */ RestClientIO(@NonNull final OkHttpClient client, @NonNull final Metrics metrics) {
         this.client = client;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Report the exception to {@link Metrics} before it is thrown
+     */
+    @NonNull
+    private <E extends HttpCodeException> E failed(@NonNull final Response response, @NonNull final E ex) {
+        metrics.onHttpCodeException(MetricsInterceptor.getEndpoint(response.request()), ex);
+        return ex;
     }
 
     /* package */ void downloadUrl(@NonNull final String url, @NonNull final DownloadListener downloadListener)
@@ -108,13 +150,13 @@ import java.util.regex.Pattern;
                 partialContent = true;
                 break;
             case 304:
-                throw new FileNotModifiedException(code);
+                throw failed(response, new FileNotModifiedException(code));
             case 404:
-                throw new NotFoundException(code);
+                throw failed(response, new NotFoundException(code));
             case 416:
-                throw new RangeNotSatisfiableException(code);
+                throw failed(response, new RangeNotSatisfiableException(code));
             default:
-                throw new HttpCodeException(code);
+                throw failed(response, new HttpCodeException(code));
         }
 
         final ResponseBody responseBody = response.body();
@@ -141,6 +183,7 @@ import java.util.regex.Pattern;
         OutputStream os = null;
         try {
             downloadListener.setStartPosition(loaded);
+            downloadListener.setETag(response.header(ETAG_HEADER));
             final MediaType contentTypeHeader = responseBody.contentType();
             if (contentTypeHeader != null) {
                 downloadListener.setContentType(contentTypeHeader.toString());
@@ -192,6 +235,262 @@ import java.util.regex.Pattern;
         }
     }
 
+    /**
+     * Download {@code url} to {@code saveTo} with up to {@code segments} parallel <tt>Range</tt> requests.
+     * <br/>
+     * A one byte probe request finds out the content length. Single stream {@link #downloadUrl(String,
+     * DownloadListener)} is used instead if the server doesn't answer <tt>206 Partial Content</tt>, the content
+     * is shorter than {@code threshold} or a local file already exists and should be resumed.
+     * <br/>
+     * On failure the local file is truncated to the completely downloaded head, so the next call resumes from it.
+     * If the file on the server changes after the probe, the local file is truncated to zero and downloaded again
+     * with a single stream
+     */
+    /* package */ void downloadUrl(@NonNull final String url, @NonNull final File saveTo, final int segments,
+                                   final long threshold, @NonNull final DownloadListener downloadListener)
+            throws IOException, CancelledDownloadException, DownloadNoSpaceAvailableException,
+            HttpCodeException {
+        DownloadSegments layout = downloadListener.getSegments();
+        final boolean restored = layout != null;
+        if (!restored && (segments < 2 || downloadListener.getLocalLength() > 0)) {
+            downloadUrl(url, downloadListener);
+            return;
+        }
+
+        if (!restored) {
+            final Request probe = new Request.Builder()
+                    .url(url)
+                    .addHeader(RANGE_HEADER, "bytes=0-0")
+                    .build();
+            final Response probeResponse = client
+                    .newCall(probe)
+                    .execute();
+            final ContentRangeResponse contentRange;
+            final MediaType contentType;
+            try {
+                contentRange = probeResponse.code() == 206
+                        ? parseContentRangeHeader(probeResponse.header(CONTENT_RANGE_HEADER))
+                        : null;
+                contentType = probeResponse.body().contentType();
+            } finally {
+                close(probeResponse);
+            }
+            logger.debug("download: probe code=" + probeResponse.code() + " contentRange=" + contentRange);
+            if (contentRange == null || contentRange.getSize() < threshold) {
+                downloadUrl(url, downloadListener);
+                return;
+            }
+            if (contentType != null) {
+                downloadListener.setContentType(contentType.toString());
+            }
+            // redirects are resolved once by the probe, all segments go to the final location
+            layout = new DownloadSegments(probeResponse.request().urlString(), probeResponse.header(ETAG_HEADER),
+                    contentRange.getSize(), segments);
+        } else {
+            logger.debug("download: continue " + layout);
+        }
+        final DownloadSegments downloadSegments = layout;
+        final long contentLength = downloadSegments.getContentLength();
+        final int segmentCount = downloadSegments.getCount();
+
+        downloadListener.setStartPosition(0);
+        downloadListener.setContentLength(contentLength);
+        final boolean saved = restored || downloadListener.setSegments(downloadSegments);
+
+        final Object tag = new Object();
+        final AtomicBoolean aborted = new AtomicBoolean();
+        final AtomicLong loaded = new AtomicLong(downloadSegments.getLoaded());
+        final RandomAccessFile file = new RandomAccessFile(saveTo, "rw");
+        try {
+            file.setLength(contentLength);
+        } catch (IOException ex) {
+            logger.warn("download: no space for " + contentLength + " bytes in " + saveTo, ex);
+            try {
+                file.close();
+            } catch (IOException closeEx) {
+                // nothing
+            }
+            if (!restored && !saveTo.delete()) {
+                logger.warn("download: can't delete " + saveTo);
+            }
+            throw new DownloadNoSpaceAvailableException(saveTo.getParent(), contentLength);
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(segmentCount);
+        // segments continue the trace of the download
+        final String traceId = TraceScope.getCurrentTraceId();
+        boolean changed = false;
+        try {
+            final FileChannel channel = file.getChannel();
+            final CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+            int submitted = 0;
+            for (int i = 0; i < segmentCount; i++) {
+                final int index = i;
+                if (downloadSegments.getStart(i) + downloadSegments.getLoaded(i) > downloadSegments.getEnd(i)) {
+                    continue;
+                }
+                completionService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        final TraceScope scope = TraceScope.join(traceId);
+                        try {
+                            downloadSegment(downloadSegments, index, tag, channel, loaded, aborted,
+                                    downloadListener);
+                        } finally {
+                            scope.end();
+                        }
+                        return null;
+                    }
+                });
+                submitted++;
+            }
+            for (int i = 0; i < submitted; i++) {
+                completionService.take().get();
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            aborted.set(true);
+            client.cancel(tag);
+            executor.shutdown();
+            awaitTermination(executor);
+            if (ex.getCause() instanceof ContentChangedException) {
+                // the segments of the old content can't be joined with the new one
+                logger.info("download: " + url + " changed since " + downloadSegments.getETag());
+                file.setLength(0);
+                changed = true;
+            } else {
+                if (saved) {
+                    if (force(file, saveTo)) {
+                        downloadListener.stopSegments(downloadSegments);
+                    }
+                } else {
+                    file.setLength(downloadSegments.getCompletedHead());
+                }
+                if (ex instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Downloading " + url + " interrupted");
+                }
+                throwSegmentException(ex.getCause());
+            }
+        } finally {
+            executor.shutdown();
+            try {
+                file.close();
+            } catch (IOException ex) {
+                // nothing
+            }
+        }
+        if (changed) {
+            downloadUrl(url, downloadListener);
+        }
+    }
+
+    private void downloadSegment(@NonNull final DownloadSegments segments, final int index,
+                                 @NonNull final Object tag, @NonNull final FileChannel channel,
+                                 @NonNull final AtomicLong loaded, @NonNull final AtomicBoolean aborted,
+                                 @NonNull final DownloadListener downloadListener)
+            throws IOException, CancelledDownloadException, HttpCodeException {
+        final String url = segments.getUrl();
+        final String etag = segments.getETag();
+        final long start = segments.getStart(index) + segments.getLoaded(index);
+        final long end = segments.getEnd(index);
+        final long contentLength = segments.getContentLength();
+        final long checkpointSize = downloadListener.getSegmentCheckpointSize();
+        final Request.Builder req = new Request.Builder()
+                .url(url)
+                .tag(tag)
+                .addHeader(RANGE_HEADER, "bytes=" + start + "-" + end);
+        if (etag != null) {
+            // the file has changed since the probe if the server ignores the range
+            req.addHeader(IF_RANGE_HEADER, etag);
+        }
+        final Response response = client
+                .newCall(req.build())
+                .execute();
+        try {
+            final int code = response.code();
+            if (etag != null && (code == 200 || code == 416)) {
+                // If-Range didn't match, the whole new content or a range beyond it is answered
+                throw new ContentChangedException(url, etag);
+            }
+            if (code != 206) {
+                throw failed(response, new HttpCodeException(code));
+            }
+            final InputStream content = response.body().byteStream();
+            final byte[] downloadBuffer = new byte[SEGMENT_BUFFER_SIZE];
+            final ByteBuffer buffer = ByteBuffer.wrap(downloadBuffer);
+            long position = start;
+            long checkpoint = start;
+            int count;
+            while ((count = content.read(downloadBuffer)) != -1) {
+                if (aborted.get()) {
+                    throw new InterruptedIOException("Segment " + start + "-" + end + " aborted");
+                }
+                if (downloadListener.hasCancelled()) {
+                    logger.info("Downloading " + url + " canceled");
+                    throw new CancelledDownloadException();
+                }
+                buffer.clear();
+                buffer.limit(count);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                segments.addLoaded(index, count);
+                if (checkpointSize > 0 && (position - checkpoint >= checkpointSize || position == end + 1)) {
+                    // the data is on the device before its progress is saved
+                    channel.force(false);
+                    checkpoint = position;
+                    downloadListener.updateSegment(segments, index);
+                }
+                synchronized (downloadListener) {
+                    downloadListener.updateProgress(loaded.addAndGet(count), contentLength);
+                }
+            }
+            if (position != end + 1) {
+                throw new IOException("Segment " + start + "-" + end + " truncated at " + position);
+            }
+        } finally {
+            close(response);
+        }
+    }
+
+    /**
+     * @return <tt>false</tt> if the written data may be lost by a crash
+     */
+    private static boolean force(@NonNull final RandomAccessFile file, @NonNull final File saveTo) {
+        try {
+            file.getChannel().force(false);
+            return true;
+        } catch (IOException ex) {
+            logger.warn("download: can't sync " + saveTo, ex);
+            return false;
+        }
+    }
+
+    private static void awaitTermination(@NonNull final ExecutorService executor) {
+        try {
+            if (!executor.awaitTermination(SEGMENT_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("download: segments still running after cancel");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void throwSegmentException(@Nullable final Throwable th)
+            throws IOException, CancelledDownloadException, HttpCodeException {
+        if (th instanceof IOException) {
+            throw (IOException) th;
+        } else if (th instanceof CancelledDownloadException) {
+            throw (CancelledDownloadException) th;
+        } else if (th instanceof HttpCodeException) {
+            throw (HttpCodeException) th;
+        } else if (th instanceof RuntimeException) {
+            throw (RuntimeException) th;
+        } else {
+            // never happen
+            throw new RuntimeException(th);
+        }
+    }
+
     @Nullable
     private ContentRangeResponse parseContentRangeHeader(@Nullable final String header) {
         if (header == null) {
@@ -215,10 +514,20 @@ import java.util.regex.Pattern;
     /* package */ void uploadFile(@NonNull final String url, @NonNull final File file, final long startOffset,
                            @Nullable final ProgressListener progressListener)
             throws IOException, HttpCodeException {
+        uploadFile(url, file, startOffset, RequestBodyProgress.DEFAULT_BUFFER_SIZE, null, progressListener);
+    }
+
+    /**
+     * @param hashState fed with the uploaded bytes if it continues at {@code startOffset}
+     */
+    /* package */ void uploadFile(@NonNull final String url, @NonNull final File file, final long startOffset,
+                                  final int bufferSize, @Nullable final HashState hashState,
+                                  @Nullable final ProgressListener progressListener)
+            throws IOException, HttpCodeException {
         logger.debug("uploadFile: put to url: "+url);
         final MediaType mediaType = MediaType.parse("application/octet-stream");
         final RequestBody requestBody = RequestBodyProgress.create(mediaType, file, startOffset,
-                progressListener);
+                progressListener, bufferSize, hashState);
         final Request.Builder requestBuilder = new Request.Builder()
                 .removeHeader(Credentials.AUTHORIZATION_HEADER)
                 .url(url)
@@ -250,19 +559,19 @@ import java.util.regex.Pattern;
                 logger.debug("uploadFile: file uploaded successfully: "+file);
                 break;
             case 404:
-                throw new NotFoundException(code, null);
+                throw failed(response, new NotFoundException(code, null));
             case 409:
-                throw new ConflictException(code, null);
+                throw failed(response, new ConflictException(code, null));
             case 412:
-                throw new PreconditionFailedException(code, null);
+                throw failed(response, new PreconditionFailedException(code, null));
             case 413:
-                throw new FileTooBigException(code, null);
+                throw failed(response, new FileTooBigException(code, null));
             case 503:
-                throw new ServiceUnavailableException(code, null);
+                throw failed(response, new ServiceUnavailableException(code, null));
             case 507:
-                throw new InsufficientStorageException(code, null);
+                throw failed(response, new InsufficientStorageException(code, null));
             default:
-                throw new HttpCodeException(code);
+                throw failed(response, new HttpCodeException(code));
         }
     }
 
@@ -296,10 +605,27 @@ import java.util.regex.Pattern;
     @NonNull
     /* package */ Operation getOperation(@NonNull final String url)
             throws IOException, HttpCodeException {
-        final Response response = call(METHOD_GET, url);
+        return readOperation(call(METHOD_GET, url));
+    }
+
+    @NonNull
+    /* package */ RestFuture<Operation> getOperationAsync(@NonNull final String url) {
+        return enqueue(METHOD_GET, url, new ResponseReader<Operation>() {
+            @Override
+            public Operation read(@NonNull final Response response)
+                    throws IOException, ServerIOException {
+                return readOperation(response);
+            }
+        });
+    }
+
+    @NonNull
+    private Operation readOperation(@NonNull final Response response)
+            throws IOException, HttpCodeException {
         final int code = response.code();
         if (!response.isSuccessful()) {
-            throw new HttpCodeException(code);
+            close(response);
+            throw failed(response, new HttpCodeException(code));
         }
         return parseJson(response, Operation.class);
     }
@@ -307,9 +633,24 @@ import java.util.regex.Pattern;
     @NonNull
     /* package */ Link delete(@NonNull final String url)
             throws IOException, ServerIOException {
-        Response response = null;
+        return readDelete(call(METHOD_DELETE, url));
+    }
+
+    @NonNull
+    /* package */ RestFuture<Link> deleteAsync(@NonNull final String url) {
+        return enqueue(METHOD_DELETE, url, new ResponseReader<Link>() {
+            @Override
+            public Link read(@NonNull final Response response)
+                    throws IOException, ServerIOException {
+                return readDelete(response);
+            }
+        });
+    }
+
+    @NonNull
+    private Link readDelete(@NonNull final Response response)
+            throws IOException, ServerIOException {
         try {
-            response = call(METHOD_DELETE, url);
             switch (response.code()) {
                 case 202:
                     final Link result = parseJson(response, Link.class);
@@ -319,8 +660,8 @@ import java.util.regex.Pattern;
                     close(response);
                     return Link.DONE;
                 default:
-                    throw ErrorHandler.createHttpCodeException(response.code(),
-                            response.body().byteStream());
+                    throw failed(response, ErrorHandler.createHttpCodeException(response.code(),
+                            response.body().byteStream()));
             }
         } finally {
             close(response);
@@ -330,9 +671,24 @@ import java.util.regex.Pattern;
     @NonNull
     /* package */ Link put(@NonNull final String url)
             throws IOException, ServerIOException {
-        Response response = null;
+        return readPut(call(METHOD_PUT, url));
+    }
+
+    @NonNull
+    /* package */ RestFuture<Link> putAsync(@NonNull final String url) {
+        return enqueue(METHOD_PUT, url, new ResponseReader<Link>() {
+            @Override
+            public Link read(@NonNull final Response response)
+                    throws IOException, ServerIOException {
+                return readPut(response);
+            }
+        });
+    }
+
+    @NonNull
+    private Link readPut(@NonNull final Response response)
+            throws IOException, ServerIOException {
         try {
-            response = call(METHOD_PUT, url);
             switch (response.code()) {
                 case 201:
                     final Link done = parseJson(response, Link.class);
@@ -343,8 +699,8 @@ import java.util.regex.Pattern;
                     inProgress.setHttpStatus(Link.HttpStatus.inProgress);
                     return inProgress;
                 default:
-                    throw ErrorHandler.createHttpCodeException(response.code(),
-                            response.body().byteStream());
+                    throw failed(response, ErrorHandler.createHttpCodeException(response.code(),
+                            response.body().byteStream()));
             }
         } finally {
             close(response);
@@ -366,6 +722,12 @@ import java.util.regex.Pattern;
     @NonNull
     private Response call(@NonNull final String method, @NonNull final String url)
             throws IOException {
+        return newCall(method, url)
+                .execute();
+    }
+
+    @NonNull
+    private Call newCall(@NonNull final String method, @NonNull final String url) {
         final RequestBody body = HttpMethod.requiresRequestBody(method)
                 ? RequestBody.create(MediaType.parse("text/plain"), "")
                 : null;
@@ -373,8 +735,46 @@ import java.util.regex.Pattern;
                 .method(method, body)
                 .url(url)
                 .build();
-        return client.newCall(request)
-                .execute();
+        return client.newCall(request);
+    }
+
+    /**
+     * Run the request on the dispatcher of the client, the response is read on its thread
+     */
+    @NonNull
+    private <T> RestFuture<T> enqueue(@NonNull final String method, @NonNull final String url,
+                                      @NonNull final ResponseReader<T> reader) {
+        final RestFuture<T> future = new RestFuture<>();
+        final Call call = newCall(method, url);
+        future.setOnCancel(new Runnable() {
+            @Override
+            public void run() {
+                call.cancel();
+            }
+        });
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(final Request request, final IOException ex) {
+                future.setException(ex);
+            }
+
+            @Override
+            public void onResponse(final Response response) {
+                try {
+                    future.set(reader.read(response));
+                } catch (IOException | ServerIOException | RuntimeException ex) {
+                    future.setException(ex);
+                }
+            }
+        });
+        return future;
+    }
+
+    private interface ResponseReader<T> {
+
+        @NonNull
+        T read(@NonNull Response response)
+                throws IOException, ServerIOException;
     }
 
     @NonNull
@@ -383,8 +783,7 @@ import java.util.regex.Pattern;
         ResponseBody responseBody = null;
         try {
             responseBody = response.body();
-            final Gson gson = new Gson();
-            return gson.fromJson(responseBody.charStream(), classOfT);
+            return JsonConverter.getGson().fromJson(responseBody.charStream(), classOfT);
         } finally {
             if (responseBody != null) {
                 responseBody.close();
@@ -392,6 +791,16 @@ import java.util.regex.Pattern;
         }
     }
 
+    /**
+     * A segment found the file on the server changed since the layout of the download
+     */
+    private static class ContentChangedException extends IOException {
+
+        ContentChangedException(@NonNull final String url, @NonNull final String etag) {
+            super(url + " doesn't match " + etag);
+        }
+    }
+
     private static class ContentRangeResponse {
 
         private final long start, size;
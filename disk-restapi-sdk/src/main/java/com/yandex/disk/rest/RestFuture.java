@@ -0,0 +1,231 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.yandex.disk.rest.exceptions.ServerException;
+import com.yandex.disk.rest.exceptions.ServerIOException;
+import com.yandex.disk.rest.util.Logger;
+import com.yandex.disk.rest.util.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Result of a request of {@link AsyncRestClient}.
+ * <br/>
+ * Callbacks are called once, on the thread which completes the request, usually a thread of the
+ * OkHttp dispatcher. They must not block. A callback added to a completed future is called at once
+ */
+public class RestFuture<T> implements Future<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(RestFuture.class);
+
+    public interface Callback<T> {
+
+        void onSuccess(@Nullable T result);
+
+        /**
+         * @param ex {@link IOException}, {@link ServerException}, {@link CancellationException}
+         *           or another {@link RuntimeException}
+         */
+        void onFailure(@NonNull Exception ex);
+    }
+
+    @NonNull
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    @NonNull
+    private final List<Callback<? super T>> callbacks = new ArrayList<>();
+
+    @Nullable
+    private Runnable onCancel;
+
+    private boolean finished, cancelled;
+
+    @Nullable
+    private T result;
+
+    @Nullable
+    private Exception exception;
+
+    /* package */ RestFuture() {
+    }
+
+    /**
+     * @return future completed with the exception
+     */
+    @NonNull
+    /* package */ static <T> RestFuture<T> failed(@NonNull final Exception ex) {
+        final RestFuture<T> future = new RestFuture<>();
+        future.setException(ex);
+        return future;
+    }
+
+    public void addCallback(@NonNull final Callback<? super T> callback) {
+        synchronized (this) {
+            if (!finished) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        deliver(callback);
+    }
+
+    /**
+     * Wait for the result
+     *
+     * @return the result, the same as of the blocking method of {@link RestClient}
+     * @throws CancellationException if cancelled
+     */
+    @Nullable
+    public T await()
+            throws IOException, ServerException {
+        try {
+            done.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Waiting for a result interrupted");
+        }
+        final Exception ex = getException();
+        if (ex == null) {
+            return result;
+        } else if (ex instanceof IOException) {
+            throw (IOException) ex;
+        } else if (ex instanceof ServerException) {
+            throw (ServerException) ex;
+        } else if (ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        }
+        throw new ServerIOException(ex);
+    }
+
+    /**
+     * Cancel the request. A running transfer stops at the next progress update
+     */
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        if (!finish(null, new CancellationException(), true)) {
+            return false;
+        }
+        final Runnable onCancel;
+        synchronized (this) {
+            onCancel = this.onCancel;
+        }
+        if (onCancel != null) {
+            onCancel.run();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return finished;
+    }
+
+    @Override
+    public T get()
+            throws InterruptedException, ExecutionException {
+        done.await();
+        return report();
+    }
+
+    @Override
+    public T get(final long timeout, @NonNull final TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return report();
+    }
+
+    /* package */ boolean set(@Nullable final T result) {
+        return finish(result, null, false);
+    }
+
+    /* package */ boolean setException(@NonNull final Exception ex) {
+        return finish(null, ex, false);
+    }
+
+    /**
+     * @param onCancel stops the request, run at once if the future is already cancelled
+     */
+    /* package */ void setOnCancel(@NonNull final Runnable onCancel) {
+        synchronized (this) {
+            if (!cancelled) {
+                this.onCancel = onCancel;
+                return;
+            }
+        }
+        onCancel.run();
+    }
+
+    @Nullable
+    private synchronized Exception getException() {
+        return exception;
+    }
+
+    private T report()
+            throws ExecutionException {
+        final Exception ex = getException();
+        if (ex instanceof CancellationException) {
+            throw (CancellationException) ex;
+        } else if (ex != null) {
+            throw new ExecutionException(ex);
+        }
+        return result;
+    }
+
+    private boolean finish(@Nullable final T result, @Nullable final Exception ex, final boolean cancel) {
+        final List<Callback<? super T>> callbacks;
+        synchronized (this) {
+            if (finished) {
+                return false;
+            }
+            this.finished = true;
+            this.cancelled = cancel;
+            this.result = result;
+            this.exception = ex;
+            callbacks = new ArrayList<>(this.callbacks);
+            this.callbacks.clear();
+        }
+        done.countDown();
+        for (final Callback<? super T> callback : callbacks) {
+            deliver(callback);
+        }
+        return true;
+    }
+
+    private void deliver(@NonNull final Callback<? super T> callback) {
+        try {
+            if (exception == null) {
+                callback.onSuccess(result);
+            } else {
+                callback.onFailure(exception);
+            }
+        } catch (RuntimeException ex) {
+            logger.warn("callback", ex);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload or download job for {@link TransferManager}
+ */
+public class Transfer implements ProgressListener {
+
+    public enum Type {
+        upload, download
+    }
+
+    public enum Status {
+        queued, running, done, failed, cancelled
+    }
+
+    /* package */ static final long UNKNOWN_SIZE = Long.MAX_VALUE;
+
+    @NonNull
+    private final Type type;
+
+    @NonNull
+    private final String serverPath;
+
+    @NonNull
+    private final File localFile;
+
+    private final long size;
+
+    private final boolean overwrite;
+
+    @Nullable
+    private final ProgressListener listener;
+
+    @NonNull
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    @Nullable
+    private TransferManager manager;
+
+    @Nullable
+    private TransferJournal.Entry journalEntry;
+
+    private Status status = Status.queued;
+
+    private long loaded = -1, total;
+
+    private volatile boolean cancelled;
+
+    @Nullable
+    private Exception exception;
+
+    private Transfer(@NonNull final Type type, @NonNull final String serverPath, @NonNull final File localFile,
+                     final long size, final boolean overwrite, @Nullable final ProgressListener listener) {
+        this.type = type;
+        this.serverPath = serverPath;
+        this.localFile = localFile;
+        this.size = size;
+        this.overwrite = overwrite;
+        this.listener = listener;
+    }
+
+    /**
+     * @param size expected file size, e.g. {@link com.yandex.disk.rest.json.Resource#getSize()}, or
+     *             a negative value if not known. Smaller files are transferred first
+     */
+    @NonNull
+    public static Transfer download(@NonNull final String path, @NonNull final File saveTo, final long size,
+                                    @Nullable final ProgressListener listener) {
+        return new Transfer(Type.download, path, saveTo, size >= 0 ? size : UNKNOWN_SIZE, false, listener);
+    }
+
+    @NonNull
+    public static Transfer upload(@NonNull final File localSource, @NonNull final String serverPath,
+                                  final boolean overwrite, @Nullable final ProgressListener listener) {
+        return new Transfer(Type.upload, serverPath, localSource, localSource.length(), overwrite, listener);
+    }
+
+    /**
+     * Transfer continuing an unfinished journal entry
+     */
+    @NonNull
+    /* package */ static Transfer recover(@NonNull final TransferJournal.Entry entry) {
+        final Transfer transfer = new Transfer(entry.getType(), entry.getServerPath(), entry.getLocalFile(),
+                entry.getSize(), entry.isOverwrite(), null);
+        transfer.journalEntry = entry;
+        return transfer;
+    }
+
+    @NonNull
+    public Type getType() {
+        return type;
+    }
+
+    @NonNull
+    public String getServerPath() {
+        return serverPath;
+    }
+
+    @NonNull
+    public File getLocalFile() {
+        return localFile;
+    }
+
+    /* package */ long getSize() {
+        return size;
+    }
+
+    /* package */ boolean isOverwrite() {
+        return overwrite;
+    }
+
+    @Nullable
+    /* package */ synchronized TransferJournal.Entry getJournalEntry() {
+        return journalEntry;
+    }
+
+    /* package */ synchronized void setJournalEntry(@NonNull final TransferJournal.Entry journalEntry) {
+        this.journalEntry = journalEntry;
+    }
+
+    @NonNull
+    public synchronized Status getStatus() {
+        return status;
+    }
+
+    public synchronized long getLoaded() {
+        return Math.max(loaded, 0);
+    }
+
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return cause of {@link Status#failed} status
+     */
+    @Nullable
+    public synchronized Exception getException() {
+        return exception;
+    }
+
+    /**
+     * Cancel a queued or running transfer
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Wait for the transfer to become {@link Status#done}, {@link Status#failed} or {@link Status#cancelled}
+     */
+    public void await()
+            throws InterruptedException {
+        finished.await();
+    }
+
+    /**
+     * @return <tt>false</tt> if the transfer is still queued or running after {@code timeout}
+     */
+    public boolean await(final long timeout, @NonNull final TimeUnit unit)
+            throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    @Override
+    public void updateProgress(final long loaded, final long total) {
+        final long loadedDelta, totalDelta;
+        synchronized (this) {
+            // the first report of a resumed transfer starts from the resume position
+            loadedDelta = this.loaded < 0 ? 0 : loaded - this.loaded;
+            totalDelta = total - this.total;
+            this.loaded = loaded;
+            this.total = total;
+        }
+        if (manager != null) {
+            manager.updateProgress(loadedDelta, totalDelta);
+        }
+        if (listener != null) {
+            listener.updateProgress(loaded, total);
+        }
+    }
+
+    @Override
+    public boolean hasCancelled() {
+        return cancelled
+                || (listener != null && listener.hasCancelled())
+                || (manager != null && manager.hasCancelled());
+    }
+
+    /* package */ synchronized void setManager(@NonNull final TransferManager manager) {
+        if (this.manager != null) {
+            throw new IllegalStateException("Transfer already submitted");
+        }
+        this.manager = manager;
+    }
+
+    /**
+     * @return <tt>false</tt> if the transfer was cancelled while queued, it is {@link #finish(Exception)}ed
+     * as cancelled then
+     */
+    /* package */ boolean start() {
+        final boolean cancelled = hasCancelled();
+        synchronized (this) {
+            status = cancelled ? Status.cancelled : Status.running;
+        }
+        return !cancelled;
+    }
+
+    /**
+     * @param ex <tt>null</tt> if the transfer completed, even if it was cancelled too late
+     */
+    /* package */ void finish(@Nullable final Exception ex) {
+        synchronized (this) {
+            if (status == Status.cancelled) {
+                // cancelled while queued
+            } else if (ex != null && hasCancelled()) {
+                status = Status.cancelled;
+            } else if (ex != null) {
+                status = Status.failed;
+                exception = ex;
+            } else {
+                status = Status.done;
+            }
+        }
+        finished.countDown();
+    }
+
+    @Override
+    public String toString() {
+        return "Transfer{" +
+                "type=" + type +
+                ", serverPath='" + serverPath + '\'' +
+                ", localFile=" + localFile +
+                ", status=" + getStatus() +
+                ", loaded=" + getLoaded() +
+                ", total=" + getTotal() +
+                '}';
+    }
+}
@@ -0,0 +1,754 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.yandex.disk.rest.util.HashState;
+import com.yandex.disk.rest.util.Logger;
+import com.yandex.disk.rest.util.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of running {@link Transfer}s, so transfers killed with the process continue
+ * where they stopped: with the same link, the same download segments and the saved hash state.
+ * <br/>
+ * Every change is a small checksummed record appended to the file. Opening the journal reads the
+ * file once and drops a partially written last record. The file is rewritten with only
+ * the unfinished transfers when it is opened with many stale records and when all transfers
+ * have finished.
+ *
+ * @see TransferManager#TransferManager(RestClient, int, int, ProgressListener, TransferJournal)
+ * @see TransferManager#recover()
+ */
+public class TransferJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransferJournal.class);
+
+    private static final int MAGIC = 0x5944544A;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = 8;
+
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    private static final byte BEGIN = 1;
+    private static final byte LINK = 2;
+    private static final byte ETAG = 3;
+    private static final byte SEGMENTS = 4;
+    private static final byte SEGMENT = 5;
+    private static final byte HASH = 6;
+    private static final byte END = 7;
+
+    /**
+     * Segment progress is logged every {@code SEGMENT_RECORD_BYTES} written by a segment
+     */
+    private static final long SEGMENT_RECORD_BYTES = 1024 * 1024;
+
+    @NonNull
+    private final File file;
+
+    @NonNull
+    private final Map<Long, Entry> entries = new LinkedHashMap<>();
+
+    private long nextId = 1;
+
+    private int records;
+
+    @Nullable
+    private FileOutputStream out;
+
+    /**
+     * Open the journal, read all unfinished transfers from {@code file}
+     */
+    public TransferJournal(@NonNull final File file)
+            throws IOException {
+        this.file = file;
+        final long start = System.nanoTime();
+        final boolean clean = load();
+        logger.debug("journal: " + entries.size() + " unfinished of " + records + " records in "
+                + (System.nanoTime() - start) / 1000 + " us");
+        if (!clean || records > 2 * countRecords() + 64) {
+            compact();
+        }
+    }
+
+    /**
+     * @return transfers begun and not finished, in order they were begun
+     */
+    @NonNull
+    public synchronized List<Entry> getUnfinished() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Forget an unfinished transfer
+     */
+    public synchronized void remove(@NonNull final Entry entry)
+            throws IOException {
+        end(entry);
+    }
+
+    /**
+     * Rewrite the file with only unfinished transfers and close it. The journal may still be used
+     */
+    public synchronized void close()
+            throws IOException {
+        compact();
+    }
+
+    @NonNull
+    /* package */ synchronized Entry begin(@NonNull final Transfer transfer)
+            throws IOException {
+        final Entry entry = new Entry(nextId++, transfer.getType(), transfer.getServerPath(),
+                transfer.getLocalFile(), transfer.getSize(), transfer.isOverwrite());
+        entries.put(entry.id, entry);
+        append(entry.id, BEGIN, writeBegin(entry), true);
+        return entry;
+    }
+
+    /**
+     * Replace an expired link. Segments of a download continue from the new link, the local file
+     * is already allocated for them
+     */
+    /* package */ synchronized void setHref(@NonNull final Entry entry, @NonNull final String href)
+            throws IOException {
+        setHref(entry, href, true);
+    }
+
+    private void setHref(@NonNull final Entry entry, @NonNull final String href, final boolean log)
+            throws IOException {
+        entry.href = href;
+        if (entry.segments != null) {
+            entry.segments = entry.segments.withUrl(href);
+        }
+        if (log) {
+            append(entry.id, LINK, writeUTF(href), true);
+        }
+    }
+
+    /**
+     * Forget the transfer. A segmented download stopped with holes in the local file is truncated to
+     * its completely downloaded head, the progress of the other segments is lost with the entry
+     */
+    /* package */ synchronized void end(@NonNull final Entry entry)
+            throws IOException {
+        if (entries.remove(entry.id) == null) {
+            return;
+        }
+        if (entry.segments != null) {
+            truncateToHead(entry.localFile, entry.segments);
+            entry.segments = null;
+        }
+        if (entries.isEmpty()) {
+            compact();
+        } else {
+            append(entry.id, END, new byte[0], true);
+        }
+    }
+
+    private static void truncateToHead(@NonNull final File localFile, @NonNull final DownloadSegments segments) {
+        final long head = segments.getCompletedHead();
+        // a file of another length was written without the segments
+        if (head >= segments.getContentLength() || localFile.length() != segments.getContentLength()) {
+            return;
+        }
+        try {
+            final RandomAccessFile file = new RandomAccessFile(localFile, "rw");
+            try {
+                file.setLength(head);
+            } finally {
+                file.close();
+            }
+        } catch (IOException ex) {
+            logger.warn("journal: can't truncate " + localFile, ex);
+            if (!localFile.delete()) {
+                logger.warn("journal: can't delete " + localFile);
+            }
+        }
+    }
+
+    /**
+     * Listener saving the ETag and the segment progress of a download to the journal
+     */
+    @NonNull
+    /* package */ DownloadListener getDownloadListener(@NonNull final Entry entry,
+                                                      @Nullable final ProgressListener progressListener) {
+        return new JournalDownloadListener(entry, progressListener);
+    }
+
+    /**
+     * Checkpoints saving the hash state of an upload to the journal
+     */
+    @NonNull
+    /* package */ UploadCheckpoints getUploadCheckpoints(@NonNull final Entry entry) {
+        return new JournalUploadCheckpoints(entry);
+    }
+
+    private synchronized void sync() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.getFD().sync();
+        } catch (IOException ex) {
+            logger.warn("journal: " + file, ex);
+            closeOutput();
+        }
+    }
+
+    private synchronized void append(final long id, final byte type, @NonNull final byte[] data, final boolean sync) {
+        if (!entries.containsKey(id) && type != END) {
+            return;
+        }
+        try {
+            if (out == null) {
+                out = new FileOutputStream(file, true);
+            }
+            write(out, id, type, data);
+            if (sync) {
+                out.getFD().sync();
+            }
+            records++;
+        } catch (IOException ex) {
+            logger.warn("journal: " + file, ex);
+            closeOutput();
+        }
+    }
+
+    /**
+     * One write per record, a crash leaves at most the last one incomplete
+     */
+    private static void write(@NonNull final FileOutputStream out, final long id, final byte type,
+                              @NonNull final byte[] data)
+            throws IOException {
+        final byte[] buffer = new byte[data.length + 17];
+        buffer[8] = type;
+        putInt(buffer, 9, (int) (id >>> 32));
+        putInt(buffer, 13, (int) id);
+        System.arraycopy(data, 0, buffer, 17, data.length);
+        final CRC32 crc = new CRC32();
+        crc.update(buffer, 8, buffer.length - 8);
+        putInt(buffer, 0, buffer.length - 8);
+        putInt(buffer, 4, (int) crc.getValue());
+        out.write(buffer);
+    }
+
+    /**
+     * @return <tt>false</tt> if the file is damaged and has to be rewritten
+     */
+    private boolean load()
+            throws IOException {
+        if (file.length() == 0) {
+            return false;
+        }
+        final DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        } catch (FileNotFoundException ex) {
+            return false;
+        }
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.warn("journal: unknown format " + file);
+                return false;
+            }
+            final CRC32 crc = new CRC32();
+            byte[] buffer = new byte[256];
+            while (true) {
+                in.mark(1);
+                if (in.read() == -1) {
+                    return true;
+                }
+                in.reset();
+                final int length = in.readInt();
+                final int checksum = in.readInt();
+                if (length < 9 || length > MAX_RECORD_LENGTH) {
+                    logger.warn("journal: bad record length " + length);
+                    return false;
+                }
+                if (buffer.length < length) {
+                    buffer = new byte[Math.max(length, 2 * buffer.length)];
+                }
+                in.readFully(buffer, 0, length);
+                crc.reset();
+                crc.update(buffer, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    logger.warn("journal: bad record checksum");
+                    return false;
+                }
+                try {
+                    replay(new DataInputStream(new ByteArrayInputStream(buffer, 0, length)));
+                } catch (IOException | RuntimeException ex) {
+                    // written by another version or damaged in a way the checksum missed
+                    logger.warn("journal: bad record dropped with the rest of " + file, ex);
+                    return false;
+                }
+                records++;
+            }
+        } catch (EOFException ex) {
+            logger.warn("journal: partially written record dropped");
+            return false;
+        } finally {
+            in.close();
+        }
+    }
+
+    private void replay(@NonNull final DataInputStream in)
+            throws IOException {
+        final byte type = in.readByte();
+        final long id = in.readLong();
+        nextId = Math.max(nextId, id + 1);
+        if (type == BEGIN) {
+            final Transfer.Type transferType = Transfer.Type.values()[in.readByte()];
+            final String serverPath = in.readUTF();
+            final File localFile = new File(in.readUTF());
+            final long size = in.readLong();
+            final boolean overwrite = in.readBoolean();
+            entries.put(id, new Entry(id, transferType, serverPath, localFile, size, overwrite));
+            return;
+        }
+        final Entry entry = entries.get(id);
+        if (entry == null) {
+            return;
+        }
+        switch (type) {
+            case LINK:
+                setHref(entry, in.readUTF(), false);
+                break;
+            case ETAG:
+                entry.etag = in.readUTF();
+                if (entry.segments != null && !entry.etag.equals(entry.segments.getETag())) {
+                    entry.segments = null;
+                }
+                break;
+            case SEGMENTS:
+                final String url = in.readUTF();
+                final String etag = in.readUTF();
+                entry.segments = DownloadSegments.restore(url, etag.isEmpty() ? null : etag,
+                        in.readLong(), in.readLong());
+                entry.segmentRecorded = new long[entry.segments.getCount()];
+                break;
+            case SEGMENT:
+                final int index = in.readInt();
+                final long loaded = in.readLong();
+                if (entry.segments != null && index >= 0 && index < entry.segments.getCount()) {
+                    entry.segments.setLoaded(index, loaded);
+                    entry.segmentRecorded[index] = entry.segments.getLoaded(index);
+                }
+                break;
+            case HASH:
+                entry.sourceLength = in.readLong();
+                entry.sourceLastModified = in.readLong();
+                final byte[] state = new byte[in.readInt()];
+                in.readFully(state);
+                entry.hashState = state;
+                break;
+            case END:
+                entries.remove(id);
+                break;
+            default:
+                throw new IOException("unknown record type " + type);
+        }
+    }
+
+    private int countRecords() {
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            count += 1 + (entry.href != null ? 1 : 0) + (entry.etag != null ? 1 : 0)
+                    + (entry.hashState != null ? 1 : 0);
+            if (entry.segments != null) {
+                count += 1 + entry.segments.getCount();
+            }
+        }
+        return count;
+    }
+
+    private synchronized void compact()
+            throws IOException {
+        closeOutput();
+        final File tmp = new File(file.getPath() + ".tmp");
+        final FileOutputStream tmpOut = new FileOutputStream(tmp);
+        int count = 0;
+        try {
+            final byte[] header = new byte[HEADER_LENGTH];
+            putInt(header, 0, MAGIC);
+            putInt(header, 4, VERSION);
+            tmpOut.write(header);
+            for (Entry entry : entries.values()) {
+                write(tmpOut, entry.id, BEGIN, writeBegin(entry));
+                count++;
+                if (entry.href != null) {
+                    write(tmpOut, entry.id, LINK, writeUTF(entry.href));
+                    count++;
+                }
+                if (entry.etag != null) {
+                    write(tmpOut, entry.id, ETAG, writeUTF(entry.etag));
+                    count++;
+                }
+                if (entry.segments != null) {
+                    write(tmpOut, entry.id, SEGMENTS, writeSegments(entry.segments));
+                    count++;
+                    for (int i = 0; i < entry.segments.getCount(); i++) {
+                        if (entry.segmentRecorded[i] > 0) {
+                            write(tmpOut, entry.id, SEGMENT, writeSegment(i, entry.segmentRecorded[i]));
+                            count++;
+                        }
+                    }
+                }
+                if (entry.hashState != null) {
+                    write(tmpOut, entry.id, HASH, writeHash(entry));
+                    count++;
+                }
+            }
+            tmpOut.getFD().sync();
+        } finally {
+            tmpOut.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("can't rename " + tmp + " to " + file);
+        }
+        records = count;
+    }
+
+    private void closeOutput() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ex) {
+                // nothing
+            }
+            out = null;
+        }
+    }
+
+    @NonNull
+    private static byte[] writeBegin(@NonNull final Entry entry)
+            throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(entry.type.ordinal());
+        out.writeUTF(entry.serverPath);
+        out.writeUTF(entry.localFile.getAbsolutePath());
+        out.writeLong(entry.size);
+        out.writeBoolean(entry.overwrite);
+        return bytes.toByteArray();
+    }
+
+    @NonNull
+    private static byte[] writeUTF(@NonNull final String value)
+            throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeUTF(value);
+        return bytes.toByteArray();
+    }
+
+    @NonNull
+    private static byte[] writeSegments(@NonNull final DownloadSegments segments)
+            throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(segments.getUrl());
+        out.writeUTF(segments.getETag() != null ? segments.getETag() : "");
+        out.writeLong(segments.getContentLength());
+        out.writeLong(segments.getSegmentSize());
+        return bytes.toByteArray();
+    }
+
+    @NonNull
+    private static byte[] writeSegment(final int index, final long loaded) {
+        final byte[] bytes = new byte[12];
+        putInt(bytes, 0, index);
+        putInt(bytes, 4, (int) (loaded >>> 32));
+        putInt(bytes, 8, (int) loaded);
+        return bytes;
+    }
+
+    @NonNull
+    private static byte[] writeHash(@NonNull final Entry entry)
+            throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(entry.sourceLength);
+        out.writeLong(entry.sourceLastModified);
+        out.writeInt(entry.hashState.length);
+        out.write(entry.hashState);
+        return bytes.toByteArray();
+    }
+
+    private static void putInt(@NonNull final byte[] bytes, final int offset, final int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Unfinished transfer read from the journal
+     */
+    public static class Entry {
+
+        private final long id;
+
+        @NonNull
+        private final Transfer.Type type;
+
+        @NonNull
+        private final String serverPath;
+
+        @NonNull
+        private final File localFile;
+
+        private final long size;
+
+        private final boolean overwrite;
+
+        @Nullable
+        private volatile String href;
+
+        @Nullable
+        private String etag;
+
+        @Nullable
+        private DownloadSegments segments;
+
+        @Nullable
+        private long[] segmentRecorded;
+
+        @Nullable
+        private byte[] hashState;
+
+        private long sourceLength, sourceLastModified;
+
+        private Entry(final long id, @NonNull final Transfer.Type type, @NonNull final String serverPath,
+                      @NonNull final File localFile, final long size, final boolean overwrite) {
+            this.id = id;
+            this.type = type;
+            this.serverPath = serverPath;
+            this.localFile = localFile;
+            this.size = size;
+            this.overwrite = overwrite;
+        }
+
+        @NonNull
+        public Transfer.Type getType() {
+            return type;
+        }
+
+        @NonNull
+        public String getServerPath() {
+            return serverPath;
+        }
+
+        @NonNull
+        public File getLocalFile() {
+            return localFile;
+        }
+
+        /* package */ long getSize() {
+            return size;
+        }
+
+        /* package */ boolean isOverwrite() {
+            return overwrite;
+        }
+
+        /**
+         * @return upload or download link of the transfer, <tt>null</tt> if not requested yet
+         */
+        @Nullable
+        /* package */ String getHref() {
+            return href;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                    "id=" + id +
+                    ", type=" + type +
+                    ", serverPath='" + serverPath + '\'' +
+                    ", localFile=" + localFile +
+                    ", href='" + href + '\'' +
+                    ", segments=" + segments +
+                    '}';
+        }
+    }
+
+    private class JournalDownloadListener extends FileDownloadListener {
+
+        @NonNull
+        private final Entry entry;
+
+        JournalDownloadListener(@NonNull final Entry entry, @Nullable final ProgressListener progressListener) {
+            super(entry.localFile, progressListener);
+            this.entry = entry;
+        }
+
+        @Override
+        public String getETag() {
+            synchronized (TransferJournal.this) {
+                return entry.etag;
+            }
+        }
+
+        @Override
+        public void setETag(final String etag) {
+            if (etag == null) {
+                return;
+            }
+            synchronized (TransferJournal.this) {
+                if (!etag.equals(entry.etag)) {
+                    if (entry.segments != null && !etag.equals(entry.segments.getETag())) {
+                        // segments of another version of the file
+                        entry.segments = null;
+                    }
+                    entry.etag = etag;
+                    try {
+                        append(entry.id, ETAG, writeUTF(etag), true);
+                    } catch (IOException ex) {
+                        // never happen
+                        throw new RuntimeException(ex);
+                    }
+                }
+            }
+        }
+
+        @Nullable
+        @Override
+        /* package */ DownloadSegments getSegments() {
+            synchronized (TransferJournal.this) {
+                if (entry.segments != null && entry.localFile.length() != entry.segments.getContentLength()) {
+                    logger.debug("journal: " + entry.localFile + " changed, download segments dropped");
+                    entry.segments = null;
+                }
+                return entry.segments;
+            }
+        }
+
+        @Override
+        /* package */ boolean setSegments(@NonNull final DownloadSegments segments) {
+            synchronized (TransferJournal.this) {
+                entry.segments = segments;
+                entry.segmentRecorded = new long[segments.getCount()];
+                try {
+                    append(entry.id, SEGMENTS, writeSegments(segments), true);
+                } catch (IOException ex) {
+                    // never happen
+                    throw new RuntimeException(ex);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        /* package */ long getSegmentCheckpointSize() {
+            return SEGMENT_RECORD_BYTES;
+        }
+
+        @Override
+        /* package */ void updateSegment(@NonNull final DownloadSegments segments, final int index) {
+            final long loaded = segments.getLoaded(index);
+            synchronized (TransferJournal.this) {
+                if (entry.segments != segments || entry.segmentRecorded == null
+                        || loaded == entry.segmentRecorded[index]) {
+                    return;
+                }
+                // the data is forced before the record, the journal never claims more than the file has
+                entry.segmentRecorded[index] = loaded;
+                append(entry.id, SEGMENT, writeSegment(index, loaded), true);
+            }
+        }
+
+        @Override
+        /* package */ void stopSegments(@NonNull final DownloadSegments segments) {
+            synchronized (TransferJournal.this) {
+                if (entry.segments != segments || entry.segmentRecorded == null) {
+                    return;
+                }
+                for (int i = 0; i < segments.getCount(); i++) {
+                    final long loaded = segments.getLoaded(i);
+                    if (loaded != entry.segmentRecorded[i]) {
+                        entry.segmentRecorded[i] = loaded;
+                        append(entry.id, SEGMENT, writeSegment(i, loaded), false);
+                    }
+                }
+                sync();
+            }
+        }
+    }
+
+    private class JournalUploadCheckpoints implements UploadCheckpoints {
+
+        @NonNull
+        private final Entry entry;
+
+        JournalUploadCheckpoints(@NonNull final Entry entry) {
+            this.entry = entry;
+        }
+
+        @Nullable
+        @Override
+        public HashState load(@NonNull final File source) {
+            synchronized (TransferJournal.this) {
+                if (entry.hashState == null || entry.sourceLength != source.length()
+                        || entry.sourceLastModified != source.lastModified()) {
+                    return null;
+                }
+                try {
+                    final HashState hashState = HashState.fromByteArray(entry.hashState);
+                    return hashState.getPosition() <= source.length() ? hashState : null;
+                } catch (IOException ex) {
+                    logger.warn("journal: " + entry, ex);
+                    return null;
+                }
+            }
+        }
+
+        @Override
+        public void save(@NonNull final File source, @NonNull final HashState hashState) {
+            synchronized (TransferJournal.this) {
+                try {
+                    entry.hashState = hashState.toByteArray();
+                    entry.sourceLength = source.length();
+                    entry.sourceLastModified = source.lastModified();
+                    append(entry.id, HASH, writeHash(entry), true);
+                } catch (IOException ex) {
+                    logger.warn("journal: " + entry, ex);
+                }
+            }
+        }
+
+        @Override
+        public void remove(@NonNull final File source) {
+            synchronized (TransferJournal.this) {
+                entry.hashState = null;
+            }
+        }
+    }
+}
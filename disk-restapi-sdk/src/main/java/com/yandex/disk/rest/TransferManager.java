@@ -0,0 +1,466 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.yandex.disk.rest.exceptions.ServerException;
+import com.yandex.disk.rest.exceptions.http.HttpCodeException;
+import com.yandex.disk.rest.tracing.TraceScope;
+import com.yandex.disk.rest.util.Logger;
+import com.yandex.disk.rest.util.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs batches of {@link Transfer}s on a bounded pool of threads.
+ * <br/>
+ * Queued transfers start smallest first, so a few large files don't hold back many small ones.
+ * Every transfer reports its own progress to its listener, the sum over all submitted transfers
+ * is reported to the listener of the manager.
+ * <br/>
+ * With a {@link TransferJournal} the state of running transfers is saved, transfers interrupted
+ * by a network error or by the end of the process are continued by {@link #recover()}
+ */
+public class TransferManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransferManager.class);
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    @NonNull
+    private final RestClient client;
+
+    private final int maxTransfersPerHost;
+
+    @Nullable
+    private final ProgressListener listener;
+
+    @Nullable
+    private final TransferJournal journal;
+
+    @NonNull
+    private final ThreadPoolExecutor executor;
+
+    @NonNull
+    private final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    /**
+     * Host of the last link of every transfer type
+     */
+    @NonNull
+    private final ConcurrentMap<Transfer.Type, String> hosts = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong loaded = new AtomicLong();
+
+    private final AtomicLong total = new AtomicLong();
+
+    private final AtomicLong transferred = new AtomicLong();
+
+    private final AtomicLong startTime = new AtomicLong();
+
+    private volatile boolean cancelled;
+
+    /**
+     * @param maxTransfers        transfers running at the same time
+     * @param maxTransfersPerHost transfers running at the same time against one upload or download host
+     * @param listener            progress of all submitted transfers, cancels all of them
+     */
+    public TransferManager(@NonNull final RestClient client, final int maxTransfers, final int maxTransfersPerHost,
+                           @Nullable final ProgressListener listener) {
+        this(client, maxTransfers, maxTransfersPerHost, listener, null);
+    }
+
+    /**
+     * @param journal saves the state of running transfers
+     */
+    public TransferManager(@NonNull final RestClient client, final int maxTransfers, final int maxTransfersPerHost,
+                           @Nullable final ProgressListener listener, @Nullable final TransferJournal journal) {
+        if (maxTransfers < 1 || maxTransfersPerHost < 1) {
+            throw new IllegalArgumentException("maxTransfers=" + maxTransfers
+                    + " maxTransfersPerHost=" + maxTransfersPerHost);
+        }
+        this.client = client;
+        this.maxTransfersPerHost = maxTransfersPerHost;
+        this.listener = listener;
+        this.journal = journal;
+        this.executor = new ThreadPoolExecutor(maxTransfers, maxTransfers, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public void submit(@NonNull final Transfer transfer) {
+        transfer.setManager(this);
+        executor.execute(new Task(transfer, sequence.getAndIncrement()));
+    }
+
+    public void submit(@NonNull final Collection<Transfer> batch) {
+        for (Transfer transfer : batch) {
+            submit(transfer);
+        }
+    }
+
+    /**
+     * Submit all unfinished transfers of the journal
+     *
+     * @return submitted transfers, empty if the manager has no journal
+     */
+    @NonNull
+    public List<Transfer> recover() {
+        final List<Transfer> batch = new ArrayList<>();
+        if (journal != null) {
+            for (TransferJournal.Entry entry : journal.getUnfinished()) {
+                batch.add(Transfer.recover(entry));
+            }
+            submit(batch);
+        }
+        return batch;
+    }
+
+    /**
+     * Wait for every transfer of {@code batch} to finish
+     */
+    public void await(@NonNull final Collection<Transfer> batch)
+            throws InterruptedException {
+        for (Transfer transfer : batch) {
+            transfer.await();
+        }
+    }
+
+    /**
+     * Cancel all queued and running transfers
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Stop accepting transfers. Queued transfers are still run
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Bytes sent and received by all transfers, resumed parts of files not counted
+     */
+    public long getBytesTransferred() {
+        return transferred.get();
+    }
+
+    /**
+     * Average bytes per second since the first transfer started
+     */
+    public long getThroughput() {
+        final long start = startTime.get();
+        if (start == 0) {
+            return 0;
+        }
+        final long millis = Math.max(1, System.currentTimeMillis() - start);
+        return transferred.get() * 1000 / millis;
+    }
+
+    /* package */ void updateProgress(final long loadedDelta, final long totalDelta) {
+        transferred.addAndGet(loadedDelta);
+        final long allLoaded = loaded.addAndGet(loadedDelta);
+        final long allTotal = total.addAndGet(totalDelta);
+        if (listener != null) {
+            synchronized (listener) {
+                listener.updateProgress(allLoaded, allTotal);
+            }
+        }
+    }
+
+    /* package */ boolean hasCancelled() {
+        return cancelled || (listener != null && listener.hasCancelled());
+    }
+
+    private void run(@NonNull final Transfer transfer) {
+        if (!transfer.start()) {
+            endJournal(transfer);
+            transfer.finish(null);
+            return;
+        }
+        startTime.compareAndSet(0, System.currentTimeMillis());
+        final TraceScope scope = TraceScope.begin(client.getTracer());
+        try {
+            if (journal != null && transfer.getJournalEntry() == null) {
+                transfer.setJournalEntry(journal.begin(transfer));
+            }
+            final TransferJournal.Entry entry = transfer.getJournalEntry();
+            switch (transfer.getType()) {
+                case download:
+                    download(transfer, entry);
+                    break;
+                case upload:
+                    upload(transfer, entry);
+                    break;
+            }
+            // the journal is up to date when the transfer is awaited
+            endJournal(transfer);
+            transfer.finish(null);
+        } catch (IOException | ServerException | RuntimeException ex) {
+            logger.debug("transfer: " + transfer, ex);
+            if (!isTransient(ex) || transfer.hasCancelled()) {
+                // network errors and overloaded servers are left in the journal to be recovered
+                endJournal(transfer);
+            }
+            transfer.finish(ex);
+        } finally {
+            scope.end();
+        }
+    }
+
+    private void download(@NonNull final Transfer transfer, @Nullable final TransferJournal.Entry entry)
+            throws IOException, ServerException {
+        if (!download(transfer, entry, entry != null ? entry.getHref() : null, true)) {
+            download(transfer, entry, null, false);
+        }
+    }
+
+    /**
+     * @param href  journaled link, <tt>null</tt> to request a new one
+     * @param retry the link may be requested again if it expired
+     * @return <tt>false</tt> if the link expired and has to be requested again
+     */
+    private boolean download(@NonNull final Transfer transfer, @Nullable final TransferJournal.Entry entry,
+                             @Nullable final String href, final boolean retry)
+            throws IOException, ServerException {
+        final String url = acquireHost(transfer, entry, href);
+        try {
+            client.downloadUrl(url, transfer.getLocalFile(), journal != null && entry != null
+                    ? journal.getDownloadListener(entry, transfer)
+                    : new FileDownloadListener(transfer.getLocalFile(), transfer));
+            return true;
+        } catch (HttpCodeException ex) {
+            final String key = DownloadLinkCache.getKey(transfer.getServerPath());
+            final boolean cached = client.invalidateDownloadLink(key, url, ex);
+            if (!retry || !(url.equals(href) || cached) || !isExpired(ex)) {
+                throw ex;
+            }
+            logger.debug("transfer: link expired " + url);
+            return false;
+        } finally {
+            releaseHost(url);
+        }
+    }
+
+    @NonNull
+    private String getDownloadHref(@NonNull final Transfer transfer, @Nullable final TransferJournal.Entry entry)
+            throws IOException, ServerException {
+        final String href = client.getDownloadLink(transfer.getServerPath()).getHref();
+        if (journal != null && entry != null) {
+            journal.setHref(entry, href);
+        }
+        return href;
+    }
+
+    private void upload(@NonNull final Transfer transfer, @Nullable final TransferJournal.Entry entry)
+            throws IOException, ServerException {
+        final String href = entry != null ? entry.getHref() : null;
+        if (href == null || !upload(transfer, entry, href)) {
+            upload(transfer, entry, null);
+        }
+    }
+
+    /**
+     * @param href journaled link to resume, <tt>null</tt> to request a new one
+     * @return <tt>false</tt> if the journaled link expired
+     */
+    private boolean upload(@NonNull final Transfer transfer, @Nullable final TransferJournal.Entry entry,
+                           @Nullable final String href)
+            throws IOException, ServerException {
+        final UploadCheckpoints checkpoints = journal != null && entry != null
+                ? journal.getUploadCheckpoints(entry)
+                : null;
+        final String url = acquireHost(transfer, entry, href);
+        final boolean resume = url.equals(href);
+        try {
+            client.uploadFile(url, resume, transfer.getLocalFile(), checkpoints, transfer);
+            return true;
+        } catch (HttpCodeException ex) {
+            if (!resume || !isExpired(ex)) {
+                throw ex;
+            }
+            logger.debug("transfer: link expired " + url);
+            return false;
+        } finally {
+            client.invalidateDownloadLinks(transfer.getServerPath());
+            releaseHost(url);
+        }
+    }
+
+    @NonNull
+    private String getUploadHref(@NonNull final Transfer transfer, @Nullable final TransferJournal.Entry entry)
+            throws IOException, ServerException {
+        final String href = client.getUploadLink(transfer.getServerPath(), transfer.isOverwrite()).getHref();
+        if (journal != null && entry != null) {
+            journal.setHref(entry, href);
+        }
+        return href;
+    }
+
+    private static boolean isTransient(@NonNull final Exception ex) {
+        if (ex instanceof IOException) {
+            return true;
+        }
+        if (!(ex instanceof HttpCodeException)) {
+            return false;
+        }
+        final int code = ((HttpCodeException) ex).getCode();
+        return code == 429 || code == 500 || code == 502 || code == 503 || code == 504;
+    }
+
+    private static boolean isExpired(@NonNull final HttpCodeException ex) {
+        final int code = ex.getCode();
+        return code == 403 || code == 404 || code == 410;
+    }
+
+    private void endJournal(@NonNull final Transfer transfer) {
+        final TransferJournal.Entry entry = transfer.getJournalEntry();
+        if (journal != null && entry != null) {
+            try {
+                journal.end(entry);
+            } catch (IOException ex) {
+                logger.warn("journal: " + entry, ex);
+            }
+        }
+    }
+
+    /**
+     * Take a place on the host of the transfer link before the link is requested, so links don't
+     * expire while waiting for the host. The host of a new link is expected to be the host of
+     * the previous link of the same type, if it is not the link is requested again after the wait
+     *
+     * @param href journaled link, <tt>null</tt> to request a new one
+     * @return link to transfer, release with {@link #releaseHost(String)}
+     */
+    @NonNull
+    private String acquireHost(@NonNull final Transfer transfer, @Nullable final TransferJournal.Entry entry,
+                               @Nullable String href)
+            throws IOException, ServerException {
+        String host = href != null ? getHost(href) : hosts.get(transfer.getType());
+        while (true) {
+            acquirePermit(host);
+            try {
+                if (href == null) {
+                    href = transfer.getType() == Transfer.Type.download
+                            ? getDownloadHref(transfer, entry)
+                            : getUploadHref(transfer, entry);
+                }
+            } catch (IOException | ServerException | RuntimeException ex) {
+                releasePermit(host);
+                throw ex;
+            }
+            final String linkHost = getHost(href);
+            if (linkHost == null || linkHost.equals(host)) {
+                if (linkHost == null) {
+                    releasePermit(host);
+                }
+                return href;
+            }
+            hosts.put(transfer.getType(), linkHost);
+            releasePermit(host);
+            final Semaphore permits = getHostPermits(linkHost);
+            if (permits.tryAcquire()) {
+                return href;
+            }
+            logger.debug("transfer: waiting for " + linkHost + ", link " + href + " dropped");
+            host = linkHost;
+            href = null;
+        }
+    }
+
+    private void releaseHost(@NonNull final String url) {
+        releasePermit(getHost(url));
+    }
+
+    private void acquirePermit(@Nullable final String host)
+            throws InterruptedIOException {
+        if (host == null) {
+            return;
+        }
+        try {
+            getHostPermits(host).acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Waiting for " + host + " interrupted");
+        }
+    }
+
+    private void releasePermit(@Nullable final String host) {
+        if (host != null) {
+            getHostPermits(host).release();
+        }
+    }
+
+    @Nullable
+    private static String getHost(@NonNull final String url) {
+        try {
+            return new URL(url).getHost();
+        } catch (MalformedURLException ex) {
+            return null;
+        }
+    }
+
+    @NonNull
+    private Semaphore getHostPermits(@NonNull final String host) {
+        Semaphore permits = hostPermits.get(host);
+        if (permits == null) {
+            final Semaphore created = new Semaphore(maxTransfersPerHost);
+            permits = hostPermits.putIfAbsent(host, created);
+            if (permits == null) {
+                permits = created;
+            }
+        }
+        return permits;
+    }
+
+    private class Task implements Runnable, Comparable<Task> {
+
+        @NonNull
+        private final Transfer transfer;
+
+        private final long sequence;
+
+        Task(@NonNull final Transfer transfer, final long sequence) {
+            this.transfer = transfer;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            TransferManager.this.run(transfer);
+        }
+
+        @Override
+        public int compareTo(@NonNull final Task another) {
+            if (transfer.getSize() != another.transfer.getSize()) {
+                return transfer.getSize() < another.transfer.getSize() ? -1 : 1;
+            }
+            return sequence < another.sequence ? -1 : (sequence == another.sequence ? 0 : 1);
+        }
+    }
+}
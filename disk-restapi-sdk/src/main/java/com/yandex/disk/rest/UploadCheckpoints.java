@@ -0,0 +1,37 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.yandex.disk.rest.util.HashState;
+
+import java.io.File;
+
+/**
+ * Hash state of interrupted uploads.
+ * <br/>
+ * A checkpoint is valid while the source keeps its path, length and modification time
+ */
+/* package */ interface UploadCheckpoints {
+
+    /**
+     * @return saved state or <tt>null</tt> if there is no valid checkpoint for {@code source}
+     */
+    @Nullable
+    HashState load(@NonNull File source);
+
+    /**
+     * Failures are logged, a lost checkpoint only costs hashing the file again
+     */
+    void save(@NonNull File source, @NonNull HashState hashState);
+
+    void remove(@NonNull File source);
+}
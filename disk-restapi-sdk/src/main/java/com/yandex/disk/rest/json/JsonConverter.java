@@ -0,0 +1,500 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.json;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared {@link Gson} for all API responses.
+ * <br/>
+ * The models are read and written by hand-written type adapters instead of reflection. Names
+ * are the same as in the {@link com.google.gson.annotations.SerializedName} annotations of the models,
+ * unknown names are skipped
+ */
+public class JsonConverter {
+
+    @NonNull
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapterFactory(new AdapterFactory())
+            .create();
+
+    private JsonConverter() {
+    }
+
+    /**
+     * @return thread safe instance, Retrofit and the raw OkHttp calls of the library use it too
+     */
+    @NonNull
+    public static Gson getGson() {
+        return GSON;
+    }
+
+    @Nullable
+    private static String readString(@NonNull final JsonReader in)
+            throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static boolean isNull(@NonNull final JsonReader in)
+            throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    private static class AdapterFactory implements TypeAdapterFactory {
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> TypeAdapter<T> create(final Gson gson, final TypeToken<T> type) {
+            final Class<? super T> rawType = type.getRawType();
+            final TypeAdapter<?> adapter;
+            if (rawType == Resource.class) {
+                adapter = new ResourceAdapter(gson.getAdapter(Object.class));
+            } else if (rawType == ResourceList.class) {
+                adapter = new ResourceListAdapter(gson.getAdapter(Resource.class));
+            } else if (rawType == Link.class) {
+                adapter = new LinkAdapter();
+            } else if (rawType == Operation.class) {
+                adapter = new OperationAdapter();
+            } else if (rawType == DiskInfo.class) {
+                adapter = new DiskInfoAdapter();
+            } else if (rawType == ApiError.class) {
+                adapter = new ApiErrorAdapter();
+            } else if (rawType == ApiVersion.class) {
+                adapter = new ApiVersionAdapter();
+            } else {
+                return null;
+            }
+            return (TypeAdapter<T>) adapter.nullSafe();
+        }
+    }
+
+    private static class ResourceAdapter extends TypeAdapter<Resource> {
+
+        @NonNull
+        private final TypeAdapter<Object> objectAdapter;
+
+        @Nullable
+        private TypeAdapter<ResourceList> listAdapter;
+
+        ResourceAdapter(@NonNull final TypeAdapter<Object> objectAdapter) {
+            this.objectAdapter = objectAdapter;
+        }
+
+        @Override
+        public Resource read(final JsonReader in)
+                throws IOException {
+            final Resource resource = new Resource();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "public_key":
+                        resource.publicKey = readString(in);
+                        break;
+                    case "_embedded":
+                        resource.resourceList = getListAdapter().read(in);
+                        break;
+                    case "name":
+                        resource.name = readString(in);
+                        break;
+                    case "created":
+                        resource.created = readString(in);
+                        break;
+                    case "public_url":
+                        resource.publicUrl = readString(in);
+                        break;
+                    case "origin_path":
+                        resource.originPath = readString(in);
+                        break;
+                    case "modified":
+                        resource.modified = readString(in);
+                        break;
+                    case "deleted":
+                        resource.deleted = readString(in);
+                        break;
+                    case "path":
+                        resource.path = readString(in);
+                        break;
+                    case "md5":
+                        resource.md5 = readString(in);
+                        break;
+                    case "type":
+                        resource.type = readString(in);
+                        break;
+                    case "mime_type":
+                        resource.mimeType = readString(in);
+                        break;
+                    case "media_type":
+                        resource.mediaType = readString(in);
+                        break;
+                    case "preview":
+                        resource.preview = readString(in);
+                        break;
+                    case "size":
+                        if (!isNull(in)) {
+                            resource.size = in.nextLong();
+                        }
+                        break;
+                    case "custom_properties":
+                        resource.properties = objectAdapter.read(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return resource;
+        }
+
+        @Override
+        public void write(final JsonWriter out, final Resource resource)
+                throws IOException {
+            out.beginObject();
+            out.name("public_key").value(resource.publicKey);
+            if (resource.resourceList != null) {
+                out.name("_embedded");
+                getListAdapter().write(out, resource.resourceList);
+            }
+            out.name("name").value(resource.name);
+            out.name("created").value(resource.created);
+            out.name("public_url").value(resource.publicUrl);
+            out.name("origin_path").value(resource.originPath);
+            out.name("modified").value(resource.modified);
+            out.name("deleted").value(resource.deleted);
+            out.name("path").value(resource.path);
+            out.name("md5").value(resource.md5);
+            out.name("type").value(resource.type);
+            out.name("mime_type").value(resource.mimeType);
+            out.name("media_type").value(resource.mediaType);
+            out.name("preview").value(resource.preview);
+            out.name("size").value(resource.size);
+            if (resource.properties != null) {
+                out.name("custom_properties");
+                objectAdapter.write(out, resource.properties);
+            }
+            out.endObject();
+        }
+
+        /**
+         * Resources and lists refer to each other, the list adapter is made on first use
+         */
+        @NonNull
+        private TypeAdapter<ResourceList> getListAdapter() {
+            if (listAdapter == null) {
+                listAdapter = new ResourceListAdapter(this).nullSafe();
+            }
+            return listAdapter;
+        }
+    }
+
+    private static class ResourceListAdapter extends TypeAdapter<ResourceList> {
+
+        @NonNull
+        private final TypeAdapter<Resource> resourceAdapter;
+
+        ResourceListAdapter(@NonNull final TypeAdapter<Resource> resourceAdapter) {
+            this.resourceAdapter = resourceAdapter;
+        }
+
+        @Override
+        public ResourceList read(final JsonReader in)
+                throws IOException {
+            final ResourceList list = new ResourceList();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "sort":
+                        list.sort = readString(in);
+                        break;
+                    case "public_key":
+                        list.publicKey = readString(in);
+                        break;
+                    case "items":
+                        if (!isNull(in)) {
+                            final List<Resource> items = new ArrayList<>();
+                            in.beginArray();
+                            while (in.hasNext()) {
+                                items.add(resourceAdapter.read(in));
+                            }
+                            in.endArray();
+                            list.items = items;
+                        }
+                        break;
+                    case "path":
+                        list.path = readString(in);
+                        break;
+                    case "limit":
+                        if (!isNull(in)) {
+                            list.limit = in.nextInt();
+                        }
+                        break;
+                    case "offset":
+                        if (!isNull(in)) {
+                            list.offset = in.nextInt();
+                        }
+                        break;
+                    case "total":
+                        if (!isNull(in)) {
+                            list.total = in.nextInt();
+                        }
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return list;
+        }
+
+        @Override
+        public void write(final JsonWriter out, final ResourceList list)
+                throws IOException {
+            out.beginObject();
+            out.name("sort").value(list.sort);
+            out.name("public_key").value(list.publicKey);
+            if (list.items != null) {
+                out.name("items");
+                out.beginArray();
+                for (Resource item : list.items) {
+                    resourceAdapter.write(out, item);
+                }
+                out.endArray();
+            }
+            out.name("path").value(list.path);
+            out.name("limit").value(list.limit);
+            out.name("offset").value(list.offset);
+            out.name("total").value(list.total);
+            out.endObject();
+        }
+    }
+
+    private static class LinkAdapter extends TypeAdapter<Link> {
+
+        @Override
+        public Link read(final JsonReader in)
+                throws IOException {
+            final Link link = new Link();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "href":
+                        link.href = readString(in);
+                        break;
+                    case "method":
+                        link.method = readString(in);
+                        break;
+                    case "templated":
+                        if (!isNull(in)) {
+                            link.templated = in.nextBoolean();
+                        }
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return link;
+        }
+
+        @Override
+        public void write(final JsonWriter out, final Link link)
+                throws IOException {
+            out.beginObject();
+            out.name("href").value(link.href);
+            out.name("method").value(link.method);
+            out.name("templated").value(link.templated);
+            out.endObject();
+        }
+    }
+
+    private static class OperationAdapter extends TypeAdapter<Operation> {
+
+        @Override
+        public Operation read(final JsonReader in)
+                throws IOException {
+            final Operation operation = new Operation();
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("status".equals(in.nextName())) {
+                    operation.status = readString(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return operation;
+        }
+
+        @Override
+        public void write(final JsonWriter out, final Operation operation)
+                throws IOException {
+            out.beginObject();
+            out.name("status").value(operation.status);
+            out.endObject();
+        }
+    }
+
+    private static class DiskInfoAdapter extends TypeAdapter<DiskInfo> {
+
+        @Override
+        public DiskInfo read(final JsonReader in)
+                throws IOException {
+            final DiskInfo diskInfo = new DiskInfo();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "trash_size":
+                        if (!isNull(in)) {
+                            diskInfo.trashSize = in.nextLong();
+                        }
+                        break;
+                    case "total_space":
+                        if (!isNull(in)) {
+                            diskInfo.totalSpace = in.nextLong();
+                        }
+                        break;
+                    case "used_space":
+                        if (!isNull(in)) {
+                            diskInfo.usedSpace = in.nextLong();
+                        }
+                        break;
+                    case "system_folders":
+                        if (!isNull(in)) {
+                            final Map<String, String> folders = new LinkedHashMap<>();
+                            in.beginObject();
+                            while (in.hasNext()) {
+                                final String name = in.nextName();
+                                folders.put(name, readString(in));
+                            }
+                            in.endObject();
+                            diskInfo.systemFolders = folders;
+                        }
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return diskInfo;
+        }
+
+        @Override
+        public void write(final JsonWriter out, final DiskInfo diskInfo)
+                throws IOException {
+            out.beginObject();
+            out.name("trash_size").value(diskInfo.trashSize);
+            out.name("total_space").value(diskInfo.totalSpace);
+            out.name("used_space").value(diskInfo.usedSpace);
+            if (diskInfo.systemFolders != null) {
+                out.name("system_folders");
+                out.beginObject();
+                for (Map.Entry<String, String> entry : diskInfo.systemFolders.entrySet()) {
+                    out.name(entry.getKey()).value(entry.getValue());
+                }
+                out.endObject();
+            }
+            out.endObject();
+        }
+    }
+
+    private static class ApiErrorAdapter extends TypeAdapter<ApiError> {
+
+        @Override
+        public ApiError read(final JsonReader in)
+                throws IOException {
+            final ApiError apiError = new ApiError();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "description":
+                        apiError.description = readString(in);
+                        break;
+                    case "error":
+                        apiError.error = readString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return apiError;
+        }
+
+        @Override
+        public void write(final JsonWriter out, final ApiError apiError)
+                throws IOException {
+            out.beginObject();
+            out.name("description").value(apiError.description);
+            out.name("error").value(apiError.error);
+            out.endObject();
+        }
+    }
+
+    private static class ApiVersionAdapter extends TypeAdapter<ApiVersion> {
+
+        @Override
+        public ApiVersion read(final JsonReader in)
+                throws IOException {
+            final ApiVersion apiVersion = new ApiVersion();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "build":
+                        apiVersion.build = readString(in);
+                        break;
+                    case "api_version":
+                        apiVersion.apiVersion = readString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return apiVersion;
+        }
+
+        @Override
+        public void write(final JsonWriter out, final ApiVersion apiVersion)
+                throws IOException {
+            out.beginObject();
+            out.name("build").value(apiVersion.build);
+            out.name("api_version").value(apiVersion.apiVersion);
+            out.endObject();
+        }
+    }
+}
@@ -12,6 +12,7 @@ import com.google.gson.annotations.SerializedName;
 import com.yandex.disk.rest.util.ISO8601;
 import com.yandex.disk.rest.util.ResourcePath;
 
+import java.text.ParseException;
 import java.util.Date;
 
 /**
@@ -20,6 +21,10 @@ import java.util.Date;
  */
 public class Resource {
 
+    private static final long NOT_PARSED = Long.MIN_VALUE;
+
+    /* package */ static final long NO_DATE = Long.MAX_VALUE;
+
     @SerializedName("public_key")
     String publicKey;
 
@@ -68,6 +73,14 @@ public class Resource {
     @SerializedName("custom_properties")
     Object properties;
 
+    /**
+     * Parsed values, set on first use
+     */
+    /* package */ transient volatile long createdMillis = NOT_PARSED, modifiedMillis = NOT_PARSED,
+            deletedMillis = NOT_PARSED;
+
+    /* package */ transient volatile ResourcePath resourcePath;
+
     public String getPublicKey() {
         return publicKey;
     }
@@ -81,7 +94,14 @@ public class Resource {
     }
 
     public Date getCreated() {
-        return created != null ? ISO8601.parse(created) : null;
+        return toDate(createdMillis());
+    }
+
+    /**
+     * @return milliseconds since the epoch, 0 if not set or not valid
+     */
+    public long getCreatedMillis() {
+        return toMillis(createdMillis());
     }
 
     public String getPublicUrl() {
@@ -93,15 +113,33 @@ public class Resource {
     }
 
     public Date getModified() {
-        return modified != null ? ISO8601.parse(modified) : null;
+        return toDate(modifiedMillis());
+    }
+
+    /**
+     * @return milliseconds since the epoch, 0 if not set or not valid
+     */
+    public long getModifiedMillis() {
+        return toMillis(modifiedMillis());
     }
 
     public Date getDeleted() {
-        return deleted != null ? ISO8601.parse(deleted) : null;
+        return toDate(deletedMillis());
+    }
+
+    /**
+     * @return milliseconds since the epoch, 0 if not set or not valid
+     */
+    public long getDeletedMillis() {
+        return toMillis(deletedMillis());
     }
 
     public ResourcePath getPath() {
-        return path != null ? new ResourcePath(path) : null;
+        ResourcePath resourcePath = this.resourcePath;
+        if (resourcePath == null && path != null) {
+            this.resourcePath = resourcePath = new ResourcePath(path);
+        }
+        return resourcePath;
     }
 
     public String getMd5() {
@@ -136,6 +174,49 @@ public class Resource {
         return properties;
     }
 
+    /* package */ long createdMillis() {
+        long millis = createdMillis;
+        if (millis == NOT_PARSED) {
+            createdMillis = millis = parseMillis(created);
+        }
+        return millis;
+    }
+
+    /* package */ long modifiedMillis() {
+        long millis = modifiedMillis;
+        if (millis == NOT_PARSED) {
+            modifiedMillis = millis = parseMillis(modified);
+        }
+        return millis;
+    }
+
+    /* package */ long deletedMillis() {
+        long millis = deletedMillis;
+        if (millis == NOT_PARSED) {
+            deletedMillis = millis = parseMillis(deleted);
+        }
+        return millis;
+    }
+
+    private static long parseMillis(final String date) {
+        if (date == null) {
+            return NO_DATE;
+        }
+        try {
+            return ISO8601.parseMillis(date);
+        } catch (ParseException ex) {
+            return NO_DATE;
+        }
+    }
+
+    private static Date toDate(final long millis) {
+        return millis != NO_DATE ? new Date(millis) : null;
+    }
+
+    private static long toMillis(final long millis) {
+        return millis != NO_DATE ? millis : 0;
+    }
+
     @Override
     public String toString() {
         return "Resource{" +
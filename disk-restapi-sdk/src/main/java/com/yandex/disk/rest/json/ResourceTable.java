@@ -0,0 +1,355 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.json;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact store for a large number of resources, for example a listing of the whole disk.
+ * <br/>
+ * Values are kept in columns: types, mime and media types and parent folders are stored once
+ * and referred to by number, dates and sizes are kept as <tt>long</tt>, md5 as 16 bytes.
+ * Resources are read back through views, a view can be reused for every row.
+ * <br/>
+ * Embedded resource lists are not stored. Views have no date strings, dates are available
+ * through the getters only. Not thread safe
+ */
+public class ResourceTable {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static final int MD5_BYTES = 16;
+
+    private static final char PATH_SEPARATOR = '/';
+
+    private static final int NO_PATH = -1, NO_FOLDER = -2;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @NonNull
+    private final Dictionary values = new Dictionary();
+
+    @NonNull
+    private final Dictionary folders = new Dictionary();
+
+    @NonNull
+    private final BitSet md5Set = new BitSet();
+
+    /**
+     * Md5 values which are not 32 lowercase hex digits
+     */
+    @NonNull
+    private final Map<Integer, String> otherMd5 = new HashMap<>();
+
+    private int count;
+
+    private String[] names, pathTails, publicKeys, publicUrls, originPaths, previews;
+
+    private int[] parents, types, mimeTypes, mediaTypes;
+
+    private long[] sizes, created, modified, deleted;
+
+    private byte[] md5s;
+
+    private Object[] properties;
+
+    public ResourceTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ResourceTable(final int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity=" + initialCapacity);
+        }
+        resize(initialCapacity);
+    }
+
+    /**
+     * @return row of the added resource
+     */
+    public int add(@NonNull final Resource resource) {
+        if (count == names.length) {
+            resize(Math.max(DEFAULT_CAPACITY, count + (count >> 1)));
+        }
+        final int row = count++;
+        names[row] = resource.name;
+        setPath(row, resource.path, resource.name);
+        types[row] = values.getId(resource.type);
+        mimeTypes[row] = values.getId(resource.mimeType);
+        mediaTypes[row] = values.getId(resource.mediaType);
+        setMd5(row, resource.md5);
+        sizes[row] = resource.size;
+        created[row] = resource.createdMillis();
+        modified[row] = resource.modifiedMillis();
+        deleted[row] = resource.deletedMillis();
+        publicKeys[row] = resource.publicKey;
+        publicUrls[row] = resource.publicUrl;
+        originPaths[row] = resource.originPath;
+        previews[row] = resource.preview;
+        properties[row] = resource.properties;
+        return row;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Free the unused capacity
+     */
+    public void trimToSize() {
+        if (count < names.length) {
+            resize(count);
+        }
+    }
+
+    /**
+     * @return new view of the row
+     */
+    @NonNull
+    public Resource get(final int row) {
+        return get(row, new Resource());
+    }
+
+    /**
+     * Fill the view with the row. All fields of the view are replaced
+     *
+     * @return the view
+     */
+    @NonNull
+    public Resource get(final int row, @NonNull final Resource view) {
+        checkRow(row);
+        view.publicKey = publicKeys[row];
+        view.resourceList = null;
+        view.name = names[row];
+        view.created = null;
+        view.publicUrl = publicUrls[row];
+        view.originPath = originPaths[row];
+        view.modified = null;
+        view.deleted = null;
+        view.path = getPath(row);
+        view.md5 = getMd5(row);
+        view.type = values.get(types[row]);
+        view.mimeType = values.get(mimeTypes[row]);
+        view.mediaType = values.get(mediaTypes[row]);
+        view.preview = previews[row];
+        view.size = sizes[row];
+        view.properties = properties[row];
+        view.createdMillis = created[row];
+        view.modifiedMillis = modified[row];
+        view.deletedMillis = deleted[row];
+        view.resourcePath = null;
+        return view;
+    }
+
+    @Nullable
+    public String getName(final int row) {
+        checkRow(row);
+        return names[row];
+    }
+
+    @Nullable
+    public String getPath(final int row) {
+        checkRow(row);
+        final int parent = parents[row];
+        if (parent == NO_PATH) {
+            return null;
+        }
+        final String tail = pathTails[row] != null ? pathTails[row] : names[row];
+        return parent != NO_FOLDER ? folders.get(parent) + PATH_SEPARATOR + tail : tail;
+    }
+
+    @Nullable
+    public String getType(final int row) {
+        checkRow(row);
+        return values.get(types[row]);
+    }
+
+    public boolean isDir(final int row) {
+        return "dir".equalsIgnoreCase(getType(row));
+    }
+
+    @Nullable
+    public String getMimeType(final int row) {
+        checkRow(row);
+        return values.get(mimeTypes[row]);
+    }
+
+    @Nullable
+    public String getMediaType(final int row) {
+        checkRow(row);
+        return values.get(mediaTypes[row]);
+    }
+
+    @Nullable
+    public String getMd5(final int row) {
+        checkRow(row);
+        if (!md5Set.get(row)) {
+            return otherMd5.get(row);
+        }
+        final char[] hex = new char[MD5_BYTES * 2];
+        for (int i = 0; i < MD5_BYTES; i++) {
+            final int b = md5s[row * MD5_BYTES + i] & 0xff;
+            hex[i * 2] = HEX[b >> 4];
+            hex[i * 2 + 1] = HEX[b & 0xf];
+        }
+        return new String(hex);
+    }
+
+    public long getSize(final int row) {
+        checkRow(row);
+        return sizes[row];
+    }
+
+    /**
+     * @return milliseconds since the epoch, 0 if not set or not valid
+     */
+    public long getCreatedMillis(final int row) {
+        checkRow(row);
+        return created[row] != Resource.NO_DATE ? created[row] : 0;
+    }
+
+    /**
+     * @return milliseconds since the epoch, 0 if not set or not valid
+     */
+    public long getModifiedMillis(final int row) {
+        checkRow(row);
+        return modified[row] != Resource.NO_DATE ? modified[row] : 0;
+    }
+
+    private void checkRow(final int row) {
+        if (row < 0 || row >= count) {
+            throw new IndexOutOfBoundsException("row=" + row + " size=" + count);
+        }
+    }
+
+    /**
+     * Paths are split at the last separator, the folder is stored once. The rest is usually
+     * the name of the resource and is not stored again
+     */
+    private void setPath(final int row, @Nullable final String path, @Nullable final String name) {
+        if (path == null) {
+            parents[row] = NO_PATH;
+            pathTails[row] = null;
+            return;
+        }
+        final int index = path.lastIndexOf(PATH_SEPARATOR);
+        parents[row] = index >= 0 ? folders.getId(path.substring(0, index)) : NO_FOLDER;
+        final String tail = index >= 0 ? path.substring(index + 1) : path;
+        pathTails[row] = tail.equals(name) ? null : tail;
+    }
+
+    private void setMd5(final int row, @Nullable final String md5) {
+        md5Set.clear(row);
+        otherMd5.remove(row);
+        if (md5 == null) {
+            return;
+        }
+        if (md5.length() == MD5_BYTES * 2) {
+            final int offset = row * MD5_BYTES;
+            boolean valid = true;
+            for (int i = 0; i < MD5_BYTES && valid; i++) {
+                final int high = hexDigit(md5.charAt(i * 2));
+                final int low = hexDigit(md5.charAt(i * 2 + 1));
+                valid = high >= 0 && low >= 0;
+                md5s[offset + i] = (byte) (high << 4 | low);
+            }
+            if (valid) {
+                md5Set.set(row);
+                return;
+            }
+        }
+        otherMd5.put(row, md5);
+    }
+
+    private static int hexDigit(final char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    private void resize(final int capacity) {
+        if (names == null) {
+            names = new String[capacity];
+            pathTails = new String[capacity];
+            publicKeys = new String[capacity];
+            publicUrls = new String[capacity];
+            originPaths = new String[capacity];
+            previews = new String[capacity];
+            parents = new int[capacity];
+            types = new int[capacity];
+            mimeTypes = new int[capacity];
+            mediaTypes = new int[capacity];
+            sizes = new long[capacity];
+            created = new long[capacity];
+            modified = new long[capacity];
+            deleted = new long[capacity];
+            md5s = new byte[capacity * MD5_BYTES];
+            properties = new Object[capacity];
+            return;
+        }
+        names = Arrays.copyOf(names, capacity);
+        pathTails = Arrays.copyOf(pathTails, capacity);
+        publicKeys = Arrays.copyOf(publicKeys, capacity);
+        publicUrls = Arrays.copyOf(publicUrls, capacity);
+        originPaths = Arrays.copyOf(originPaths, capacity);
+        previews = Arrays.copyOf(previews, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        types = Arrays.copyOf(types, capacity);
+        mimeTypes = Arrays.copyOf(mimeTypes, capacity);
+        mediaTypes = Arrays.copyOf(mediaTypes, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        created = Arrays.copyOf(created, capacity);
+        modified = Arrays.copyOf(modified, capacity);
+        deleted = Arrays.copyOf(deleted, capacity);
+        md5s = Arrays.copyOf(md5s, capacity * MD5_BYTES);
+        properties = Arrays.copyOf(properties, capacity);
+    }
+
+    /**
+     * Numbers distinct strings in the order they are added, <tt>null</tt> is -1
+     */
+    private static class Dictionary {
+
+        @NonNull
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        @NonNull
+        private final List<String> values = new ArrayList<>();
+
+        int getId(@Nullable final String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        @Nullable
+        String get(final int id) {
+            return id >= 0 ? values.get(id) : null;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.metrics;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measurements of one endpoint in a {@link MetricsSnapshot}
+ */
+public class EndpointMetrics {
+
+    @NonNull
+    private final String endpoint;
+
+    private final long responseCount, failureCount, bytesSent, bytesReceived, totalLatency, maxLatency;
+
+    @NonNull
+    private final long[] latencies;
+
+    @NonNull
+    private final Map<Integer, Long> statusCounts;
+
+    @NonNull
+    private final Map<String, Long> exceptionCounts;
+
+    /* package */ EndpointMetrics(@NonNull final String endpoint, final long responseCount,
+                                  final long failureCount, final long bytesSent, final long bytesReceived,
+                                  final long totalLatency, final long maxLatency, @NonNull final long[] latencies,
+                                  @NonNull final Map<Integer, Long> statusCounts,
+                                  @NonNull final Map<String, Long> exceptionCounts) {
+        this.endpoint = endpoint;
+        this.responseCount = responseCount;
+        this.failureCount = failureCount;
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+        this.totalLatency = totalLatency;
+        this.maxLatency = maxLatency;
+        this.latencies = latencies;
+        this.statusCounts = Collections.unmodifiableMap(statusCounts);
+        this.exceptionCounts = Collections.unmodifiableMap(exceptionCounts);
+    }
+
+    @NonNull
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return requests answered with any HTTP code
+     */
+    public long getResponseCount() {
+        return responseCount;
+    }
+
+    /**
+     * @return requests failed with an IOException
+     */
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * @return request bodies of known length
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * @return response bodies, as far as they were read
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return responses by HTTP code
+     */
+    @NonNull
+    public Map<Integer, Long> getStatusCounts() {
+        return statusCounts;
+    }
+
+    /**
+     * @return thrown {@link com.yandex.disk.rest.exceptions.http.HttpCodeException}s by simple class name
+     */
+    @NonNull
+    public Map<String, Long> getExceptionCounts() {
+        return exceptionCounts;
+    }
+
+    /**
+     * @param percentile from 0 to 100, e.g. 50 for the median or 99.9
+     * @return latency of responses and failures, within 1/16 of the measured value
+     */
+    public long getLatency(final double percentile, @NonNull final TimeUnit unit) {
+        return unit.convert(Math.min(Histogram.valueAt(latencies, percentile), maxLatency), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMeanLatency(@NonNull final TimeUnit unit) {
+        final long count = responseCount + failureCount;
+        return count > 0 ? unit.convert(totalLatency / count, TimeUnit.NANOSECONDS) : 0;
+    }
+
+    public long getMaxLatency(@NonNull final TimeUnit unit) {
+        return unit.convert(maxLatency, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "EndpointMetrics{" +
+                "endpoint='" + endpoint + '\'' +
+                ", responseCount=" + responseCount +
+                ", failureCount=" + failureCount +
+                ", bytesSent=" + bytesSent +
+                ", bytesReceived=" + bytesReceived +
+                ", p50=" + getLatency(50, TimeUnit.MICROSECONDS) + "us" +
+                ", p99=" + getLatency(99, TimeUnit.MICROSECONDS) + "us" +
+                ", max=" + getMaxLatency(TimeUnit.MICROSECONDS) + "us" +
+                ", statusCounts=" + statusCounts +
+                ", exceptionCounts=" + exceptionCounts +
+                '}';
+    }
+}
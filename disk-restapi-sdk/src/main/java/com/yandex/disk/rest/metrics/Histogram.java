@@ -0,0 +1,81 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of non-negative longs, as in HdrHistogram: every power of two is split
+ * into {@link #SUB_BUCKETS} buckets, so a value is kept with a relative error under 1/16
+ */
+/* package */ class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /* package */ static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /* package */ void record(final long value) {
+        counts.incrementAndGet(index(value));
+    }
+
+    /* package */ long[] getCounts() {
+        final long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    /* package */ static int index(final long value) {
+        if (value < SUB_BUCKETS) {
+            return value > 0 ? (int) value : 0;
+        }
+        final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @return the largest value recorded in the bucket
+     */
+    /* package */ static long highestValue(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = (index >> SUB_BUCKET_BITS) - 1;
+        final long mantissa = (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return the value at or below which {@code percentile} percent of the values are, 0 if there are none
+     */
+    /* package */ static long valueAt(final long[] counts, final double percentile) {
+        long total = 0;
+        for (final long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return highestValue(i);
+            }
+        }
+        return highestValue(counts.length - 1);
+    }
+}
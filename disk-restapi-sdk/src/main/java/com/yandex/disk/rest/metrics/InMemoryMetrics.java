@@ -0,0 +1,130 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.metrics;
+
+import android.support.annotation.NonNull;
+
+import com.yandex.disk.rest.exceptions.http.HttpCodeException;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps counters and latency histograms of every endpoint in memory.
+ * <br/>
+ * Recording takes no locks: counters are atomics and a histogram is an array of atomic buckets.
+ * {@link #snapshot()} reads every counter once, so a snapshot taken during requests may count a request
+ * in one counter and not yet in another
+ */
+public class InMemoryMetrics extends Metrics {
+
+    @NonNull
+    private final ConcurrentMap<String, Counters> endpoints = new ConcurrentHashMap<>();
+
+    private static class Counters {
+
+        final AtomicLong responses = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong bytesSent = new AtomicLong();
+        final AtomicLong bytesReceived = new AtomicLong();
+        final AtomicLong totalLatency = new AtomicLong();
+        final AtomicLong maxLatency = new AtomicLong();
+        final Histogram latencies = new Histogram();
+        final ConcurrentMap<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+        final ConcurrentMap<String, AtomicLong> exceptions = new ConcurrentHashMap<>();
+
+        void recordLatency(final long nanos) {
+            latencies.record(nanos);
+            totalLatency.addAndGet(nanos);
+            long max;
+            while (nanos > (max = maxLatency.get()) && !maxLatency.compareAndSet(max, nanos)) {
+                // retry
+            }
+        }
+    }
+
+    @Override
+    public void onResponse(final String endpoint, final int httpCode, final long latencyNanos, final long bytesSent) {
+        final Counters counters = getCounters(endpoint);
+        counters.responses.incrementAndGet();
+        counters.recordLatency(latencyNanos);
+        if (bytesSent > 0) {
+            counters.bytesSent.addAndGet(bytesSent);
+        }
+        increment(counters.statuses, httpCode);
+    }
+
+    @Override
+    public void onFailure(final String endpoint, final IOException ex, final long latencyNanos) {
+        final Counters counters = getCounters(endpoint);
+        counters.failures.incrementAndGet();
+        counters.recordLatency(latencyNanos);
+    }
+
+    @Override
+    public void onBytesReceived(final String endpoint, final long bytes) {
+        getCounters(endpoint).bytesReceived.addAndGet(bytes);
+    }
+
+    @Override
+    public void onHttpCodeException(final String endpoint, final HttpCodeException ex) {
+        increment(getCounters(endpoint).exceptions, ex.getClass().getSimpleName());
+    }
+
+    @NonNull
+    public MetricsSnapshot snapshot() {
+        final Map<String, EndpointMetrics> snapshot = new TreeMap<>();
+        for (final Map.Entry<String, Counters> entry : endpoints.entrySet()) {
+            final Counters counters = entry.getValue();
+            snapshot.put(entry.getKey(), new EndpointMetrics(entry.getKey(), counters.responses.get(),
+                    counters.failures.get(), counters.bytesSent.get(), counters.bytesReceived.get(),
+                    counters.totalLatency.get(), counters.maxLatency.get(), counters.latencies.getCounts(),
+                    copy(counters.statuses), copy(counters.exceptions)));
+        }
+        return new MetricsSnapshot(snapshot);
+    }
+
+    @NonNull
+    private Counters getCounters(@NonNull final String endpoint) {
+        Counters counters = endpoints.get(endpoint);
+        if (counters == null) {
+            final Counters created = new Counters();
+            counters = endpoints.putIfAbsent(endpoint, created);
+            if (counters == null) {
+                counters = created;
+            }
+        }
+        return counters;
+    }
+
+    private static <K> void increment(@NonNull final ConcurrentMap<K, AtomicLong> counts, @NonNull final K key) {
+        AtomicLong count = counts.get(key);
+        if (count == null) {
+            final AtomicLong created = new AtomicLong();
+            count = counts.putIfAbsent(key, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    @NonNull
+    private static <K> Map<K, Long> copy(@NonNull final Map<K, AtomicLong> counts) {
+        final Map<K, Long> copy = new TreeMap<>();
+        for (final Map.Entry<K, AtomicLong> entry : counts.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().get());
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.metrics;
+
+import com.yandex.disk.rest.exceptions.http.HttpCodeException;
+
+import java.io.IOException;
+
+/**
+ * Receives measurements of the requests of a {@link com.yandex.disk.rest.RestClient}.
+ * <br/>
+ * An endpoint is the name of the {@link com.yandex.disk.rest.retrofit.CloudApi} method, like
+ * <tt>getResources</tt>, or <tt>download</tt> and <tt>upload</tt> for transfer hrefs, see
+ * {@link com.yandex.disk.rest.retrofit.MetricsInterceptor#getEndpoint(com.squareup.okhttp.Request)}.
+ * Methods are called on the threads of the requests and must not block. Override the ones you need
+ *
+ * @see InMemoryMetrics
+ */
+public abstract class Metrics {
+
+    /**
+     * Default, records nothing and costs nothing
+     */
+    public static final Metrics NONE = new Metrics() {
+    };
+
+    /**
+     * Response headers are received
+     *
+     * @param latencyNanos from the start of the call, retries and waits included
+     * @param bytesSent    length of the request body, 0 without a body, -1 if unknown
+     */
+    public void onResponse(String endpoint, int httpCode, long latencyNanos, long bytesSent) {
+    }
+
+    /**
+     * No response because of a network error or cancellation
+     */
+    public void onFailure(String endpoint, IOException ex, long latencyNanos) {
+    }
+
+    /**
+     * The response body is read to the end or closed
+     */
+    public void onBytesReceived(String endpoint, long bytes) {
+    }
+
+    /**
+     * The answer is thrown to the caller as an exception
+     */
+    public void onHttpCodeException(String endpoint, HttpCodeException ex) {
+    }
+}
@@ -0,0 +1,51 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.metrics;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Copy of the counters of {@link InMemoryMetrics}, not changed by later requests
+ */
+public class MetricsSnapshot {
+
+    @NonNull
+    private final Map<String, EndpointMetrics> endpoints;
+
+    /* package */ MetricsSnapshot(@NonNull final Map<String, EndpointMetrics> endpoints) {
+        this.endpoints = Collections.unmodifiableMap(endpoints);
+    }
+
+    /**
+     * @return endpoints sorted by name
+     */
+    @NonNull
+    public Map<String, EndpointMetrics> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * @return <tt>null</tt> if the endpoint has not been called
+     */
+    @Nullable
+    public EndpointMetrics getEndpoint(@NonNull final String endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot{" +
+                "endpoints=" + endpoints.values() +
+                '}';
+    }
+}
@@ -0,0 +1,104 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.retrofit;
+
+import android.support.annotation.NonNull;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+
+/**
+ * Keeps the answers of Cloud API GET requests in the {@link com.squareup.okhttp.Cache} of the client
+ * and counts how they are served.
+ * <br/>
+ * Answers without <tt>Cache-Control</tt> are stored with <tt>no-cache</tt>, so every request is sent
+ * with <tt>If-None-Match</tt> and an unchanged resource costs a 304 without a body. Answers of
+ * transfer hrefs are never stored. Install as an application interceptor and
+ * {@link #getNetworkInterceptor()} as a network interceptor
+ */
+public class CacheInterceptor implements Interceptor {
+
+    private static final String CACHE_CONTROL = "Cache-Control";
+
+    private int requests, hits, revalidations;
+
+    @NonNull
+    private final Interceptor networkInterceptor = new Interceptor() {
+        @NonNull
+        @Override
+        public Response intercept(@NonNull final Chain chain) throws IOException {
+            final Request request = chain.request();
+            final Response response = chain.proceed(request);
+            if (!"GET".equals(request.method())) {
+                return response;
+            } else if (ThrottleInterceptor.getEndpoint(request) != ThrottleInterceptor.Endpoint.METADATA) {
+                return response.newBuilder()
+                        .header(CACHE_CONTROL, "no-store")
+                        .build();
+            } else if (response.header(CACHE_CONTROL) == null) {
+                return response.newBuilder()
+                        .header(CACHE_CONTROL, "no-cache")
+                        .build();
+            }
+            return response;
+        }
+    };
+
+    @NonNull
+    public Interceptor getNetworkInterceptor() {
+        return networkInterceptor;
+    }
+
+    /**
+     * @return Cloud API GET requests sent
+     */
+    public synchronized int getRequestCount() {
+        return requests;
+    }
+
+    /**
+     * @return requests answered from the cache without the network
+     */
+    public synchronized int getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return requests answered from the cache after a 304 of the server
+     */
+    public synchronized int getRevalidationCount() {
+        return revalidations;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull final Chain chain) throws IOException {
+        final Request request = chain.request();
+        final Response response = chain.proceed(request);
+        if ("GET".equals(request.method())
+                && ThrottleInterceptor.getEndpoint(request) == ThrottleInterceptor.Endpoint.METADATA) {
+            count(response);
+        }
+        return response;
+    }
+
+    private synchronized void count(@NonNull final Response response) {
+        requests++;
+        if (response.networkResponse() == null) {
+            if (response.cacheResponse() != null) {
+                hits++;
+            }
+        } else if (response.networkResponse().code() == 304) {
+            revalidations++;
+        }
+    }
+}
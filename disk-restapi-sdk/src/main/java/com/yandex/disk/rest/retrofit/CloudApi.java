@@ -9,6 +9,7 @@
 package com.yandex.disk.rest.retrofit;
 
 import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.ResponseBody;
 import com.yandex.disk.rest.exceptions.ServerIOException;
 import com.yandex.disk.rest.json.ApiVersion;
 import com.yandex.disk.rest.json.DiskInfo;
@@ -27,6 +28,7 @@ import retrofit.http.POST;
 import retrofit.http.PUT;
 import retrofit.http.Path;
 import retrofit.http.Query;
+import retrofit.http.Streaming;
 
 public interface CloudApi {
 
@@ -49,6 +51,14 @@ public interface CloudApi {
                                 @Query("preview_crop") Boolean previewCrop)
             throws IOException, ServerIOException;
 
+    @Streaming
+    @GET("/v1/disk/resources")
+    Call<ResponseBody> getResourcesStream(@Query("path") String path, @Query("fields") String fields,
+                                          @Query("limit") Integer limit, @Query("offset") Integer offset,
+                                          @Query("sort") String sort, @Query("preview_size") String previewSize,
+                                          @Query("preview_crop") Boolean previewCrop)
+            throws IOException, ServerIOException;
+
     @GET("/v1/disk/resources/files")
     Call<ResourceList> getFlatResourceList(@Query("limit") Integer limit, @Query("media_type") String mediaType,
                                            @Query("offset") Integer offset, @Query("fields") String fields,
@@ -56,6 +66,15 @@ public interface CloudApi {
                                            @Query("preview_crop") Boolean previewCrop)
             throws IOException, ServerIOException;
 
+    @Streaming
+    @GET("/v1/disk/resources/files")
+    Call<ResponseBody> getFlatResourceListStream(@Query("limit") Integer limit,
+                                                 @Query("media_type") String mediaType,
+                                                 @Query("offset") Integer offset, @Query("fields") String fields,
+                                                 @Query("preview_size") String previewSize,
+                                                 @Query("preview_crop") Boolean previewCrop)
+            throws IOException, ServerIOException;
+
     @GET("/v1/disk/resources/last-uploaded")
     Call<ResourceList> getLastUploadedResources(@Query("limit") Integer limit, @Query("media_type") String mediaType,
                                                 @Query("offset") Integer offset, @Query("fields") String fields,
@@ -63,6 +82,15 @@ public interface CloudApi {
                                                 @Query("preview_crop") Boolean previewCrop)
             throws IOException, ServerIOException;
 
+    @Streaming
+    @GET("/v1/disk/resources/last-uploaded")
+    Call<ResponseBody> getLastUploadedResourcesStream(@Query("limit") Integer limit,
+                                                      @Query("media_type") String mediaType,
+                                                      @Query("offset") Integer offset, @Query("fields") String fields,
+                                                      @Query("preview_size") String previewSize,
+                                                      @Query("preview_crop") Boolean previewCrop)
+            throws IOException, ServerIOException;
+
     @PATCH("/v1/disk/resources/")
     Call<Resource> patchResource(@Query("path") String path, @Query("fields") String fields,
                                  @Body RequestBody body)
@@ -110,6 +138,15 @@ public interface CloudApi {
                                        @Query("preview_crop") Boolean previewCrop)
             throws IOException, ServerIOException;
 
+    @Streaming
+    @GET("/v1/disk/public/resources")
+    Call<ResponseBody> listPublicResourcesStream(@Query("public_key") String publicKey, @Query("path") String path,
+                                                 @Query("fields") String fields, @Query("limit") Integer limit,
+                                                 @Query("offset") Integer offset, @Query("sort") String sort,
+                                                 @Query("preview_size") String previewSize,
+                                                 @Query("preview_crop") Boolean previewCrop)
+            throws IOException, ServerIOException;
+
     @GET("/v1/disk/public/resources/download")
     Call<Link> getPublicResourceDownloadLink(@Query("public_key") String publicKey,
                                              @Query("path") String path)
@@ -126,4 +163,12 @@ public interface CloudApi {
                                      @Query("sort") String sort, @Query("preview_size") String previewSize,
                                      @Query("preview_crop") Boolean previewCrop)
             throws IOException, ServerIOException;
+
+    @Streaming
+    @GET("/v1/disk/trash/resources")
+    Call<ResponseBody> getTrashResourcesStream(@Query("path") String path, @Query("fields") String fields,
+                                               @Query("limit") Integer limit, @Query("offset") Integer offset,
+                                               @Query("sort") String sort, @Query("preview_size") String previewSize,
+                                               @Query("preview_crop") Boolean previewCrop)
+            throws IOException, ServerIOException;
 }
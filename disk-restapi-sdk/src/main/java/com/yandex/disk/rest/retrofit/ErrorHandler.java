@@ -10,7 +10,6 @@ package com.yandex.disk.rest.retrofit;
 
 import android.support.annotation.NonNull;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import com.yandex.disk.rest.exceptions.http.BadGatewayException;
 import com.yandex.disk.rest.exceptions.http.BadRequestException;
@@ -33,6 +32,7 @@ import com.yandex.disk.rest.exceptions.http.UnauthorizedException;
 import com.yandex.disk.rest.exceptions.http.UnprocessableEntityException;
 import com.yandex.disk.rest.exceptions.http.UnsupportedMediaTypeException;
 import com.yandex.disk.rest.json.ApiError;
+import com.yandex.disk.rest.json.JsonConverter;
 import com.yandex.disk.rest.util.Logger;
 import com.yandex.disk.rest.util.LoggerFactory;
 
@@ -104,7 +104,7 @@ public class ErrorHandler {
     private static ApiError readApiError(@NonNull final InputStream in) {
         final Reader reader = new InputStreamReader(in);
         try {
-            return new Gson().fromJson(reader, ApiError.class);
+            return JsonConverter.getGson().fromJson(reader, ApiError.class);
         } catch (JsonSyntaxException ex) {
             return ApiError.UNKNOWN;
         }
@@ -0,0 +1,252 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.retrofit;
+
+import android.support.annotation.NonNull;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import com.yandex.disk.rest.metrics.Metrics;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import retrofit.http.DELETE;
+import retrofit.http.GET;
+import retrofit.http.PATCH;
+import retrofit.http.POST;
+import retrofit.http.PUT;
+
+/**
+ * Reports every call of the client to {@link Metrics}: latency up to the response headers, HTTP code,
+ * request body length and, as the body is read, response bytes.
+ * <br/>
+ * Install first among the application interceptors, so the latency is what the caller waits,
+ * retries and throttling included. Costs nothing while the metrics are {@link Metrics#NONE}
+ */
+public class MetricsInterceptor implements Interceptor {
+
+    private static final String DOWNLOAD = "download";
+
+    private static final String UPLOAD = "upload";
+
+    private static final String STREAM_SUFFIX = "Stream";
+
+    /**
+     * "METHOD /path" of the Cloud API to the name of the call
+     */
+    private static final Map<String, String> API_ENDPOINTS = new HashMap<>();
+
+    private static final List<Pattern> API_TEMPLATES = new ArrayList<>();
+
+    private static final List<String> API_TEMPLATE_ENDPOINTS = new ArrayList<>();
+
+    static {
+        for (final Method method : CloudApi.class.getDeclaredMethods()) {
+            for (final Annotation annotation : method.getAnnotations()) {
+                final String path = getPath(annotation);
+                if (path != null) {
+                    String name = method.getName();
+                    if (name.endsWith(STREAM_SUFFIX)) {
+                        name = name.substring(0, name.length() - STREAM_SUFFIX.length());
+                    }
+                    addEndpoint(getHttpMethod(annotation), path, name);
+                }
+            }
+        }
+        // not in CloudApi, sent by RestClientIO
+        addEndpoint("DELETE", "/v1/disk/resources", "delete");
+        addEndpoint("DELETE", "/v1/disk/trash/resources", "deleteFromTrash");
+        addEndpoint("PUT", "/v1/disk/trash/resources/restore", "restoreFromTrash");
+    }
+
+    private volatile Metrics metrics = Metrics.NONE;
+
+    public void setMetrics(@NonNull final Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @NonNull
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return name of the {@link CloudApi} method for Cloud API requests, <tt>download</tt> or <tt>upload</tt>
+     * for GET or PUT of transfer hrefs, otherwise the HTTP method and the path
+     */
+    @NonNull
+    public static String getEndpoint(@NonNull final Request request) {
+        String path = request.httpUrl().encodedPath();
+        if (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        final String key = request.method() + " " + path;
+        final String endpoint = API_ENDPOINTS.get(key);
+        if (endpoint != null) {
+            return endpoint;
+        }
+        for (int i = 0; i < API_TEMPLATES.size(); i++) {
+            if (API_TEMPLATES.get(i).matcher(key).matches()) {
+                return API_TEMPLATE_ENDPOINTS.get(i);
+            }
+        }
+        if (ThrottleInterceptor.getEndpoint(request) == ThrottleInterceptor.Endpoint.TRANSFER) {
+            if ("GET".equals(request.method())) {
+                return DOWNLOAD;
+            } else if ("PUT".equals(request.method())) {
+                return UPLOAD;
+            }
+        }
+        return key;
+    }
+
+    @Override
+    public Response intercept(@NonNull final Chain chain) throws IOException {
+        final Metrics metrics = this.metrics;
+        final Request request = chain.request();
+        if (metrics == Metrics.NONE) {
+            return chain.proceed(request);
+        }
+
+        final String endpoint = getEndpoint(request);
+        final long start = System.nanoTime();
+        final Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException ex) {
+            metrics.onFailure(endpoint, ex, System.nanoTime() - start);
+            throw ex;
+        }
+        final RequestBody requestBody = request.body();
+        metrics.onResponse(endpoint, response.code(), System.nanoTime() - start,
+                requestBody != null ? requestBody.contentLength() : 0);
+
+        final ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+        return response.newBuilder()
+                .body(new CountingResponseBody(body, metrics, endpoint))
+                .build();
+    }
+
+    private static void addEndpoint(@NonNull final String httpMethod, @NonNull String path,
+                                    @NonNull final String name) {
+        if (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        final String key = httpMethod + " " + path;
+        if (path.contains("{")) {
+            API_TEMPLATES.add(Pattern.compile(Pattern.quote(key).replaceAll("\\{[^}]*\\}", "\\\\E[^/]+\\\\Q")));
+            API_TEMPLATE_ENDPOINTS.add(name);
+        } else if (!API_ENDPOINTS.containsKey(key)) {
+            API_ENDPOINTS.put(key, name);
+        }
+    }
+
+    private static String getPath(@NonNull final Annotation annotation) {
+        if (annotation instanceof GET) {
+            return ((GET) annotation).value();
+        } else if (annotation instanceof PUT) {
+            return ((PUT) annotation).value();
+        } else if (annotation instanceof POST) {
+            return ((POST) annotation).value();
+        } else if (annotation instanceof PATCH) {
+            return ((PATCH) annotation).value();
+        } else if (annotation instanceof DELETE) {
+            return ((DELETE) annotation).value();
+        }
+        return null;
+    }
+
+    @NonNull
+    private static String getHttpMethod(@NonNull final Annotation annotation) {
+        return annotation.annotationType().getSimpleName();
+    }
+
+    /**
+     * Reports the bytes read once, when the body is exhausted or closed
+     */
+    private static class CountingResponseBody extends ResponseBody {
+
+        @NonNull
+        private final ResponseBody body;
+
+        @NonNull
+        private final BufferedSource source;
+
+        private long bytes;
+
+        private boolean reported;
+
+        CountingResponseBody(@NonNull final ResponseBody body, @NonNull final Metrics metrics,
+                             @NonNull final String endpoint)
+                throws IOException {
+            this.body = body;
+            this.source = Okio.buffer(new ForwardingSource(body.source()) {
+                @Override
+                public long read(final Buffer sink, final long byteCount)
+                        throws IOException {
+                    final long read = super.read(sink, byteCount);
+                    if (read != -1) {
+                        bytes += read;
+                    } else {
+                        report();
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close()
+                        throws IOException {
+                    report();
+                    super.close();
+                }
+
+                private void report() {
+                    if (!reported) {
+                        reported = true;
+                        metrics.onBytesReceived(endpoint, bytes);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength()
+                throws IOException {
+            return body.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
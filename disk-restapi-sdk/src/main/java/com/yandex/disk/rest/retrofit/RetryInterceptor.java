@@ -0,0 +1,250 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.retrofit;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.yandex.disk.rest.util.Logger;
+import com.yandex.disk.rest.util.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Retries idempotent requests answered with 429, 502, 503 or 504.
+ * <br/>
+ * The delay before a retry is taken from <tt>Retry-After</tt> or, without one, grows exponentially
+ * with a random jitter of up to a half. Retries are limited per request and by a budget shared
+ * by all requests of the client: every request adds {@link #DEFAULT_BUDGET_RATIO} of a retry to the
+ * budget up to {@link #DEFAULT_BUDGET_MAX}, every retry takes one. When a request can't be retried
+ * the last response is returned as is and handled by {@link ErrorHandler}
+ */
+public class RetryInterceptor implements Interceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryInterceptor.class);
+
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    public static final long DEFAULT_INITIAL_DELAY_MILLIS = 500;
+
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 30 * 1000;
+
+    public static final float DEFAULT_BUDGET_RATIO = 0.1f;
+
+    public static final int DEFAULT_BUDGET_MAX = 10;
+
+    private static final String RETRY_AFTER = "Retry-After";
+
+    @NonNull
+    private final Random random = new Random();
+
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+
+    private long initialDelay = DEFAULT_INITIAL_DELAY_MILLIS;
+
+    private long maxDelay = DEFAULT_MAX_DELAY_MILLIS;
+
+    private float budgetRatio = DEFAULT_BUDGET_RATIO;
+
+    private int budgetMax = DEFAULT_BUDGET_MAX;
+
+    private float budget = DEFAULT_BUDGET_MAX;
+
+    private long retries, giveUps;
+
+    /**
+     * @param maxRetries   retries of one request, 0 to disable retries
+     * @param initialDelay milliseconds before the first retry without <tt>Retry-After</tt>
+     * @param maxDelay     longest delay before a retry, milliseconds. A longer <tt>Retry-After</tt>
+     *                     is not waited for
+     */
+    public synchronized void setRetries(final int maxRetries, final long initialDelay, final long maxDelay) {
+        if (maxRetries < 0 || initialDelay < 0 || maxDelay < initialDelay) {
+            throw new IllegalArgumentException("maxRetries=" + maxRetries + " initialDelay=" + initialDelay
+                    + " maxDelay=" + maxDelay);
+        }
+        this.maxRetries = maxRetries;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * @param ratio part of a retry every request adds to the budget
+     * @param max   the most retries the budget can hold
+     */
+    public synchronized void setBudget(final float ratio, final int max) {
+        if (ratio < 0 || max < 0) {
+            throw new IllegalArgumentException("ratio=" + ratio + " max=" + max);
+        }
+        this.budgetRatio = ratio;
+        this.budgetMax = max;
+        this.budget = Math.min(budget, max);
+    }
+
+    /**
+     * @return number of requests sent again
+     */
+    public synchronized long getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return number of retryable responses returned to the caller because of the retry limit,
+     * the budget or a too long <tt>Retry-After</tt>
+     */
+    public synchronized long getGiveUps() {
+        return giveUps;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull final Chain chain) throws IOException {
+        final Request request = chain.request();
+        final boolean idempotent = isIdempotent(request);
+        final int maxRetries;
+        synchronized (this) {
+            maxRetries = this.maxRetries;
+            budget = Math.min(budgetMax, budget + budgetRatio);
+        }
+        Response response = chain.proceed(request);
+        for (int retry = 0; idempotent && isRetryable(response.code()); retry++) {
+            final long delay = getDelay(response, retry);
+            if (retry >= maxRetries || delay < 0 || !takeRetry()) {
+                logger.debug("give up: " + request.method() + " " + request.urlString() + " " + response.code());
+                synchronized (this) {
+                    giveUps++;
+                }
+                break;
+            }
+            logger.debug("retry " + (retry + 1) + " in " + delay + " ms: " + request.method() + " "
+                    + request.urlString() + " " + response.code());
+            response.body().close();
+            sleep(delay);
+            response = chain.proceed(request);
+        }
+        return response;
+    }
+
+    /**
+     * Sleep on the thread of the call, a synchronous request or a thread of the OkHttp dispatcher
+     */
+    /* package */ void sleep(final long millis)
+            throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Retry interrupted");
+        }
+    }
+
+    private synchronized boolean takeRetry() {
+        if (budget < 1) {
+            return false;
+        }
+        budget--;
+        retries++;
+        return true;
+    }
+
+    /**
+     * @return milliseconds to wait before the retry, -1 if <tt>Retry-After</tt> is longer than the
+     * maximum delay
+     */
+    private long getDelay(@NonNull final Response response, final int retry) {
+        final long initialDelay, maxDelay;
+        synchronized (this) {
+            initialDelay = this.initialDelay;
+            maxDelay = this.maxDelay;
+        }
+        final long retryAfter = parseRetryAfter(response.header(RETRY_AFTER), System.currentTimeMillis());
+        if (retryAfter >= 0) {
+            return retryAfter <= maxDelay ? retryAfter : -1;
+        }
+        final long delay = Math.min(maxDelay, initialDelay << Math.min(retry, 30));
+        final long half = delay / 2;
+        final long jitter;
+        synchronized (random) {
+            jitter = half > 0 ? (long) (random.nextDouble() * (half + 1)) : 0;
+        }
+        return delay - half + jitter;
+    }
+
+    /**
+     * Only methods which are safe to send twice. A request body longer than zero is a streamed upload
+     * which can't be read again
+     */
+    private static boolean isIdempotent(@NonNull final Request request) {
+        switch (request.method()) {
+            case "GET":
+            case "HEAD":
+            case "OPTIONS":
+            case "PUT":
+            case "DELETE":
+                break;
+            default:
+                return false;
+        }
+        final RequestBody body = request.body();
+        try {
+            return body == null || body.contentLength() == 0;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private static boolean isRetryable(final int code) {
+        switch (code) {
+            case 429:
+            case 502:
+            case 503:
+            case 504:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param value delay in seconds or a http date
+     * @return milliseconds, -1 if none or not valid
+     */
+    /* package */ static long parseRetryAfter(@Nullable final String value, final long now) {
+        if (value == null) {
+            return -1;
+        }
+        final String trimmed = value.trim();
+        try {
+            final long seconds = Long.parseLong(trimmed);
+            return seconds >= 0 ? seconds * 1000 : -1;
+        } catch (NumberFormatException ex) {
+            // not a number, try a date
+        }
+        final SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            final Date date = format.parse(trimmed);
+            return Math.max(0, date.getTime() - now);
+        } catch (ParseException ex) {
+            logger.debug("Retry-After: " + value);
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.retrofit;
+
+import android.support.annotation.NonNull;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.yandex.disk.rest.util.Logger;
+import com.yandex.disk.rest.util.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shapes traffic of a client to stay below the server limits.
+ * <br/>
+ * Requests of every {@link Endpoint} wait for a token of a token bucket and for a place below
+ * the concurrency limit. The limit adapts to the server: it grows by one after a limit of successful
+ * answers in a row and halves after 429 or 503, at most once for the requests sent after the previous
+ * decrease. The place is taken until the response headers are received, so an upload holds it while
+ * its body is sent and a download releases it before the body is read
+ */
+public class ThrottleInterceptor implements Interceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThrottleInterceptor.class);
+
+    public static final double DEFAULT_METADATA_RATE = 20;
+
+    public static final int DEFAULT_METADATA_BURST = 20;
+
+    public static final int DEFAULT_METADATA_MAX_CONCURRENCY = 64;
+
+    public static final int DEFAULT_TRANSFER_MAX_CONCURRENCY = 32;
+
+    private static final String API_PATH = "/v1/";
+
+    public enum Endpoint {
+        /**
+         * Requests of the Cloud API: resources, operations, disk info
+         */
+        METADATA,
+        /**
+         * Upload and download hrefs on the storage hosts
+         */
+        TRANSFER
+    }
+
+    @NonNull
+    private final Limiter metadata = new Limiter(DEFAULT_METADATA_RATE, DEFAULT_METADATA_BURST,
+            DEFAULT_METADATA_MAX_CONCURRENCY / 4, DEFAULT_METADATA_MAX_CONCURRENCY);
+
+    @NonNull
+    private final Limiter transfer = new Limiter(0, 0,
+            DEFAULT_TRANSFER_MAX_CONCURRENCY / 2, DEFAULT_TRANSFER_MAX_CONCURRENCY);
+
+    /**
+     * @param rate           requests per second, 0 for no rate limit
+     * @param burst          requests which can be sent at once after a pause
+     * @param maxConcurrency the most requests at the same time, the limit starts from a quarter
+     *                       of it and never goes above
+     */
+    public void setLimits(@NonNull final Endpoint endpoint, final double rate, final int burst,
+                          final int maxConcurrency) {
+        if (rate < 0 || burst < 0 || (rate > 0 && burst < 1) || maxConcurrency < 1) {
+            throw new IllegalArgumentException("rate=" + rate + " burst=" + burst
+                    + " maxConcurrency=" + maxConcurrency);
+        }
+        getLimiter(endpoint).setLimits(rate, burst, Math.max(1, maxConcurrency / 4), maxConcurrency);
+    }
+
+    /**
+     * @return current concurrency limit of the endpoint
+     */
+    public int getConcurrencyLimit(@NonNull final Endpoint endpoint) {
+        return getLimiter(endpoint).getLimit();
+    }
+
+    /**
+     * @return requests of the endpoint being sent
+     */
+    public int getInFlight(@NonNull final Endpoint endpoint) {
+        return getLimiter(endpoint).getInFlight();
+    }
+
+    @NonNull
+    public static Endpoint getEndpoint(@NonNull final Request request) {
+        return request.httpUrl().encodedPath().startsWith(API_PATH) ? Endpoint.METADATA : Endpoint.TRANSFER;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull final Chain chain) throws IOException {
+        final Request request = chain.request();
+        final Limiter limiter = getLimiter(getEndpoint(request));
+        final long generation = limiter.acquire();
+        final Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException ex) {
+            limiter.releaseFailed();
+            throw ex;
+        }
+        final boolean overloaded = response.code() == 429 || response.code() == 503;
+        if (overloaded) {
+            logger.debug("overloaded: " + request.method() + " " + request.urlString() + " " + response.code());
+        }
+        limiter.release(generation, overloaded);
+        return response;
+    }
+
+    @NonNull
+    private Limiter getLimiter(@NonNull final Endpoint endpoint) {
+        return endpoint == Endpoint.METADATA ? metadata : transfer;
+    }
+
+    private static class Limiter {
+
+        private double rate;
+
+        private int burst;
+
+        private double tokens;
+
+        private long refilled = System.nanoTime();
+
+        private int minLimit = 1;
+
+        private int maxLimit;
+
+        private int limit;
+
+        private int successes;
+
+        private int inFlight;
+
+        private long generation;
+
+        Limiter(final double rate, final int burst, final int limit, final int maxLimit) {
+            setLimits(rate, burst, limit, maxLimit);
+        }
+
+        synchronized void setLimits(final double rate, final int burst, final int limit, final int maxLimit) {
+            this.rate = rate;
+            this.burst = burst;
+            this.tokens = burst;
+            this.limit = Math.max(minLimit, limit);
+            this.maxLimit = maxLimit;
+            notifyAll();
+        }
+
+        synchronized int getLimit() {
+            return limit;
+        }
+
+        synchronized int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * Wait for a place and a token, both are taken at once. A request waiting for a token
+         * doesn't hold a place
+         *
+         * @return generation of the limit the request is sent with
+         */
+        synchronized long acquire()
+                throws InterruptedIOException {
+            try {
+                while (true) {
+                    if (inFlight >= limit) {
+                        wait();
+                        continue;
+                    }
+                    if (rate > 0) {
+                        final long now = System.nanoTime();
+                        tokens = Math.min(burst, tokens + (now - refilled) * rate / TimeUnit.SECONDS.toNanos(1));
+                        refilled = now;
+                        if (tokens < 1) {
+                            final long waitMillis = (long) Math.ceil((1 - tokens) * 1000 / rate);
+                            wait(Math.max(1, waitMillis));
+                            continue;
+                        }
+                        tokens--;
+                    }
+                    inFlight++;
+                    return generation;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Waiting for a request slot interrupted");
+            }
+        }
+
+        synchronized void release(final long generation, final boolean overloaded) {
+            inFlight--;
+            if (overloaded) {
+                successes = 0;
+                if (generation == this.generation) {
+                    this.generation++;
+                    limit = Math.max(minLimit, limit / 2);
+                }
+            } else if (++successes >= limit) {
+                successes = 0;
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            notifyAll();
+        }
+
+        /**
+         * The request failed without an answer, no news about the server
+         */
+        synchronized void releaseFailed() {
+            inFlight--;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.tracing;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings of one HTTP request, redirects included. Phases that did not happen are -1: a request on a pooled
+ * connection has no DNS, connect and TLS phases, a failed one no body phase.
+ * DNS, connect and TLS are measured for connections of {@link TracingSocketFactory} only
+ */
+public class Span {
+
+    @NonNull
+    private final String traceId, endpoint, method, host, path;
+
+    private final int httpCode;
+
+    @Nullable
+    private final String error;
+
+    private final int redirects;
+
+    private final long startTimeMillis, dnsNanos, connectNanos, tlsNanos, ttfbNanos, bodyNanos, totalNanos;
+
+    /* package */ Span(@NonNull final String traceId, @NonNull final String endpoint, @NonNull final String method,
+                       @NonNull final String host, @NonNull final String path, final int httpCode,
+                       @Nullable final String error, final int redirects, final long startTimeMillis,
+                       final long dnsNanos, final long connectNanos, final long tlsNanos, final long ttfbNanos,
+                       final long bodyNanos, final long totalNanos) {
+        this.traceId = traceId;
+        this.endpoint = endpoint;
+        this.method = method;
+        this.host = host;
+        this.path = path;
+        this.httpCode = httpCode;
+        this.error = error;
+        this.redirects = redirects;
+        this.startTimeMillis = startTimeMillis;
+        this.dnsNanos = dnsNanos;
+        this.connectNanos = connectNanos;
+        this.tlsNanos = tlsNanos;
+        this.ttfbNanos = ttfbNanos;
+        this.bodyNanos = bodyNanos;
+        this.totalNanos = totalNanos;
+    }
+
+    /**
+     * @see TraceScope
+     */
+    @NonNull
+    public String getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * @see com.yandex.disk.rest.retrofit.MetricsInterceptor#getEndpoint(com.squareup.okhttp.Request)
+     */
+    @NonNull
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    @NonNull
+    public String getMethod() {
+        return method;
+    }
+
+    @NonNull
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return path without the query, which for transfer hrefs holds signatures
+     */
+    @NonNull
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return HTTP code of the last response, -1 without a response
+     */
+    public int getHttpCode() {
+        return httpCode;
+    }
+
+    /**
+     * @return simple class name of the IOException of the request or of reading the body, <tt>null</tt>
+     * if there was none
+     */
+    @Nullable
+    public String getError() {
+        return error;
+    }
+
+    public int getRedirects() {
+        return redirects;
+    }
+
+    /**
+     * @return wall clock time of the start, {@link System#currentTimeMillis()}
+     */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+
+    /**
+     * @return time to the start of TCP connect, which is mostly the DNS lookup
+     */
+    public long getDns(@NonNull final TimeUnit unit) {
+        return convert(dnsNanos, unit);
+    }
+
+    public long getConnect(@NonNull final TimeUnit unit) {
+        return convert(connectNanos, unit);
+    }
+
+    public long getTls(@NonNull final TimeUnit unit) {
+        return convert(tlsNanos, unit);
+    }
+
+    /**
+     * @return from sending the request to receiving the response headers
+     */
+    public long getTtfb(@NonNull final TimeUnit unit) {
+        return convert(ttfbNanos, unit);
+    }
+
+    /**
+     * @return from the response headers to the end or close of the body
+     */
+    public long getBody(@NonNull final TimeUnit unit) {
+        return convert(bodyNanos, unit);
+    }
+
+    public long getTotal(@NonNull final TimeUnit unit) {
+        return convert(totalNanos, unit);
+    }
+
+    private static long convert(final long nanos, @NonNull final TimeUnit unit) {
+        return nanos < 0 ? -1 : unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "Span{" +
+                "traceId='" + traceId + '\'' +
+                ", endpoint='" + endpoint + '\'' +
+                ", method='" + method + '\'' +
+                ", host='" + host + '\'' +
+                ", path='" + path + '\'' +
+                ", httpCode=" + httpCode +
+                ", error='" + error + '\'' +
+                ", redirects=" + redirects +
+                ", startTimeMillis=" + startTimeMillis +
+                ", dns=" + getDns(TimeUnit.MICROSECONDS) + "us" +
+                ", connect=" + getConnect(TimeUnit.MICROSECONDS) + "us" +
+                ", tls=" + getTls(TimeUnit.MICROSECONDS) + "us" +
+                ", ttfb=" + getTtfb(TimeUnit.MICROSECONDS) + "us" +
+                ", body=" + getBody(TimeUnit.MICROSECONDS) + "us" +
+                ", total=" + getTotal(TimeUnit.MICROSECONDS) + "us" +
+                '}';
+    }
+}
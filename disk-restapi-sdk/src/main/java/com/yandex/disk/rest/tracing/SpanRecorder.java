@@ -0,0 +1,115 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.tracing;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.squareup.okhttp.HttpUrl;
+import com.squareup.okhttp.Request;
+import com.yandex.disk.rest.retrofit.MetricsInterceptor;
+
+import java.io.IOException;
+
+/**
+ * Collects the timings of one request. Phases are summed over redirects. Used by the thread of the request,
+ * then by the thread reading the response body
+ */
+/* package */ class SpanRecorder {
+
+    private static final ThreadLocal<SpanRecorder> CURRENT = new ThreadLocal<>();
+
+    @NonNull
+    private final Tracer tracer;
+
+    @NonNull
+    private final String traceId, endpoint;
+
+    @NonNull
+    private Request request;
+
+    private final long startTimeMillis, start;
+
+    private long mark, connectStart, networkStart, headers = -1;
+
+    private long dns = -1, connect = -1, tls = -1, ttfb = -1;
+
+    private boolean connected, finished;
+
+    private int hops, httpCode = -1;
+
+    /* package */ SpanRecorder(@NonNull final Tracer tracer, @NonNull final String traceId,
+                               @NonNull final Request request) {
+        this.tracer = tracer;
+        this.traceId = traceId;
+        this.endpoint = MetricsInterceptor.getEndpoint(request);
+        this.request = request;
+        this.startTimeMillis = System.currentTimeMillis();
+        this.start = this.mark = System.nanoTime();
+    }
+
+    /**
+     * @return recorder of the request running on this thread
+     */
+    @Nullable
+    /* package */ static SpanRecorder current() {
+        return CURRENT.get();
+    }
+
+    /* package */ void attach() {
+        CURRENT.set(this);
+    }
+
+    /* package */ void detach() {
+        CURRENT.remove();
+    }
+
+    /* package */ void onConnectStart(final long now) {
+        dns = add(dns, now - mark);
+        connectStart = now;
+    }
+
+    /* package */ void onConnectEnd(final long now) {
+        connect = add(connect, now - connectStart);
+        mark = now;
+        connected = true;
+    }
+
+    /* package */ void onNetworkStart(final long now, @NonNull final Request request, final boolean secure) {
+        if (connected && secure) {
+            tls = add(tls, now - mark);
+        }
+        connected = false;
+        networkStart = now;
+        this.request = request;
+    }
+
+    /* package */ void onHeaders(final long now, final int httpCode) {
+        ttfb = add(ttfb, now - networkStart);
+        mark = headers = now;
+        this.httpCode = httpCode;
+        hops++;
+    }
+
+    /* package */ void finish(final long now, @Nullable final IOException ex) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        final HttpUrl url = request.httpUrl();
+        tracer.onSpan(new Span(traceId, endpoint, request.method(), url.host(), url.encodedPath(),
+                httpCode, ex == null ? null : ex.getClass().getSimpleName(),
+                Math.max(0, hops - 1), startTimeMillis, dns, connect, tls, ttfb,
+                ex == null && headers >= 0 ? now - headers : -1, now - start));
+    }
+
+    private static long add(final long total, final long nanos) {
+        return total < 0 ? nanos : total + nanos;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.tracing;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One trace ID for all requests of a logical operation on the current thread, e.g. the link request and
+ * the transfer of {@link com.yandex.disk.rest.RestClient#downloadFile}. Requests outside of a scope get
+ * a trace ID each.
+ * <br/>
+ * Scopes nest: an inner scope keeps the trace ID of the outer one. Always end a scope in <tt>finally</tt>:
+ * <pre>
+ * TraceScope scope = TraceScope.begin(restClient.getTracer());
+ * try {
+ *     ...
+ * } finally {
+ *     scope.end();
+ * }
+ * </pre>
+ */
+public class TraceScope {
+
+    private static final TraceScope NONE = new TraceScope(null);
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private static final String PREFIX = Long.toHexString(new Random().nextLong() | Long.MIN_VALUE) + "-";
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    @Nullable
+    private final String traceId;
+
+    private TraceScope(@Nullable final String traceId) {
+        this.traceId = traceId;
+    }
+
+    /**
+     * Start a trace, or continue the one of the current thread
+     *
+     * @param tracer nothing is done for {@link Tracer#NONE}
+     */
+    @NonNull
+    public static TraceScope begin(@NonNull final Tracer tracer) {
+        if (tracer == Tracer.NONE || CURRENT.get() != null) {
+            return NONE;
+        }
+        return join(newTraceId());
+    }
+
+    /**
+     * Continue a trace on another thread
+     *
+     * @param traceId from {@link #getCurrentTraceId()}, nothing is done for <tt>null</tt>
+     */
+    @NonNull
+    public static TraceScope join(@Nullable final String traceId) {
+        if (traceId == null || CURRENT.get() != null) {
+            return NONE;
+        }
+        CURRENT.set(traceId);
+        return new TraceScope(traceId);
+    }
+
+    /**
+     * @return <tt>null</tt> outside of a scope
+     */
+    @Nullable
+    public static String getCurrentTraceId() {
+        return CURRENT.get();
+    }
+
+    @NonNull
+    /* package */ static String newTraceId() {
+        return PREFIX + Long.toHexString(SEQUENCE.incrementAndGet());
+    }
+
+    /**
+     * @return <tt>null</tt> if the scope does nothing
+     */
+    @Nullable
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public void end() {
+        if (traceId != null) {
+            CURRENT.remove();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.tracing;
+
+/**
+ * Receives a {@link Span} for every HTTP request of a {@link com.yandex.disk.rest.RestClient} with tracing on.
+ * <br/>
+ * Called on the thread which finished the request, often the one reading the response body, and must not
+ * block: hand the spans over to a queue to export them
+ *
+ * @see com.yandex.disk.rest.RestClient#setTracer(Tracer)
+ */
+public abstract class Tracer {
+
+    /**
+     * Default, tracing is off and costs a field read per request
+     */
+    public static final Tracer NONE = new Tracer() {
+        @Override
+        public void onSpan(final Span span) {
+        }
+    };
+
+    public abstract void onSpan(Span span);
+}
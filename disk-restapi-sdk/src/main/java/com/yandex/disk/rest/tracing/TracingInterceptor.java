@@ -0,0 +1,161 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.tracing;
+
+import android.support.annotation.NonNull;
+
+import com.squareup.okhttp.Connection;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+
+import java.io.IOException;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Sends a {@link Span} of every request to the {@link Tracer}: DNS and connect as seen by
+ * {@link TracingSocketFactory}, TLS up to the first network interceptor, time to the response headers
+ * and reading of the body.
+ * <br/>
+ * Install last among the application interceptors, so every retry is a span and throttling waits are not
+ * taken for DNS, and {@link #getNetworkInterceptor()} last among the network interceptors.
+ * Costs a field read per request while the tracer is {@link Tracer#NONE}
+ */
+public class TracingInterceptor implements Interceptor {
+
+    private volatile Tracer tracer = Tracer.NONE;
+
+    @NonNull
+    private final Interceptor networkInterceptor = new Interceptor() {
+        @NonNull
+        @Override
+        public Response intercept(@NonNull final Chain chain) throws IOException {
+            final Request request = chain.request();
+            final SpanRecorder recorder = tracer != Tracer.NONE ? SpanRecorder.current() : null;
+            if (recorder == null) {
+                return chain.proceed(request);
+            }
+            final Connection connection = chain.connection();
+            recorder.onNetworkStart(System.nanoTime(), request,
+                    connection != null && connection.getHandshake() != null);
+            final Response response = chain.proceed(request);
+            recorder.onHeaders(System.nanoTime(), response.code());
+            return response;
+        }
+    };
+
+    @NonNull
+    public Interceptor getNetworkInterceptor() {
+        return networkInterceptor;
+    }
+
+    public void setTracer(@NonNull final Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @NonNull
+    public Tracer getTracer() {
+        return tracer;
+    }
+
+    @Override
+    public Response intercept(@NonNull final Chain chain) throws IOException {
+        final Tracer tracer = this.tracer;
+        final Request request = chain.request();
+        if (tracer == Tracer.NONE) {
+            return chain.proceed(request);
+        }
+
+        final String traceId = TraceScope.getCurrentTraceId();
+        final SpanRecorder recorder = new SpanRecorder(tracer, traceId != null ? traceId : TraceScope.newTraceId(),
+                request);
+        final Response response;
+        recorder.attach();
+        try {
+            response = chain.proceed(request);
+        } catch (IOException ex) {
+            recorder.finish(System.nanoTime(), ex);
+            throw ex;
+        } finally {
+            recorder.detach();
+        }
+
+        final ResponseBody body = response.body();
+        if (body == null || body.contentLength() == 0) {
+            recorder.finish(System.nanoTime(), null);
+            return response;
+        }
+        return response.newBuilder()
+                .body(new TracingResponseBody(body, recorder))
+                .build();
+    }
+
+    /**
+     * Finishes the span when the body is exhausted or closed
+     */
+    private static class TracingResponseBody extends ResponseBody {
+
+        @NonNull
+        private final ResponseBody body;
+
+        @NonNull
+        private final BufferedSource source;
+
+        TracingResponseBody(@NonNull final ResponseBody body, @NonNull final SpanRecorder recorder)
+                throws IOException {
+            this.body = body;
+            this.source = Okio.buffer(new ForwardingSource(body.source()) {
+                @Override
+                public long read(final Buffer sink, final long byteCount)
+                        throws IOException {
+                    final long read;
+                    try {
+                        read = super.read(sink, byteCount);
+                    } catch (IOException ex) {
+                        recorder.finish(System.nanoTime(), ex);
+                        throw ex;
+                    }
+                    if (read == -1) {
+                        recorder.finish(System.nanoTime(), null);
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close()
+                        throws IOException {
+                    recorder.finish(System.nanoTime(), null);
+                    super.close();
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength()
+                throws IOException {
+            return body.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.tracing;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+
+import javax.net.SocketFactory;
+
+/**
+ * Plain sockets which report the TCP connect to the request running on the thread. OkHttp 2 has no
+ * connection events, so this is how {@link TracingInterceptor} sees the DNS and connect phases.
+ * <br/>
+ * Replaces the default socket factory only: a custom one can't be wrapped, as a socket is not an interface
+ */
+public class TracingSocketFactory extends SocketFactory {
+
+    private static final SocketFactory DEFAULT = SocketFactory.getDefault();
+
+    @Override
+    public Socket createSocket() {
+        return new TracingSocket();
+    }
+
+    @Override
+    public Socket createSocket(final String host, final int port)
+            throws IOException {
+        return DEFAULT.createSocket(host, port);
+    }
+
+    @Override
+    public Socket createSocket(final String host, final int port, final InetAddress localHost, final int localPort)
+            throws IOException {
+        return DEFAULT.createSocket(host, port, localHost, localPort);
+    }
+
+    @Override
+    public Socket createSocket(final InetAddress host, final int port)
+            throws IOException {
+        return DEFAULT.createSocket(host, port);
+    }
+
+    @Override
+    public Socket createSocket(final InetAddress address, final int port, final InetAddress localAddress,
+                               final int localPort)
+            throws IOException {
+        return DEFAULT.createSocket(address, port, localAddress, localPort);
+    }
+
+    private static class TracingSocket extends Socket {
+
+        @Override
+        public void connect(final SocketAddress endpoint, final int timeout)
+                throws IOException {
+            final SpanRecorder recorder = SpanRecorder.current();
+            if (recorder == null) {
+                super.connect(endpoint, timeout);
+                return;
+            }
+            recorder.onConnectStart(System.nanoTime());
+            super.connect(endpoint, timeout);
+            recorder.onConnectEnd(System.nanoTime());
+        }
+    }
+}
@@ -12,8 +12,18 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.EOFException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 public class Hash {
 
@@ -32,6 +42,29 @@ public class Hash {
         }
     }
 
+    /**
+     * Default size of a file region mapped at once by {@link #getHash(File, int)}
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Files shorter than this are hashed serially from a stream
+     */
+    private static final long PARALLEL_THRESHOLD = 4 * 1024 * 1024;
+
+    /**
+     * Size of the heap buffer which replaces mapping where the address space is short
+     */
+    private static final int READ_BLOCK_SIZE = 1024 * 1024;
+
+    /**
+     * A mapped block is released only by GC. On a 32 bit VM hashing a file of a few GB may exhaust
+     * the address space before that, so the file is read into a heap buffer there
+     */
+    private static final boolean MAP_BLOCKS = String.valueOf(System.getProperty("os.arch")).contains("64");
+
+    private static ExecutorService executor;
+
     private final String md5, sha256;
     private final long size;
 
@@ -43,23 +76,113 @@ public class Hash {
 
     public static Hash getHash(File file)
             throws IOException {
-        InputStream is = new FileInputStream(file);
+        return getHash(file, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Large files are memory mapped {@code blockSize} bytes at a time, MD5 and SHA-256 of every
+     * mapped block are computed in parallel on the caller thread and a shared helper thread.
+     * On a 32 bit VM the blocks are read into a heap buffer instead of being mapped
+     */
+    public static Hash getHash(File file, int blockSize)
+            throws IOException {
+        return getHash(file, blockSize, MAP_BLOCKS);
+    }
+
+    /* package */ static Hash getHash(File file, int blockSize, boolean map)
+            throws IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize=" + blockSize);
+        }
+        long size = file.length();
+        if (size < PARALLEL_THRESHOLD) {
+            InputStream is = new FileInputStream(file);
+            try {
+                return getHash(is, size);
+            } finally {
+                close(is);
+            }
+        }
+        FileInputStream is = new FileInputStream(file);
         try {
-            return getHash(is, file.length());
+            return getHash(is.getChannel(), size, map ? blockSize : Math.min(blockSize, READ_BLOCK_SIZE), map);
         } finally {
             close(is);
         }
     }
 
-    private static Hash getHash(InputStream is, long size)
+    /**
+     * Threads are created on demand, die when idle and don't keep the process alive
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Hash");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    private static Hash getHash(FileChannel channel, long size, int blockSize, boolean map)
             throws IOException {
-        MessageDigest md5Digest, sha256Digest;
+        final MessageDigest md5Digest = getDigest(HashType.MD5);
+        MessageDigest sha256Digest = getDigest(HashType.SHA256);
+        ExecutorService executor = getExecutor();
+        ByteBuffer buffer = map ? null : ByteBuffer.allocate((int) Math.min(blockSize, size));
+        for (long position = 0; position < size; position += blockSize) {
+            int length = (int) Math.min(blockSize, size - position);
+            final ByteBuffer block;
+            if (map) {
+                block = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            } else {
+                buffer.clear();
+                buffer.limit(length);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) == -1) {
+                        throw new EOFException("Hash: file truncated at " + (position + buffer.position()));
+                    }
+                }
+                buffer.flip();
+                block = buffer;
+            }
+            Future<Void> md5Future = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    md5Digest.update(block.duplicate());
+                    return null;
+                }
+            });
+            sha256Digest.update(block.duplicate());
+            try {
+                md5Future.get();
+            } catch (InterruptedException ex) {
+                md5Future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Hash: interrupted");
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+        return new Hash(toString(md5Digest.digest()), toString(sha256Digest.digest()), size);
+    }
+
+    private static MessageDigest getDigest(HashType hashType) {
         try {
-            md5Digest = MessageDigest.getInstance(HashType.MD5.getValue());
-            sha256Digest = MessageDigest.getInstance(HashType.SHA256.getValue());
+            return MessageDigest.getInstance(hashType.getValue());
         } catch (NoSuchAlgorithmException ex) {
             throw new RuntimeException(ex);
         }
+    }
+
+    private static Hash getHash(InputStream is, long size)
+            throws IOException {
+        MessageDigest md5Digest = getDigest(HashType.MD5);
+        MessageDigest sha256Digest = getDigest(HashType.SHA256);
         byte[] buf = new byte[8192];
         int count;
         while ((count = is.read(buf)) > 0) {
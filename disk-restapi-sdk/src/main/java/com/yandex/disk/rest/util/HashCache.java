@@ -0,0 +1,296 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Persistent cache of file hashes keyed by canonical path, length and modification time.
+ * <br/>
+ * Entries are kept in memory in LRU order, at most {@code maxEntries} of them. Every new entry and
+ * every removal is appended to the index file, the file is rewritten from memory when it grows twice
+ * as large as the cache and on {@link #close()}. A corrupt index file is logged and the cache starts
+ * empty. A file modified without changing its length and modification time isn't detected
+ */
+public class HashCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashCache.class);
+
+    private static final int MAGIC = 0x59444843;
+
+    private static final int VERSION = 1;
+
+    private static final int MD5_LENGTH = 16;
+
+    private static final int SHA256_LENGTH = 32;
+
+    /**
+     * Length of a record which removes the entry of its path
+     */
+    private static final long REMOVED = -1;
+
+    @NonNull
+    private final File indexFile;
+
+    private final int maxEntries;
+
+    @NonNull
+    private final Map<String, Entry> entries;
+
+    private boolean loaded;
+
+    private int records;
+
+    private boolean truncated;
+
+    @Nullable
+    private DataOutputStream out;
+
+    public HashCache(@NonNull final File indexFile, final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries=" + maxEntries);
+        }
+        this.indexFile = indexFile;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > HashCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Hash of {@code file} from the cache, computed and cached if the file is unknown or has changed
+     */
+    @NonNull
+    public Hash getHash(@NonNull final File file)
+            throws IOException {
+        final Hash cached = get(file);
+        if (cached != null) {
+            return cached;
+        }
+        final Hash hash = Hash.getHash(file);
+        put(file, hash);
+        return hash;
+    }
+
+    /**
+     * @return cached hash or <tt>null</tt> if the file is unknown or has changed
+     */
+    @Nullable
+    public synchronized Hash get(@NonNull final File file)
+            throws IOException {
+        load();
+        final Entry entry = entries.get(file.getCanonicalPath());
+        if (entry == null || entry.length != file.length() || entry.lastModified != file.lastModified()) {
+            return null;
+        }
+        return entry.hash;
+    }
+
+    /**
+     * Cache {@code hash} for the current length and modification time of {@code file}
+     */
+    public synchronized void put(@NonNull final File file, @NonNull final Hash hash)
+            throws IOException {
+        if (hash.getSize() != file.length()) {
+            throw new IllegalArgumentException("hash size " + hash.getSize() + " != file length " + file.length());
+        }
+        load();
+        final Entry entry = new Entry(file.getCanonicalPath(), file.length(), file.lastModified(), hash);
+        entries.put(entry.path, entry);
+        record(entry);
+    }
+
+    public synchronized void remove(@NonNull final File file)
+            throws IOException {
+        load();
+        final Entry entry = entries.remove(file.getCanonicalPath());
+        if (entry != null) {
+            record(new Entry(entry.path, REMOVED, 0, entry.hash));
+        }
+    }
+
+    private void record(@NonNull final Entry entry)
+            throws IOException {
+        if (truncated || records >= 2 * Math.max(entries.size(), maxEntries / 2)) {
+            compact();
+        } else {
+            append(entry);
+        }
+    }
+
+    /**
+     * Rewrite the index file in LRU order and close it. The cache may still be used
+     */
+    public synchronized void close()
+            throws IOException {
+        if (loaded) {
+            compact();
+        }
+    }
+
+    private void closeOutput()
+            throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private void load()
+            throws IOException {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        } catch (FileNotFoundException ex) {
+            return;
+        }
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.warn("HashCache: unknown index format " + indexFile);
+                entries.clear();
+                return;
+            }
+            while (true) {
+                in.mark(1);
+                if (in.read() == -1) {
+                    break;
+                }
+                in.reset();
+                final Entry entry = read(in);
+                if (entry.length == REMOVED) {
+                    entries.remove(entry.path);
+                } else {
+                    entries.put(entry.path, entry);
+                }
+                records++;
+            }
+        } catch (EOFException ex) {
+            logger.warn("HashCache: partially written record dropped");
+            truncated = true;
+        } catch (IOException ex) {
+            logger.warn("HashCache: corrupt index " + indexFile + ", starting empty", ex);
+            entries.clear();
+            records = 0;
+            truncated = true;
+        } finally {
+            in.close();
+        }
+        logger.debug("HashCache: loaded " + entries.size() + " of " + records + " records");
+    }
+
+    private void append(@NonNull final Entry entry)
+            throws IOException {
+        if (out == null) {
+            final boolean exists = indexFile.exists() && records > 0;
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, exists)));
+            if (!exists) {
+                writeHeader(out);
+            }
+        }
+        write(out, entry);
+        out.flush();
+        records++;
+    }
+
+    private void compact()
+            throws IOException {
+        closeOutput();
+        final File tmp = new File(indexFile.getPath() + ".tmp");
+        final DataOutputStream tmpOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            writeHeader(tmpOut);
+            for (Entry entry : entries.values()) {
+                write(tmpOut, entry);
+            }
+        } finally {
+            tmpOut.close();
+        }
+        if (!tmp.renameTo(indexFile)) {
+            tmp.delete();
+            throw new IOException("can't rename " + tmp + " to " + indexFile);
+        }
+        records = entries.size();
+        truncated = false;
+    }
+
+    private static void writeHeader(@NonNull final DataOutputStream out)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    private static void write(@NonNull final DataOutputStream out, @NonNull final Entry entry)
+            throws IOException {
+        out.writeUTF(entry.path);
+        out.writeLong(entry.length);
+        out.writeLong(entry.lastModified);
+        out.write(toBytes(entry.hash.getMd5(), MD5_LENGTH));
+        out.write(toBytes(entry.hash.getSha256(), SHA256_LENGTH));
+    }
+
+    @NonNull
+    private static Entry read(@NonNull final DataInputStream in)
+            throws IOException {
+        final String path = in.readUTF();
+        final long length = in.readLong();
+        final long lastModified = in.readLong();
+        final byte[] md5 = new byte[MD5_LENGTH];
+        in.readFully(md5);
+        final byte[] sha256 = new byte[SHA256_LENGTH];
+        in.readFully(sha256);
+        return new Entry(path, length, lastModified, new Hash(Hash.toString(md5), Hash.toString(sha256), length));
+    }
+
+    @NonNull
+    private static byte[] toBytes(@NonNull final String hex, final int length) {
+        if (hex.length() != 2 * length) {
+            throw new IllegalArgumentException("hex=" + hex);
+        }
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static class Entry {
+
+        final String path;
+        final long length, lastModified;
+        final Hash hash;
+
+        Entry(String path, long length, long lastModified, Hash hash) {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.util;
+
+import android.support.annotation.NonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Incremental MD5 and SHA-256 of a byte stream with a state that can be saved and restored.
+ * <br/>
+ * {@link java.security.MessageDigest} can't export its intermediate state, so both digests are
+ * implemented here over a shared 64 byte block buffer. The state of a partially hashed file
+ * survives a process restart with {@link #toByteArray()} and {@link #fromByteArray(byte[])}
+ */
+public class HashState {
+
+    private static final int VERSION = 1;
+
+    private static final int BLOCK_SIZE = 64;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private static final int[] MD5_INIT = {
+            0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476,
+    };
+
+    private static final int[] MD5_SHIFT = {
+            7, 12, 17, 22, 5, 9, 14, 20, 4, 11, 16, 23, 6, 10, 15, 21,
+    };
+
+    private static final int[] MD5_K = {
+            0xd76aa478, 0xe8c7b756, 0x242070db, 0xc1bdceee,
+            0xf57c0faf, 0x4787c62a, 0xa8304613, 0xfd469501,
+            0x698098d8, 0x8b44f7af, 0xffff5bb1, 0x895cd7be,
+            0x6b901122, 0xfd987193, 0xa679438e, 0x49b40821,
+            0xf61e2562, 0xc040b340, 0x265e5a51, 0xe9b6c7aa,
+            0xd62f105d, 0x02441453, 0xd8a1e681, 0xe7d3fbc8,
+            0x21e1cde6, 0xc33707d6, 0xf4d50d87, 0x455a14ed,
+            0xa9e3e905, 0xfcefa3f8, 0x676f02d9, 0x8d2a4c8a,
+            0xfffa3942, 0x8771f681, 0x6d9d6122, 0xfde5380c,
+            0xa4beea44, 0x4bdecfa9, 0xf6bb4b60, 0xbebfbc70,
+            0x289b7ec6, 0xeaa127fa, 0xd4ef3085, 0x04881d05,
+            0xd9d4d039, 0xe6db99e5, 0x1fa27cf8, 0xc4ac5665,
+            0xf4292244, 0x432aff97, 0xab9423a7, 0xfc93a039,
+            0x655b59c3, 0x8f0ccc92, 0xffeff47d, 0x85845dd1,
+            0x6fa87e4f, 0xfe2ce6e0, 0xa3014314, 0x4e0811a1,
+            0xf7537e82, 0xbd3af235, 0x2ad7d2bb, 0xeb86d391,
+    };
+
+    private static final int[] SHA256_INIT = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a,
+            0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19,
+    };
+
+    private static final int[] SHA256_K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5,
+            0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3,
+            0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc,
+            0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7,
+            0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13,
+            0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3,
+            0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5,
+            0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208,
+            0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2,
+    };
+
+    private final int[] md5 = new int[4];
+    private final int[] sha256 = new int[8];
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private final int[] words = new int[64];
+    private long position;
+
+    public HashState() {
+        System.arraycopy(MD5_INIT, 0, md5, 0, md5.length);
+        System.arraycopy(SHA256_INIT, 0, sha256, 0, sha256.length);
+    }
+
+    /**
+     * Number of bytes hashed so far
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public void update(@NonNull final byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        int filled = (int) (position % BLOCK_SIZE);
+        position += length;
+        if (filled > 0) {
+            final int count = Math.min(BLOCK_SIZE - filled, length);
+            System.arraycopy(bytes, offset, block, filled, count);
+            offset += count;
+            length -= count;
+            if (filled + count < BLOCK_SIZE) {
+                return;
+            }
+            processBlock(block, 0);
+        }
+        while (length >= BLOCK_SIZE) {
+            processBlock(bytes, offset);
+            offset += BLOCK_SIZE;
+            length -= BLOCK_SIZE;
+        }
+        System.arraycopy(bytes, offset, block, 0, length);
+    }
+
+    /**
+     * Hash the rest of {@code file} starting from {@link #getPosition()}
+     */
+    public void update(@NonNull final File file)
+            throws IOException {
+        final FileInputStream inputStream = new FileInputStream(file);
+        final FileChannel channel = inputStream.getChannel();
+        try {
+            channel.position(position);
+            final byte[] bytes = new byte[READ_BUFFER_SIZE];
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            int count;
+            while ((count = channel.read(buffer)) != -1) {
+                update(bytes, 0, count);
+                buffer.clear();
+            }
+        } finally {
+            channel.close();
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Digests of the bytes hashed so far. The state isn't changed and may be updated further
+     */
+    @NonNull
+    public Hash getHash() {
+        final HashState copy = copy();
+        final long bits = position << 3;
+        final byte[] padding = new byte[BLOCK_SIZE + 8];
+        padding[0] = (byte) 0x80;
+        final int filled = (int) (position % BLOCK_SIZE);
+        final int padLength = (filled < 56 ? 56 : 120) - filled;
+        copy.update(padding, 0, padLength);
+
+        final HashState md5Copy = copy.copy();
+        final byte[] length = new byte[8];
+        for (int i = 0; i < 8; i++) {
+            length[i] = (byte) (bits >>> (8 * i));
+        }
+        md5Copy.update(length, 0, 8);
+        for (int i = 0; i < 8; i++) {
+            length[i] = (byte) (bits >>> (56 - 8 * i));
+        }
+        copy.update(length, 0, 8);
+
+        final byte[] md5Digest = new byte[16];
+        for (int i = 0; i < 16; i++) {
+            md5Digest[i] = (byte) (md5Copy.md5[i / 4] >>> (8 * (i % 4)));
+        }
+        final byte[] sha256Digest = new byte[32];
+        for (int i = 0; i < 32; i++) {
+            sha256Digest[i] = (byte) (copy.sha256[i / 4] >>> (24 - 8 * (i % 4)));
+        }
+        return new Hash(Hash.toString(md5Digest), Hash.toString(sha256Digest), position);
+    }
+
+    @NonNull
+    public HashState copy() {
+        final HashState copy = new HashState();
+        System.arraycopy(md5, 0, copy.md5, 0, md5.length);
+        System.arraycopy(sha256, 0, copy.sha256, 0, sha256.length);
+        System.arraycopy(block, 0, copy.block, 0, block.length);
+        copy.position = position;
+        return copy;
+    }
+
+    @NonNull
+    public byte[] toByteArray() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION);
+            out.writeLong(position);
+            for (int word : md5) {
+                out.writeInt(word);
+            }
+            for (int word : sha256) {
+                out.writeInt(word);
+            }
+            out.write(block, 0, (int) (position % BLOCK_SIZE));
+            out.flush();
+        } catch (IOException ex) {
+            // never happen
+            throw new RuntimeException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    @NonNull
+    public static HashState fromByteArray(@NonNull final byte[] bytes)
+            throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        final int version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("HashState: unknown version " + version);
+        }
+        final HashState state = new HashState();
+        state.position = in.readLong();
+        if (state.position < 0) {
+            throw new IOException("HashState: negative position " + state.position);
+        }
+        for (int i = 0; i < state.md5.length; i++) {
+            state.md5[i] = in.readInt();
+        }
+        for (int i = 0; i < state.sha256.length; i++) {
+            state.sha256[i] = in.readInt();
+        }
+        in.readFully(state.block, 0, (int) (state.position % BLOCK_SIZE));
+        if (in.available() > 0) {
+            throw new IOException("HashState: trailing data");
+        }
+        return state;
+    }
+
+    private void processBlock(@NonNull final byte[] bytes, final int offset) {
+        processMd5(bytes, offset);
+        processSha256(bytes, offset);
+    }
+
+    private void processMd5(@NonNull final byte[] bytes, final int offset) {
+        final int[] x = words;
+        for (int i = 0; i < 16; i++) {
+            final int p = offset + 4 * i;
+            x[i] = (bytes[p] & 0xff) | (bytes[p + 1] & 0xff) << 8
+                    | (bytes[p + 2] & 0xff) << 16 | (bytes[p + 3] & 0xff) << 24;
+        }
+        int a = md5[0], b = md5[1], c = md5[2], d = md5[3];
+        for (int i = 0; i < 64; i++) {
+            final int f, g;
+            switch (i >> 4) {
+                case 0:
+                    f = (b & c) | (~b & d);
+                    g = i;
+                    break;
+                case 1:
+                    f = (d & b) | (~d & c);
+                    g = (5 * i + 1) & 15;
+                    break;
+                case 2:
+                    f = b ^ c ^ d;
+                    g = (3 * i + 5) & 15;
+                    break;
+                default:
+                    f = c ^ (b | ~d);
+                    g = (7 * i) & 15;
+                    break;
+            }
+            final int temp = d;
+            d = c;
+            c = b;
+            b += Integer.rotateLeft(a + f + MD5_K[i] + x[g], MD5_SHIFT[((i >> 4) << 2) | (i & 3)]);
+            a = temp;
+        }
+        md5[0] += a;
+        md5[1] += b;
+        md5[2] += c;
+        md5[3] += d;
+    }
+
+    private void processSha256(@NonNull final byte[] bytes, final int offset) {
+        final int[] w = words;
+        for (int i = 0; i < 16; i++) {
+            final int p = offset + 4 * i;
+            w[i] = (bytes[p] & 0xff) << 24 | (bytes[p + 1] & 0xff) << 16
+                    | (bytes[p + 2] & 0xff) << 8 | (bytes[p + 3] & 0xff);
+        }
+        for (int i = 16; i < 64; i++) {
+            final int s0 = Integer.rotateRight(w[i - 15], 7) ^ Integer.rotateRight(w[i - 15], 18)
+                    ^ (w[i - 15] >>> 3);
+            final int s1 = Integer.rotateRight(w[i - 2], 17) ^ Integer.rotateRight(w[i - 2], 19)
+                    ^ (w[i - 2] >>> 10);
+            w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+        }
+        int a = sha256[0], b = sha256[1], c = sha256[2], d = sha256[3];
+        int e = sha256[4], f = sha256[5], g = sha256[6], h = sha256[7];
+        for (int i = 0; i < 64; i++) {
+            final int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            final int ch = (e & f) ^ (~e & g);
+            final int temp1 = h + s1 + ch + SHA256_K[i] + w[i];
+            final int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            final int maj = (a & b) ^ (a & c) ^ (b & c);
+            final int temp2 = s0 + maj;
+            h = g;
+            g = f;
+            f = e;
+            e = d + temp1;
+            d = c;
+            c = b;
+            b = a;
+            a = temp1 + temp2;
+        }
+        sha256[0] += a;
+        sha256[1] += b;
+        sha256[2] += c;
+        sha256[3] += d;
+        sha256[4] += e;
+        sha256[5] += f;
+        sha256[6] += g;
+        sha256[7] += h;
+    }
+}
@@ -18,6 +18,10 @@ public class ISO8601 {
 
     private static final String FORMAT = "yyyy-MM-dd'T'HH:mm:ssZ";
 
+    private static final long MILLIS_IN_MINUTE = 60 * 1000L;
+
+    private static final long MILLIS_IN_DAY = 24 * 60 * MILLIS_IN_MINUTE;
+
     public static String fromCalendar(final Calendar calendar) {
         Date date = calendar.getTime();
         String formatted = new SimpleDateFormat(FORMAT).format(date);
@@ -40,9 +44,120 @@ public class ISO8601 {
 
     public static Date parse(final String iso8601string) {
         try {
-            return toCalendar(iso8601string).getTime();
+            return new Date(parseMillis(iso8601string));
         } catch (ParseException e) {
             return null;
         }
     }
+
+    /**
+     * Parse <tt>yyyy-MM-ddTHH:mm:ss[.SSS](Z|+HH:MM|+HHMM)</tt> without creating any objects.
+     * Digits of the fraction after milliseconds are ignored. Thread safe
+     *
+     * @return milliseconds since the epoch
+     */
+    public static long parseMillis(final CharSequence iso8601string)
+            throws ParseException {
+        final CharSequence s = iso8601string;
+        final int length = s.length();
+        if (length < 20) {
+            throw new ParseException("Invalid length", 0);
+        }
+        final int year = digits(s, 0, 4);
+        expect(s, 4, '-');
+        final int month = digits(s, 5, 2);
+        expect(s, 7, '-');
+        final int day = digits(s, 8, 2);
+        expect(s, 10, 'T');
+        final int hour = digits(s, 11, 2);
+        expect(s, 13, ':');
+        final int minute = digits(s, 14, 2);
+        expect(s, 16, ':');
+        final int second = digits(s, 17, 2);
+        if (month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 60) {
+            throw new ParseException("Invalid date", 0);
+        }
+
+        int pos = 19;
+        int millis = 0;
+        if (s.charAt(pos) == '.') {
+            final int start = ++pos;
+            while (pos < length && isDigit(s.charAt(pos))) {
+                if (pos - start < 3) {
+                    millis = millis * 10 + s.charAt(pos) - '0';
+                }
+                pos++;
+            }
+            if (pos == start) {
+                throw new ParseException("Invalid fraction", pos);
+            }
+            for (int i = pos - start; i < 3; i++) {
+                millis *= 10;
+            }
+        }
+
+        int offset = 0;
+        if (pos < length && s.charAt(pos) == 'Z') {
+            pos++;
+        } else if (pos < length && (s.charAt(pos) == '+' || s.charAt(pos) == '-')) {
+            final int sign = s.charAt(pos) == '-' ? -1 : 1;
+            final int offsetHours = digits(s, pos + 1, 2);
+            pos += 3;
+            if (pos < length && s.charAt(pos) == ':') {
+                pos++;
+            }
+            final int offsetMinutes = digits(s, pos, 2);
+            pos += 2;
+            offset = sign * (offsetHours * 60 + offsetMinutes);
+        } else {
+            throw new ParseException("Invalid time zone", pos);
+        }
+        if (pos != length) {
+            throw new ParseException("Unexpected characters", pos);
+        }
+
+        return daysFromEpoch(year, month, day) * MILLIS_IN_DAY
+                + ((hour * 60L + minute - offset) * 60 + second) * 1000 + millis;
+    }
+
+    /**
+     * Days from 1970-01-01 in the proleptic Gregorian calendar
+     */
+    private static long daysFromEpoch(int year, final int month, final int day) {
+        if (month <= 2) {
+            year--;
+        }
+        final int era = (year >= 0 ? year : year - 399) / 400;
+        final int yearOfEra = year - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static int digits(final CharSequence s, final int start, final int count)
+            throws ParseException {
+        if (start + count > s.length()) {
+            throw new ParseException("Invalid length", start);
+        }
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            final char c = s.charAt(i);
+            if (!isDigit(c)) {
+                throw new ParseException("Digit expected", i);
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    private static void expect(final CharSequence s, final int pos, final char c)
+            throws ParseException {
+        if (s.charAt(pos) != c) {
+            throw new ParseException("'" + c + "' expected", pos);
+        }
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
 }
@@ -0,0 +1,216 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+import com.yandex.android.rest.BuildConfig;
+import com.yandex.disk.rest.exceptions.http.NotFoundException;
+import com.yandex.disk.rest.json.DiskInfo;
+import com.yandex.disk.rest.json.Resource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class,
+        sdk = Build.VERSION_CODES.LOLLIPOP
+)
+public class AsyncRestClientTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private MockDiskServer server;
+
+    private RestClient client;
+
+    private AsyncRestClient asyncClient;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockDiskServer();
+        server.start();
+        client = new RestClient(new Credentials("mock", "mock-token"), OkHttpClientFactory.makeClient(),
+                server.getUrl());
+        asyncClient = new AsyncRestClient(client);
+        dir = File.createTempFile("async-rest-client-test", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testDiskInfo() throws Exception {
+        DiskInfo diskInfo = asyncClient.getDiskInfo().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(diskInfo);
+        assertEquals(MockDiskServer.TOTAL_SPACE, diskInfo.getTotalSpace());
+    }
+
+    @Test
+    public void testHttpError() throws Exception {
+        RestFuture<Resource> future = asyncClient.getResources(new ResourcesArgs.Builder()
+                .setPath("/not-found")
+                .build());
+        try {
+            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("ExecutionException expected");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof NotFoundException);
+            assertEquals(404, ((NotFoundException) ex.getCause()).getCode());
+        }
+        try {
+            future.await();
+            fail("NotFoundException expected");
+        } catch (NotFoundException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDownload() throws Exception {
+        File saveTo = new File(dir, "download-test.jpg");
+        RestFuture<Void> future = asyncClient.downloadFile("/download-test.jpg", saveTo, null);
+        future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertArrayEquals(server.getFile("/download-test.jpg"), readFile(saveTo));
+    }
+
+    @Test
+    public void testUpload() throws Exception {
+        byte[] content = new byte[100 * 1024];
+        new Random(0).nextBytes(content);
+        File source = new File(dir, "upload.bin");
+        FileOutputStream out = new FileOutputStream(source);
+        out.write(content);
+        out.close();
+
+        final LinkedBlockingQueue<Object> results = new LinkedBlockingQueue<>();
+        RestFuture<Void> future = asyncClient.uploadFile("/upload.bin", false, source, null);
+        future.addCallback(new RestFuture.Callback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                results.add("done");
+            }
+
+            @Override
+            public void onFailure(@NonNull Exception ex) {
+                results.add(ex);
+            }
+        });
+        assertEquals("done", results.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(future.isDone());
+        assertArrayEquals(content, server.getFile("/upload.bin"));
+    }
+
+    @Test
+    public void testCancelBeforeLink() throws Exception {
+        server.setLatency(500);
+        File saveTo = new File(dir, "download-test.jpg");
+        RestFuture<Void> future = asyncClient.downloadFile("/download-test.jpg", saveTo, null);
+        assertTrue(future.cancel(true));
+        assertTrue(future.isCancelled());
+        try {
+            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("CancellationException expected");
+        } catch (CancellationException ex) {
+            // expected
+        }
+        // the link request is cancelled too, nothing is downloaded
+        Thread.sleep(1000);
+        assertFalse(saveTo.exists());
+    }
+
+    @Test
+    public void testCancelAfterLink() throws Exception {
+        final LinkedBlockingQueue<Runnable> transfers = new LinkedBlockingQueue<>();
+        AsyncRestClient asyncClient = new AsyncRestClient(client, new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                transfers.add(command);
+            }
+        });
+        File saveTo = new File(dir, "download-test.jpg");
+        RestFuture<Void> future = asyncClient.downloadFile("/download-test.jpg", saveTo, null);
+        Runnable transfer = transfers.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(transfer);
+        assertTrue(future.cancel(true));
+        transfer.run();
+        assertTrue(future.isCancelled());
+        assertFalse(saveTo.exists());
+    }
+
+    @Test
+    public void testCancelRunningTransfer() throws Exception {
+        server.setBandwidth(200 * 1024);
+        File saveTo = new File(dir, "download-test.jpg");
+        final LinkedBlockingQueue<Long> progress = new LinkedBlockingQueue<>();
+        RestFuture<Void> future = asyncClient.downloadFile("/download-test.jpg", saveTo, new ProgressListener() {
+            @Override
+            public void updateProgress(long loaded, long total) {
+                progress.add(loaded);
+            }
+
+            @Override
+            public boolean hasCancelled() {
+                return false;
+            }
+        });
+        assertNotNull(progress.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(future.cancel(true));
+        // the transfer stops at the next progress update
+        Thread.sleep(500);
+        progress.clear();
+        Thread.sleep(500);
+        assertTrue(progress.isEmpty());
+        assertTrue(saveTo.length() < MockDiskServer.DOWNLOAD_TEST_SIZE);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        int offset = 0;
+        while (offset < data.length) {
+            offset += in.read(data, offset, data.length - offset);
+        }
+        in.close();
+        return data;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import com.yandex.disk.rest.util.Hash;
+import com.yandex.disk.rest.util.HashState;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(JUnit4.class)
+public class DirUploadCheckpointsTest {
+
+    private File dir;
+
+    private File source;
+
+    private byte[] content;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("upload-checkpoints-test", "");
+        dir.delete();
+        source = File.createTempFile("upload-source", ".bin");
+        content = new byte[300 * 1024 + 17];
+        new Random(42).nextBytes(content);
+        write(source, content);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+        source.delete();
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Test
+    public void testResumeHash() throws Exception {
+        // upload interrupted after 100 KB
+        HashState hashState = new HashState();
+        hashState.update(content, 0, 100 * 1024 + 3);
+        new DirUploadCheckpoints(dir).save(source, hashState);
+
+        // a new process resumes from the checkpoint
+        HashState loaded = new DirUploadCheckpoints(dir).load(source);
+        assertNotNull(loaded);
+        assertEquals(100 * 1024 + 3, loaded.getPosition());
+        loaded.update(source);
+
+        Hash expected = Hash.getHash(source);
+        Hash resumed = loaded.getHash();
+        assertEquals(expected.getMd5(), resumed.getMd5());
+        assertEquals(expected.getSha256(), resumed.getSha256());
+        assertEquals(expected.getSize(), resumed.getSize());
+    }
+
+    @Test
+    public void testChangedSource() throws Exception {
+        HashState hashState = new HashState();
+        hashState.update(content, 0, 1024);
+        DirUploadCheckpoints checkpoints = new DirUploadCheckpoints(dir);
+        checkpoints.save(source, hashState);
+
+        write(source, new byte[10]);
+        assertNull(checkpoints.load(source));
+        // the stale checkpoint is removed
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        DirUploadCheckpoints checkpoints = new DirUploadCheckpoints(dir);
+        assertNull(checkpoints.load(source));
+        checkpoints.save(source, new HashState());
+        assertNotNull(checkpoints.load(source));
+        checkpoints.remove(source);
+        assertNull(checkpoints.load(source));
+    }
+}
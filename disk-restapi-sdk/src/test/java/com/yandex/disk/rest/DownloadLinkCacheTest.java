@@ -0,0 +1,127 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import com.yandex.disk.rest.json.JsonConverter;
+import com.yandex.disk.rest.json.Link;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class DownloadLinkCacheTest {
+
+    private static Link link(String href) {
+        return JsonConverter.getGson().fromJson("{\"href\":\"" + href + "\",\"method\":\"GET\"}", Link.class);
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        DownloadLinkCache cache = new DownloadLinkCache(10, 1, TimeUnit.HOURS);
+        String key = DownloadLinkCache.getKey("/a.jpg");
+        Link link = link("https://downloader.disk.yandex.ru/disk/a");
+
+        assertNull(cache.get(key));
+        cache.put(key, link);
+        assertSame(link, cache.get(key));
+        assertSame(link, cache.get(key));
+        assertNull(cache.get(DownloadLinkCache.getKey("/b.jpg")));
+
+        assertEquals(4, cache.getRequestCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testKeys() {
+        assertNotEquals(DownloadLinkCache.getKey("/a"), DownloadLinkCache.getPublicKey("/a", null));
+        assertNotEquals(DownloadLinkCache.getPublicKey("key", "/a"), DownloadLinkCache.getPublicKey("key", "/b"));
+        assertNotEquals(DownloadLinkCache.getPublicKey("key", "/a"), DownloadLinkCache.getPublicKey("key", null));
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        DownloadLinkCache cache = new DownloadLinkCache(10, 50, TimeUnit.MILLISECONDS);
+        String key = DownloadLinkCache.getKey("/a.jpg");
+        cache.put(key, link("https://downloader.disk.yandex.ru/disk/a"));
+        cache.put(DownloadLinkCache.getKey("/b.jpg"), link("https://downloader.disk.yandex.ru/disk/b"));
+        Thread.sleep(100);
+
+        assertNull(cache.get(key));
+        assertEquals(1, cache.size());
+        cache.evictExpired();
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getExpirationCount());
+    }
+
+    @Test
+    public void testLru() {
+        DownloadLinkCache cache = new DownloadLinkCache(2, 1, TimeUnit.HOURS);
+        cache.put("a", link("https://downloader.disk.yandex.ru/disk/a"));
+        cache.put("b", link("https://downloader.disk.yandex.ru/disk/b"));
+        cache.get("a");
+        cache.put("c", link("https://downloader.disk.yandex.ru/disk/c"));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals("https://downloader.disk.yandex.ru/disk/a", cache.get("a").getHref());
+    }
+
+    @Test
+    public void testInvalidate() {
+        DownloadLinkCache cache = new DownloadLinkCache(10, 1, TimeUnit.HOURS);
+        String href = "https://downloader.disk.yandex.ru/disk/a";
+        cache.put("a", link(href));
+
+        // resolved, not yet served from the cache: a new link won't help
+        assertFalse(cache.invalidate("a", href));
+        cache.put("a", link(href));
+        cache.get("a");
+        assertFalse(cache.invalidate("a", "https://downloader.disk.yandex.ru/disk/other"));
+        assertTrue(cache.invalidate("a", href));
+        assertNull(cache.get("a"));
+        assertEquals(2, cache.getInvalidationCount());
+
+        assertTrue(DownloadLinkCache.isExpired(403));
+        assertTrue(DownloadLinkCache.isExpired(410));
+        assertFalse(DownloadLinkCache.isExpired(503));
+    }
+
+    @Test
+    public void testInvalidateTree() {
+        DownloadLinkCache cache = new DownloadLinkCache(10, 1, TimeUnit.HOURS);
+        for (String path : new String[]{"/a", "/a/b.jpg", "/a/c/d.jpg", "/ab.jpg", "/e.jpg"}) {
+            cache.put(DownloadLinkCache.getKey(path), link("https://downloader.disk.yandex.ru/disk" + path));
+        }
+        String publicKey = DownloadLinkCache.getPublicKey("key", "/a/b.jpg");
+        cache.put(publicKey, link("https://downloader.disk.yandex.ru/public/b"));
+
+        cache.invalidateTree("disk:/a");
+        assertEquals(3, cache.size());
+        assertNull(cache.get(DownloadLinkCache.getKey("/a/c/d.jpg")));
+        assertEquals("https://downloader.disk.yandex.ru/disk/ab.jpg",
+                cache.get(DownloadLinkCache.getKey("disk:/ab.jpg")).getHref());
+
+        cache.invalidateTree("/");
+        assertEquals(1, cache.size());
+        assertEquals("https://downloader.disk.yandex.ru/public/b", cache.get(publicKey).getHref());
+        assertEquals(0, cache.getInvalidationCount());
+    }
+}
@@ -0,0 +1,1039 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.squareup.okhttp.HttpUrl;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import com.yandex.disk.rest.util.Logger;
+import com.yandex.disk.rest.util.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okio.Buffer;
+
+/**
+ * In-process Yandex.Disk for tests without the network.
+ * <br/>
+ * Implements the requests of {@link com.yandex.disk.rest.retrofit.CloudApi} and {@link RestClientIO}
+ * over a disk in memory: resources, trash, publishing, asynchronous operations, upload hrefs with
+ * <tt>Content-Range</tt> and download hrefs with <tt>Range</tt>. A download href keeps serving the version
+ * of the file it was issued for. API answers carry an ETag of their body and are revalidated with
+ * <tt>If-None-Match</tt>. Latency, bandwidth and errors can be injected. The disk starts with the files
+ * {@link RestClientTest} expects
+ */
+public class MockDiskServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(MockDiskServer.class);
+
+    public static final String API_BUILD = "2.27.12";
+
+    public static final long TOTAL_SPACE = 10L * 1024 * 1024 * 1024;
+
+    public static final int DOWNLOAD_TEST_SIZE = 2031252;
+
+    private static final String DISK = "disk:";
+    private static final String TRASH = "trash:";
+    private static final String ROOT = DISK + "/";
+    private static final String TRASH_ROOT = TRASH + "/";
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d*)");
+    private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    private final Gson gson = new Gson();
+
+    private final MockWebServer server = new MockWebServer();
+
+    private final TreeMap<String, Node> nodes = new TreeMap<>();
+
+    private final Map<String, Integer> operations = new HashMap<>();
+
+    /**
+     * Download tokens to the version of the file they were issued for
+     */
+    private final Map<String, Node> downloads = new HashMap<>();
+
+    private final Map<String, Upload> uploads = new HashMap<>();
+
+    private final Random random = new Random(1);
+
+    private long clock = 1420070400000L;
+
+    private int ids;
+
+    private volatile long latencyMillis;
+
+    private volatile long bytesPerSecond;
+
+    private int operationPolls = 1;
+
+    private int failures;
+
+    private int failureCode;
+
+    private double errorRate;
+
+    private int errorCode;
+
+    private static class Node {
+
+        final String path;
+        final boolean dir;
+        final long created;
+        long modified;
+        byte[] data;
+        String md5, sha256;
+        String publicKey;
+        Map<String, Object> customProperties;
+        String originPath;
+        long deleted;
+
+        Node(String path, boolean dir, long created) {
+            this.path = path;
+            this.dir = dir;
+            this.created = created;
+            this.modified = created;
+        }
+    }
+
+    private static class Upload {
+
+        final String path;
+        Buffer received = new Buffer();
+
+        Upload(String path) {
+            this.path = path;
+        }
+    }
+
+    public MockDiskServer() {
+        putFolder("/");
+        nodes.put(TRASH_ROOT, new Node(TRASH_ROOT, true, tick()));
+        for (String folder : new String[]{"/0-test", "/Applications", "/Documents", "/Downloads", "/Photos"}) {
+            putFolder(folder);
+        }
+        byte[] image = new byte[DOWNLOAD_TEST_SIZE];
+        new Random(DOWNLOAD_TEST_SIZE).nextBytes(image);
+        putFile("/download-test.jpg", image);
+        putFile("/music.mp3", new byte[4096]);
+        putFile("/video.mp4", new byte[8192]);
+        putFile("/readme.txt", "Yandex.Disk".getBytes());
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return MockDiskServer.this.dispatch(request);
+            }
+        });
+    }
+
+    public void start()
+            throws IOException {
+        server.start();
+    }
+
+    public void shutdown()
+            throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * @return base url for {@link RestClient}, without a trailing slash
+     */
+    public String getUrl() {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+
+    public int getRequestCount() {
+        return server.getRequestCount();
+    }
+
+    /**
+     * Delay before every answer
+     */
+    public void setLatency(long millis) {
+        this.latencyMillis = millis;
+    }
+
+    /**
+     * Speed of answer bodies, 0 for no limit
+     */
+    public void setBandwidth(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Number of <tt>in-progress</tt> answers before an operation succeeds
+     */
+    public synchronized void setOperationPolls(int polls) {
+        this.operationPolls = polls;
+    }
+
+    /**
+     * Answer the next {@code count} requests with the error code
+     */
+    public synchronized void failRequests(int code, int count) {
+        this.failureCode = code;
+        this.failures = count;
+    }
+
+    /**
+     * Answer random requests with the error code
+     */
+    public synchronized void setErrorRate(double rate, int code) {
+        this.errorRate = rate;
+        this.errorCode = code;
+    }
+
+    public synchronized void putFolder(String path) {
+        String key = toKey(path);
+        nodes.put(key, new Node(key, true, tick()));
+    }
+
+    public synchronized void putFile(String path, byte[] data) {
+        String key = toKey(path);
+        Node node = new Node(key, false, tick());
+        setData(node, data);
+        nodes.put(key, node);
+    }
+
+    /**
+     * Replace the content of a file behind the download hrefs already issued for it, as if it
+     * changed while it was downloaded
+     */
+    public synchronized void changeFile(String path, byte[] data) {
+        Node node = nodes.get(toKey(path));
+        if (node == null || node.dir) {
+            throw new IllegalArgumentException(path);
+        }
+        setData(node, data);
+        node.modified = tick();
+    }
+
+    /**
+     * @return content of the file, <tt>null</tt> if not found
+     */
+    public synchronized byte[] getFile(String path) {
+        Node node = nodes.get(toKey(path));
+        return node != null && !node.dir ? node.data : null;
+    }
+
+    public synchronized boolean exists(String path) {
+        return nodes.containsKey(toKey(path));
+    }
+
+    private MockResponse dispatch(RecordedRequest request) {
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        MockResponse response;
+        try {
+            response = answer(request);
+        } catch (RuntimeException ex) {
+            logger.error("dispatch: " + request.getRequestLine(), ex);
+            response = error(500, "InternalServerError");
+        }
+        response = revalidate(request, response);
+        if (bytesPerSecond > 0) {
+            response.throttleBody(Math.max(1, bytesPerSecond / 10), 100, TimeUnit.MILLISECONDS);
+        }
+        return response;
+    }
+
+    private synchronized MockResponse answer(RecordedRequest request) {
+        if (failures > 0) {
+            failures--;
+            return error(failureCode, "InjectedError");
+        }
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            return error(errorCode, "InjectedError");
+        }
+
+        String method = request.getMethod();
+        HttpUrl url = server.url(request.getPath());
+        String path = url.encodedPath();
+        if (path.startsWith("/download/")) {
+            return download(request, path.substring("/download/".length()));
+        } else if (path.startsWith("/upload/")) {
+            return upload(request, path.substring("/upload/".length()));
+        } else if (path.startsWith("/v1/disk/operations/")) {
+            return operation(path.substring("/v1/disk/operations/".length()));
+        }
+        if (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        switch (method + " " + path) {
+            case "GET /":
+                JsonObject version = new JsonObject();
+                version.addProperty("build", API_BUILD);
+                version.addProperty("api_version", "v1");
+                return json(200, version);
+            case "GET /v1/disk":
+                return diskInfo();
+            case "GET /v1/disk/resources":
+                return getResource(url.queryParameter("path"), url, false);
+            case "PUT /v1/disk/resources":
+                return makeFolder(url.queryParameter("path"));
+            case "DELETE /v1/disk/resources":
+                return delete(toKey(url.queryParameter("path")), Boolean.parseBoolean(url.queryParameter("permanently")));
+            case "PATCH /v1/disk/resources":
+                return patch(url.queryParameter("path"), request.getBody().readUtf8());
+            case "GET /v1/disk/resources/files":
+                return fileList(url, false);
+            case "GET /v1/disk/resources/last-uploaded":
+                return fileList(url, true);
+            case "GET /v1/disk/resources/download":
+                return downloadLink(toKey(url.queryParameter("path")));
+            case "GET /v1/disk/resources/upload":
+                return uploadLink(url.queryParameter("path"), Boolean.parseBoolean(url.queryParameter("overwrite")));
+            case "POST /v1/disk/resources/upload":
+                return saveFromUrl(url.queryParameter("url"), url.queryParameter("path"));
+            case "POST /v1/disk/resources/copy":
+                return copy(url.queryParameter("from"), url.queryParameter("path"),
+                        Boolean.parseBoolean(url.queryParameter("overwrite")), false);
+            case "POST /v1/disk/resources/move":
+                return copy(url.queryParameter("from"), url.queryParameter("path"),
+                        Boolean.parseBoolean(url.queryParameter("overwrite")), true);
+            case "PUT /v1/disk/resources/publish":
+                return publish(url.queryParameter("path"), true);
+            case "PUT /v1/disk/resources/unpublish":
+                return publish(url.queryParameter("path"), false);
+            case "GET /v1/disk/public/resources":
+                return getPublicResource(url);
+            case "GET /v1/disk/public/resources/download":
+                Node shared = findPublic(url.queryParameter("public_key"), url.queryParameter("path"));
+                return shared != null ? downloadLink(shared.path) : notFound();
+            case "POST /v1/disk/public/resources/save-to-disk":
+                return savePublicResource(url.queryParameter("public_key"), url.queryParameter("path"),
+                        url.queryParameter("name"));
+            case "GET /v1/disk/trash/resources":
+                return getResource(toTrashKey(url.queryParameter("path")), url, true);
+            case "DELETE /v1/disk/trash/resources":
+                return deleteFromTrash(url.queryParameter("path"));
+            case "PUT /v1/disk/trash/resources/restore":
+                return restore(url.queryParameter("path"), url.queryParameter("name"),
+                        Boolean.parseBoolean(url.queryParameter("overwrite")));
+            default:
+                return error(404, "NotFoundError");
+        }
+    }
+
+    private MockResponse diskInfo() {
+        long used = 0, trash = 0;
+        for (Node node : nodes.values()) {
+            if (node.data != null) {
+                if (node.path.startsWith(TRASH)) {
+                    trash += node.data.length;
+                } else {
+                    used += node.data.length;
+                }
+            }
+        }
+        JsonObject folders = new JsonObject();
+        folders.addProperty("applications", "disk:/Applications");
+        folders.addProperty("downloads", "disk:/Downloads/");
+        JsonObject info = new JsonObject();
+        info.addProperty("trash_size", trash);
+        info.addProperty("total_space", TOTAL_SPACE);
+        info.addProperty("used_space", used + trash);
+        info.add("system_folders", folders);
+        return json(200, info);
+    }
+
+    private MockResponse getResource(String path, HttpUrl url, boolean trash) {
+        String key = trash ? path : toKey(path);
+        Node node = nodes.get(key);
+        if (node == null) {
+            return notFound();
+        }
+        return json(200, toJson(node, url, trash ? TRASH_ROOT : null));
+    }
+
+    private MockResponse makeFolder(String path) {
+        String key = toKey(path);
+        if (nodes.containsKey(key)) {
+            return error(409, "DiskPathPointsToExistentDirectoryError");
+        }
+        if (!isFolder(parent(key))) {
+            return error(409, "DiskPathDoesntExistsError");
+        }
+        nodes.put(key, new Node(key, true, tick()));
+        return json(201, link(resourceHref(key), "GET"));
+    }
+
+    private MockResponse delete(String key, boolean permanently) {
+        Node node = nodes.get(key);
+        if (node == null || ROOT.equals(key)) {
+            return notFound();
+        }
+        boolean async = hasChildren(key);
+        if (permanently) {
+            removeTree(key);
+        } else {
+            String trashKey = TRASH_ROOT + name(key);
+            for (int i = 1; nodes.containsKey(trashKey); i++) {
+                trashKey = TRASH_ROOT + name(key) + "_" + i;
+            }
+            long deleted = tick();
+            for (Node moved : moveTree(key, trashKey)) {
+                moved.deleted = deleted;
+            }
+            nodes.get(trashKey).originPath = key;
+        }
+        return async ? json(202, link(newOperation(), "GET")) : new MockResponse().setResponseCode(204);
+    }
+
+    private MockResponse patch(String path, String body) {
+        Node node = nodes.get(toKey(path));
+        if (node == null) {
+            return notFound();
+        }
+        try {
+            JsonObject patch = new JsonParser().parse(body).getAsJsonObject();
+            JsonElement properties = patch.get("custom_properties");
+            if (properties != null && properties.isJsonObject()) {
+                if (node.customProperties == null) {
+                    node.customProperties = new LinkedHashMap<>();
+                }
+                for (Map.Entry<String, JsonElement> entry : properties.getAsJsonObject().entrySet()) {
+                    if (entry.getValue().isJsonNull()) {
+                        node.customProperties.remove(entry.getKey());
+                    } else {
+                        node.customProperties.put(entry.getKey(), gson.fromJson(entry.getValue(), Object.class));
+                    }
+                }
+            }
+        } catch (JsonSyntaxException | IllegalStateException ex) {
+            return error(400, "FieldValidationError");
+        }
+        node.modified = tick();
+        return json(200, toJson(node, null, null));
+    }
+
+    private MockResponse fileList(HttpUrl url, boolean lastUploaded) {
+        String mediaType = url.queryParameter("media_type");
+        List<Node> files = new ArrayList<>();
+        for (Node node : nodes.values()) {
+            if (!node.dir && node.path.startsWith(DISK)
+                    && (mediaType == null || Arrays.asList(mediaType.split(",")).contains(getMediaType(node.path)))) {
+                files.add(node);
+            }
+        }
+        if (lastUploaded) {
+            Collections.sort(files, new Comparator<Node>() {
+                @Override
+                public int compare(Node lhs, Node rhs) {
+                    return lhs.modified > rhs.modified ? -1 : (lhs.modified == rhs.modified ? 0 : 1);
+                }
+            });
+        }
+        int limit = intParameter(url, "limit", DEFAULT_LIMIT);
+        int offset = lastUploaded ? 0 : intParameter(url, "offset", 0);
+        JsonArray items = new JsonArray();
+        for (int i = offset; i < files.size() && i < offset + limit; i++) {
+            items.add(toJson(files.get(i), null, null));
+        }
+        JsonObject list = new JsonObject();
+        list.add("items", items);
+        list.addProperty("limit", limit);
+        if (!lastUploaded) {
+            list.addProperty("offset", offset);
+        }
+        return json(200, list);
+    }
+
+    private MockResponse downloadLink(String key) {
+        Node node = nodes.get(key);
+        if (node == null) {
+            return notFound();
+        }
+        if (node.dir) {
+            return error(400, "DiskNotSupportedError");
+        }
+        String token = newId();
+        downloads.put(token, node);
+        return json(200, link(getUrl() + "/download/" + token, "GET"));
+    }
+
+    private MockResponse uploadLink(String path, boolean overwrite) {
+        String key = toKey(path);
+        Node node = nodes.get(key);
+        if (node != null && (node.dir || !overwrite)) {
+            return error(409, "DiskResourceAlreadyExistsError");
+        }
+        if (!isFolder(parent(key))) {
+            return error(409, "DiskPathDoesntExistsError");
+        }
+        String token = newId();
+        uploads.put(token, new Upload(key));
+        JsonObject link = link(getUrl() + "/upload/" + token, "PUT");
+        link.addProperty("operation_id", token);
+        return json(200, link);
+    }
+
+    private MockResponse saveFromUrl(String source, String path) {
+        String key = toKey(path);
+        if (!isFolder(parent(key))) {
+            return error(409, "DiskPathDoesntExistsError");
+        }
+        Node node = new Node(key, false, tick());
+        setData(node, String.valueOf(source).getBytes());
+        nodes.put(key, node);
+        return json(202, link(newOperation(), "GET"));
+    }
+
+    private MockResponse copy(String from, String path, boolean overwrite, boolean move) {
+        String fromKey = toKey(from);
+        String key = toKey(path);
+        if (!nodes.containsKey(fromKey)) {
+            return notFound();
+        }
+        if (nodes.containsKey(key)) {
+            if (!overwrite) {
+                return error(409, "DiskResourceAlreadyExistsError");
+            }
+            removeTree(key);
+        }
+        if (!isFolder(parent(key)) || key.startsWith(fromKey + "/")) {
+            return error(409, "DiskPathDoesntExistsError");
+        }
+        boolean async = hasChildren(fromKey);
+        if (move) {
+            moveTree(fromKey, key);
+        } else {
+            copyTree(fromKey, key);
+        }
+        return async ? json(202, link(newOperation(), "GET")) : json(201, link(resourceHref(key), "GET"));
+    }
+
+    private MockResponse publish(String path, boolean publish) {
+        String key = toKey(path);
+        Node node = nodes.get(key);
+        if (node == null) {
+            return notFound();
+        }
+        node.publicKey = publish ? (node.publicKey != null ? node.publicKey : "pk" + newId()) : null;
+        return json(200, link(resourceHref(key), "GET"));
+    }
+
+    private MockResponse getPublicResource(HttpUrl url) {
+        Node node = findPublic(url.queryParameter("public_key"), url.queryParameter("path"));
+        if (node == null) {
+            return notFound();
+        }
+        Node shared = findPublic(url.queryParameter("public_key"), null);
+        return json(200, toJson(node, url, shared.path));
+    }
+
+    private MockResponse savePublicResource(String publicKey, String path, String name) {
+        Node node = findPublic(publicKey, path);
+        if (node == null) {
+            return notFound();
+        }
+        String key = "disk:/Downloads/" + (name != null && !name.isEmpty() ? name : name(node.path));
+        if (nodes.containsKey(key)) {
+            removeTree(key);
+        }
+        boolean async = hasChildren(node.path);
+        copyTree(node.path, key);
+        return async ? json(202, link(newOperation(), "GET")) : json(201, link(resourceHref(key), "GET"));
+    }
+
+    private MockResponse deleteFromTrash(String path) {
+        String key = toTrashKey(path);
+        if (TRASH_ROOT.equals(key)) {
+            boolean async = hasChildren(TRASH_ROOT);
+            for (String child : children(TRASH_ROOT)) {
+                removeTree(child);
+            }
+            return async ? json(202, link(newOperation(), "GET")) : new MockResponse().setResponseCode(204);
+        }
+        return delete(key, true);
+    }
+
+    private MockResponse restore(String path, String name, boolean overwrite) {
+        String key = toTrashKey(path);
+        Node node = nodes.get(key);
+        if (node == null || TRASH_ROOT.equals(key)) {
+            return notFound();
+        }
+        String origin = node.originPath != null ? node.originPath : ROOT + name(key);
+        String target = name != null ? child(parent(origin), name) : origin;
+        if (nodes.containsKey(target)) {
+            if (!overwrite) {
+                return error(409, "DiskResourceAlreadyExistsError");
+            }
+            removeTree(target);
+        }
+        if (!isFolder(parent(target))) {
+            return error(409, "DiskPathDoesntExistsError");
+        }
+        boolean async = hasChildren(key);
+        for (Node moved : moveTree(key, target)) {
+            moved.deleted = 0;
+            moved.originPath = null;
+        }
+        return async ? json(202, link(newOperation(), "GET")) : json(201, link(resourceHref(target), "GET"));
+    }
+
+    private MockResponse operation(String id) {
+        Integer polls = operations.get(id);
+        if (polls == null) {
+            return notFound();
+        }
+        if (polls > 0) {
+            operations.put(id, polls - 1);
+        }
+        JsonObject status = new JsonObject();
+        status.addProperty("status", polls > 0 ? "in-progress" : "success");
+        return json(200, status);
+    }
+
+    private MockResponse download(RecordedRequest request, String token) {
+        Node node = downloads.get(token);
+        if (node == null) {
+            return new MockResponse().setResponseCode(404);
+        }
+        String etag = node.md5;
+        long size = node.data.length;
+        MockResponse response = new MockResponse()
+                .setHeader("Etag", etag)
+                .setHeader("Content-Type", getMimeType(node.path));
+        String range = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        if (range == null || (ifRange != null && !ifRange.equals(etag))) {
+            if (etag.equals(request.getHeader("If-None-Match"))) {
+                return response.setResponseCode(304);
+            }
+            return body(response.setResponseCode(200), node.data, 0, size, "HEAD".equals(request.getMethod()));
+        }
+        Matcher matcher = RANGE_PATTERN.matcher(range);
+        if (!matcher.matches()) {
+            return body(response.setResponseCode(200), node.data, 0, size, "HEAD".equals(request.getMethod()));
+        }
+        long start = Long.parseLong(matcher.group(1));
+        long end = matcher.group(2).isEmpty() ? size - 1 : Math.min(size - 1, Long.parseLong(matcher.group(2)));
+        if (start >= size || start > end) {
+            return response.setResponseCode(416)
+                    .setHeader("Content-Range", "bytes */" + size);
+        }
+        return body(response.setResponseCode(206)
+                        .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + size),
+                node.data, start, end + 1, "HEAD".equals(request.getMethod()));
+    }
+
+    private MockResponse upload(RecordedRequest request, String token) {
+        Upload upload = uploads.get(token);
+        if (upload == null) {
+            return new MockResponse().setResponseCode(404);
+        }
+        if ("HEAD".equals(request.getMethod())) {
+            Node node = nodes.get(upload.path);
+            if (node != null && !node.dir && node.md5.equalsIgnoreCase(request.getHeader("Etag"))) {
+                return new MockResponse().setResponseCode(200)
+                        .setHeader("Content-Length", node.data.length);
+            }
+            return upload.received.size() > 0
+                    ? new MockResponse().setResponseCode(200).setHeader("Content-Length", upload.received.size())
+                    : new MockResponse().setResponseCode(404);
+        }
+        if (!"PUT".equals(request.getMethod())) {
+            return new MockResponse().setResponseCode(405);
+        }
+        long total = request.getBodySize();
+        String contentRange = request.getHeader("Content-Range");
+        if (contentRange != null) {
+            Matcher matcher = CONTENT_RANGE_PATTERN.matcher(contentRange);
+            if (!matcher.matches()) {
+                return new MockResponse().setResponseCode(400);
+            }
+            long start = Long.parseLong(matcher.group(1));
+            total = Long.parseLong(matcher.group(3));
+            Node node = nodes.get(upload.path);
+            if (start == total && node != null && node.data.length == total) {
+                return new MockResponse().setResponseCode(201);
+            }
+            if (start != upload.received.size()) {
+                return new MockResponse().setResponseCode(416);
+            }
+        } else {
+            upload.received = new Buffer();
+        }
+        upload.received.write(request.getBody(), request.getBodySize());
+        if (upload.received.size() < total) {
+            return new MockResponse().setResponseCode(202);
+        }
+        Node node = new Node(upload.path, false, tick());
+        setData(node, upload.received.readByteArray());
+        nodes.put(upload.path, node);
+        return new MockResponse().setResponseCode(201);
+    }
+
+    private MockResponse body(MockResponse response, byte[] data, long start, long end, boolean head) {
+        if (head) {
+            return response.setHeader("Content-Length", end - start);
+        }
+        Buffer buffer = new Buffer();
+        buffer.write(data, (int) start, (int) (end - start));
+        return response.setBody(buffer);
+    }
+
+    private JsonObject toJson(Node node, HttpUrl url, String relativeTo) {
+        JsonObject json = new JsonObject();
+        json.addProperty("name", name(node.path));
+        json.addProperty("path", relativeTo != null && !node.path.startsWith(TRASH)
+                ? "/" + node.path.substring(relativeTo.length()).replaceFirst("^/", "")
+                : node.path);
+        json.addProperty("type", node.dir ? "dir" : "file");
+        json.addProperty("created", formatDate(node.created));
+        json.addProperty("modified", formatDate(node.modified));
+        if (!node.dir) {
+            json.addProperty("size", node.data.length);
+            json.addProperty("md5", node.md5);
+            json.addProperty("sha256", node.sha256);
+            json.addProperty("mime_type", getMimeType(node.path));
+            json.addProperty("media_type", getMediaType(node.path));
+        }
+        if (node.publicKey != null) {
+            json.addProperty("public_key", node.publicKey);
+            json.addProperty("public_url", "https://yadi.sk/d/" + node.publicKey);
+        }
+        if (node.customProperties != null) {
+            json.add("custom_properties", gson.toJsonTree(node.customProperties));
+        }
+        if (node.originPath != null) {
+            json.addProperty("origin_path", node.originPath);
+        }
+        if (node.deleted != 0) {
+            json.addProperty("deleted", formatDate(node.deleted));
+        }
+        if (node.dir && url != null) {
+            List<String> children = children(node.path);
+            int limit = intParameter(url, "limit", DEFAULT_LIMIT);
+            int offset = intParameter(url, "offset", 0);
+            JsonArray items = new JsonArray();
+            for (int i = offset; i < children.size() && i < offset + limit; i++) {
+                items.add(toJson(nodes.get(children.get(i)), null, relativeTo));
+            }
+            JsonObject embedded = new JsonObject();
+            embedded.addProperty("sort", "name");
+            embedded.addProperty("path", json.get("path").getAsString());
+            embedded.addProperty("limit", limit);
+            embedded.addProperty("offset", offset);
+            embedded.addProperty("total", children.size());
+            embedded.add("items", items);
+            json.add("_embedded", embedded);
+        }
+        return json;
+    }
+
+    private JsonObject link(String href, String method) {
+        JsonObject link = new JsonObject();
+        link.addProperty("href", href);
+        link.addProperty("method", method);
+        link.addProperty("templated", false);
+        return link;
+    }
+
+    private MockResponse json(int code, JsonElement json) {
+        return new MockResponse()
+                .setResponseCode(code)
+                .setHeader("Content-Type", "application/json; charset=utf-8")
+                .setBody(gson.toJson(json));
+    }
+
+    private MockResponse notFound() {
+        return error(404, "DiskNotFoundError");
+    }
+
+    private MockResponse error(int code, String error) {
+        JsonObject json = new JsonObject();
+        json.addProperty("error", error);
+        json.addProperty("description", error);
+        json.addProperty("message", error);
+        MockResponse response = json(code, json);
+        if (code == 429 || code == 503) {
+            response.setHeader("Retry-After", 0);
+        }
+        return response;
+    }
+
+    private String newOperation() {
+        String id = newId();
+        operations.put(id, operationPolls);
+        return getUrl() + "/v1/disk/operations/" + id;
+    }
+
+    private String newId() {
+        return Integer.toHexString(++ids) + Long.toHexString(random.nextLong() & Long.MAX_VALUE);
+    }
+
+    private long tick() {
+        return clock += 1000;
+    }
+
+    private String resourceHref(String key) {
+        try {
+            return getUrl() + "/v1/disk/resources?path=" + URLEncoder.encode(key, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private Node findPublic(String publicKey, String path) {
+        if (publicKey == null) {
+            return null;
+        }
+        for (Node node : nodes.values()) {
+            if (publicKey.equals(node.publicKey)) {
+                if (path == null || path.isEmpty() || "/".equals(path)) {
+                    return node;
+                }
+                return nodes.get(child(node.path, path.replaceFirst("^/", "")));
+            }
+        }
+        return null;
+    }
+
+    private boolean isFolder(String key) {
+        Node node = key != null ? nodes.get(key) : null;
+        return node != null && node.dir;
+    }
+
+    private boolean hasChildren(String key) {
+        return !children(key).isEmpty();
+    }
+
+    /**
+     * @return keys of direct children, sorted by name
+     */
+    private List<String> children(String key) {
+        String prefix = key.endsWith("/") ? key : key + "/";
+        List<String> children = new ArrayList<>();
+        for (String child : nodes.tailMap(prefix, false).keySet()) {
+            if (!child.startsWith(prefix)) {
+                break;
+            }
+            if (child.indexOf('/', prefix.length()) < 0) {
+                children.add(child);
+            }
+        }
+        return children;
+    }
+
+    private List<String> tree(String key) {
+        List<String> tree = new ArrayList<>();
+        tree.add(key);
+        for (String child : nodes.tailMap(key + "/", true).keySet()) {
+            if (!child.startsWith(key + "/")) {
+                break;
+            }
+            tree.add(child);
+        }
+        return tree;
+    }
+
+    private void removeTree(String key) {
+        for (String path : tree(key)) {
+            nodes.remove(path);
+        }
+    }
+
+    private List<Node> moveTree(String from, String to) {
+        List<Node> moved = new ArrayList<>();
+        for (String path : tree(from)) {
+            Node node = nodes.remove(path);
+            Node copy = copyNode(node, to + path.substring(from.length()));
+            copy.originPath = node.originPath;
+            copy.deleted = node.deleted;
+            nodes.put(copy.path, copy);
+            moved.add(copy);
+        }
+        return moved;
+    }
+
+    private void copyTree(String from, String to) {
+        for (String path : tree(from)) {
+            Node copy = copyNode(nodes.get(path), to + path.substring(from.length()));
+            nodes.put(copy.path, copy);
+        }
+    }
+
+    private Node copyNode(Node node, String path) {
+        Node copy = new Node(path, node.dir, node.created);
+        copy.modified = node.modified;
+        copy.data = node.data;
+        copy.md5 = node.md5;
+        copy.sha256 = node.sha256;
+        copy.customProperties = node.customProperties != null ? new LinkedHashMap<>(node.customProperties) : null;
+        return copy;
+    }
+
+    private static MockResponse revalidate(RecordedRequest request, MockResponse response) {
+        Buffer body = response.getBody();
+        if (!"GET".equals(request.getMethod()) || !request.getPath().startsWith("/v1/")
+                || !response.getStatus().contains(" 200 ") || body == null) {
+            return response;
+        }
+        String etag = "\"" + hex(body.clone().readByteArray(), "MD5") + "\"";
+        if (etag.equals(request.getHeader("If-None-Match"))) {
+            return new MockResponse().setResponseCode(304).setHeader("Etag", etag);
+        }
+        return response.setHeader("Etag", etag);
+    }
+
+    private static void setData(Node node, byte[] data) {
+        node.data = data;
+        node.md5 = hex(data, "MD5");
+        node.sha256 = hex(data, "SHA-256");
+    }
+
+    private static String hex(byte[] data, String algorithm) {
+        try {
+            byte[] digest = MessageDigest.getInstance(algorithm).digest(data);
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b & 0xff));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static String toKey(String path) {
+        if (path == null) {
+            return ROOT;
+        }
+        String key = path.startsWith(DISK) ? path.substring(DISK.length()) : path;
+        if (!key.startsWith("/")) {
+            key = "/" + key;
+        }
+        if (key.length() > 1 && key.endsWith("/")) {
+            key = key.substring(0, key.length() - 1);
+        }
+        return DISK + key;
+    }
+
+    private static String toTrashKey(String path) {
+        if (path == null || path.isEmpty()) {
+            return TRASH_ROOT;
+        }
+        String key = path.startsWith(TRASH) ? path.substring(TRASH.length()) : path;
+        if (!key.startsWith("/")) {
+            key = "/" + key;
+        }
+        if (key.length() > 1 && key.endsWith("/")) {
+            key = key.substring(0, key.length() - 1);
+        }
+        return TRASH + key;
+    }
+
+    private static String parent(String key) {
+        int slash = key.lastIndexOf('/');
+        int colon = key.indexOf(':');
+        if (slash <= colon + 1) {
+            return slash == key.length() - 1 ? null : key.substring(0, colon + 2);
+        }
+        return key.substring(0, slash);
+    }
+
+    private static String child(String key, String name) {
+        return key.endsWith("/") ? key + name : key + "/" + name;
+    }
+
+    private static String name(String key) {
+        return key.substring(key.lastIndexOf('/') + 1);
+    }
+
+    private static int intParameter(HttpUrl url, String name, int defaultValue) {
+        String value = url.queryParameter(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private static String getMimeType(String path) {
+        switch (extension(path)) {
+            case "jpg":
+                return "image/jpeg";
+            case "png":
+                return "image/png";
+            case "mp3":
+                return "audio/mpeg";
+            case "mp4":
+                return "video/mp4";
+            case "txt":
+                return "text/plain";
+            default:
+                return "application/octet-stream";
+        }
+    }
+
+    private static String getMediaType(String path) {
+        switch (extension(path)) {
+            case "jpg":
+            case "png":
+                return "image";
+            case "mp3":
+                return "audio";
+            case "mp4":
+                return "video";
+            case "txt":
+                return "document";
+            default:
+                return "unknown";
+        }
+    }
+
+    private static String extension(String path) {
+        String name = name(path);
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot + 1).toLowerCase(Locale.US) : "";
+    }
+
+    private static String formatDate(long millis) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'+00:00'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(millis));
+    }
+}
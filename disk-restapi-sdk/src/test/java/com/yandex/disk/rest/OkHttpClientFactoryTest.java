@@ -0,0 +1,74 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.yandex.disk.rest.retrofit.ThrottleInterceptor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public class OkHttpClientFactoryTest {
+
+    @Test
+    public void testDefault() {
+        OkHttpClient client = OkHttpClientFactory.makeClient();
+        assertEquals(30 * 1000, client.getReadTimeout());
+        assertTrue(client.interceptors().isEmpty());
+    }
+
+    @Test
+    public void testThrottle() {
+        OkHttpClientFactory.Builder builder = new OkHttpClientFactory.Builder().setThrottle(true);
+        OkHttpClient client = builder.build();
+        assertEquals(1, client.interceptors().size());
+        assertTrue(client.interceptors().get(0) instanceof ThrottleInterceptor);
+        assertNotSame(client.interceptors().get(0), builder.build().interceptors().get(0));
+    }
+
+    @Test
+    public void testPresets() {
+        OkHttpClient metadata = OkHttpClientFactory.Builder.metadata().build();
+        assertEquals(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1), metadata.getProtocols());
+        assertEquals(32, metadata.getDispatcher().getMaxRequestsPerHost());
+
+        OkHttpClient transfer = OkHttpClientFactory.Builder.bulkTransfer().build();
+        assertEquals(Arrays.asList(Protocol.HTTP_1_1), transfer.getProtocols());
+        assertEquals(120 * 1000, transfer.getReadTimeout());
+        assertEquals(8, transfer.getDispatcher().getMaxRequestsPerHost());
+        assertTrue(transfer.interceptors().isEmpty());
+        assertNotSame(metadata.getConnectionPool(), transfer.getConnectionPool());
+    }
+
+    @Test
+    public void testInvalid() {
+        try {
+            new OkHttpClientFactory.Builder().setProtocols(Protocol.HTTP_2);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            new OkHttpClientFactory.Builder().setSocketBufferSizes(0, 1024);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import com.google.gson.Gson;
+import com.yandex.disk.rest.json.JsonConverter;
+import com.yandex.disk.rest.json.Link;
+import com.yandex.disk.rest.json.Operation;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public class OperationTrackerTest {
+
+    private static final Gson gson = JsonConverter.getGson();
+
+    private static Link link(String href) {
+        return gson.fromJson("{\"href\":\"" + href + "\",\"method\":\"GET\"}", Link.class);
+    }
+
+    private static Operation operation(String status) {
+        return gson.fromJson("{\"status\":\"" + status + "\"}", Operation.class);
+    }
+
+    /**
+     * Operation "n-id" is in progress for the first n polls, "error" fails
+     */
+    private static class Poller implements OperationTracker.Poller {
+
+        final Map<String, List<Long>> polls = new ConcurrentHashMap<>();
+        final AtomicInteger batches = new AtomicInteger();
+        volatile long lastPoll;
+
+        @Override
+        public RestFuture<Operation> poll(Link link) {
+            long now = System.nanoTime();
+            if (now - lastPoll > TimeUnit.MILLISECONDS.toNanos(5)) {
+                batches.incrementAndGet();
+            }
+            lastPoll = now;
+            if ("error".equals(link.getHref())) {
+                return RestFuture.failed(new IOException("network"));
+            }
+            List<Long> times = polls.get(link.getHref());
+            if (times == null) {
+                times = Collections.synchronizedList(new ArrayList<Long>());
+                polls.put(link.getHref(), times);
+            }
+            times.add(TimeUnit.NANOSECONDS.toMillis(now));
+            RestFuture<Operation> future = new RestFuture<>();
+            future.set(operation(times.size() <= Integer.parseInt(link.getHref().split("-")[0]) ? "in-progress" : "success"));
+            return future;
+        }
+    }
+
+    @Test
+    public void testTrack() throws Exception {
+        Poller poller = new Poller();
+        OperationTracker tracker = new OperationTracker(poller, 10, 40);
+        List<RestFuture<Operation>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(tracker.track(link(i % 5 + "-" + i)));
+        }
+        assertEquals(200, tracker.getPending());
+        for (RestFuture<Operation> future : futures) {
+            assertTrue(future.get(5, TimeUnit.SECONDS).isSuccess());
+        }
+        assertEquals(0, tracker.getPending());
+
+        assertEquals(5, poller.polls.get("4-199").size());
+        // polls due at the same time are sent together, delays grow 10, 20, 40, 40
+        assertTrue("batches " + poller.batches.get(), poller.batches.get() < 20);
+
+        tracker.shutdown();
+    }
+
+    @Test
+    public void testDaemonScheduler() throws Exception {
+        // a tracker never used starts no thread
+        new OperationTracker(new Poller(), 10, 40).shutdown();
+
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        OperationTracker tracker = new OperationTracker(new Poller() {
+            @Override
+            public RestFuture<Operation> poll(Link link) {
+                threads.add(Thread.currentThread());
+                return super.poll(link);
+            }
+        }, 10, 40);
+        assertTrue(tracker.track(link("0-a")).get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(1, threads.size());
+        assertTrue(threads.get(0).isDaemon());
+        tracker.shutdown();
+    }
+
+    @Test
+    public void testBackoff() throws Exception {
+        Poller poller = new Poller();
+        OperationTracker tracker = new OperationTracker(poller, 20, 80);
+        assertTrue(tracker.track(link("5-0")).get(5, TimeUnit.SECONDS).isSuccess());
+        List<Long> times = poller.polls.get("5-0");
+        assertEquals(6, times.size());
+        long[] minDelays = {40, 80, 80, 80, 80};
+        for (int i = 1; i < times.size(); i++) {
+            long delay = times.get(i) - times.get(i - 1);
+            assertTrue("poll " + i + " after " + delay, delay >= minDelays[i - 1] * 3 / 4);
+        }
+        tracker.shutdown();
+    }
+
+    @Test
+    public void testFinishedErrorAndCancel() throws Exception {
+        OperationTracker tracker = new OperationTracker(new Poller(), 10, 20);
+        assertNull(tracker.track(Link.DONE).get());
+        try {
+            tracker.track(link("error")).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException ex) {
+            assertSame(IOException.class, ex.getCause().getClass());
+        }
+        RestFuture<Operation> cancelled = tracker.track(link("1000000-0"));
+        RestFuture<Operation> stopped = tracker.track(link("1000000-0"));
+        assertEquals(2, tracker.getPending());
+        assertTrue(cancelled.cancel(true));
+        assertEquals(1, tracker.getPending());
+        tracker.shutdown();
+        assertTrue(stopped.isCancelled());
+        assertEquals(0, tracker.getPending());
+    }
+}
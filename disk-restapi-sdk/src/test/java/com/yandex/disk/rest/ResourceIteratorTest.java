@@ -0,0 +1,98 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import com.google.gson.Gson;
+import com.yandex.disk.rest.json.Resource;
+import com.yandex.disk.rest.json.ResourceList;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class ResourceIteratorTest {
+
+    private static class Loader implements ResourceIterator.PageLoader {
+
+        final int size;
+        final boolean sendTotal;
+        final List<Integer> limits = Collections.synchronizedList(new ArrayList<Integer>());
+
+        Loader(int size, boolean sendTotal) {
+            this.size = size;
+            this.sendTotal = sendTotal;
+        }
+
+        @Override
+        public ResourceList load(int offset, int limit) {
+            limits.add(limit);
+            StringBuilder json = new StringBuilder("{\"offset\":" + offset + ",\"limit\":" + limit);
+            if (sendTotal) {
+                json.append(",\"total\":").append(size);
+            }
+            json.append(",\"items\":[");
+            for (int i = offset; i < Math.min(offset + limit, size); i++) {
+                json.append(i > offset ? "," : "").append("{\"name\":\"").append(i).append("\"}");
+            }
+            json.append("]}");
+            return new Gson().fromJson(json.toString(), ResourceList.class);
+        }
+    }
+
+    @Test
+    public void testAdaptivePages() throws Exception {
+        Loader loader = new Loader(5000, true);
+        ResourceIterator iterator = new ResourceIterator(loader, null, null, 2);
+        int count = 0;
+        while (iterator.hasNext()) {
+            Resource item = iterator.next();
+            assertEquals(String.valueOf(count++), item.getName());
+        }
+        assertEquals(5000, count);
+        assertEquals(5000, iterator.getTotal());
+        assertEquals(ResourceIterator.DEFAULT_LIMIT, (int) loader.limits.get(0));
+        assertTrue(loader.limits.contains(ResourceIterator.MAX_LIMIT));
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testFixedPagesWithoutTotal() throws Exception {
+        Loader loader = new Loader(95, false);
+        ResourceIterator iterator = new ResourceIterator(loader, 10, 20, 0);
+        final List<Integer> pages = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+        iterator.forEach(new ResourcesHandler() {
+            @Override
+            public void handleItem(Resource item) {
+                names.add(item.getName());
+            }
+
+            @Override
+            public void onFinished(int itemsOnPage) {
+                pages.add(itemsOnPage);
+            }
+        });
+        assertEquals(85, names.size());
+        assertEquals("10", names.get(0));
+        assertEquals("94", names.get(84));
+        assertEquals(Arrays.asList(20, 20, 20, 20, 5), pages);
+        assertEquals(-1, iterator.getTotal());
+        assertEquals(5, loader.limits.size());
+    }
+}
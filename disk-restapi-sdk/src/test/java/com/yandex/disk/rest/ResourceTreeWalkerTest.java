@@ -0,0 +1,160 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.os.Build;
+
+import com.yandex.android.rest.BuildConfig;
+import com.yandex.disk.rest.json.Resource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class,
+        sdk = Build.VERSION_CODES.LOLLIPOP
+)
+public class ResourceTreeWalkerTest {
+
+    private MockDiskServer server;
+
+    private RestClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockDiskServer();
+        server.start();
+        client = new RestClient(new Credentials("mock", "mock-token"), OkHttpClientFactory.makeClient(),
+                server.getUrl());
+
+        // /walk: 25 files and a, a: 3 files and b, b: 1 file
+        server.putFolder("/walk");
+        for (int i = 0; i < 25; i++) {
+            server.putFile("/walk/file-" + (char) ('a' + i), new byte[i]);
+        }
+        server.putFolder("/walk/a");
+        for (int i = 0; i < 3; i++) {
+            server.putFile("/walk/a/file-" + i, new byte[i]);
+        }
+        server.putFolder("/walk/a/b");
+        server.putFile("/walk/a/b/file", new byte[1]);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void testWalk() throws Exception {
+        Collector collector = new Collector();
+        new ResourceTreeWalker.Builder(client, "/walk")
+                .setPageLimit(10)
+                .setConcurrency(3)
+                .build()
+                .walk(collector);
+
+        assertEquals("disk:/walk", collector.self.getPath().toString());
+        assertEquals(31, collector.paths.size());
+        assertEquals(31, new HashSet<>(collector.paths).size());
+        assertEquals(31, collector.finished);
+        assertTrue(collector.paths.contains("disk:/walk/file-y"));
+        assertTrue(collector.paths.contains("disk:/walk/a/b/file"));
+    }
+
+    @Test
+    public void testMaxDepth() throws Exception {
+        Collector collector = new Collector();
+        new ResourceTreeWalker.Builder(client, "/walk")
+                .setPageLimit(10)
+                .setMaxDepth(2)
+                .build()
+                .walk(collector);
+
+        Set<String> paths = new HashSet<>(collector.paths);
+        assertEquals(30, paths.size());
+        assertTrue(paths.contains("disk:/walk/a/b"));
+        assertFalse(paths.contains("disk:/walk/a/b/file"));
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        Collector collector = new Collector();
+        new ResourceTreeWalker.Builder(client, "/walk")
+                .setFilter(new ResourceTreeWalker.Filter() {
+                    @Override
+                    public boolean accept(Resource resource) {
+                        return resource.isDir() || resource.getSize() > 20;
+                    }
+                })
+                .build()
+                .walk(collector);
+
+        assertEquals(new HashSet<>(Arrays.asList("disk:/walk/a", "disk:/walk/a/b", "disk:/walk/file-v",
+                "disk:/walk/file-w", "disk:/walk/file-x", "disk:/walk/file-y")), new HashSet<>(collector.paths));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        server.setLatency(50);
+        final ResourceTreeWalker walker = new ResourceTreeWalker.Builder(client, "/walk")
+                .setPageLimit(5)
+                .setConcurrency(1)
+                .build();
+        Collector collector = new Collector() {
+            @Override
+            public void handleItem(Resource item) {
+                super.handleItem(item);
+                walker.cancel();
+            }
+        };
+        walker.walk(collector);
+
+        assertEquals(1, collector.paths.size());
+        assertEquals(1, collector.finished);
+    }
+
+    private static class Collector extends ResourcesHandler {
+
+        final List<String> paths = new ArrayList<>();
+
+        Resource self;
+
+        int finished = -1;
+
+        @Override
+        public void handleSelf(Resource item) {
+            self = item;
+        }
+
+        @Override
+        public void handleItem(Resource item) {
+            paths.add(item.getPath().toString());
+        }
+
+        @Override
+        public void onFinished(int itemsOnPage) {
+            finished = itemsOnPage;
+        }
+    }
+}
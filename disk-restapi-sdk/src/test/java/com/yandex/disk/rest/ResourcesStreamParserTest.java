@@ -0,0 +1,96 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import com.google.gson.Gson;
+import com.yandex.disk.rest.json.Resource;
+import com.yandex.disk.rest.json.ResourceList;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class ResourcesStreamParserTest {
+
+    private static final int ITEMS = 10000;
+
+    private static String makeList() {
+        StringBuilder json = new StringBuilder("{\"sort\":\"name\",\"items\":[");
+        for (int i = 0; i < ITEMS; i++) {
+            json.append(i > 0 ? "," : "")
+                    .append("{\"name\":\"file").append(i).append("\",\"path\":\"disk:/dir/file").append(i)
+                    .append("\",\"type\":\"file\",\"size\":").append(i)
+                    .append(",\"created\":\"2015-03-03T14:05:07+00:00\"}");
+        }
+        return json.append("],\"limit\":").append(ITEMS).append(",\"offset\":0,\"path\":\"disk:/dir\",\"total\":")
+                .append(ITEMS).append("}").toString();
+    }
+
+    @Test
+    public void testResource() throws Exception {
+        String json = "{\"_embedded\":" + makeList() + ",\"name\":\"dir\",\"path\":\"disk:/dir\",\"type\":\"dir\"}";
+        final Resource expected = new Gson().fromJson(json, Resource.class);
+        final List<Resource> items = new ArrayList<>();
+        final List<String> events = new ArrayList<>();
+        Resource resource = new ResourcesStreamParser(new Gson()).parseResource(new StringReader(json),
+                new ResourcesHandler() {
+                    @Override
+                    public void handleSelf(Resource item) {
+                        events.add("self " + item.getName() + " after " + items.size());
+                    }
+
+                    @Override
+                    public void handleItem(Resource item) {
+                        items.add(item);
+                    }
+
+                    @Override
+                    public void onFinished(int itemsOnPage) {
+                        events.add("finished " + itemsOnPage);
+                    }
+                });
+
+        assertEquals("dir", resource.getName());
+        assertEquals(ITEMS, resource.getResourceList().getTotal());
+        assertTrue(resource.getResourceList().getItems().isEmpty());
+        assertEquals(ITEMS, items.size());
+        for (int i = 0; i < ITEMS; i++) {
+            Resource item = expected.getResourceList().getItems().get(i);
+            assertEquals(item.toString(), items.get(i).toString());
+        }
+        assertEquals("[self dir after " + ITEMS + ", finished " + ITEMS + "]", events.toString());
+    }
+
+    @Test
+    public void testResourceList() throws Exception {
+        final int[] count = new int[1];
+        ResourceList list = new ResourcesStreamParser(new Gson()).parseResourceList(new StringReader(makeList()),
+                new ResourcesHandler() {
+                    @Override
+                    public void handleItem(Resource item) {
+                        assertEquals("file" + count[0], item.getName());
+                        count[0]++;
+                    }
+                });
+        assertEquals(ITEMS, count[0]);
+        assertEquals("disk:/dir", list.getPath());
+        assertEquals(ITEMS, list.getTotal());
+        assertTrue(list.getItems().isEmpty());
+        assertNull(list.getPublicKey());
+    }
+}
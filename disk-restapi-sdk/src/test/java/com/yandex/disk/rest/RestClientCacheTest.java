@@ -0,0 +1,117 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.os.Build;
+
+import com.squareup.okhttp.Cache;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Response;
+import com.yandex.android.rest.BuildConfig;
+import com.yandex.disk.rest.json.DiskInfo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class,
+        sdk = Build.VERSION_CODES.LOLLIPOP
+)
+public class RestClientCacheTest {
+
+    private MockDiskServer server;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockDiskServer();
+        server.start();
+        dir = File.createTempFile("rest-client-cache-test", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        delete(dir);
+    }
+
+    @Test
+    public void testRevalidation() throws Exception {
+        RestClient client = new RestClient(new Credentials("mock", "mock-token"), OkHttpClientFactory.makeClient(),
+                server.getUrl());
+        client.setCache(new File(dir, "cache"), 1024 * 1024);
+        final List<String> ifNoneMatch = Collections.synchronizedList(new ArrayList<String>());
+        final List<Integer> codes = Collections.synchronizedList(new ArrayList<Integer>());
+        client.getClient().networkInterceptors().add(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                ifNoneMatch.add(chain.request().header("If-None-Match"));
+                Response response = chain.proceed(chain.request());
+                codes.add(response.code());
+                return response;
+            }
+        });
+
+        DiskInfo first = client.getDiskInfo();
+        DiskInfo second = client.getDiskInfo();
+
+        assertEquals(first.getTotalSpace(), second.getTotalSpace());
+        assertEquals(2, ifNoneMatch.size());
+        assertNull(ifNoneMatch.get(0));
+        assertNotNull(ifNoneMatch.get(1));
+        assertEquals(Integer.valueOf(200), codes.get(0));
+        assertEquals(Integer.valueOf(304), codes.get(1));
+        CacheStats stats = client.getCacheStats();
+        assertEquals(2, stats.getRequestCount());
+        assertEquals(1, stats.getRevalidationCount());
+        assertEquals(0, stats.getHitCount());
+    }
+
+    @Test
+    public void testSharedCacheNotUsed() throws Exception {
+        OkHttpClient shared = OkHttpClientFactory.makeClient();
+        Cache cache = new Cache(new File(dir, "shared"), 1024 * 1024);
+        shared.setCache(cache);
+
+        RestClient client = new RestClient(new Credentials("mock", "mock-token"), shared, server.getUrl());
+        assertNull(client.getClient().getCache());
+        assertSame(cache, shared.getCache());
+        client.getDiskInfo();
+        assertEquals(0, cache.getRequestCount());
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.os.Build;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.OkHttpClient;
+import com.yandex.android.rest.BuildConfig;
+import com.yandex.disk.rest.retrofit.CacheInterceptor;
+import com.yandex.disk.rest.retrofit.MetricsInterceptor;
+import com.yandex.disk.rest.retrofit.RequestInterceptor;
+import com.yandex.disk.rest.retrofit.RetryInterceptor;
+import com.yandex.disk.rest.retrofit.ThrottleInterceptor;
+import com.yandex.disk.rest.tracing.TracingInterceptor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class,
+        sdk = Build.VERSION_CODES.LOLLIPOP
+)
+public class RestClientSharingTest {
+
+    @Test
+    public void testSharedClient() {
+        OkHttpClient shared = new OkHttpClientFactory.Builder().setThrottle(true).build();
+        Interceptor throttle = shared.interceptors().get(0);
+
+        RestClient first = new RestClient(new Credentials("first", "token1"), shared);
+        RestClient second = new RestClient(new Credentials("second", "token2"), shared);
+
+        assertEquals(1, shared.interceptors().size());
+        assertTrue(shared.networkInterceptors().isEmpty());
+        assertSame(throttle, shared.interceptors().get(0));
+
+        for (RestClient client : new RestClient[]{first, second}) {
+            List<Interceptor> interceptors = client.getClient().interceptors();
+            assertEquals(6, interceptors.size());
+            assertTrue(interceptors.get(0) instanceof MetricsInterceptor);
+            assertTrue(interceptors.get(1) instanceof RetryInterceptor);
+            assertTrue(interceptors.get(2) instanceof ThrottleInterceptor);
+            assertTrue(interceptors.get(3) instanceof RequestInterceptor);
+            assertTrue(interceptors.get(4) instanceof CacheInterceptor);
+            assertTrue(interceptors.get(5) instanceof TracingInterceptor);
+            assertSame(throttle, interceptors.get(2));
+            assertSame(shared.getDispatcher(), client.getClient().getDispatcher());
+        }
+        assertNotSame(first.getClient(), second.getClient());
+        assertNotSame(first.getClient().interceptors().get(3), second.getClient().interceptors().get(3));
+        assertNotSame(first.getRetryInterceptor(), second.getRetryInterceptor());
+    }
+}
@@ -14,25 +14,34 @@ import android.support.annotation.NonNull;
 import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.squareup.okhttp.Interceptor;
 import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
 import com.yandex.android.rest.BuildConfig;
 import com.yandex.disk.rest.exceptions.CancelledDownloadException;
 import com.yandex.disk.rest.exceptions.CancelledUploadingException;
 import com.yandex.disk.rest.exceptions.ServerIOException;
 import com.yandex.disk.rest.exceptions.WrongMethodException;
 import com.yandex.disk.rest.exceptions.http.HttpCodeException;
+import com.yandex.disk.rest.exceptions.http.NotFoundException;
 import com.yandex.disk.rest.json.ApiVersion;
 import com.yandex.disk.rest.json.DiskInfo;
 import com.yandex.disk.rest.json.Link;
 import com.yandex.disk.rest.json.Operation;
 import com.yandex.disk.rest.json.Resource;
 import com.yandex.disk.rest.json.ResourceList;
+import com.yandex.disk.rest.metrics.EndpointMetrics;
+import com.yandex.disk.rest.metrics.InMemoryMetrics;
+import com.yandex.disk.rest.metrics.MetricsSnapshot;
+import com.yandex.disk.rest.tracing.Span;
+import com.yandex.disk.rest.tracing.Tracer;
 import com.yandex.disk.rest.util.Hash;
 import com.yandex.disk.rest.util.Logger;
 import com.yandex.disk.rest.util.LoggerFactory;
 import com.yandex.disk.rest.util.ResourcePath;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -52,6 +61,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.greaterThan;
@@ -61,10 +72,11 @@ import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.isA;
 import static org.hamcrest.Matchers.isEmptyOrNullString;
 import static org.hamcrest.Matchers.not;
-import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 @RunWith(RobolectricGradleTestRunner.class)
 @Config(constants = BuildConfig.class,
@@ -74,8 +86,14 @@ public class RestClientTest {
 
     private static final Logger logger = LoggerFactory.getLogger(RestClientTest.class);
 
+    private MockDiskServer server;
+
     private RestClient client;
 
+    /**
+     * Runs against {@link MockDiskServer}, or against the real Cloud API when <tt>test.user</tt> and
+     * <tt>test.token</tt> are set in <tt>local.properties</tt>
+     */
     @Before
     public void setUp() throws Exception {
         ShadowLog.stream = System.out;
@@ -93,20 +111,25 @@ public class RestClientTest {
         } catch (FileNotFoundException ex) {
             logger.info("local.properties", ex);
         }
+
         if (user == null || token == null) {
-            user = "yadiskrestapitest";
-            token = "4dc977dfd8024be1bba27a5fefc1c1d0";
+            server = new MockDiskServer();
+            server.start();
+            client = new RestClient(new Credentials("mock", "mock-token"), OkHttpClientFactory.makeClient(),
+                    server.getUrl());
+        } else {
+            client = new RestClient(new Credentials(user, token));
         }
-
-        assertThat(user, notNullValue());
-        assertThat(token, notNullValue());
-
-        Credentials credentials = new Credentials(user, token);
-
-        client = new RestClient(credentials);
         client.getClient().networkInterceptors().add(new LoggingInterceptor(true));
     }
 
+    @After
+    public void tearDown() throws Exception {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
     @Test
     public void testApiVersion() throws Exception {
         ApiVersion apiVersion = client.getApiVersion();
@@ -445,6 +468,65 @@ public class RestClientTest {
         assertTrue(local.delete());
     }
 
+    @Test
+    public void testDownloadFileSegmented() throws Exception {
+        String path = "/download-test.jpg";
+        File local = new File("/tmp/" + path);
+        local.delete();
+        assertFalse(local.exists());
+        client.setSegmentedDownload(4, 0);
+        client.downloadFile(path, local, new ProgressListener() {
+            @Override
+            public void updateProgress(long loaded, long total) {
+                logger.info("updateProgress: " + loaded + " / " + total);
+            }
+
+            @Override
+            public boolean hasCancelled() {
+                return false;
+            }
+        });
+        logger.info("length: " + local.length());
+        assertTrue(local.length() == 2031252);
+        assertTrue(local.delete());
+    }
+
+    @Test
+    public void testDownloadFileSegmentedChanged() throws Exception {
+        if (server == null) {
+            return;
+        }
+        final String path = "/download-test.jpg";
+        final byte[] changed = new byte[1000 * 1000];
+        new Random(0).nextBytes(changed);
+        final List<Integer> segmentCodes = new ArrayList<>();
+        client.getClient().networkInterceptors().add(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                Response response = chain.proceed(chain.request());
+                if ("bytes=0-0".equals(chain.request().header("Range"))) {
+                    // the file changes right after the probe
+                    server.changeFile(path, changed);
+                } else if (chain.request().header("If-Range") != null) {
+                    synchronized (segmentCodes) {
+                        segmentCodes.add(response.code());
+                    }
+                }
+                return response;
+            }
+        });
+        File local = File.createTempFile("download-test", ".jpg");
+        try {
+            local.delete();
+            client.setSegmentedDownload(4, 0);
+            client.downloadFile(path, local, null);
+            assertTrue(segmentCodes.contains(200));
+            assertArrayEquals(changed, readFile(local));
+        } finally {
+            local.delete();
+        }
+    }
+
     @Test
     public void testDownloadFileResume() throws Exception {
         String path = "/download-test.jpg";
@@ -803,4 +885,153 @@ public class RestClientTest {
     public void testErrorHandler() throws Exception {
         client.getOperation("-");
     }
+
+    @Test
+    public void testMetrics() throws Exception {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        client.setMetrics(metrics);
+
+        client.getDiskInfo();
+        try {
+            client.getOperation("-");
+        } catch (HttpCodeException ex) {
+            logger.info("getOperation", ex);
+        }
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        logger.info("metrics: " + snapshot);
+        EndpointMetrics diskInfo = snapshot.getEndpoint("getDiskInfo");
+        assertEquals(1, diskInfo.getResponseCount());
+        assertEquals(Long.valueOf(1), diskInfo.getStatusCounts().get(200));
+        assertThat(diskInfo.getBytesReceived(), greaterThan(0L));
+        EndpointMetrics operation = snapshot.getEndpoint("getOperation");
+        assertEquals(1, operation.getResponseCount());
+        assertEquals(1, operation.getExceptionCounts().size());
+    }
+
+    @Test
+    public void testTracing() throws Exception {
+        final List<Span> spans = new ArrayList<>();
+        client.setTracer(new Tracer() {
+            @Override
+            public void onSpan(Span span) {
+                spans.add(span);
+            }
+        });
+
+        File local = File.createTempFile("download-test", ".jpg");
+        try {
+            client.downloadFile("/download-test.jpg", local, null);
+        } finally {
+            local.delete();
+        }
+        client.getDiskInfo();
+
+        logger.info("spans: " + spans);
+        assertEquals(3, spans.size());
+        assertEquals("getDownloadLink", spans.get(0).getEndpoint());
+        assertEquals("download", spans.get(1).getEndpoint());
+        assertEquals(spans.get(0).getTraceId(), spans.get(1).getTraceId());
+        assertEquals("getDiskInfo", spans.get(2).getEndpoint());
+        assertFalse(spans.get(1).getTraceId().equals(spans.get(2).getTraceId()));
+        assertThat(spans.get(1).getBody(TimeUnit.NANOSECONDS), greaterThanOrEqualTo(0L));
+    }
+
+    @Test
+    public void testDownloadLinkCache() throws Exception {
+        DownloadLinkCache cache = new DownloadLinkCache(100, 1, TimeUnit.MINUTES);
+        client.setDownloadLinkCache(cache);
+        File local = File.createTempFile("download-test", ".jpg");
+        try {
+            client.downloadFile("/download-test.jpg", local, null);
+            local.delete();
+            client.downloadFile("/download-test.jpg", local, null);
+            assertEquals(2, cache.getRequestCount());
+            assertEquals(1, cache.getHitCount());
+
+            if (server != null) {
+                // the cached href is gone, a new link is requested
+                server.failRequests(410, 1);
+                local.delete();
+                client.downloadFile("/download-test.jpg", local, null);
+                assertEquals(1, cache.getInvalidationCount());
+                assertEquals(2, cache.getHitCount());
+                assertEquals(4, cache.getRequestCount());
+            }
+            assertEquals(2031252, local.length());
+        } finally {
+            local.delete();
+        }
+    }
+
+    @Test
+    public void testDownloadLinkCacheInvalidation() throws Exception {
+        DownloadLinkCache cache = new DownloadLinkCache(100, 1, TimeUnit.MINUTES);
+        client.setDownloadLinkCache(cache);
+        String path = "/0-test/link-cache-test.txt";
+        String other = "/0-test/link-cache-test-other.txt";
+        try {
+            client.makeFolder("/0-test");
+        } catch (ServerIOException ex) {
+            logger.info("makeFolder", ex);
+        }
+        File local = File.createTempFile("link-cache-test", ".txt");
+        try {
+            upload(path, local, "first");
+            assertEquals("first", download(path, local));
+            assertEquals("first", download(path, local));
+            assertEquals(1, cache.getHitCount());
+
+            // an overwritten file gets a new link
+            upload(path, local, "second");
+            assertEquals("second", download(path, local));
+
+            upload(other, local, "third");
+            client.copy(other, path, true);
+            assertEquals("third", download(path, local));
+
+            client.move(path, other, true);
+            try {
+                download(path, local);
+                fail("NotFoundException expected");
+            } catch (NotFoundException ex) {
+                // expected
+            }
+            assertEquals("third", download(other, local));
+
+            checkResult(client.delete(other, true));
+            try {
+                download(other, local);
+                fail("NotFoundException expected");
+            } catch (NotFoundException ex) {
+                // expected
+            }
+        } finally {
+            local.delete();
+        }
+    }
+
+    private void upload(String serverPath, File local, String content) throws Exception {
+        OutputStream out = new FileOutputStream(local);
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+        client.uploadFile(client.getUploadLink(serverPath, true), false, local, null);
+    }
+
+    private String download(String serverPath, File local) throws Exception {
+        local.delete();
+        client.downloadFile(serverPath, local, null);
+        return new String(readFile(local), "UTF-8");
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        int offset = 0;
+        while (offset < data.length) {
+            offset += in.read(data, offset, data.length - offset);
+        }
+        in.close();
+        return data;
+    }
 }
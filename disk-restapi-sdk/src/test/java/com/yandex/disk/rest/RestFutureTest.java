@@ -0,0 +1,132 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public class RestFutureTest {
+
+    private static class Recorder implements RestFuture.Callback<String> {
+
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onSuccess(String result) {
+            events.add("success " + result);
+        }
+
+        @Override
+        public void onFailure(Exception ex) {
+            events.add("failure " + ex.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    public void testSuccess() throws Exception {
+        final RestFuture<String> future = new RestFuture<>();
+        Recorder before = new Recorder();
+        future.addCallback(before);
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                future.set("done");
+            }
+        };
+        thread.start();
+        assertEquals("done", future.await());
+        // callbacks run on the completing thread, maybe after the waiters are released
+        thread.join();
+        assertEquals("done", future.get(1, TimeUnit.SECONDS));
+        assertFalse(future.set("again"));
+        assertFalse(future.cancel(true));
+        Recorder after = new Recorder();
+        future.addCallback(after);
+        assertEquals("[success done]", before.events.toString());
+        assertEquals("[success done]", after.events.toString());
+        assertTrue(future.isDone());
+        assertFalse(future.isCancelled());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        IOException error = new IOException("network");
+        RestFuture<String> future = RestFuture.failed(error);
+        try {
+            future.await();
+            fail();
+        } catch (IOException ex) {
+            assertSame(error, ex);
+        }
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException ex) {
+            assertSame(error, ex.getCause());
+        }
+        Recorder recorder = new Recorder();
+        future.addCallback(recorder);
+        assertEquals("[failure IOException]", recorder.events.toString());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        RestFuture<String> future = new RestFuture<>();
+        Recorder recorder = new Recorder();
+        future.addCallback(recorder);
+        final int[] stopped = new int[1];
+        future.setOnCancel(new Runnable() {
+            @Override
+            public void run() {
+                stopped[0]++;
+            }
+        });
+        try {
+            future.get(10, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException ex) {
+            // expected
+        }
+        assertTrue(future.cancel(true));
+        assertFalse(future.cancel(true));
+        assertFalse(future.set("late"));
+        assertEquals(1, stopped[0]);
+        assertTrue(future.isCancelled());
+        assertEquals("[failure CancellationException]", recorder.events.toString());
+        try {
+            future.await();
+            fail();
+        } catch (CancellationException ex) {
+            // expected
+        }
+        future.setOnCancel(new Runnable() {
+            @Override
+            public void run() {
+                stopped[0]++;
+            }
+        });
+        assertEquals(2, stopped[0]);
+    }
+}
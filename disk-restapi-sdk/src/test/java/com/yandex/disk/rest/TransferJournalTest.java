@@ -0,0 +1,198 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import com.yandex.disk.rest.util.HashState;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class TransferJournalTest {
+
+    @Test
+    public void testRecover() throws Exception {
+        File journalFile = File.createTempFile("journal-test", ".log");
+        File download = File.createTempFile("journal-test", ".bin");
+        File upload = File.createTempFile("journal-test", ".bin");
+        try {
+            FileOutputStream out = new FileOutputStream(upload);
+            out.write(new byte[1000]);
+            out.close();
+            RandomAccessFile file = new RandomAccessFile(download, "rw");
+            file.setLength(10 * 1024 * 1024);
+            file.close();
+
+            TransferJournal journal = new TransferJournal(journalFile);
+            TransferJournal.Entry downloadEntry = journal.begin(Transfer.download("/a", download, -1, null));
+            journal.setHref(downloadEntry, "https://downloader/a");
+            DownloadListener listener = journal.getDownloadListener(downloadEntry, null);
+            DownloadSegments segments = new DownloadSegments("https://storage/a", "etag", 10 * 1024 * 1024, 4);
+            assertTrue(listener.setSegments(segments));
+            segments.addLoaded(1, 1024 * 1024);
+            listener.updateSegment(segments, 1);
+            segments.addLoaded(1, 1000);
+            listener.updateSegment(segments, 1);
+
+            TransferJournal.Entry uploadEntry = journal.begin(Transfer.upload(upload, "/b", true, null));
+            journal.setHref(uploadEntry, "https://uploader/b");
+            HashState hashState = new HashState();
+            hashState.update(new byte[500], 0, 500);
+            journal.getUploadCheckpoints(uploadEntry).save(upload, hashState);
+
+            TransferJournal.Entry doneEntry = journal.begin(Transfer.download("/c", download, -1, null));
+            journal.end(doneEntry);
+
+            // reopen as after a crash, without close()
+            journal = new TransferJournal(journalFile);
+            List<TransferJournal.Entry> entries = journal.getUnfinished();
+            assertEquals(2, entries.size());
+
+            TransferJournal.Entry recovered = entries.get(0);
+            assertEquals("/a", recovered.getServerPath());
+            assertEquals("https://downloader/a", recovered.getHref());
+            DownloadSegments restored = journal.getDownloadListener(recovered, null).getSegments();
+            assertNotNull(restored);
+            assertEquals("https://storage/a", restored.getUrl());
+            assertEquals("etag", restored.getETag());
+            assertEquals(4, restored.getCount());
+            assertEquals(0, restored.getLoaded(0));
+            assertEquals(1024 * 1024 + 1000, restored.getLoaded(1));
+
+            recovered = entries.get(1);
+            assertEquals(Transfer.Type.upload, recovered.getType());
+            assertEquals("https://uploader/b", recovered.getHref());
+            HashState loaded = journal.getUploadCheckpoints(recovered).load(upload);
+            assertNotNull(loaded);
+            assertEquals(500, loaded.getPosition());
+
+            journal.end(entries.get(0));
+            journal.end(entries.get(1));
+            assertEquals(0, new TransferJournal(journalFile).getUnfinished().size());
+        } finally {
+            journalFile.delete();
+            download.delete();
+            upload.delete();
+        }
+    }
+
+    @Test
+    public void testExpiredHref() throws Exception {
+        File journalFile = File.createTempFile("journal-test", ".log");
+        File download = File.createTempFile("journal-test", ".bin");
+        try {
+            RandomAccessFile file = new RandomAccessFile(download, "rw");
+            file.setLength(4000);
+            file.close();
+
+            TransferJournal journal = new TransferJournal(journalFile);
+            TransferJournal.Entry entry = journal.begin(Transfer.download("/a", download, 4000, null));
+            journal.setHref(entry, "https://downloader/expired");
+            DownloadListener listener = journal.getDownloadListener(entry, null);
+            DownloadSegments segments = new DownloadSegments("https://storage/expired", "etag", 4000, 4);
+            assertTrue(listener.setSegments(segments));
+            segments.addLoaded(2, 500);
+            listener.stopSegments(segments);
+
+            journal.setHref(entry, "https://downloader/a");
+            DownloadSegments moved = listener.getSegments();
+            assertNotNull(moved);
+            assertEquals("https://downloader/a", moved.getUrl());
+            assertEquals(500, moved.getLoaded(2));
+
+            entry = new TransferJournal(journalFile).getUnfinished().get(0);
+            assertEquals("https://downloader/a", entry.getHref());
+            DownloadSegments restored = journal.getDownloadListener(entry, null).getSegments();
+            assertNotNull(restored);
+            assertEquals("https://downloader/a", restored.getUrl());
+            assertEquals("etag", restored.getETag());
+            assertEquals(500, restored.getLoaded(2));
+        } finally {
+            journalFile.delete();
+            download.delete();
+        }
+    }
+
+    @Test
+    public void testPartialRecord() throws Exception {
+        File journalFile = File.createTempFile("journal-test", ".log");
+        try {
+            TransferJournal journal = new TransferJournal(journalFile);
+            TransferJournal.Entry entry = journal.begin(Transfer.download("/a", journalFile, -1, null));
+            journal.setHref(entry, "https://downloader/a");
+
+            RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+            file.setLength(file.length() - 3);
+            file.close();
+
+            List<TransferJournal.Entry> entries = new TransferJournal(journalFile).getUnfinished();
+            assertEquals(1, entries.size());
+            assertNull(entries.get(0).getHref());
+        } finally {
+            journalFile.delete();
+        }
+    }
+
+    @Test
+    public void testBadRecord() throws Exception {
+        File journalFile = File.createTempFile("journal-test", ".log");
+        try {
+            for (byte[] record : new byte[][]{
+                    // BEGIN of an unknown transfer type
+                    {1, 0, 0, 0, 0, 0, 0, 0, 9, 99},
+                    // unknown record type
+                    {42, 0, 0, 0, 0, 0, 0, 0, 1}}) {
+                TransferJournal journal = new TransferJournal(journalFile);
+                TransferJournal.Entry entry = journal.begin(Transfer.download("/a", journalFile, -1, null));
+                journal.begin(Transfer.download("/b", journalFile, -1, null));
+                appendRecord(journalFile, record);
+                journal.setHref(entry, "https://downloader/a");
+
+                // the records from the bad one on are dropped, the journal is rewritten
+                journal = new TransferJournal(journalFile);
+                List<TransferJournal.Entry> entries = journal.getUnfinished();
+                assertEquals(2, entries.size());
+                assertNull(entries.get(0).getHref());
+                assertEquals(2, new TransferJournal(journalFile).getUnfinished().size());
+                for (TransferJournal.Entry unfinished : entries) {
+                    journal.end(unfinished);
+                }
+            }
+        } finally {
+            journalFile.delete();
+        }
+    }
+
+    /**
+     * Append a record with a valid checksum, as the journal writes them
+     */
+    private static void appendRecord(File journalFile, byte[] record) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(journalFile, true));
+        out.writeInt(record.length);
+        out.writeInt((int) crc.getValue());
+        out.write(record);
+        out.close();
+    }
+}
@@ -0,0 +1,355 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest;
+
+import android.os.Build;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Response;
+import com.yandex.android.rest.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class,
+        sdk = Build.VERSION_CODES.LOLLIPOP
+)
+public class TransferManagerTest {
+
+    private MockDiskServer server;
+
+    private RestClient client;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockDiskServer();
+        server.start();
+        client = new RestClient(new Credentials("mock", "mock-token"), OkHttpClientFactory.makeClient(),
+                server.getUrl());
+        dir = File.createTempFile("transfer-manager-test", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testSmallestFirst() throws Exception {
+        server.putFile("/first.bin", new byte[5000]);
+        server.putFile("/big.bin", new byte[3000]);
+        server.putFile("/medium.bin", new byte[2000]);
+        server.putFile("/small.bin", new byte[1000]);
+        server.setLatency(100);
+
+        final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+        TransferManager manager = new TransferManager(client, 1, 1, null);
+        List<Transfer> batch = new ArrayList<>();
+        // the first one starts at once, the rest wait in the queue
+        for (String name : new String[]{"first.bin", "big.bin", "small.bin", "medium.bin"}) {
+            batch.add(Transfer.download("/" + name, new File(dir, name), server.getFile("/" + name).length,
+                    new StartListener(name, started)));
+        }
+        manager.submit(batch);
+        manager.await(batch);
+
+        assertEquals(Arrays.asList("first.bin", "small.bin", "medium.bin", "big.bin"), started);
+        for (Transfer transfer : batch) {
+            assertEquals(Transfer.Status.done, transfer.getStatus());
+        }
+    }
+
+    @Test
+    public void testHostLimit() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        client.getClient().networkInterceptors().add(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                if (!chain.request().httpUrl().encodedPath().startsWith("/download/")) {
+                    return chain.proceed(chain.request());
+                }
+                int count = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), count));
+                }
+                try {
+                    return chain.proceed(chain.request());
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        });
+        server.setLatency(100);
+
+        TransferManager manager = new TransferManager(client, 4, 2, null);
+        List<Transfer> batch = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            server.putFile("/file-" + i, new byte[100]);
+            batch.add(Transfer.download("/file-" + i, new File(dir, "file-" + i), 100, null));
+        }
+        manager.submit(batch);
+        manager.await(batch);
+
+        for (Transfer transfer : batch) {
+            assertEquals(Transfer.Status.done, transfer.getStatus());
+        }
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        server.setLatency(200);
+        TransferManager manager = new TransferManager(client, 1, 1, null);
+        Transfer running = Transfer.download("/download-test.jpg", new File(dir, "running.jpg"), -1, null);
+        Transfer queued = Transfer.download("/readme.txt", new File(dir, "readme.txt"), -1, null);
+        manager.submit(running);
+        manager.submit(queued);
+        queued.cancel();
+        running.cancel();
+        manager.await(Arrays.asList(running, queued));
+
+        assertEquals(Transfer.Status.cancelled, running.getStatus());
+        assertEquals(Transfer.Status.cancelled, queued.getStatus());
+        assertFalse(new File(dir, "readme.txt").exists());
+    }
+
+    @Test
+    public void testCancelAfterCompletion() throws Exception {
+        Transfer transfer = Transfer.download("/a", new File(dir, "a"), -1, null);
+        assertTrue(transfer.start());
+        transfer.cancel();
+        transfer.finish(null);
+        assertEquals(Transfer.Status.done, transfer.getStatus());
+
+        Transfer failed = Transfer.download("/a", new File(dir, "a"), -1, null);
+        assertTrue(failed.start());
+        failed.cancel();
+        failed.finish(new IOException("cancelled"));
+        assertEquals(Transfer.Status.cancelled, failed.getStatus());
+
+        Transfer queued = Transfer.download("/a", new File(dir, "a"), -1, null);
+        queued.cancel();
+        assertFalse(queued.start());
+        queued.finish(null);
+        assertTrue(queued.await(0, TimeUnit.SECONDS));
+        assertEquals(Transfer.Status.cancelled, queued.getStatus());
+    }
+
+    @Test
+    public void testRecover() throws Exception {
+        File journalFile = new File(dir, "journal");
+        File saveTo = new File(dir, "download-test.jpg");
+        File upload = new File(dir, "upload.bin");
+        writeFile(upload, new byte[3000]);
+
+        TransferJournal journal = new TransferJournal(journalFile);
+        journal.begin(Transfer.download("/download-test.jpg", saveTo, MockDiskServer.DOWNLOAD_TEST_SIZE, null));
+        journal.begin(Transfer.upload(upload, "/upload.bin", false, null));
+
+        // as after a restart of the process
+        journal = new TransferJournal(journalFile);
+        TransferManager manager = new TransferManager(client, 2, 2, null, journal);
+        List<Transfer> batch = manager.recover();
+        assertEquals(2, batch.size());
+        manager.await(batch);
+
+        for (Transfer transfer : batch) {
+            assertEquals(Transfer.Status.done, transfer.getStatus());
+        }
+        assertArrayEquals(server.getFile("/download-test.jpg"), readFile(saveTo));
+        assertArrayEquals(new byte[3000], server.getFile("/upload.bin"));
+        assertTrue(journal.getUnfinished().isEmpty());
+        assertTrue(new TransferJournal(journalFile).getUnfinished().isEmpty());
+    }
+
+    @Test
+    public void testRecoverExpiredSegments() throws Exception {
+        client.setSegmentedDownload(4, 0);
+        byte[] content = server.getFile("/download-test.jpg");
+        File journalFile = new File(dir, "journal");
+        File saveTo = new File(dir, "download-test.jpg");
+
+        // a segmented download stopped with half of the second segment, its link has expired since
+        String expired = server.getUrl() + "/download/expired";
+        DownloadSegments segments = new DownloadSegments(expired, null, content.length, 4);
+        long start = segments.getStart(1);
+        int loaded = (int) segments.getSegmentSize() / 2;
+        RandomAccessFile file = new RandomAccessFile(saveTo, "rw");
+        file.setLength(content.length);
+        file.seek(start);
+        file.write(content, (int) start, loaded);
+        file.close();
+        TransferJournal journal = new TransferJournal(journalFile);
+        TransferJournal.Entry entry = journal.begin(Transfer.download("/download-test.jpg", saveTo, -1, null));
+        journal.setHref(entry, expired);
+        DownloadListener listener = journal.getDownloadListener(entry, null);
+        listener.setSegments(segments);
+        segments.addLoaded(1, loaded);
+        listener.stopSegments(segments);
+
+        final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+        client.getClient().networkInterceptors().add(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                String range = chain.request().header("Range");
+                if (range != null) {
+                    ranges.add(range);
+                }
+                return chain.proceed(chain.request());
+            }
+        });
+        journal = new TransferJournal(journalFile);
+        TransferManager manager = new TransferManager(client, 1, 1, null, journal);
+        List<Transfer> batch = manager.recover();
+        manager.await(batch);
+
+        assertEquals(Transfer.Status.done, batch.get(0).getStatus());
+        assertArrayEquals(content, readFile(saveTo));
+        assertTrue(ranges.contains("bytes=" + (start + loaded) + "-" + segments.getEnd(1)));
+        assertFalse(ranges.contains("bytes=" + start + "-" + segments.getEnd(1)));
+        assertTrue(journal.getUnfinished().isEmpty());
+    }
+
+    @Test
+    public void testKeepJournalOnServerError() throws Exception {
+        File journalFile = new File(dir, "journal");
+        TransferJournal journal = new TransferJournal(journalFile);
+        TransferManager manager = new TransferManager(client, 1, 1, null, journal);
+        Transfer transfer = Transfer.download("/readme.txt", new File(dir, "readme.txt"), -1, null);
+        server.failRequests(503, 100);
+        manager.submit(transfer);
+        transfer.await();
+        assertEquals(Transfer.Status.failed, transfer.getStatus());
+        assertEquals(1, journal.getUnfinished().size());
+
+        server.failRequests(503, 0);
+        List<Transfer> batch = manager.recover();
+        manager.await(batch);
+        assertEquals(Transfer.Status.done, batch.get(0).getStatus());
+        assertTrue(journal.getUnfinished().isEmpty());
+
+        transfer = Transfer.download("/missing.txt", new File(dir, "missing.txt"), -1, null);
+        manager.submit(transfer);
+        transfer.await();
+        assertEquals(Transfer.Status.failed, transfer.getStatus());
+        assertTrue(journal.getUnfinished().isEmpty());
+    }
+
+    @Test
+    public void testCancelSegmentedDownload() throws Exception {
+        client.setSegmentedDownload(4, 0);
+        server.setBandwidth(1024 * 1024);
+        byte[] content = server.getFile("/download-test.jpg");
+        File saveTo = new File(dir, "download-test.jpg");
+        TransferJournal journal = new TransferJournal(new File(dir, "journal"));
+        TransferManager manager = new TransferManager(client, 1, 1, null, journal);
+        final Transfer[] transfer = new Transfer[1];
+        transfer[0] = Transfer.download("/download-test.jpg", saveTo, content.length, new ProgressListener() {
+            @Override
+            public void updateProgress(long loaded, long total) {
+                if (loaded >= 300 * 1024) {
+                    transfer[0].cancel();
+                }
+            }
+
+            @Override
+            public boolean hasCancelled() {
+                return false;
+            }
+        });
+        manager.submit(transfer[0]);
+        transfer[0].await();
+
+        assertEquals(Transfer.Status.cancelled, transfer[0].getStatus());
+        assertTrue(journal.getUnfinished().isEmpty());
+        // only the completed head is left, without holes
+        byte[] head = readFile(saveTo);
+        assertTrue(head.length < content.length);
+        assertArrayEquals(Arrays.copyOf(content, head.length), head);
+
+        server.setBandwidth(0);
+        client.downloadFile("/download-test.jpg", saveTo, null);
+        assertArrayEquals(content, readFile(saveTo));
+    }
+
+    private static void writeFile(File file, byte[] data) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(data);
+        out.close();
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        int offset = 0;
+        while (offset < data.length) {
+            offset += in.read(data, offset, data.length - offset);
+        }
+        in.close();
+        return data;
+    }
+
+    private static class StartListener implements ProgressListener {
+
+        private final String name;
+
+        private final List<String> started;
+
+        private boolean reported;
+
+        StartListener(String name, List<String> started) {
+            this.name = name;
+            this.started = started;
+        }
+
+        @Override
+        public void updateProgress(long loaded, long total) {
+            if (!reported) {
+                reported = true;
+                started.add(name);
+            }
+        }
+
+        @Override
+        public boolean hasCancelled() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.json;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(JUnit4.class)
+public class JsonConverterTest {
+
+    private static final String RESOURCE = "{\"public_key\":\"key\",\"_embedded\":{\"sort\":\"name\","
+            + "\"items\":[{\"name\":\"a.txt\",\"path\":\"disk:/dir/a.txt\",\"type\":\"file\",\"size\":12345678901,"
+            + "\"md5\":\"d41d8cd98f00b204e9800998ecf8427e\",\"mime_type\":\"text/plain\",\"media_type\":\"document\","
+            + "\"created\":\"2015-03-03T14:05:07+00:00\",\"modified\":\"2015-03-04T14:05:07+00:00\","
+            + "\"custom_properties\":{\"tag\":\"x\",\"n\":[1,2]},\"unknown\":{\"a\":[null]}},"
+            + "{\"name\":\"b\",\"path\":\"disk:/dir/b\",\"type\":\"dir\",\"preview\":null}],"
+            + "\"limit\":20,\"offset\":0,\"path\":\"disk:/dir\",\"total\":2},"
+            + "\"name\":\"dir\",\"public_url\":\"https://yadi.sk/d/x\",\"origin_path\":\"disk:/old\","
+            + "\"deleted\":\"2015-03-05T14:05:07+00:00\",\"path\":\"disk:/dir\",\"type\":\"dir\"}";
+
+    private static final Gson reflective = new Gson();
+
+    private static <T> void assertSameAsReflective(String json, Class<T> type) {
+        Gson gson = JsonConverter.getGson();
+        T parsed = gson.fromJson(json, type);
+        assertEquals(reflective.fromJson(json, type).toString(), parsed.toString());
+        assertEquals(reflective.toJsonTree(parsed), gson.toJsonTree(parsed));
+        assertEquals(parsed.toString(), gson.fromJson(gson.toJson(parsed), type).toString());
+    }
+
+    @Test
+    public void testResource() {
+        assertSameAsReflective(RESOURCE, Resource.class);
+        Resource resource = JsonConverter.getGson().fromJson(RESOURCE, Resource.class);
+        Resource item = resource.getResourceList().getItems().get(0);
+        assertEquals(12345678901L, item.getSize());
+        assertEquals(1425391507000L, item.getCreatedMillis());
+        assertEquals(item.getCreated(), item.getCreated());
+        assertNotSame(item.getCreated(), item.getCreated());
+        assertEquals(0, resource.getModifiedMillis());
+        assertNull(resource.getModified());
+    }
+
+    @Test
+    public void testOtherModels() {
+        assertSameAsReflective("{\"href\":\"https://x/y\",\"method\":\"PUT\",\"templated\":true}", Link.class);
+        assertSameAsReflective("{\"status\":\"in-progress\"}", Operation.class);
+        assertSameAsReflective("{\"trash_size\":1,\"total_space\":10737418240,\"used_space\":3,"
+                + "\"system_folders\":{\"downloads\":\"disk:/Downloads/\",\"photostream\":\"disk:/Camera/\"}}",
+                DiskInfo.class);
+        assertSameAsReflective("{\"description\":\"Resource not found.\",\"error\":\"DiskNotFoundError\"}",
+                ApiError.class);
+        assertSameAsReflective("{\"build\":\"2.6.66\",\"api_version\":\"v1\"}", ApiVersion.class);
+    }
+
+    @Test
+    public void testNulls() {
+        assertNull(JsonConverter.getGson().fromJson("null", Resource.class));
+        Resource resource = JsonConverter.getGson().fromJson("{\"_embedded\":null,\"size\":null}", Resource.class);
+        assertNull(resource.getResourceList());
+        assertEquals(0, resource.getSize());
+    }
+
+    @Test
+    public void testShared() {
+        assertSame(JsonConverter.getGson(), JsonConverter.getGson());
+    }
+}
@@ -0,0 +1,82 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.json;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class ResourceTableTest {
+
+    private static final String[] RESOURCES = {
+            "{\"name\":\"a.jpg\",\"path\":\"disk:/photos/a.jpg\",\"type\":\"file\",\"size\":123,"
+                    + "\"md5\":\"d41d8cd98f00b204e9800998ecf8427e\",\"mime_type\":\"image/jpeg\",\"media_type\":\"image\","
+                    + "\"created\":\"2015-03-03T14:05:07+00:00\",\"modified\":\"2015-03-04T14:05:07+03:00\","
+                    + "\"preview\":\"https://downloader.disk.yandex.ru/preview/a\",\"custom_properties\":{\"x\":\"y\"}}",
+            "{\"name\":\"photos\",\"path\":\"disk:/photos\",\"type\":\"dir\",\"public_key\":\"key\","
+                    + "\"public_url\":\"https://yadi.sk/d/x\"}",
+            "{\"name\":\"b.txt\",\"path\":\"trash:/b.txt_1234\",\"origin_path\":\"disk:/photos/b.txt\",\"type\":\"file\","
+                    + "\"md5\":\"NOT-A-HEX-MD5\",\"deleted\":\"2015-03-05T14:05:07+00:00\",\"created\":\"bad date\"}",
+            "{\"name\":\"disk\",\"path\":\"disk:/\",\"type\":\"dir\"}",
+            "{\"name\":\"relative\",\"path\":\"relative\",\"type\":\"dir\"}",
+            "{\"name\":\"no path\",\"md5\":\"D41D8CD98F00B204E9800998ECF8427E\"}",
+    };
+
+    @Test
+    public void testViews() {
+        Gson gson = JsonConverter.getGson();
+        List<Resource> resources = new ArrayList<>();
+        ResourceTable table = new ResourceTable(2);
+        for (int i = 0; i < 1000; i++) {
+            Resource resource = gson.fromJson(RESOURCES[i % RESOURCES.length], Resource.class);
+            resources.add(resource);
+            assertEquals(i, table.add(resource));
+        }
+        table.trimToSize();
+        assertEquals(1000, table.size());
+
+        Resource view = new Resource();
+        for (int i = 0; i < resources.size(); i++) {
+            Resource resource = resources.get(i);
+            assertSame(view, table.get(i, view));
+            assertEquals(resource.toString(), view.toString());
+            assertEquals(resource.toString(), table.get(i).toString());
+            assertEquals(resource.getCreatedMillis(), table.getCreatedMillis(i));
+            assertEquals(resource.getModifiedMillis(), view.getModifiedMillis());
+            assertEquals(resource.getDeleted(), view.getDeleted());
+            assertEquals(resource.getPath(), view.getPath());
+            assertEquals(resource.getMd5(), table.getMd5(i));
+            assertEquals(resource.isDir(), table.isDir(i));
+        }
+        assertEquals("disk:/", table.getPath(3));
+        assertEquals("relative", table.getPath(4));
+        assertNull(table.getPath(5));
+        assertTrue(table.isDir(1));
+        assertFalse(table.isDir(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testRowOutOfBounds() {
+        ResourceTable table = new ResourceTable();
+        table.add(new Resource());
+        table.get(1);
+    }
+}
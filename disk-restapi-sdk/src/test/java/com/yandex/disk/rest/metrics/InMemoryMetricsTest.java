@@ -0,0 +1,112 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.metrics;
+
+import com.yandex.disk.rest.exceptions.http.NotFoundException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class InMemoryMetricsTest {
+
+    @Test
+    public void testHistogramBuckets() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 1000, 123456789L, Long.MAX_VALUE}) {
+            int index = Histogram.index(value);
+            assertTrue(index < Histogram.BUCKETS);
+            long highest = Histogram.highestValue(index);
+            assertTrue(value + " in bucket up to " + highest, value <= highest);
+            assertTrue(value + " in bucket up to " + highest, highest - value <= value / 16);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        for (int i = 1; i <= 1000; i++) {
+            metrics.onResponse("getDiskInfo", 200, TimeUnit.MILLISECONDS.toNanos(i), 0);
+        }
+        EndpointMetrics endpoint = metrics.snapshot().getEndpoint("getDiskInfo");
+        assertEquals(1000, endpoint.getResponseCount());
+        assertNear(500, endpoint.getLatency(50, TimeUnit.MILLISECONDS));
+        assertNear(990, endpoint.getLatency(99, TimeUnit.MILLISECONDS));
+        assertEquals(1000, endpoint.getLatency(100, TimeUnit.MILLISECONDS));
+        assertEquals(1000, endpoint.getMaxLatency(TimeUnit.MILLISECONDS));
+        assertEquals(500, endpoint.getMeanLatency(TimeUnit.MILLISECONDS));
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue(actual + " is not near " + expected, actual >= expected && actual - expected <= expected / 16);
+    }
+
+    @Test
+    public void testCounters() {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        metrics.onResponse("upload", 201, 10, 1024);
+        metrics.onResponse("upload", 404, 10, 0);
+        metrics.onHttpCodeException("upload", new NotFoundException(404, null));
+        metrics.onFailure("download", new IOException(), 10);
+        metrics.onBytesReceived("download", 512);
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        EndpointMetrics upload = snapshot.getEndpoint("upload");
+        assertEquals(2, upload.getResponseCount());
+        assertEquals(1024, upload.getBytesSent());
+        assertEquals(Long.valueOf(1), upload.getStatusCounts().get(201));
+        assertEquals(Long.valueOf(1), upload.getExceptionCounts().get("NotFoundException"));
+        EndpointMetrics download = snapshot.getEndpoint("download");
+        assertEquals(1, download.getFailureCount());
+        assertEquals(512, download.getBytesReceived());
+        assertNull(snapshot.getEndpoint("getDiskInfo"));
+
+        metrics.onResponse("upload", 201, 10, 1024);
+        assertEquals(2, upload.getResponseCount());
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        final InMemoryMetrics metrics = new InMemoryMetrics();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    for (int j = 0; j < 10000; j++) {
+                        metrics.onResponse("getResources", 200, j, 1);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        EndpointMetrics endpoint = metrics.snapshot().getEndpoint("getResources");
+        assertEquals(40000, endpoint.getResponseCount());
+        assertEquals(40000, endpoint.getBytesSent());
+        assertEquals(Long.valueOf(40000), endpoint.getStatusCounts().get(200));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.retrofit;
+
+import com.squareup.okhttp.Connection;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(JUnit4.class)
+public class CacheInterceptorTest {
+
+    private static final Request METADATA = new Request.Builder()
+            .url("https://cloud-api.yandex.net/v1/disk/resources?path=disk%3A%2F").build();
+
+    private static final Request DOWNLOAD = new Request.Builder()
+            .url("https://downloader.disk.yandex.ru/disk/2015").build();
+
+    private static class Chain implements Interceptor.Chain {
+
+        final Request request;
+        final Response response;
+
+        Chain(Request request, Response response) {
+            this.request = request;
+            this.response = response;
+        }
+
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @Override
+        public Response proceed(Request request) throws IOException {
+            return response;
+        }
+
+        @Override
+        public Connection connection() {
+            return null;
+        }
+    }
+
+    private static Response.Builder response(Request request, int code) {
+        return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(code);
+    }
+
+    @Test
+    public void testCacheControl() throws Exception {
+        Interceptor network = new CacheInterceptor().getNetworkInterceptor();
+        assertEquals("no-cache", network.intercept(new Chain(METADATA, response(METADATA, 200).build()))
+                .header("Cache-Control"));
+        assertEquals("max-age=60", network.intercept(new Chain(METADATA, response(METADATA, 200)
+                .header("Cache-Control", "max-age=60").build())).header("Cache-Control"));
+        assertEquals("no-store", network.intercept(new Chain(DOWNLOAD, response(DOWNLOAD, 200).build()))
+                .header("Cache-Control"));
+        Request delete = METADATA.newBuilder().delete().build();
+        assertNull(network.intercept(new Chain(delete, response(delete, 202).build())).header("Cache-Control"));
+    }
+
+    @Test
+    public void testCount() throws Exception {
+        CacheInterceptor interceptor = new CacheInterceptor();
+        Response network = response(METADATA, 200).build();
+        Response cached = response(METADATA, 200).build();
+        interceptor.intercept(new Chain(METADATA, response(METADATA, 200).networkResponse(network).build()));
+        interceptor.intercept(new Chain(METADATA, response(METADATA, 200).cacheResponse(cached)
+                .networkResponse(response(METADATA, 304).build()).build()));
+        interceptor.intercept(new Chain(METADATA, response(METADATA, 200).cacheResponse(cached).build()));
+        interceptor.intercept(new Chain(DOWNLOAD, response(DOWNLOAD, 200).cacheResponse(cached).build()));
+        assertEquals(3, interceptor.getRequestCount());
+        assertEquals(1, interceptor.getHitCount());
+        assertEquals(1, interceptor.getRevalidationCount());
+    }
+}
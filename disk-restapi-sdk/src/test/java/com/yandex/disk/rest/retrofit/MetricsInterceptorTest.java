@@ -0,0 +1,130 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.retrofit;
+
+import com.squareup.okhttp.Connection;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import com.yandex.disk.rest.metrics.EndpointMetrics;
+import com.yandex.disk.rest.metrics.InMemoryMetrics;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public class MetricsInterceptorTest {
+
+    private static final String API = "https://cloud-api.yandex.net";
+
+    private static final String TRANSFER = "https://downloader.disk.yandex.ru/disk/abc";
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    /**
+     * Answers with the code and the body, or fails
+     */
+    private static class Chain implements Interceptor.Chain {
+
+        final Request request;
+        final int code;
+        final String body;
+
+        Chain(Request request, int code, String body) {
+            this.request = request;
+            this.code = code;
+            this.body = body;
+        }
+
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @Override
+        public Response proceed(Request request) throws IOException {
+            if (body == null) {
+                throw new IOException("connection reset");
+            }
+            return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(code)
+                    .body(ResponseBody.create(JSON, body)).build();
+        }
+
+        @Override
+        public Connection connection() {
+            return null;
+        }
+    }
+
+    private static Request get(String url) {
+        return new Request.Builder().url(url).build();
+    }
+
+    @Test
+    public void testEndpoint() {
+        assertEquals("getApiVersion", MetricsInterceptor.getEndpoint(get(API + "/")));
+        assertEquals("getResources", MetricsInterceptor.getEndpoint(get(API + "/v1/disk/resources?path=disk%3A%2F")));
+        assertEquals("getFlatResourceList", MetricsInterceptor.getEndpoint(get(API + "/v1/disk/resources/files")));
+        assertEquals("getOperation", MetricsInterceptor.getEndpoint(get(API + "/v1/disk/operations/d80c269ce4eb16c0")));
+        assertEquals("patchResource", MetricsInterceptor.getEndpoint(new Request.Builder()
+                .url(API + "/v1/disk/resources?path=a").patch(RequestBody.create(JSON, "{}")).build()));
+        assertEquals("delete", MetricsInterceptor.getEndpoint(new Request.Builder()
+                .url(API + "/v1/disk/resources?path=a").delete().build()));
+        assertEquals("download", MetricsInterceptor.getEndpoint(get(TRANSFER)));
+        assertEquals("upload", MetricsInterceptor.getEndpoint(new Request.Builder()
+                .url(TRANSFER).put(RequestBody.create(JSON, "{}")).build()));
+        assertEquals("HEAD /disk/abc", MetricsInterceptor.getEndpoint(new Request.Builder()
+                .url(TRANSFER).head().build()));
+    }
+
+    @Test
+    public void testCounts() throws IOException {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        MetricsInterceptor interceptor = new MetricsInterceptor();
+        interceptor.setMetrics(metrics);
+
+        Request request = get(API + "/v1/disk");
+        interceptor.intercept(new Chain(request, 200, "{\"total_space\":1}")).body().string();
+        interceptor.intercept(new Chain(request, 401, "{}")).body().close();
+        try {
+            interceptor.intercept(new Chain(request, 0, null));
+            fail();
+        } catch (IOException expected) {
+            // counted
+        }
+
+        EndpointMetrics endpoint = metrics.snapshot().getEndpoint("getDiskInfo");
+        assertEquals(2, endpoint.getResponseCount());
+        assertEquals(1, endpoint.getFailureCount());
+        assertEquals(Long.valueOf(1), endpoint.getStatusCounts().get(200));
+        assertEquals(Long.valueOf(1), endpoint.getStatusCounts().get(401));
+        assertEquals(17, endpoint.getBytesReceived());
+    }
+
+    @Test
+    public void testNone() throws IOException {
+        MetricsInterceptor interceptor = new MetricsInterceptor();
+        Chain chain = new Chain(get(API + "/v1/disk"), 200, "{}");
+        Response response = interceptor.intercept(chain);
+        assertSame(chain.request, response.request());
+        assertNull(new InMemoryMetrics().snapshot().getEndpoint("getDiskInfo"));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.retrofit;
+
+import com.squareup.okhttp.Connection;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class RetryInterceptorTest {
+
+    private static final String URL = "https://cloud-api.yandex.net/v1/disk";
+
+    /**
+     * Answers with the queued codes, the last one repeats
+     */
+    private static class Chain implements Interceptor.Chain {
+
+        final Request request;
+        final LinkedList<Response> responses = new LinkedList<>();
+        int calls;
+
+        Chain(Request request, Response... responses) {
+            this.request = request;
+            this.responses.addAll(Arrays.asList(responses));
+        }
+
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @Override
+        public Response proceed(Request request) throws IOException {
+            calls++;
+            return responses.size() > 1 ? responses.removeFirst() : responses.getFirst();
+        }
+
+        @Override
+        public Connection connection() {
+            return null;
+        }
+    }
+
+    private static class Interceptor extends RetryInterceptor {
+
+        final List<Long> sleeps = new ArrayList<>();
+
+        @Override
+        void sleep(long millis) {
+            sleeps.add(millis);
+        }
+    }
+
+    private static Request get() {
+        return new Request.Builder().url(URL).build();
+    }
+
+    private static Response response(Request request, int code, String retryAfter) {
+        Response.Builder builder = new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .body(ResponseBody.create(MediaType.parse("application/json"), "{}"));
+        if (retryAfter != null) {
+            builder.header("Retry-After", retryAfter);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testBackoff() throws Exception {
+        Interceptor interceptor = new Interceptor();
+        interceptor.setRetries(3, 100, 300);
+        Request request = get();
+        Chain chain = new Chain(request, response(request, 503, null), response(request, 502, null),
+                response(request, 429, null), response(request, 200, null));
+        assertEquals(200, interceptor.intercept(chain).code());
+        assertEquals(4, chain.calls);
+        long[] delays = {100, 200, 300};
+        for (int i = 0; i < delays.length; i++) {
+            long sleep = interceptor.sleeps.get(i);
+            assertTrue("retry " + i + " after " + sleep, sleep >= delays[i] / 2 && sleep <= delays[i]);
+        }
+        assertEquals(3, interceptor.getRetries());
+        assertEquals(0, interceptor.getGiveUps());
+
+        chain = new Chain(request, response(request, 503, null));
+        assertEquals(503, interceptor.intercept(chain).code());
+        assertEquals(4, chain.calls);
+        assertEquals(6, interceptor.getRetries());
+        assertEquals(1, interceptor.getGiveUps());
+    }
+
+    @Test
+    public void testRetryAfter() throws Exception {
+        Interceptor interceptor = new Interceptor();
+        interceptor.setRetries(3, 100, 5000);
+        Request request = get();
+        Chain chain = new Chain(request, response(request, 429, "2"), response(request, 200, null));
+        assertEquals(200, interceptor.intercept(chain).code());
+        assertEquals("[2000]", interceptor.sleeps.toString());
+
+        chain = new Chain(request, response(request, 503, "60"), response(request, 200, null));
+        assertEquals(503, interceptor.intercept(chain).code());
+        assertEquals(1, chain.calls);
+        assertEquals(1, interceptor.getGiveUps());
+
+        assertEquals(-1, RetryInterceptor.parseRetryAfter(null, 0));
+        assertEquals(-1, RetryInterceptor.parseRetryAfter("soon", 0));
+        assertEquals(3000, RetryInterceptor.parseRetryAfter("Thu, 01 Jan 1970 00:00:05 GMT", 2000));
+        assertEquals(0, RetryInterceptor.parseRetryAfter("Thu, 01 Jan 1970 00:00:05 GMT", 9000));
+    }
+
+    @Test
+    public void testNotRetried() throws Exception {
+        Interceptor interceptor = new Interceptor();
+        interceptor.setRetries(3, 0, 0);
+        Request post = new Request.Builder().url(URL).post(RequestBody.create(null, new byte[0])).build();
+        Chain chain = new Chain(post, response(post, 503, null), response(post, 200, null));
+        assertEquals(503, interceptor.intercept(chain).code());
+        assertEquals(1, chain.calls);
+
+        Request upload = new Request.Builder().url(URL).put(RequestBody.create(null, new byte[10])).build();
+        chain = new Chain(upload, response(upload, 503, null), response(upload, 200, null));
+        assertEquals(503, interceptor.intercept(chain).code());
+
+        Request request = get();
+        chain = new Chain(request, response(request, 500, null), response(request, 200, null));
+        assertEquals(500, interceptor.intercept(chain).code());
+        assertEquals(0, interceptor.getRetries());
+        assertEquals(0, interceptor.getGiveUps());
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        Interceptor interceptor = new Interceptor();
+        interceptor.setRetries(1, 0, 0);
+        interceptor.setBudget(0.5f, 2);
+        Request request = get();
+        int retried = 0;
+        for (int i = 0; i < 10; i++) {
+            Chain chain = new Chain(request, response(request, 503, null), response(request, 200, null));
+            if (interceptor.intercept(chain).code() == 200) {
+                retried++;
+            }
+        }
+        // 2 retries in the budget, then one for every 2 requests
+        assertEquals(6, retried);
+        assertEquals(6, interceptor.getRetries());
+        assertEquals(4, interceptor.getGiveUps());
+    }
+}
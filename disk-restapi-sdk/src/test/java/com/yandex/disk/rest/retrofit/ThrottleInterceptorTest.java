@@ -0,0 +1,209 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.retrofit;
+
+import com.squareup.okhttp.Connection;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.yandex.disk.rest.retrofit.ThrottleInterceptor.Endpoint;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class ThrottleInterceptorTest {
+
+    private static final Request METADATA = new Request.Builder()
+            .url("https://cloud-api.yandex.net/v1/disk/resources?path=disk%3A%2F").build();
+
+    private static final Request TRANSFER = new Request.Builder()
+            .url("https://uploader1d.dst.yandex.net/upload-target/2015").build();
+
+    /**
+     * Answers with the code after the latch opens
+     */
+    private static class Chain implements Interceptor.Chain {
+
+        final Request request;
+        final int code;
+        final CountDownLatch latch;
+
+        Chain(Request request, int code, CountDownLatch latch) {
+            this.request = request;
+            this.code = code;
+            this.latch = latch;
+        }
+
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @Override
+        public Response proceed(Request request) throws IOException {
+            try {
+                latch.await();
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(code).build();
+        }
+
+        @Override
+        public Connection connection() {
+            return null;
+        }
+    }
+
+    private static Chain chain(Request request, int code) {
+        return new Chain(request, code, new CountDownLatch(0));
+    }
+
+    private static List<Thread> start(final ThrottleInterceptor interceptor, final Chain chain, int count) {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        interceptor.intercept(chain);
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        return threads;
+    }
+
+    private static void waitInFlight(ThrottleInterceptor interceptor, Endpoint endpoint, int inFlight)
+            throws InterruptedException {
+        for (int i = 0; i < 500 && interceptor.getInFlight(endpoint) != inFlight; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(inFlight, interceptor.getInFlight(endpoint));
+    }
+
+    @Test
+    public void testEndpoint() {
+        assertEquals(Endpoint.METADATA, ThrottleInterceptor.getEndpoint(METADATA));
+        assertEquals(Endpoint.TRANSFER, ThrottleInterceptor.getEndpoint(TRANSFER));
+    }
+
+    @Test
+    public void testAdaptiveLimit() throws Exception {
+        ThrottleInterceptor interceptor = new ThrottleInterceptor();
+        interceptor.setLimits(Endpoint.METADATA, 0, 0, 8);
+        assertEquals(2, interceptor.getConcurrencyLimit(Endpoint.METADATA));
+        for (int i = 0; i < 2 + 3 + 4 + 5; i++) {
+            interceptor.intercept(chain(METADATA, 200));
+        }
+        assertEquals(6, interceptor.getConcurrencyLimit(Endpoint.METADATA));
+        for (int i = 0; i < 100; i++) {
+            interceptor.intercept(chain(METADATA, 200));
+        }
+        assertEquals(8, interceptor.getConcurrencyLimit(Endpoint.METADATA));
+        interceptor.intercept(chain(METADATA, 429));
+        assertEquals(4, interceptor.getConcurrencyLimit(Endpoint.METADATA));
+        interceptor.intercept(chain(METADATA, 503));
+        assertEquals(2, interceptor.getConcurrencyLimit(Endpoint.METADATA));
+        assertEquals(16, interceptor.getConcurrencyLimit(Endpoint.TRANSFER));
+
+        // answers to requests sent before a decrease don't decrease the limit again
+        CountDownLatch latch = new CountDownLatch(1);
+        List<Thread> threads = start(interceptor, new Chain(METADATA, 429, latch), 2);
+        waitInFlight(interceptor, Endpoint.METADATA, 2);
+        latch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, interceptor.getConcurrencyLimit(Endpoint.METADATA));
+        assertEquals(0, interceptor.getInFlight(Endpoint.METADATA));
+    }
+
+    @Test
+    public void testConcurrency() throws Exception {
+        final ThrottleInterceptor interceptor = new ThrottleInterceptor();
+        interceptor.setLimits(Endpoint.TRANSFER, 0, 0, 12);
+        CountDownLatch latch = new CountDownLatch(1);
+        List<Thread> threads = start(interceptor, new Chain(TRANSFER, 200, latch), 5);
+        waitInFlight(interceptor, Endpoint.TRANSFER, 3);
+        Thread.sleep(50);
+        assertEquals(3, interceptor.getInFlight(Endpoint.TRANSFER));
+        latch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, interceptor.getInFlight(Endpoint.TRANSFER));
+
+        final AtomicInteger failed = new AtomicInteger();
+        Interceptor.Chain broken = new Chain(TRANSFER, 200, latch) {
+            @Override
+            public Response proceed(Request request) throws IOException {
+                failed.incrementAndGet();
+                throw new IOException("network");
+            }
+        };
+        for (int i = 0; i < 5; i++) {
+            try {
+                interceptor.intercept(broken);
+            } catch (IOException ex) {
+                // expected
+            }
+        }
+        assertEquals(5, failed.get());
+        assertEquals(0, interceptor.getInFlight(Endpoint.TRANSFER));
+    }
+
+    @Test
+    public void testRate() throws Exception {
+        ThrottleInterceptor interceptor = new ThrottleInterceptor();
+        interceptor.setLimits(Endpoint.METADATA, 100, 5, 8);
+        long start = System.nanoTime();
+        for (int i = 0; i < 5 + 20; i++) {
+            interceptor.intercept(chain(METADATA, 200));
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // the burst goes at once, then 20 requests at 100 per second
+        assertTrue("took " + millis, millis >= 180 && millis < 2000);
+    }
+
+    @Test
+    public void testRateWaitHoldsNoPlace() throws Exception {
+        ThrottleInterceptor interceptor = new ThrottleInterceptor();
+        interceptor.setLimits(Endpoint.METADATA, 5, 1, 8);
+        CountDownLatch latch = new CountDownLatch(1);
+        List<Thread> threads = start(interceptor, new Chain(METADATA, 200, latch), 2);
+        waitInFlight(interceptor, Endpoint.METADATA, 1);
+        // the second request waits 200 ms for a token outside of the concurrency limit
+        Thread.sleep(50);
+        assertEquals(1, interceptor.getInFlight(Endpoint.METADATA));
+        waitInFlight(interceptor, Endpoint.METADATA, 2);
+        latch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, interceptor.getInFlight(Endpoint.METADATA));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.tracing;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.SocketPolicy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public class TracingInterceptorTest {
+
+    private final List<Span> spans = new ArrayList<>();
+
+    private final Tracer tracer = new Tracer() {
+        @Override
+        public void onSpan(Span span) {
+            spans.add(span);
+        }
+    };
+
+    private MockWebServer server;
+
+    private TracingInterceptor interceptor;
+
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        interceptor = new TracingInterceptor();
+        interceptor.setTracer(tracer);
+        client = new OkHttpClient();
+        client.setSocketFactory(new TracingSocketFactory());
+        client.interceptors().add(interceptor);
+        client.networkInterceptors().add(interceptor.getNetworkInterceptor());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private String get(String path) throws IOException {
+        return client.newCall(new Request.Builder().url(server.url(path)).build()).execute().body().string();
+    }
+
+    @Test
+    public void testPhases() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(302).setHeader("Location", "/target"));
+        server.enqueue(new MockResponse().setBody("content"));
+
+        TraceScope scope = TraceScope.begin(tracer);
+        try {
+            assertEquals("content", get("/disk/file"));
+        } finally {
+            scope.end();
+        }
+
+        assertEquals(1, spans.size());
+        Span span = spans.get(0);
+        assertEquals(scope.getTraceId(), span.getTraceId());
+        assertEquals("GET", span.getMethod());
+        assertEquals("/target", span.getPath());
+        assertEquals(200, span.getHttpCode());
+        assertEquals(1, span.getRedirects());
+        assertNull(span.getError());
+        assertTrue(span.getDns(TimeUnit.NANOSECONDS) >= 0);
+        assertTrue(span.getConnect(TimeUnit.NANOSECONDS) >= 0);
+        assertEquals(-1, span.getTls(TimeUnit.NANOSECONDS));
+        assertTrue(span.getTtfb(TimeUnit.NANOSECONDS) >= 0);
+        assertTrue(span.getBody(TimeUnit.NANOSECONDS) >= 0);
+        assertTrue(span.getTotal(TimeUnit.NANOSECONDS) >= span.getTtfb(TimeUnit.NANOSECONDS)
+                + span.getBody(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testTraceIds() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setBody("content"));
+        }
+
+        get("/first");
+        get("/second");
+        TraceScope scope = TraceScope.begin(tracer);
+        try {
+            get("/third");
+            TraceScope nested = TraceScope.begin(tracer);
+            assertNull(nested.getTraceId());
+            get("/fourth");
+            nested.end();
+        } finally {
+            scope.end();
+        }
+        assertNull(TraceScope.getCurrentTraceId());
+
+        assertEquals(4, spans.size());
+        assertNotEquals(spans.get(0).getTraceId(), spans.get(1).getTraceId());
+        assertNotEquals(spans.get(1).getTraceId(), spans.get(2).getTraceId());
+        assertEquals(scope.getTraceId(), spans.get(2).getTraceId());
+        assertEquals(scope.getTraceId(), spans.get(3).getTraceId());
+        // pooled connection
+        assertEquals(-1, spans.get(1).getConnect(TimeUnit.NANOSECONDS));
+        assertEquals(-1, spans.get(1).getDns(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        try {
+            get("/disk/file");
+            fail();
+        } catch (IOException expected) {
+            // traced
+        }
+        assertEquals(1, spans.size());
+        Span span = spans.get(0);
+        assertEquals(-1, span.getHttpCode());
+        assertEquals(-1, span.getBody(TimeUnit.NANOSECONDS));
+        assertTrue(span.getError() != null);
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        server.enqueue(new MockResponse().setBody("content"));
+        interceptor.setTracer(Tracer.NONE);
+        TraceScope scope = TraceScope.begin(Tracer.NONE);
+        try {
+            assertNull(scope.getTraceId());
+            assertNull(TraceScope.getCurrentTraceId());
+            assertEquals("content", get("/disk/file"));
+        } finally {
+            scope.end();
+        }
+        assertTrue(spans.isEmpty());
+    }
+}
@@ -0,0 +1,145 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class HashCacheTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("hash-cache-test", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testPersistence() throws Exception {
+        File index = new File(dir, "index");
+        File file = write("a.bin", "content");
+
+        HashCache cache = new HashCache(index, 10);
+        assertNull(cache.get(file));
+        Hash hash = cache.getHash(file);
+        assertEquals(Hash.getHash(file).getSha256(), hash.getSha256());
+        cache.close();
+
+        HashCache reopened = new HashCache(index, 10);
+        Hash cached = reopened.get(file);
+        assertNotNull(cached);
+        assertEquals(hash.getMd5(), cached.getMd5());
+        assertEquals(hash.getSha256(), cached.getSha256());
+        assertEquals(hash.getSize(), cached.getSize());
+    }
+
+    @Test
+    public void testChangedFile() throws Exception {
+        File file = write("a.bin", "content");
+        HashCache cache = new HashCache(new File(dir, "index"), 10);
+        cache.getHash(file);
+        write("a.bin", "changed content");
+        assertNull(cache.get(file));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        File index = new File(dir, "index");
+        HashCache cache = new HashCache(index, 2);
+        File a = write("a.bin", "a");
+        File b = write("b.bin", "b");
+        File c = write("c.bin", "c");
+        cache.getHash(a);
+        cache.getHash(b);
+        cache.get(a);
+        cache.getHash(c);
+        assertNotNull(cache.get(a));
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(c));
+        cache.close();
+
+        HashCache reopened = new HashCache(index, 2);
+        assertNotNull(reopened.get(a));
+        assertNull(reopened.get(b));
+        assertNotNull(reopened.get(c));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        File index = new File(dir, "index");
+        File a = write("a.bin", "a");
+        File b = write("b.bin", "b");
+        HashCache cache = new HashCache(index, 10);
+        cache.getHash(a);
+        cache.getHash(b);
+        long length = index.length();
+        cache.remove(a);
+        assertNull(cache.get(a));
+        assertTrue(index.length() > length);
+
+        HashCache reopened = new HashCache(index, 10);
+        assertNull(reopened.get(a));
+        assertNotNull(reopened.get(b));
+    }
+
+    @Test
+    public void testCorruptIndex() throws Exception {
+        File index = new File(dir, "index");
+        File a = write("a.bin", "a");
+        HashCache cache = new HashCache(index, 10);
+        cache.getHash(a);
+        cache.close();
+
+        RandomAccessFile raf = new RandomAccessFile(index, "rw");
+        raf.seek(8);
+        raf.writeShort(4);
+        raf.write(new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff});
+        raf.close();
+
+        HashCache reopened = new HashCache(index, 10);
+        assertNull(reopened.get(a));
+        Hash hash = reopened.getHash(a);
+        assertEquals(Hash.getHash(a).getSha256(), hash.getSha256());
+        reopened.close();
+
+        assertNotNull(new HashCache(index, 10).get(a));
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(dir, name);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+        return file;
+    }
+}
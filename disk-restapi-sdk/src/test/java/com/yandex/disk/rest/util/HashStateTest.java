@@ -0,0 +1,66 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class HashStateTest {
+
+    @Test
+    public void testEmpty() throws Exception {
+        Hash hash = new HashState().getHash();
+        assertEquals("d41d8cd98f00b204e9800998ecf8427e", hash.getMd5());
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", hash.getSha256());
+        assertEquals(0, hash.getSize());
+    }
+
+    @Test
+    public void testMessageDigest() throws Exception {
+        Random random = new Random(0);
+        for (int length : new int[]{1, 55, 56, 63, 64, 65, 119, 120, 128, 1000, 100000}) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            HashState state = new HashState();
+            for (int offset = 0; offset < length; ) {
+                int count = Math.min(length - offset, random.nextInt(100));
+                state.update(bytes, offset, count);
+                offset += count;
+            }
+            Hash hash = state.getHash();
+            assertEquals(digest("MD5", bytes), hash.getMd5());
+            assertEquals(digest("SHA-256", bytes), hash.getSha256());
+            assertEquals(length, hash.getSize());
+        }
+    }
+
+    @Test
+    public void testSaveRestore() throws Exception {
+        byte[] bytes = new byte[10000];
+        new Random(1).nextBytes(bytes);
+        HashState state = new HashState();
+        state.update(bytes, 0, 4321);
+        HashState restored = HashState.fromByteArray(state.toByteArray());
+        assertEquals(4321, restored.getPosition());
+        restored.update(bytes, 4321, bytes.length - 4321);
+        assertEquals(digest("MD5", bytes), restored.getHash().getMd5());
+        assertEquals(digest("SHA-256", bytes), restored.getHash().getSha256());
+    }
+
+    private static String digest(String algorithm, byte[] bytes) throws Exception {
+        return Hash.toString(MessageDigest.getInstance(algorithm).digest(bytes));
+    }
+}
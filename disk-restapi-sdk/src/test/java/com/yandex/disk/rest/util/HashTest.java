@@ -0,0 +1,51 @@
+/*
+* (C) 2015 Yandex LLC (https://yandex.com/)
+*
+* The source code of Java SDK for Yandex.Disk REST API
+* is available to use under terms of Apache License,
+* Version 2.0. See the file LICENSE for the details.
+*/
+
+package com.yandex.disk.rest.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class HashTest {
+
+    @Test
+    public void testMappedBlocks() throws Exception {
+        byte[] bytes = new byte[5 * 1024 * 1024 + 17];
+        new Random(0).nextBytes(bytes);
+        File file = File.createTempFile("hash-test", ".bin");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(bytes);
+            out.close();
+
+            String md5 = Hash.toString(MessageDigest.getInstance("MD5").digest(bytes));
+            String sha256 = Hash.toString(MessageDigest.getInstance("SHA-256").digest(bytes));
+            for (int blockSize : new int[]{1024 * 1024 - 1, Hash.DEFAULT_BLOCK_SIZE}) {
+                Hash hash = Hash.getHash(file, blockSize);
+                assertEquals(md5, hash.getMd5());
+                assertEquals(sha256, hash.getSha256());
+                assertEquals(bytes.length, hash.getSize());
+
+                Hash read = Hash.getHash(file, blockSize, false);
+                assertEquals(md5, read.getMd5());
+                assertEquals(sha256, read.getSha256());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
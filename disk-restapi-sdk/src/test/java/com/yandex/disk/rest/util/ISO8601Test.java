@@ -12,13 +12,17 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.text.ParseException;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.TimeZone;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 @RunWith(JUnit4.class)
 public class ISO8601Test {
@@ -36,4 +40,35 @@ public class ISO8601Test {
         assertFalse(ISO8601.parse("2014-07-07T10:03:04+00:00").equals(new Date(1404727384001L)));
         assertTrue(ISO8601.parse("2014-12-09T20:45:57+04:00").equals(new Date(1418143557000L)));
     }
+
+    @Test
+    public void testParseMillis() throws Exception {
+        Calendar calendar = GregorianCalendar.getInstance(TimeZone.getTimeZone("GMT+03:00"));
+        calendar.setTimeInMillis(-86400000L * 365 * 5);
+        for (int i = 0; i < 20000; i++) {
+            String date = ISO8601.fromCalendar(calendar);
+            assertEquals(date, ISO8601.toCalendar(date).getTimeInMillis(), ISO8601.parseMillis(date));
+            calendar.add(Calendar.SECOND, 86400 * 3 + 3671);
+        }
+        assertEquals(1418143557000L, ISO8601.parseMillis("2014-12-09T20:45:57+04:00"));
+        assertEquals(1418143557000L, ISO8601.parseMillis("2014-12-09T16:45:57Z"));
+        assertEquals(1418143557000L, ISO8601.parseMillis("2014-12-09T11:15:57-0530"));
+        assertEquals(1418143557120L, ISO8601.parseMillis("2014-12-09T16:45:57.12Z"));
+        assertEquals(1418143557123L, ISO8601.parseMillis("2014-12-09T16:45:57.123456+00:00"));
+        assertEquals(951782400000L, ISO8601.parseMillis("2000-02-29T00:00:00Z"));
+    }
+
+    @Test
+    public void testParseMillisInvalid() {
+        String[] invalid = {"", "2014-12-09T20:45:57", "2014-12-09 20:45:57+04:00", "2014-13-09T20:45:57Z",
+                "2014-12-09T20:45:57+04", "2014-12-09T20:45:57.Z", "2014-12-09T20:45:57Z ", "2014-1a-09T20:45:57Z"};
+        for (String date : invalid) {
+            try {
+                ISO8601.parseMillis(date);
+                fail(date);
+            } catch (ParseException ex) {
+                // expected
+            }
+        }
+    }
 }